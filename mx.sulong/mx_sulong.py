@@ -96,6 +96,8 @@ def _sulong_gate_runner(args, tasks):
         if t: mx_testsuites.runSuite('shootout')
     with Task('TestTypes', tasks, tags=['type', 'sulongMisc']) as t:
         if t: mx_testsuites.runSuite('type')
+    with Task('TestMemory', tasks, tags=['memory', 'sulongMisc']) as t:
+        if t: mx_testsuites.runSuite('memory')
     with Task('TestPipe', tasks, tags=['pipe', 'sulongMisc']) as t:
         if t: mx_testsuites.runSuite('pipe')
     with Task('TestLLVM', tasks, tags=['llvm']) as t:
@@ -116,6 +118,12 @@ def _sulong_gate_runner(args, tasks):
         if t: mx_unittest.unittest(['com.oracle.truffle.llvm.test.interop'])
     with Task("TestDebug", tasks, tags=['debug', 'sulongBasic']) as t:
         if t: mx_unittest.unittest(['LLVMDebugTest'])
+    with Task("TestSulongOptions", tasks, tags=['options', 'sulongBasic']) as t:
+        if t: mx_unittest.unittest(['SulongOptionsSuite'])
+    with Task("TestRuntime", tasks, tags=['runtime', 'sulongBasic']) as t:
+        if t: mx_unittest.unittest(['LazyBindingTest', 'ParallelScanTest', 'StackOverflowTest'])
+    with Task("TestParserUnits", tasks, tags=['parserunits', 'sulongBasic']) as t:
+        if t: mx_unittest.unittest(['com.oracle.truffle.llvm.test.parser'])
     with Task('TestAssembly', tasks, tags=['assembly', 'sulongMisc']) as t:
         if t: mx_testsuites.runSuite('assembly')
     with Task('TestArgs', tasks, tags=['args', 'sulongMisc']) as t:
@@ -108,6 +108,10 @@ def runTypeTests(vmArgs):
     """runs the Type test suite"""
     return run(vmArgs, "com.oracle.truffle.llvm.types.floating.test")
 
+def runMemoryTests(vmArgs):
+    """runs the Memory test suite"""
+    return run(vmArgs, "com.oracle.truffle.llvm.types.memory.test")
+
 def runPipeTests(vmArgs):
     """runs the Pipe test suite"""
     return run(vmArgs, "com.oracle.truffle.llvm.test.CaptureOutputTest")
@@ -190,6 +194,7 @@ testSuites = {
     'shootout' : (compileShootoutSuite, runShootoutSuite),
     'parserTorture' : (compileParserTurtureSuite, runParserTortureSuite),
     'type' : (None, runTypeTests),
+    'memory' : (None, runMemoryTests),
     'pipe' : (None, runPipeTests),
 }
 
@@ -150,6 +150,21 @@ int __sulong_posix_munmap(void* addr, size_t length)
 	CALL(int, munmap, addr, length);
 }
 
+void* __sulong_posix_mremap(void* old_address, size_t old_size, size_t new_size, int flags, void* new_address)
+{
+	CALL(void*, mremap, old_address, old_size, new_size, flags, new_address);
+}
+
+int __sulong_posix_mprotect(void* addr, size_t length, int prot)
+{
+	CALL(int, mprotect, addr, length, prot);
+}
+
+int __sulong_posix_madvise(void* addr, size_t length, int advice)
+{
+	CALL(int, madvise, addr, length, advice);
+}
+
 int __sulong_posix_unlink(const char *path)
 {
 	CALL(int, unlink, path);
@@ -34,11 +34,9 @@ import com.oracle.truffle.api.dsl.Cached;
 import com.oracle.truffle.api.dsl.NodeChild;
 import com.oracle.truffle.api.dsl.Specialization;
 import com.oracle.truffle.api.frame.FrameSlot;
-import com.oracle.truffle.api.frame.FrameUtil;
 import com.oracle.truffle.api.frame.VirtualFrame;
 import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
 import com.oracle.truffle.llvm.runtime.memory.LLVMStack;
-import com.oracle.truffle.llvm.runtime.memory.LLVMStack.StackPointer;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMExpressionNode;
 
 @NodeChild("value")
@@ -53,10 +51,7 @@ public abstract class LLVMAMD64PushNode extends LLVMExpressionNode {
         protected Object doVoid(VirtualFrame frame, short value,
                         @Cached("getStackPointerSlot()") FrameSlot slot,
                         @Cached("getLLVMMemory()") LLVMMemory memory) {
-            StackPointer basePointer = (StackPointer) FrameUtil.getObjectSafe(frame, slot);
-            long sp = basePointer.get(memory);
-            sp -= LLVMExpressionNode.I16_SIZE_IN_BYTES;
-            basePointer.set(sp);
+            long sp = LLVMStack.allocateStackMemory(frame, memory, slot, LLVMExpressionNode.I16_SIZE_IN_BYTES, LLVMStack.NO_ALIGNMENT_REQUIREMENTS);
             memory.putI16(sp, value);
             return null;
         }
@@ -67,10 +62,7 @@ public abstract class LLVMAMD64PushNode extends LLVMExpressionNode {
         protected Object doVoid(VirtualFrame frame, int value,
                         @Cached("getStackPointerSlot()") FrameSlot slot,
                         @Cached("getLLVMMemory()") LLVMMemory memory) {
-            StackPointer basePointer = (StackPointer) FrameUtil.getObjectSafe(frame, slot);
-            long sp = basePointer.get(memory);
-            sp -= LLVMExpressionNode.I32_SIZE_IN_BYTES;
-            basePointer.set(sp);
+            long sp = LLVMStack.allocateStackMemory(frame, memory, slot, LLVMExpressionNode.I32_SIZE_IN_BYTES, LLVMStack.NO_ALIGNMENT_REQUIREMENTS);
             memory.putI32(sp, value);
             return null;
         }
@@ -81,10 +73,7 @@ public abstract class LLVMAMD64PushNode extends LLVMExpressionNode {
         protected Object doVoid(VirtualFrame frame, long value,
                         @Cached("getStackPointerSlot()") FrameSlot slot,
                         @Cached("getLLVMMemory()") LLVMMemory memory) {
-            StackPointer basePointer = (StackPointer) FrameUtil.getObjectSafe(frame, slot);
-            long sp = basePointer.get(memory);
-            sp -= LLVMExpressionNode.I64_SIZE_IN_BYTES;
-            basePointer.set(sp);
+            long sp = LLVMStack.allocateStackMemory(frame, memory, slot, LLVMExpressionNode.I64_SIZE_IN_BYTES, LLVMStack.NO_ALIGNMENT_REQUIREMENTS);
             memory.putI64(sp, value);
             return null;
         }
@@ -29,6 +29,13 @@
  */
 package com.oracle.truffle.llvm.nodes.asm.syscall;
 
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNode;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMPointer;
 
 public class LLVMAMD64Memory {
@@ -45,8 +52,148 @@ public class LLVMAMD64Memory {
     public static final int MAP_TYPE = 0x0f;
     public static final int MAP_FIXED = 0x10;
     public static final int MAP_ANONYMOUS = 0x20;
+    public static final int MAP_FIXED_NOREPLACE = 0x100000;
     public static final int MAP_UNINITIALIZED = 0x4000000;
 
+    public static final int MREMAP_MAYMOVE = 0x1;
+    public static final int MREMAP_FIXED = 0x2;
+
+    public static final long PAGE_SIZE = 4096;
+
+    /**
+     * The native mappings that guest code created with mmap, from start to end address. Mappings
+     * are process-wide, so this table is shared by all contexts.
+     */
+    private static final TreeMap<Long, Long> mappings = new TreeMap<>();
+
+    public static long pageAlign(long length) {
+        return (length + PAGE_SIZE - 1) & -PAGE_SIZE;
+    }
+
+    public static boolean isError(long result) {
+        return result < 0 && result >= -4095;
+    }
+
+    @TruffleBoundary
+    public static void addMapping(long start, long length) {
+        synchronized (mappings) {
+            removeMapping(start, length);
+            mappings.put(start, start + pageAlign(length));
+        }
+    }
+
+    @TruffleBoundary
+    public static void removeMapping(long start, long length) {
+        long end = start + pageAlign(length);
+        synchronized (mappings) {
+            Map.Entry<Long, Long> entry = mappings.lowerEntry(end);
+            while (entry != null && entry.getValue() > start) {
+                mappings.remove(entry.getKey());
+                if (entry.getKey() < start) {
+                    mappings.put(entry.getKey(), start);
+                }
+                if (entry.getValue() > end) {
+                    mappings.put(end, entry.getValue());
+                }
+                entry = mappings.lowerEntry(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Checks whether the given range is entirely covered by mappings that guest code created with
+     * mmap. Only such ranges may be passed to the native munmap, mremap, mprotect and madvise.
+     */
+    @TruffleBoundary
+    public static boolean isMapped(long start, long length) {
+        long end = start + pageAlign(length);
+        synchronized (mappings) {
+            long current = start;
+            while (current < end) {
+                Map.Entry<Long, Long> entry = mappings.floorEntry(current);
+                if (entry == null || entry.getValue() <= current) {
+                    return false;
+                }
+                current = entry.getValue();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Returns the parts of the given range that are covered by mappings that guest code created
+     * with mmap, as pairs of start and end address.
+     */
+    @TruffleBoundary
+    public static long[] getMappedRanges(long start, long length) {
+        long end = start + pageAlign(length);
+        synchronized (mappings) {
+            Map.Entry<Long, Long> first = mappings.floorEntry(start);
+            Long from = first != null && first.getValue() > start ? first.getKey() : Long.valueOf(start);
+            Collection<Map.Entry<Long, Long>> entries = mappings.subMap(from, true, end, false).entrySet();
+            long[] ranges = new long[entries.size() * 2];
+            int i = 0;
+            for (Map.Entry<Long, Long> entry : entries) {
+                ranges[i++] = Math.max(entry.getKey(), start);
+                ranges[i++] = Math.min(entry.getValue(), end);
+            }
+            return ranges;
+        }
+    }
+
+    /**
+     * Returns the parts of the given range that are not covered by mappings that guest code created
+     * with mmap, as pairs of start and end address.
+     */
+    @TruffleBoundary
+    public static long[] getUnmappedRanges(long start, long length) {
+        long end = start + pageAlign(length);
+        long[] mapped = getMappedRanges(start, length);
+        long[] ranges = new long[mapped.length + 2];
+        int n = 0;
+        long current = start;
+        for (int i = 0; i < mapped.length; i += 2) {
+            if (mapped[i] > current) {
+                ranges[n++] = current;
+                ranges[n++] = mapped[i];
+            }
+            current = mapped[i + 1];
+        }
+        if (current < end) {
+            ranges[n++] = current;
+            ranges[n++] = end;
+        }
+        return Arrays.copyOf(ranges, n);
+    }
+
+    /**
+     * Maps the given ranges with {@code MAP_FIXED_NOREPLACE}, so that a fixed mapping over them
+     * cannot replace memory of the host. If one of the ranges is not free, the ranges that were
+     * already reserved are released again and {@code false} is returned.
+     */
+    static boolean reserveRanges(LLVMAMD64PosixCallNode mmap, LLVMAMD64PosixCallNode munmap, long[] ranges) {
+        int flags = MAP_PRIVATE | MAP_ANONYMOUS | MAP_FIXED_NOREPLACE;
+        for (int i = 0; i < ranges.length; i += 2) {
+            long size = ranges[i + 1] - ranges[i];
+            long result = (long) mmap.execute(ranges[i], size, PROT_NONE, flags, -1, 0L);
+            if (isError(result) || result != ranges[i]) {
+                if (!isError(result)) {
+                    // kernels before 4.17 ignore MAP_FIXED_NOREPLACE and treat the address as a hint
+                    munmap.execute(result, size);
+                }
+                releaseRanges(munmap, Arrays.copyOf(ranges, i));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static void releaseRanges(LLVMAMD64PosixCallNode munmap, long[] ranges) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            munmap.execute(ranges[i], ranges[i + 1] - ranges[i]);
+        }
+    }
+
     public static long brk(@SuppressWarnings("unused") LLVMPointer ptr) {
         return -LLVMAMD64Error.ENOSYS; // this will never be supported
     }
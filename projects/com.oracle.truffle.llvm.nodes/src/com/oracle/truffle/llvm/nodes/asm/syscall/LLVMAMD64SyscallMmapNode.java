@@ -29,35 +29,67 @@
  */
 package com.oracle.truffle.llvm.nodes.asm.syscall;
 
-import com.oracle.truffle.api.dsl.Cached;
 import com.oracle.truffle.api.dsl.Specialization;
-import com.oracle.truffle.api.profiles.ConditionProfile;
-import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNode;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNodeGen;
 import com.oracle.truffle.llvm.runtime.memory.LLVMSyscallOperationNode;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
 
 public abstract class LLVMAMD64SyscallMmapNode extends LLVMSyscallOperationNode {
+    @Child private LLVMAMD64PosixCallNode mmap;
+    @Child private LLVMAMD64PosixCallNode munmap;
+
+    public LLVMAMD64SyscallMmapNode() {
+        mmap = LLVMAMD64PosixCallNodeGen.create("mmap", "(UINT64,UINT64,SINT32,SINT32,SINT32,SINT64):SINT64", 6);
+        munmap = LLVMAMD64PosixCallNodeGen.create("munmap", "(UINT64,UINT64):SINT32", 2);
+    }
 
     @Override
     public final String getName() {
         return "mmap";
     }
 
-    private final ConditionProfile mapAnonymousProfile = ConditionProfile.createCountingProfile();
-
-    @SuppressWarnings("unused")
     @Specialization
-    protected long doOp(LLVMNativePointer addr, long len, long prot, long flags, long fildes, long off,
-                    @Cached("getLLVMMemory()") LLVMMemory memory) {
-        if (mapAnonymousProfile.profile((flags & LLVMAMD64Memory.MAP_ANONYMOUS) != 0)) {
-            LLVMNativePointer ptr = memory.allocateMemory(len);
-            return ptr.asNative();
-        }
-        return -LLVMAMD64Error.ENOMEM;
+    protected long doOp(LLVMNativePointer addr, long len, long prot, long flags, long fildes, long off) {
+        return doOp(addr.asNative(), len, prot, flags, fildes, off);
     }
 
+    /**
+     * Anonymous mappings are real OS mappings as well, so they are page-aligned, zero-filled on
+     * first touch, and released immediately by munmap.
+     *
+     * A fixed mapping may replace mappings that the guest created itself. Any other part of the
+     * target range is reserved with {@code MAP_FIXED_NOREPLACE} first, so that memory of the host is
+     * never replaced. In that case the mapping fails with {@code EEXIST} where Linux would replace
+     * the memory. A mapping that fails leaves the address space unchanged.
+     */
     @Specialization
     protected long doOp(long addr, long len, long prot, long flags, long fildes, long off) {
-        return execute(LLVMNativePointer.create(addr), len, prot, flags, fildes, off);
+        long result;
+        if ((flags & LLVMAMD64Memory.MAP_FIXED) != 0 && !LLVMAMD64Memory.isMapped(addr, len)) {
+            result = mapFixed(addr, len, prot, flags, fildes, off);
+        } else {
+            result = (long) mmap.execute(addr, len, (int) prot, (int) flags, (int) fildes, off);
+        }
+        if (!LLVMAMD64Memory.isError(result)) {
+            LLVMAMD64Memory.addMapping(result, len);
+        }
+        return result;
+    }
+
+    private long mapFixed(long addr, long len, long prot, long flags, long fildes, long off) {
+        if (addr % LLVMAMD64Memory.PAGE_SIZE != 0) {
+            return -LLVMAMD64Error.EINVAL;
+        }
+        // the parts that the guest mapped itself are replaced by the fixed mapping
+        long[] unmapped = LLVMAMD64Memory.getUnmappedRanges(addr, len);
+        if (!LLVMAMD64Memory.reserveRanges(mmap, munmap, unmapped)) {
+            return -LLVMAMD64Error.EEXIST;
+        }
+        long result = (long) mmap.execute(addr, len, (int) prot, (int) flags, (int) fildes, off);
+        if (LLVMAMD64Memory.isError(result)) {
+            LLVMAMD64Memory.releaseRanges(munmap, unmapped);
+        }
+        return result;
     }
 }
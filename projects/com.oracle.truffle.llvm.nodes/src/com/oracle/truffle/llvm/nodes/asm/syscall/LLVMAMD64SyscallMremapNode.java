@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.nodes.asm.syscall;
+
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNode;
+import com.oracle.truffle.llvm.nodes.asm.syscall.posix.LLVMAMD64PosixCallNodeGen;
+import com.oracle.truffle.llvm.runtime.memory.LLVMSyscallOperationNode;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMToNativeNode;
+
+public abstract class LLVMAMD64SyscallMremapNode extends LLVMSyscallOperationNode {
+    @Child private LLVMAMD64PosixCallNode mremap;
+    @Child private LLVMAMD64PosixCallNode mmap;
+    @Child private LLVMAMD64PosixCallNode munmap;
+    @Child private LLVMToNativeNode toNative;
+
+    public LLVMAMD64SyscallMremapNode() {
+        mremap = LLVMAMD64PosixCallNodeGen.create("mremap", "(UINT64,UINT64,UINT64,SINT32,UINT64):SINT64", 5);
+        mmap = LLVMAMD64PosixCallNodeGen.create("mmap", "(UINT64,UINT64,SINT32,SINT32,SINT32,SINT64):SINT64", 6);
+        munmap = LLVMAMD64PosixCallNodeGen.create("munmap", "(UINT64,UINT64):SINT32", 2);
+        toNative = LLVMToNativeNode.createToNativeWithTarget();
+    }
+
+    @Override
+    public final String getName() {
+        return "mremap";
+    }
+
+    /**
+     * Memory that the guest did not map itself is treated like unmapped memory, so remapping it
+     * fails with {@code EFAULT}. The parts of a fixed target that the guest did not map itself are
+     * reserved with {@code MAP_FIXED_NOREPLACE} first, so that memory of the host is never
+     * replaced. If that fails, the remapping fails with {@code EINVAL} where Linux would replace the
+     * memory. A remapping that fails leaves the address space unchanged.
+     */
+    @Specialization
+    protected long doOp(Object oldAddress, long oldSize, long newSize, long flags, Object newAddress) {
+        long oldPointer = toNative.executeWithTarget(oldAddress).asNative();
+        if (!LLVMAMD64Memory.isMapped(oldPointer, oldSize)) {
+            return -LLVMAMD64Error.EFAULT;
+        }
+
+        long newPointer = toNative.executeWithTarget(newAddress).asNative();
+        long[] reserved = null;
+        if ((flags & LLVMAMD64Memory.MREMAP_FIXED) != 0 && !LLVMAMD64Memory.isMapped(newPointer, newSize)) {
+            if (newPointer % LLVMAMD64Memory.PAGE_SIZE != 0) {
+                return -LLVMAMD64Error.EINVAL;
+            }
+            if (newPointer < oldPointer + LLVMAMD64Memory.pageAlign(oldSize) && oldPointer < newPointer + LLVMAMD64Memory.pageAlign(newSize)) {
+                // the old mapping must not be claimed as the target
+                return -LLVMAMD64Error.EINVAL;
+            }
+            // the parts that the guest mapped itself are replaced by the remapping
+            reserved = LLVMAMD64Memory.getUnmappedRanges(newPointer, newSize);
+            if (!LLVMAMD64Memory.reserveRanges(mmap, munmap, reserved)) {
+                return -LLVMAMD64Error.EINVAL;
+            }
+        }
+        long result = (long) mremap.execute(oldPointer, oldSize, newSize, (int) flags, newPointer);
+        if (!LLVMAMD64Memory.isError(result)) {
+            LLVMAMD64Memory.removeMapping(oldPointer, oldSize);
+            LLVMAMD64Memory.addMapping(result, newSize);
+        } else if (reserved != null) {
+            LLVMAMD64Memory.releaseRanges(munmap, reserved);
+        }
+        return result;
+    }
+}
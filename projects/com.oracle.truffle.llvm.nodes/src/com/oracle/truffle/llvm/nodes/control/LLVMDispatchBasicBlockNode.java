@@ -32,13 +32,16 @@ package com.oracle.truffle.llvm.nodes.control;
 import com.oracle.truffle.api.CompilerAsserts;
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.Truffle;
 import com.oracle.truffle.api.frame.FrameSlot;
+import com.oracle.truffle.api.frame.FrameUtil;
 import com.oracle.truffle.api.frame.VirtualFrame;
 import com.oracle.truffle.api.instrumentation.StandardTags;
 import com.oracle.truffle.api.instrumentation.Tag;
 import com.oracle.truffle.api.nodes.ExplodeLoop;
 import com.oracle.truffle.api.nodes.ExplodeLoop.LoopExplosionKind;
 import com.oracle.truffle.api.nodes.LoopNode;
+import com.oracle.truffle.api.nodes.RepeatingNode;
 import com.oracle.truffle.llvm.nodes.base.LLVMBasicBlockNode;
 import com.oracle.truffle.llvm.nodes.base.LLVMFrameNullerUtil;
 import com.oracle.truffle.llvm.nodes.func.LLVMInvokeNode;
@@ -48,24 +51,73 @@ import com.oracle.truffle.llvm.runtime.LLVMException;
 import com.oracle.truffle.llvm.runtime.debug.scope.LLVMSourceLocation;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMControlFlowNode;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMExpressionNode;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMNode;
 
 public final class LLVMDispatchBasicBlockNode extends LLVMExpressionNode {
 
+    private static final int NO_HEADER = -1;
+
+    /**
+     * Returned by {@link #dispatch} when it stops at a back edge in order to let the loop node
+     * decide how to continue.
+     */
+    private static final Object BACK_EDGE = new Object();
+
+    /**
+     * Returned by {@link #dispatch} when the body of a loop or region jumps to a block outside of
+     * it.
+     */
+    private static final Object REGION_EXIT = new Object();
+
     private final FrameSlot exceptionValueSlot;
+    // pass the block at which the execution continues and the return value out of a loop or region
+    private final FrameSlot successorSlot;
+    private final FrameSlot returnValueSlot;
     private final LLVMSourceLocation source;
+    // the entry block if this node only dispatches the body of a loop or an outlined region
+    private final int header;
+    // whether the dispatch stops when it returns to the header
+    private final boolean isLoop;
+    // blocks that belong to nested loops or regions are null
     @Children private final LLVMBasicBlockNode[] bodyNodes;
+    // the nested loops and regions indexed by their entry, or null if there are none
+    @Children private final LLVMRegionNode[] regions;
     @CompilationFinal(dimensions = 2) private final FrameSlot[][] beforeBlockNuller;
     @CompilationFinal(dimensions = 2) private final FrameSlot[][] afterBlockNuller;
     @Children private final LLVMExpressionNode[] copyArgumentsToFrame;
+    // one lazily created loop node per loop header for OSR, indexed by basic block
+    @Children private final LoopNode[] osrLoopNodes;
+
+    public LLVMDispatchBasicBlockNode(FrameSlot exceptionValueSlot, FrameSlot successorSlot, FrameSlot returnValueSlot, LLVMBasicBlockNode[] bodyNodes, LLVMRegionNode[] regions,
+                    FrameSlot[][] beforeBlockNuller, FrameSlot[][] afterBlockNuller, LLVMSourceLocation source, LLVMExpressionNode[] copyArgumentsToFrame) {
+        this(exceptionValueSlot, successorSlot, returnValueSlot, NO_HEADER, false, bodyNodes, regions, beforeBlockNuller, afterBlockNuller, source, copyArgumentsToFrame);
+    }
+
+    /**
+     * Creates the dispatch node for the body of the loop with the given header, or for the outlined
+     * region with the given entry if {@code isLoop} is not set. Its blocks are indexed the same way
+     * as the blocks of the function.
+     */
+    public LLVMDispatchBasicBlockNode(FrameSlot exceptionValueSlot, FrameSlot successorSlot, FrameSlot returnValueSlot, int header, boolean isLoop, LLVMBasicBlockNode[] bodyNodes,
+                    LLVMRegionNode[] regions, FrameSlot[][] beforeBlockNuller, FrameSlot[][] afterBlockNuller) {
+        this(exceptionValueSlot, successorSlot, returnValueSlot, header, isLoop, bodyNodes, regions, beforeBlockNuller, afterBlockNuller, null, LLVMExpressionNode.NO_EXPRESSIONS);
+        assert header >= 0 && (bodyNodes[header] != null || regions != null && regions[header] != null);
+    }
 
-    public LLVMDispatchBasicBlockNode(FrameSlot exceptionValueSlot, LLVMBasicBlockNode[] bodyNodes, FrameSlot[][] beforeBlockNuller, FrameSlot[][] afterBlockNuller, LLVMSourceLocation source,
-                    LLVMExpressionNode[] copyArgumentsToFrame) {
+    private LLVMDispatchBasicBlockNode(FrameSlot exceptionValueSlot, FrameSlot successorSlot, FrameSlot returnValueSlot, int header, boolean isLoop, LLVMBasicBlockNode[] bodyNodes,
+                    LLVMRegionNode[] regions, FrameSlot[][] beforeBlockNuller, FrameSlot[][] afterBlockNuller, LLVMSourceLocation source, LLVMExpressionNode[] copyArgumentsToFrame) {
         this.exceptionValueSlot = exceptionValueSlot;
+        this.successorSlot = successorSlot;
+        this.returnValueSlot = returnValueSlot;
+        this.header = header;
+        this.isLoop = isLoop;
         this.bodyNodes = bodyNodes;
+        this.regions = regions;
         this.beforeBlockNuller = beforeBlockNuller;
         this.afterBlockNuller = afterBlockNuller;
         this.source = source;
         this.copyArgumentsToFrame = copyArgumentsToFrame;
+        this.osrLoopNodes = isLoop ? null : new LoopNode[bodyNodes.length];
     }
 
     @ExplodeLoop
@@ -76,17 +128,115 @@ public final class LLVMDispatchBasicBlockNode extends LLVMExpressionNode {
     }
 
     @Override
-    @ExplodeLoop(kind = LoopExplosionKind.MERGE_EXPLODE)
     public Object executeGeneric(VirtualFrame frame) {
         copyArgumentsToFrame(frame);
+        return dispatch(frame, 0, false);
+    }
+
+    /**
+     * Executes one iteration of the loop whose body this node dispatches. Returns {@code false}
+     * once the loop is left, after storing the block at which the execution continues.
+     */
+    boolean executeIteration(VirtualFrame frame) {
+        assert isLoop;
+        Object result = dispatch(frame, header, false);
+        if (result == BACK_EDGE) {
+            return true;
+        } else if (result != REGION_EXIT) {
+            // returned from within the loop
+            frame.setObject(returnValueSlot, result);
+            frame.setInt(successorSlot, LLVMBasicBlockNode.RETURN_FROM_FUNCTION);
+        }
+        return false;
+    }
+
+    /**
+     * Executes the outlined region whose blocks this node dispatches on the frame of the function
+     * and stores the block at which the execution continues.
+     */
+    void executeOutlinedRegion(VirtualFrame frame) {
+        assert header != NO_HEADER && !isLoop;
+        Object result = dispatch(frame, header, false);
+        if (result != REGION_EXIT) {
+            // returned from within the region
+            frame.setObject(returnValueSlot, result);
+            frame.setInt(successorSlot, LLVMBasicBlockNode.RETURN_FROM_FUNCTION);
+        }
+    }
 
+    int getSuccessor(VirtualFrame frame) {
+        return FrameUtil.getIntSafe(frame, successorSlot);
+    }
+
+    Object getReturnValue(VirtualFrame frame) {
+        return FrameUtil.getObjectSafe(frame, returnValueSlot);
+    }
+
+    /**
+     * Executes the basic blocks starting at {@code startIndex}. A compiled function only ever runs
+     * this loop as a whole. In the interpreter, every back edge is instead handed to a
+     * {@link LoopNode} for the targeted loop header, which supports on-stack replacement. This way,
+     * a hot loop gets compiled even if the function it is in never returns. If {@code inLoop} is
+     * set, this method is called by such a loop node and stops at the next back edge in the
+     * interpreter, while the compiled OSR code runs the rest of the function.
+     *
+     * If the natural loops of the function were split off into {@link LLVMLoopNode}s, or parts of
+     * the function were outlined into {@link LLVMOutlinedRegionNode}s, this node executes the loop
+     * or region instead of its entry block and continues at the block where it was left. The
+     * dispatch of a loop body stops when it returns to the loop header or leaves the loop, the
+     * dispatch of an outlined region stops when it leaves the region.
+     */
+    @ExplodeLoop(kind = LoopExplosionKind.MERGE_EXPLODE)
+    private Object dispatch(VirtualFrame frame, int startIndex, boolean inLoop) {
         Object returnValue = null;
 
         CompilerAsserts.compilationConstant(bodyNodes.length);
-        int basicBlockIndex = 0;
+        int basicBlockIndex = startIndex;
         int backEdgeCounter = 0;
+        int handledBackEdges = 0;
+        boolean iterationStarted = false;
         outer: while (basicBlockIndex != LLVMBasicBlockNode.RETURN_FROM_FUNCTION) {
             CompilerAsserts.partialEvaluationConstant(basicBlockIndex);
+            if (header != NO_HEADER) {
+                if (isLoop && basicBlockIndex == header && iterationStarted) {
+                    return BACK_EDGE;
+                } else if (bodyNodes[basicBlockIndex] == null && (regions == null || regions[basicBlockIndex] == null)) {
+                    frame.setInt(successorSlot, basicBlockIndex);
+                    return REGION_EXIT;
+                }
+                iterationStarted = true;
+            }
+            if (!isLoop && CompilerDirectives.inInterpreter() && backEdgeCounter != handledBackEdges) {
+                // we just took a back edge to basicBlockIndex
+                handledBackEdges = backEdgeCounter;
+                if (inLoop) {
+                    frame.setInt(successorSlot, basicBlockIndex);
+                    return BACK_EDGE;
+                }
+                basicBlockIndex = executeOSRLoop(frame, basicBlockIndex);
+                if (basicBlockIndex == LLVMBasicBlockNode.RETURN_FROM_FUNCTION) {
+                    returnValue = FrameUtil.getObjectSafe(frame, returnValueSlot);
+                }
+                continue outer;
+            }
+
+            if (regions != null && regions[basicBlockIndex] != null) {
+                LLVMRegionNode region = regions[basicBlockIndex];
+                int successor = region.executeRegion(frame);
+                int[] successors = region.getSuccessors();
+                for (int i = 0; i < successors.length; i++) {
+                    if (successors[i] == successor) {
+                        basicBlockIndex = successors[i];
+                        if (basicBlockIndex == LLVMBasicBlockNode.RETURN_FROM_FUNCTION) {
+                            returnValue = region.getReturnValue(frame);
+                        }
+                        continue outer;
+                    }
+                }
+                CompilerDirectives.transferToInterpreter();
+                throw new IllegalStateException("unexpected successor of region: " + successor);
+            }
+
             LLVMBasicBlockNode bb = bodyNodes[basicBlockIndex];
 
             // execute all statements
@@ -125,12 +275,13 @@ public final class LLVMDispatchBasicBlockNode extends LLVMExpressionNode {
                 }
             } else if (controlFlowNode instanceof LLVMSwitchNode) {
                 LLVMSwitchNode switchNode = (LLVMSwitchNode) controlFlowNode;
-                Object condition = switchNode.executeCondition(frame);
+                int successorIndex = switchNode.executeSuccessorIndex(frame);
                 int[] successors = switchNode.getSuccessors();
-                for (int i = 0; i < successors.length - 1; i++) {
-                    Object caseValue = switchNode.getCase(i).executeGeneric(frame);
-                    assert caseValue.getClass() == condition.getClass() : "must be the same type - otherwise equals might wrongly return false";
-                    if (CompilerDirectives.injectBranchProbability(bb.getBranchProbability(i), condition.equals(caseValue))) {
+                // only one case per successor block is checked
+                int[] caseSuccessorIndices = switchNode.getCaseSuccessorIndices();
+                for (int j = 0; j < caseSuccessorIndices.length; j++) {
+                    int i = caseSuccessorIndices[j];
+                    if (CompilerDirectives.injectBranchProbability(bb.getBranchProbability(i), successorIndex == i)) {
                         if (CompilerDirectives.inInterpreter()) {
                             bb.increaseBranchProbability(i);
                             if (successors[i] <= basicBlockIndex) {
@@ -158,13 +309,12 @@ public final class LLVMDispatchBasicBlockNode extends LLVMExpressionNode {
                 nullDeadSlots(frame, basicBlockIndex, beforeBlockNuller);
                 continue outer;
             } else if (controlFlowNode instanceof LLVMIndirectBranchNode) {
-                // TODO (chaeubl): we need a different approach here - this is awfully
-                // inefficient (see GR-3664)
                 LLVMIndirectBranchNode indirectBranchNode = (LLVMIndirectBranchNode) controlFlowNode;
+                int successorIndex = indirectBranchNode.executeSuccessorIndex(frame);
                 int[] successors = indirectBranchNode.getSuccessors();
-                int successorBasicBlockIndex = indirectBranchNode.executeCondition(frame);
-                for (int i = 0; i < successors.length - 1; i++) {
-                    if (CompilerDirectives.injectBranchProbability(bb.getBranchProbability(i), successors[i] == successorBasicBlockIndex)) {
+                // the node deoptimizes before a successor is reached for the first time
+                for (int i = 0; i < successors.length; i++) {
+                    if (indirectBranchNode.isReached(i) && CompilerDirectives.injectBranchProbability(bb.getBranchProbability(i), successorIndex == i)) {
                         if (CompilerDirectives.inInterpreter()) {
                             bb.increaseBranchProbability(i);
                             if (successors[i] <= basicBlockIndex) {
@@ -178,20 +328,8 @@ public final class LLVMDispatchBasicBlockNode extends LLVMExpressionNode {
                         continue outer;
                     }
                 }
-
-                int i = successors.length - 1;
-                assert successorBasicBlockIndex == successors[i];
-                if (CompilerDirectives.inInterpreter()) {
-                    bb.increaseBranchProbability(i);
-                    if (successors[i] <= basicBlockIndex) {
-                        backEdgeCounter++;
-                    }
-                }
-                executePhis(frame, indirectBranchNode, i);
-                nullDeadSlots(frame, basicBlockIndex, afterBlockNuller);
-                basicBlockIndex = successors[i];
-                nullDeadSlots(frame, basicBlockIndex, beforeBlockNuller);
-                continue outer;
+                CompilerDirectives.transferToInterpreter();
+                throw new IllegalStateException("unexpected successor of indirect branch: " + successorIndex);
             } else if (controlFlowNode instanceof LLVMBrUnconditionalNode) {
                 LLVMBrUnconditionalNode unconditionalNode = (LLVMBrUnconditionalNode) controlFlowNode;
                 if (CompilerDirectives.inInterpreter()) {
@@ -262,6 +400,53 @@ public final class LLVMDispatchBasicBlockNode extends LLVMExpressionNode {
         return returnValue;
     }
 
+    /**
+     * Runs the loop starting at the given loop header and returns the index of the block where the
+     * execution continues after leaving the loop.
+     */
+    private int executeOSRLoop(VirtualFrame frame, int loopHeader) {
+        CompilerAsserts.neverPartOfCompilation();
+        LoopNode loopNode = osrLoopNodes[loopHeader];
+        if (loopNode == null) {
+            loopNode = createOSRLoopNode(loopHeader);
+        }
+        loopNode.executeLoop(frame);
+        return FrameUtil.getIntSafe(frame, successorSlot);
+    }
+
+    private LoopNode createOSRLoopNode(int loopHeader) {
+        // several threads can reach the same loop header for the first time
+        return atomic(() -> {
+            if (osrLoopNodes[loopHeader] == null) {
+                osrLoopNodes[loopHeader] = insert(Truffle.getRuntime().createLoopNode(new LLVMDispatchLoopNode(loopHeader)));
+            }
+            return osrLoopNodes[loopHeader];
+        });
+    }
+
+    private final class LLVMDispatchLoopNode extends LLVMNode implements RepeatingNode {
+        private final int loopHeader;
+
+        LLVMDispatchLoopNode(int loopHeader) {
+            this.loopHeader = loopHeader;
+        }
+
+        @Override
+        public boolean executeRepeating(VirtualFrame frame) {
+            Object result = dispatch(frame, loopHeader, true);
+            if (result == BACK_EDGE) {
+                // leave the loop if the back edge belongs to a different loop
+                return FrameUtil.getIntSafe(frame, successorSlot) == loopHeader;
+            } else if (result == REGION_EXIT) {
+                // the successor is dispatched by the enclosing function or region
+                return false;
+            }
+            frame.setObject(returnValueSlot, result);
+            frame.setInt(successorSlot, LLVMBasicBlockNode.RETURN_FROM_FUNCTION);
+            return false;
+        }
+    }
+
     @ExplodeLoop
     private static void executePhis(VirtualFrame frame, LLVMControlFlowNode controlFlowNode, int successorIndex) {
         LLVMExpressionNode phi = controlFlowNode.getPhiNode(successorIndex);
@@ -287,7 +472,7 @@ public final class LLVMDispatchBasicBlockNode extends LLVMExpressionNode {
 
     @Override
     public boolean hasTag(Class<? extends Tag> tag) {
-        return tag == StandardTags.RootTag.class;
+        return tag == StandardTags.RootTag.class && header == NO_HEADER;
     }
 
     @Override
@@ -29,6 +29,8 @@
  */
 package com.oracle.truffle.llvm.nodes.control;
 
+import java.util.Arrays;
+
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.frame.VirtualFrame;
@@ -66,7 +68,17 @@ public abstract class LLVMIndirectBranchNode extends LLVMControlFlowNode impleme
         return getSourceLocation() != null;
     }
 
-    public abstract int executeCondition(VirtualFrame frame);
+    /**
+     * Evaluates the branch address and returns the index of the successor that it selects. If a
+     * block is listed more than once, the index of its first occurrence is returned.
+     */
+    public abstract int executeSuccessorIndex(VirtualFrame frame);
+
+    /**
+     * Whether {@link #executeSuccessorIndex} ever returned the given index. Compiled code only
+     * dispatches to the successors that were reached so far and deoptimizes for others.
+     */
+    public abstract boolean isReached(int successorIndex);
 
     public abstract int[] getSuccessors();
 
@@ -75,13 +87,22 @@ public abstract class LLVMIndirectBranchNode extends LLVMControlFlowNode impleme
         @Child private LLVMBranchAddressNode branchAddress;
         @Children private final LLVMExpressionNode[] phiWriteNodes;
         @CompilationFinal(dimensions = 1) private final int[] successors;
+        // maps the block index, which is the value of a block address, to the successor index
+        @CompilationFinal(dimensions = 1) private final int[] successorIndexOfBlock;
+        @CompilationFinal(dimensions = 1) private final boolean[] reached;
 
         private LLVMIndirectBranchNodeImpl(LLVMBranchAddressNode branchAddress, int[] indices, LLVMExpressionNode[] phiWriteNodes, LLVMSourceLocation sourceSection) {
             super(sourceSection);
-            assert indices.length > 1;
             this.successors = indices;
             this.branchAddress = branchAddress;
             this.phiWriteNodes = phiWriteNodes;
+            // an indirect branch without destinations gets an empty table and fails if it is executed
+            this.successorIndexOfBlock = new int[Arrays.stream(indices).max().orElse(-1) + 1];
+            Arrays.fill(successorIndexOfBlock, -1);
+            for (int i = indices.length - 1; i >= 0; i--) {
+                successorIndexOfBlock[indices[i]] = i;
+            }
+            this.reached = new boolean[indices.length];
         }
 
         @Override
@@ -95,8 +116,23 @@ public abstract class LLVMIndirectBranchNode extends LLVMControlFlowNode impleme
         }
 
         @Override
-        public int executeCondition(VirtualFrame frame) {
-            return branchAddress.branchAddress(frame);
+        public int executeSuccessorIndex(VirtualFrame frame) {
+            int block = branchAddress.branchAddress(frame);
+            int successorIndex = block >= 0 && block < successorIndexOfBlock.length ? successorIndexOfBlock[block] : -1;
+            if (successorIndex == -1) {
+                CompilerDirectives.transferToInterpreter();
+                throw new IllegalStateException("indirect branch to a block that is not a successor: " + block);
+            }
+            if (!reached[successorIndex]) {
+                CompilerDirectives.transferToInterpreterAndInvalidate();
+                reached[successorIndex] = true;
+            }
+            return successorIndex;
+        }
+
+        @Override
+        public boolean isReached(int successorIndex) {
+            return reached[successorIndex];
         }
 
         @Override
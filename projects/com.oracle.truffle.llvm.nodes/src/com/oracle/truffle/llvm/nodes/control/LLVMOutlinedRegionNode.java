@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.nodes.control;
+
+import com.oracle.truffle.api.Truffle;
+import com.oracle.truffle.api.frame.FrameDescriptor;
+import com.oracle.truffle.api.frame.MaterializedFrame;
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.api.nodes.DirectCallNode;
+import com.oracle.truffle.api.source.Source;
+import com.oracle.truffle.api.source.SourceSection;
+import com.oracle.truffle.llvm.nodes.func.LLVMFunctionStartNode;
+import com.oracle.truffle.llvm.runtime.LLVMLanguage;
+import com.oracle.truffle.llvm.runtime.debug.scope.LLVMSourceLocation;
+
+/**
+ * A region of a huge function that has its own call target, so that it is compiled separately from
+ * the function. The region runs on the materialized frame of the function, which it receives as
+ * its only argument.
+ */
+public final class LLVMOutlinedRegionNode extends LLVMRegionNode {
+
+    @Child private DirectCallNode call;
+
+    public LLVMOutlinedRegionNode(LLVMDispatchBasicBlockNode body, int[] successors, SourceSection sourceSection, LLVMLanguage language, FrameDescriptor frameDescriptor, String name,
+                    int explicitArgumentsCount, String originalName, Source bcSource, LLVMSourceLocation location) {
+        super(body, successors);
+        LLVMRegionStartNode root = new LLVMRegionStartNode(sourceSection, language, body, frameDescriptor, name, explicitArgumentsCount, originalName, bcSource, location);
+        this.call = DirectCallNode.create(Truffle.getRuntime().createCallTarget(root));
+    }
+
+    @Override
+    public int executeRegion(VirtualFrame frame) {
+        call.call(new Object[]{frame.materialize()});
+        return getSuccessor(frame);
+    }
+
+    /**
+     * The root of an outlined region. It has the name and the frame descriptor of the function, so
+     * that stack traces and frame slots work the same way as in the function itself.
+     */
+    private static final class LLVMRegionStartNode extends LLVMFunctionStartNode {
+
+        @Child private LLVMDispatchBasicBlockNode body;
+
+        LLVMRegionStartNode(SourceSection sourceSection, LLVMLanguage language, LLVMDispatchBasicBlockNode body, FrameDescriptor frameDescriptor, String name, int explicitArgumentsCount,
+                        String originalName, Source bcSource, LLVMSourceLocation location) {
+            super(sourceSection, language, null, frameDescriptor, name, explicitArgumentsCount, originalName, bcSource, location);
+            this.body = body;
+        }
+
+        @Override
+        public Object execute(VirtualFrame frame) {
+            body.executeOutlinedRegion((MaterializedFrame) frame.getArguments()[0]);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.nodes.control;
+
+import com.oracle.truffle.api.CompilerAsserts;
+import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.frame.VirtualFrame;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMExpressionNode;
+
+/**
+ * A part of a function with a single entry block that is executed as a whole by the
+ * {@link LLVMDispatchBasicBlockNode} of the enclosing function, loop or region.
+ */
+public abstract class LLVMRegionNode extends LLVMExpressionNode {
+
+    private final LLVMDispatchBasicBlockNode body;
+    @CompilationFinal(dimensions = 1) private final int[] successors;
+
+    protected LLVMRegionNode(LLVMDispatchBasicBlockNode body, int[] successors) {
+        this.body = body;
+        this.successors = successors;
+    }
+
+    @Override
+    public Object executeGeneric(VirtualFrame frame) {
+        CompilerAsserts.neverPartOfCompilation();
+        throw new UnsupportedOperationException("Must not be called.");
+    }
+
+    /**
+     * Runs the region and returns the index of the block at which the execution continues.
+     */
+    public abstract int executeRegion(VirtualFrame frame);
+
+    /**
+     * The return value of the function if {@link #executeRegion} returned
+     * {@link com.oracle.truffle.llvm.nodes.base.LLVMBasicBlockNode#RETURN_FROM_FUNCTION}.
+     */
+    public Object getReturnValue(VirtualFrame frame) {
+        return body.getReturnValue(frame);
+    }
+
+    /**
+     * All blocks at which the execution can continue after the region.
+     */
+    public int[] getSuccessors() {
+        return successors;
+    }
+
+    protected int getSuccessor(VirtualFrame frame) {
+        return body.getSuccessor(frame);
+    }
+}
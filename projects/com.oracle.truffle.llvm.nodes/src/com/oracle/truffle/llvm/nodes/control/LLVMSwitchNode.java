@@ -29,14 +29,20 @@
  */
 package com.oracle.truffle.llvm.nodes.control;
 
+import java.util.Arrays;
+
+import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.frame.VirtualFrame;
 import com.oracle.truffle.api.instrumentation.InstrumentableNode;
 import com.oracle.truffle.api.instrumentation.ProbeNode;
+import com.oracle.truffle.api.nodes.ExplodeLoop;
+import com.oracle.truffle.api.nodes.UnexpectedResultException;
 import com.oracle.truffle.api.profiles.ValueProfile;
 import com.oracle.truffle.llvm.runtime.debug.scope.LLVMSourceLocation;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMControlFlowNode;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMExpressionNode;
+import com.oracle.truffle.llvm.runtime.types.PrimitiveType.PrimitiveKind;
 
 public abstract class LLVMSwitchNode extends LLVMControlFlowNode implements InstrumentableNode {
 
@@ -60,16 +66,59 @@ public abstract class LLVMSwitchNode extends LLVMControlFlowNode implements Inst
 
     public abstract Object executeCondition(VirtualFrame frame);
 
+    /**
+     * Evaluates the condition and returns the index of the successor that it selects. A case that
+     * branches to the same block as the default successor or as an earlier case selects the index of
+     * the default successor or of the earlier case.
+     */
+    public abstract int executeSuccessorIndex(VirtualFrame frame);
+
+    /**
+     * All indices except the one of the default successor that {@link #executeSuccessorIndex} can
+     * return.
+     */
+    public abstract int[] getCaseSuccessorIndices();
+
     public abstract int[] getSuccessors();
 
     public abstract LLVMExpressionNode getCase(int i);
 
+    /**
+     * Maps every case to the index of the first case with the same successor, or to the index of the
+     * default successor if it branches to the default block.
+     */
+    protected static int[] getFirstIndicesOfSuccessors(int[] successors) {
+        int defaultIndex = successors.length - 1;
+        int[] result = new int[defaultIndex];
+        for (int i = 0; i < defaultIndex; i++) {
+            result[i] = i;
+            if (successors[i] == successors[defaultIndex]) {
+                result[i] = defaultIndex;
+            } else {
+                for (int j = 0; j < i; j++) {
+                    if (successors[j] == successors[i]) {
+                        result[i] = j;
+                        break;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    protected static int[] getDistinctCaseIndices(int[] firstIndices) {
+        return Arrays.stream(firstIndices).filter(i -> i != firstIndices.length).distinct().toArray();
+    }
+
     public static class LLVMSwitchNodeImpl extends LLVMSwitchNode {
         @Children private final LLVMExpressionNode[] phiNodes;
         @Child protected LLVMExpressionNode cond;
         @Children protected final LLVMExpressionNode[] cases;
         @CompilationFinal(dimensions = 1) private final int[] successors;
 
+        @CompilationFinal(dimensions = 1) private final int[] firstIndices;
+        @CompilationFinal(dimensions = 1) private final int[] caseSuccessorIndices;
+
         private final ValueProfile conditionValueClass = ValueProfile.createClassProfile();
 
         public LLVMSwitchNodeImpl(int[] successors, LLVMExpressionNode[] phiNodes, LLVMExpressionNode cond, LLVMExpressionNode[] cases, LLVMSourceLocation sourceSection) {
@@ -79,6 +128,8 @@ public abstract class LLVMSwitchNode extends LLVMControlFlowNode implements Inst
             this.phiNodes = phiNodes;
             this.cond = cond;
             this.cases = cases;
+            this.firstIndices = getFirstIndicesOfSuccessors(successors);
+            this.caseSuccessorIndices = getDistinctCaseIndices(firstIndices);
         }
 
         @Override
@@ -86,6 +137,161 @@ public abstract class LLVMSwitchNode extends LLVMControlFlowNode implements Inst
             return conditionValueClass.profile(cond.executeGeneric(frame));
         }
 
+        @Override
+        public int executeSuccessorIndex(VirtualFrame frame) {
+            return selectSuccessorIndex(frame, executeCondition(frame));
+        }
+
+        @ExplodeLoop
+        int selectSuccessorIndex(VirtualFrame frame, Object condition) {
+            for (int i = 0; i < cases.length; i++) {
+                Object caseValue = cases[i].executeGeneric(frame);
+                assert caseValue.getClass() == condition.getClass() : "must be the same type - otherwise equals might wrongly return false";
+                if (condition.equals(caseValue)) {
+                    return firstIndices[i];
+                }
+            }
+            return successors.length - 1;
+        }
+
+        @Override
+        public int[] getCaseSuccessorIndices() {
+            return caseSuccessorIndices;
+        }
+
+        @Override
+        public int[] getSuccessors() {
+            return successors;
+        }
+
+        @Override
+        public int getSuccessorCount() {
+            return successors.length;
+        }
+
+        @Override
+        public LLVMExpressionNode getPhiNode(int successorIndex) {
+            return phiNodes[successorIndex];
+        }
+
+        @Override
+        public LLVMExpressionNode getCase(int i) {
+            return cases[i];
+        }
+    }
+
+    /**
+     * A switch whose cases are integer constants. The condition is read as a primitive and looked up
+     * in a table if the case values are dense, or else in the sorted case values by binary search.
+     */
+    public static final class LLVMIntegerSwitchNode extends LLVMSwitchNode {
+        // the table is only used if it has at most this many entries per case
+        private static final int MAX_TABLE_ENTRIES_PER_CASE = 2;
+
+        @Children private final LLVMExpressionNode[] phiNodes;
+        @Child private LLVMExpressionNode cond;
+        @Children private final LLVMExpressionNode[] cases;
+        @CompilationFinal(dimensions = 1) private final int[] successors;
+        private final PrimitiveKind conditionKind;
+
+        // the case values in ascending order and the successor index that each of them selects
+        @CompilationFinal(dimensions = 1) private final long[] sortedValues;
+        @CompilationFinal(dimensions = 1) private final int[] sortedIndices;
+        // the successor index for every value from the smallest to the largest case value, or null
+        @CompilationFinal(dimensions = 1) private final int[] table;
+        @CompilationFinal(dimensions = 1) private final int[] caseSuccessorIndices;
+
+        public LLVMIntegerSwitchNode(int[] successors, LLVMExpressionNode[] phiNodes, LLVMExpressionNode cond, PrimitiveKind conditionKind, LLVMExpressionNode[] cases, long[] caseValues,
+                        LLVMSourceLocation sourceSection) {
+            super(sourceSection);
+            assert successors.length == cases.length + 1 : "the last entry of the successors array must be the default case";
+            assert cases.length == caseValues.length && cases.length > 0;
+            this.successors = successors;
+            this.phiNodes = phiNodes;
+            this.cond = cond;
+            this.conditionKind = conditionKind;
+            this.cases = cases;
+
+            int[] firstIndices = getFirstIndicesOfSuccessors(successors);
+            this.caseSuccessorIndices = getDistinctCaseIndices(firstIndices);
+            Integer[] order = new Integer[caseValues.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(caseValues[a], caseValues[b]));
+            this.sortedValues = new long[order.length];
+            this.sortedIndices = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedValues[i] = caseValues[order[i]];
+                sortedIndices[i] = firstIndices[order[i]];
+            }
+
+            // the subtraction overflows to a negative number if the range does not fit into a long
+            long range = sortedValues[sortedValues.length - 1] - sortedValues[0];
+            if (range >= 0 && range < (long) MAX_TABLE_ENTRIES_PER_CASE * sortedValues.length) {
+                this.table = new int[(int) range + 1];
+                Arrays.fill(table, successors.length - 1);
+                for (int i = 0; i < sortedValues.length; i++) {
+                    table[(int) (sortedValues[i] - sortedValues[0])] = sortedIndices[i];
+                }
+            } else {
+                this.table = null;
+            }
+        }
+
+        @Override
+        public Object executeCondition(VirtualFrame frame) {
+            return cond.executeGeneric(frame);
+        }
+
+        @Override
+        public int executeSuccessorIndex(VirtualFrame frame) {
+            long value;
+            try {
+                value = executeIntegerCondition(frame);
+            } catch (UnexpectedResultException e) {
+                // the condition is not a primitive, e.g., a pointer that was cast to an integer
+                CompilerDirectives.transferToInterpreterAndInvalidate();
+                LLVMSwitchNodeImpl generic = replace(new LLVMSwitchNodeImpl(successors, phiNodes, cond, cases, getSourceLocation()));
+                return generic.selectSuccessorIndex(frame, e.getResult());
+            }
+            if (table != null) {
+                // value - sortedValues[0] can overflow if the value is outside of the case range
+                if (value >= sortedValues[0] && value <= sortedValues[sortedValues.length - 1]) {
+                    return table[(int) (value - sortedValues[0])];
+                }
+            } else {
+                int position = Arrays.binarySearch(sortedValues, value);
+                if (position >= 0) {
+                    return sortedIndices[position];
+                }
+            }
+            return successors.length - 1;
+        }
+
+        private long executeIntegerCondition(VirtualFrame frame) throws UnexpectedResultException {
+            switch (conditionKind) {
+                case I1:
+                    return cond.executeI1(frame) ? 1 : 0;
+                case I8:
+                    return cond.executeI8(frame);
+                case I16:
+                    return cond.executeI16(frame);
+                case I32:
+                    return cond.executeI32(frame);
+                case I64:
+                    return cond.executeI64(frame);
+                default:
+                    CompilerDirectives.transferToInterpreter();
+                    throw new IllegalStateException("unexpected condition type: " + conditionKind);
+            }
+        }
+
+        @Override
+        public int[] getCaseSuccessorIndices() {
+            return caseSuccessorIndices;
+        }
+
         @Override
         public int[] getSuccessors() {
             return successors;
@@ -30,25 +30,81 @@
 package com.oracle.truffle.llvm.nodes.intrinsics.llvm;
 
 import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.TruffleLanguage.ContextReference;
 import com.oracle.truffle.api.dsl.Cached;
 import com.oracle.truffle.api.dsl.NodeChild;
 import com.oracle.truffle.api.dsl.NodeChildren;
 import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.llvm.runtime.LLVMContext;
+import com.oracle.truffle.llvm.runtime.memory.LLVMManagedHeapObject;
 import com.oracle.truffle.llvm.runtime.memory.LLVMMemSetNode;
 import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+import com.oracle.truffle.llvm.runtime.memory.LLVMPooledAllocator;
+import com.oracle.truffle.llvm.runtime.memory.UnsafeArrayAccess;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMExpressionNode;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMManagedPointer;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMPointer;
 
 public abstract class LLVMMemoryIntrinsic extends LLVMExpressionNode {
 
+    protected static LLVMPointer allocate(LLVMMemory memory, LLVMContext context, long size) {
+        if (context.isManagedHeap() && Long.compareUnsigned(size, LLVMManagedHeapObject.MAX_SIZE) <= 0) {
+            return LLVMManagedPointer.create(new LLVMManagedHeapObject(size));
+        }
+        LLVMPooledAllocator allocator = context.getPooledAllocator();
+        if (allocator != null) {
+            return allocator.allocate(size);
+        }
+        return memory.allocateMemory(size);
+    }
+
+    protected static LLVMPointer reallocate(LLVMMemory memory, LLVMContext context, LLVMNativePointer addr, long size) {
+        if (context.isManagedHeap() && addr.isNull()) {
+            return allocate(memory, context, size);
+        }
+        LLVMPooledAllocator allocator = context.getPooledAllocator();
+        if (allocator != null) {
+            return allocator.reallocate(addr, size);
+        }
+        return memory.reallocateMemory(addr, size);
+    }
+
+    protected static LLVMPointer reallocateManaged(LLVMMemory memory, UnsafeArrayAccess access, LLVMManagedPointer addr, long size) {
+        assert addr.getOffset() == 0 : "realloc of an interior pointer";
+        if (Long.compareUnsigned(size, LLVMManagedHeapObject.MAX_SIZE) > 0) {
+            CompilerDirectives.transferToInterpreter();
+            throw new OutOfMemoryError("managed allocations cannot grow beyond " + LLVMManagedHeapObject.MAX_SIZE + " bytes");
+        }
+        LLVMManagedHeapObject object = (LLVMManagedHeapObject) addr.getObject();
+        LLVMManagedHeapObject result = new LLVMManagedHeapObject(size);
+        result.copyFrom(memory, access, object, Math.min(object.getSize(), size));
+        object.free(memory);
+        return LLVMManagedPointer.create(result);
+    }
+
+    protected static void free(LLVMMemory memory, LLVMContext context, LLVMNativePointer addr) {
+        LLVMPooledAllocator allocator = context.getPooledAllocator();
+        if (allocator != null) {
+            allocator.free(addr);
+        } else {
+            memory.free(addr);
+        }
+    }
+
+    protected static boolean isManagedHeapObject(LLVMManagedPointer addr) {
+        return addr.getObject() instanceof LLVMManagedHeapObject;
+    }
+
     @NodeChildren({@NodeChild(type = LLVMExpressionNode.class)})
     public abstract static class LLVMMalloc extends LLVMMemoryIntrinsic {
 
         @Specialization
-        protected LLVMNativePointer doVoid(int size,
-                        @Cached("getLLVMMemory()") LLVMMemory memory) {
+        protected LLVMPointer doVoid(int size,
+                        @Cached("getLLVMMemory()") LLVMMemory memory,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context) {
             try {
-                return memory.allocateMemory(size);
+                return allocate(memory, context.get(), size);
             } catch (OutOfMemoryError e) {
                 CompilerDirectives.transferToInterpreter();
                 return LLVMNativePointer.createNull();
@@ -56,10 +112,11 @@ public abstract class LLVMMemoryIntrinsic extends LLVMExpressionNode {
         }
 
         @Specialization
-        protected LLVMNativePointer doVoid(long size,
-                        @Cached("getLLVMMemory()") LLVMMemory memory) {
+        protected LLVMPointer doVoid(long size,
+                        @Cached("getLLVMMemory()") LLVMMemory memory,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context) {
             try {
-                return memory.allocateMemory(size);
+                return allocate(memory, context.get(), size);
             } catch (OutOfMemoryError e) {
                 CompilerDirectives.transferToInterpreter();
                 return LLVMNativePointer.createNull();
@@ -76,12 +133,16 @@ public abstract class LLVMMemoryIntrinsic extends LLVMExpressionNode {
         }
 
         @Specialization
-        protected LLVMNativePointer doVoid(int n, int size,
-                        @Cached("getLLVMMemory()") LLVMMemory memory) {
+        protected LLVMPointer doVoid(int n, int size,
+                        @Cached("getLLVMMemory()") LLVMMemory memory,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context) {
             try {
                 long length = Math.multiplyExact(n, size);
-                LLVMNativePointer address = memory.allocateMemory(length);
-                memSet.executeWithTarget(address, (byte) 0, length);
+                LLVMPointer address = allocate(memory, context.get(), length);
+                if (!LLVMManagedPointer.isInstance(address)) {
+                    // managed allocations are already zeroed
+                    memSet.executeWithTarget(address, (byte) 0, length);
+                }
                 return address;
             } catch (OutOfMemoryError | ArithmeticException e) {
                 CompilerDirectives.transferToInterpreter();
@@ -90,12 +151,16 @@ public abstract class LLVMMemoryIntrinsic extends LLVMExpressionNode {
         }
 
         @Specialization
-        protected LLVMNativePointer doVoid(long n, long size,
-                        @Cached("getLLVMMemory()") LLVMMemory memory) {
+        protected LLVMPointer doVoid(long n, long size,
+                        @Cached("getLLVMMemory()") LLVMMemory memory,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context) {
             try {
                 long length = Math.multiplyExact(n, size);
-                LLVMNativePointer address = memory.allocateMemory(length);
-                memSet.executeWithTarget(address, (byte) 0, length);
+                LLVMPointer address = allocate(memory, context.get(), length);
+                if (!LLVMManagedPointer.isInstance(address)) {
+                    // managed allocations are already zeroed
+                    memSet.executeWithTarget(address, (byte) 0, length);
+                }
                 return address;
             } catch (OutOfMemoryError | ArithmeticException e) {
                 CompilerDirectives.transferToInterpreter();
@@ -107,13 +172,26 @@ public abstract class LLVMMemoryIntrinsic extends LLVMExpressionNode {
     @NodeChildren({@NodeChild(type = LLVMExpressionNode.class), @NodeChild(type = LLVMExpressionNode.class)})
     public abstract static class LLVMRealloc extends LLVMMemoryIntrinsic {
 
-        public abstract LLVMNativePointer executeWithTarget(LLVMNativePointer addr, Object size);
+        public abstract LLVMPointer executeWithTarget(LLVMPointer addr, Object size);
 
         @Specialization
-        protected LLVMNativePointer doVoid(LLVMNativePointer addr, int size,
-                        @Cached("getLLVMMemory()") LLVMMemory memory) {
+        protected LLVMPointer doVoid(LLVMNativePointer addr, int size,
+                        @Cached("getLLVMMemory()") LLVMMemory memory,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context) {
+            try {
+                return reallocate(memory, context.get(), addr, size);
+            } catch (OutOfMemoryError e) {
+                CompilerDirectives.transferToInterpreter();
+                return LLVMNativePointer.createNull();
+            }
+        }
+
+        @Specialization(guards = "isManagedHeapObject(addr)")
+        protected LLVMPointer doManaged(LLVMManagedPointer addr, int size,
+                        @Cached("getLLVMMemory()") LLVMMemory memory,
+                        @Cached("getUnsafeArrayAccess()") UnsafeArrayAccess access) {
             try {
-                return memory.reallocateMemory(addr, size);
+                return reallocateManaged(memory, access, addr, size);
             } catch (OutOfMemoryError e) {
                 CompilerDirectives.transferToInterpreter();
                 return LLVMNativePointer.createNull();
@@ -121,10 +199,23 @@ public abstract class LLVMMemoryIntrinsic extends LLVMExpressionNode {
         }
 
         @Specialization
-        protected LLVMNativePointer doVoid(LLVMNativePointer addr, long size,
-                        @Cached("getLLVMMemory()") LLVMMemory memory) {
+        protected LLVMPointer doVoid(LLVMNativePointer addr, long size,
+                        @Cached("getLLVMMemory()") LLVMMemory memory,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context) {
             try {
-                return memory.reallocateMemory(addr, size);
+                return reallocate(memory, context.get(), addr, size);
+            } catch (OutOfMemoryError e) {
+                CompilerDirectives.transferToInterpreter();
+                return LLVMNativePointer.createNull();
+            }
+        }
+
+        @Specialization(guards = "isManagedHeapObject(addr)")
+        protected LLVMPointer doManaged(LLVMManagedPointer addr, long size,
+                        @Cached("getLLVMMemory()") LLVMMemory memory,
+                        @Cached("getUnsafeArrayAccess()") UnsafeArrayAccess access) {
+            try {
+                return reallocateManaged(memory, access, addr, size);
             } catch (OutOfMemoryError e) {
                 CompilerDirectives.transferToInterpreter();
                 return LLVMNativePointer.createNull();
@@ -137,8 +228,17 @@ public abstract class LLVMMemoryIntrinsic extends LLVMExpressionNode {
 
         @Specialization
         protected Object doVoid(LLVMNativePointer address,
+                        @Cached("getLLVMMemory()") LLVMMemory memory,
+                        @Cached("getContextReference()") ContextReference<LLVMContext> context) {
+            free(memory, context.get(), address);
+            return null;
+        }
+
+        @Specialization(guards = "isManagedHeapObject(address)")
+        protected Object doManaged(LLVMManagedPointer address,
                         @Cached("getLLVMMemory()") LLVMMemory memory) {
-            memory.free(address);
+            assert address.getOffset() == 0 : "free of an interior pointer";
+            ((LLVMManagedHeapObject) address.getObject()).free(memory);
             return null;
         }
     }
@@ -152,7 +152,7 @@ final class LLVMConstantGlobalValueProvider implements LLVMDebugValueProvider {
 
     @Override
     public Object asInteropValue() {
-        if (isInNative(context, global)) {
+        if (!ensureInitialized() || isInNative(context, global)) {
             return null;
         }
         final LLVMDebugValueProvider value = getCurrentValue();
@@ -163,8 +163,24 @@ final class LLVMConstantGlobalValueProvider implements LLVMDebugValueProvider {
         }
     }
 
+    /**
+     * A global whose initialization is deferred with {@code llvm.lazyGlobalInit} or that is bound
+     * to a native global lazily is initialized when the debugger first reads it.
+     */
+    private boolean ensureInitialized() {
+        try {
+            global.ensureInitialized();
+            return true;
+        } catch (LinkageError e) {
+            // the global is not defined anywhere
+            return false;
+        }
+    }
+
     private LLVMDebugValueProvider getCurrentValue() {
-        if (isInNative(context, global)) {
+        if (!ensureInitialized()) {
+            return null;
+        } else if (isInNative(context, global)) {
             return new LLVMAllocationValueProvider(memory, getNativeLocation(context, global));
         } else {
             return valueBuilder.build(getManagedValue(context, global));
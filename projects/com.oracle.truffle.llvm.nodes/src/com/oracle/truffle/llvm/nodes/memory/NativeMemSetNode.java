@@ -30,65 +30,66 @@
 package com.oracle.truffle.llvm.nodes.memory;
 
 import com.oracle.truffle.api.CompilerDirectives;
-import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.ImportStatic;
 import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.ExplodeLoop;
+import com.oracle.truffle.api.profiles.ConditionProfile;
 import com.oracle.truffle.llvm.nodes.intrinsics.interop.LLVMTruffleManagedMalloc.ManagedMallocObject;
 import com.oracle.truffle.llvm.runtime.global.LLVMGlobal;
+import com.oracle.truffle.llvm.runtime.memory.LLVMManagedHeapObject;
 import com.oracle.truffle.llvm.runtime.memory.LLVMMemSetNode;
 import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+import com.oracle.truffle.llvm.runtime.memory.UnsafeArrayAccess;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMToNativeNode;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMManagedPointer;
 import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
 
+/**
+ * Sets memory with a strategy that is profiled per call site: a single small constant length is
+ * unrolled, other small lengths use a word loop, and large lengths go to native code.
+ */
+@ImportStatic(LLVMManagedHeapObject.class)
 public abstract class NativeMemSetNode extends LLVMMemSetNode {
 
     protected static final long MAX_JAVA_LEN = 256;
+    protected static final long MAX_UNROLLED_LEN = 64;
 
-    @CompilationFinal private boolean inJava = true;
+    private final ConditionProfile smallProfile = ConditionProfile.createCountingProfile();
+    private final ConditionProfile alignedProfile = ConditionProfile.createCountingProfile();
 
-    @Specialization
-    protected Object memset(LLVMNativePointer address, byte value, long length,
+    @Specialization(limit = "1", guards = {"length == cachedLength", "cachedLength <= MAX_UNROLLED_LEN"})
+    protected Object doConstant(LLVMNativePointer address, byte value, @SuppressWarnings("unused") long length,
+                    @Cached("length") long cachedLength,
                     @Cached("getLLVMMemory()") LLVMMemory memory) {
-        if (inJava) {
-            if (length <= MAX_JAVA_LEN) {
-                long current = address.asNative();
-                long i64ValuesToWrite = length >> 3;
-                if (CompilerDirectives.injectBranchProbability(CompilerDirectives.LIKELY_PROBABILITY, i64ValuesToWrite > 0)) {
-                    long v16 = ((long) value) << 8 | ((long) value & 0xFF);
-                    long v32 = v16 << 16 | v16;
-                    long v64 = v32 << 32 | v32;
-
-                    for (long i = 0; CompilerDirectives.injectBranchProbability(CompilerDirectives.LIKELY_PROBABILITY, i < i64ValuesToWrite); i++) {
-                        memory.putI64(current, v64);
-                        current += 8;
-                    }
-                }
-
-                long i8ValuesToWrite = length & 0x07;
-                for (long i = 0; CompilerDirectives.injectBranchProbability(CompilerDirectives.LIKELY_PROBABILITY, i < i8ValuesToWrite); i++) {
-                    memory.putI8(current, value);
-                    current++;
-                }
-            } else {
-                CompilerDirectives.transferToInterpreterAndInvalidate();
-                inJava = false;
-            }
-        }
+        memsetUnrolled(memory, address.asNative(), value, cachedLength);
+        return null;
+    }
 
-        nativeMemSet(memory, address, value, length);
+    @Specialization(replaces = "doConstant")
+    protected Object memset(LLVMNativePointer address, byte value, long length,
+                    @Cached("getLLVMMemory()") LLVMMemory memory) {
+        memset(memory, address.asNative(), value, length);
         return null;
     }
 
-    @SuppressWarnings("deprecation")
-    private static void nativeMemSet(LLVMMemory memory, LLVMNativePointer address, byte value, long length) {
-        memory.memset(address, length, value);
+    @Specialization(guards = "isManagedHeapPointer(object)")
+    protected Object doManagedHeap(LLVMManagedPointer object, byte value, long length,
+                    @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative,
+                    @Cached("getUnsafeArrayAccess()") UnsafeArrayAccess arrayAccess,
+                    @Cached("getLLVMMemory()") LLVMMemory memory) {
+        LLVMManagedHeapObject heapObject = (LLVMManagedHeapObject) object.getObject();
+        if (!heapObject.fill(arrayAccess, toNative, object.getOffset(), value, length)) {
+            memset(memory, toNative.executeWithTarget(object).asNative(), value, length);
+        }
+        return null;
     }
 
-    @Specialization(guards = {"!isManagedMallocObject(object)"})
+    @Specialization(guards = {"!isManagedMallocObject(object)", "!isManagedHeapPointer(object)"})
     protected Object memset(LLVMManagedPointer object, byte value, long length, @Cached("createToNativeWithTarget()") LLVMToNativeNode globalAccess,
                     @Cached("getLLVMMemory()") LLVMMemory memory) {
-        return memset(globalAccess.executeWithTarget(object), value, length, memory);
+        memset(memory, globalAccess.executeWithTarget(object).asNative(), value, length);
+        return null;
     }
 
     @SuppressWarnings("unused")
@@ -112,7 +113,60 @@ public abstract class NativeMemSetNode extends LLVMMemSetNode {
     protected Object memset(LLVMGlobal global, byte value, long length,
                     @Cached("createToNativeWithTarget()") LLVMToNativeNode globalAccess,
                     @Cached("getLLVMMemory()") LLVMMemory memory) {
-        return memset(globalAccess.executeWithTarget(global), value, length, memory);
+        memset(memory, globalAccess.executeWithTarget(global).asNative(), value, length);
+        return null;
     }
 
+    private static long toI64(byte value) {
+        return (value & 0xFFL) * 0x0101010101010101L;
+    }
+
+    @ExplodeLoop
+    private static void memsetUnrolled(LLVMMemory memory, long address, byte value, long length) {
+        long v64 = toI64(value);
+        for (long i = 0; i < (length & ~0x07); i += 8) {
+            memory.putI64(address + i, v64);
+        }
+        for (long i = length & ~0x07; i < length; i++) {
+            memory.putI8(address + i, value);
+        }
+    }
+
+    private void memset(LLVMMemory memory, long address, byte value, long length) {
+        if (smallProfile.profile(length <= MAX_JAVA_LEN)) {
+            long current = address;
+            long remaining = length;
+            if (!alignedProfile.profile((address & 0x07) == 0)) {
+                // write single bytes until the address is aligned
+                long head = Math.min(-address & 0x07, length);
+                for (long i = 0; i < head; i++) {
+                    memory.putI8(current, value);
+                    current++;
+                }
+                remaining -= head;
+            }
+
+            long i64ValuesToWrite = remaining >> 3;
+            if (CompilerDirectives.injectBranchProbability(CompilerDirectives.LIKELY_PROBABILITY, i64ValuesToWrite > 0)) {
+                long v64 = toI64(value);
+                for (long i = 0; CompilerDirectives.injectBranchProbability(CompilerDirectives.LIKELY_PROBABILITY, i < i64ValuesToWrite); i++) {
+                    memory.putI64(current, v64);
+                    current += 8;
+                }
+            }
+
+            long i8ValuesToWrite = remaining & 0x07;
+            for (long i = 0; CompilerDirectives.injectBranchProbability(CompilerDirectives.LIKELY_PROBABILITY, i < i8ValuesToWrite); i++) {
+                memory.putI8(current, value);
+                current++;
+            }
+        } else {
+            nativeMemSet(memory, address, value, length);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void nativeMemSet(LLVMMemory memory, long address, byte value, long length) {
+        memory.memset(LLVMNativePointer.create(address), length, value);
+    }
 }
@@ -30,61 +30,145 @@
 package com.oracle.truffle.llvm.nodes.memory;
 
 import com.oracle.truffle.api.CompilerDirectives;
-import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
+import com.oracle.truffle.api.dsl.Cached;
+import com.oracle.truffle.api.dsl.ImportStatic;
 import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.nodes.ExplodeLoop;
+import com.oracle.truffle.api.profiles.ConditionProfile;
+import com.oracle.truffle.llvm.runtime.memory.LLVMManagedHeapObject;
 import com.oracle.truffle.llvm.runtime.memory.LLVMMemMoveNode;
 import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+import com.oracle.truffle.llvm.runtime.memory.UnsafeArrayAccess;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMNode;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMToNativeNode;
-import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMManagedPointer;
 
+/**
+ * Copies memory with a strategy that is profiled per call site: copies of a single small constant
+ * length are unrolled, other small copies use a word loop, and large copies go to native code.
+ * Copies from or to a {@link LLVMManagedHeapObject} stay in Java memory.
+ */
+@ImportStatic(LLVMManagedHeapObject.class)
 public abstract class NativeProfiledMemMove extends LLVMNode implements LLVMMemMoveNode {
     protected static final long MAX_JAVA_LEN = 256;
-
-    @CompilationFinal private boolean inJava = true;
+    protected static final long MAX_UNROLLED_LEN = 64;
 
     @Child private LLVMToNativeNode convertTarget = LLVMToNativeNode.createToNativeWithTarget();
     @Child private LLVMToNativeNode convertSource = LLVMToNativeNode.createToNativeWithTarget();
     private final LLVMMemory memory = getLLVMMemory();
+    private final UnsafeArrayAccess arrayAccess = getUnsafeArrayAccess();
+
+    private final ConditionProfile smallProfile = ConditionProfile.createCountingProfile();
+    private final ConditionProfile alignedProfile = ConditionProfile.createCountingProfile();
+    private final ConditionProfile forwardProfile = ConditionProfile.createCountingProfile();
 
     @Specialization
     protected Object doInt(Object target, Object source, int length) {
-        return memmove(convertTarget.executeWithTarget(target), convertSource.executeWithTarget(source), length);
+        return executeWithTarget(target, source, (long) length);
     }
 
-    @Specialization
+    @Specialization(guards = {"isManagedHeapPointer(target)", "isManagedHeapPointer(source)"})
+    protected Object doManaged(LLVMManagedPointer target, LLVMManagedPointer source, long length,
+                    @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+        LLVMManagedHeapObject targetObject = (LLVMManagedHeapObject) target.getObject();
+        LLVMManagedHeapObject sourceObject = (LLVMManagedHeapObject) source.getObject();
+        if (!targetObject.copy(arrayAccess, toNative, target.getOffset(), sourceObject, source.getOffset(), length)) {
+            memmove(convertTarget.executeWithTarget(target).asNative(), convertSource.executeWithTarget(source).asNative(), length);
+        }
+        return null;
+    }
+
+    @Specialization(guards = {"isManagedHeapPointer(target)", "!isManagedHeapPointer(source)"})
+    protected Object doToManaged(LLVMManagedPointer target, Object source, long length,
+                    @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+        long sourcePointer = convertSource.executeWithTarget(source).asNative();
+        LLVMManagedHeapObject targetObject = (LLVMManagedHeapObject) target.getObject();
+        if (!targetObject.copyFromNative(memory, arrayAccess, toNative, target.getOffset(), sourcePointer, length)) {
+            memmove(convertTarget.executeWithTarget(target).asNative(), sourcePointer, length);
+        }
+        return null;
+    }
+
+    @Specialization(guards = {"!isManagedHeapPointer(target)", "isManagedHeapPointer(source)"})
+    protected Object doFromManaged(Object target, LLVMManagedPointer source, long length,
+                    @Cached("createToNativeWithTarget()") LLVMToNativeNode toNative) {
+        long targetPointer = convertTarget.executeWithTarget(target).asNative();
+        LLVMManagedHeapObject sourceObject = (LLVMManagedHeapObject) source.getObject();
+        if (!sourceObject.copyToNative(memory, arrayAccess, toNative, targetPointer, source.getOffset(), length)) {
+            memmove(targetPointer, convertSource.executeWithTarget(source).asNative(), length);
+        }
+        return null;
+    }
+
+    @Specialization(limit = "1", guards = {"!isManagedHeapPointer(target)", "!isManagedHeapPointer(source)", "length == cachedLength", "cachedLength <= MAX_UNROLLED_LEN"})
+    protected Object doConstant(Object target, Object source, @SuppressWarnings("unused") long length,
+                    @Cached("length") long cachedLength) {
+        long targetPointer = convertTarget.executeWithTarget(target).asNative();
+        long sourcePointer = convertSource.executeWithTarget(source).asNative();
+        if (forwardProfile.profile(Long.compareUnsigned(targetPointer - sourcePointer, cachedLength) >= 0)) {
+            copyForwardUnrolled(memory, targetPointer, sourcePointer, cachedLength);
+        } else {
+            copyBackwardUnrolled(memory, targetPointer, sourcePointer, cachedLength);
+        }
+        return null;
+    }
+
+    @Specialization(replaces = "doConstant", guards = {"!isManagedHeapPointer(target)", "!isManagedHeapPointer(source)"})
     protected Object doLong(Object target, Object source, long length) {
-        return memmove(convertTarget.executeWithTarget(target), convertSource.executeWithTarget(source), length);
+        memmove(convertTarget.executeWithTarget(target).asNative(), convertSource.executeWithTarget(source).asNative(), length);
+        return null;
     }
 
-    private Object memmove(LLVMNativePointer target, LLVMNativePointer source, long length) {
-        if (inJava) {
-            if (length <= MAX_JAVA_LEN) {
-                long targetPointer = target.asNative();
-                long sourcePointer = source.asNative();
-
-                if (CompilerDirectives.injectBranchProbability(CompilerDirectives.UNLIKELY_PROBABILITY, targetPointer == sourcePointer)) {
-                    // nothing todo
-                } else if (CompilerDirectives.injectBranchProbability(CompilerDirectives.LIKELY_PROBABILITY, Long.compareUnsigned(targetPointer - sourcePointer, length) >= 0)) {
-                    copyForward(memory, targetPointer, sourcePointer, length);
-                } else {
-                    copyBackward(memory, targetPointer, sourcePointer, length);
-                }
-                return null;
+    private void memmove(long targetPointer, long sourcePointer, long length) {
+        if (smallProfile.profile(length <= MAX_JAVA_LEN)) {
+            if (CompilerDirectives.injectBranchProbability(CompilerDirectives.UNLIKELY_PROBABILITY, targetPointer == sourcePointer)) {
+                // nothing todo
+            } else if (forwardProfile.profile(Long.compareUnsigned(targetPointer - sourcePointer, length) >= 0)) {
+                copyForward(targetPointer, sourcePointer, length);
             } else {
-                CompilerDirectives.transferToInterpreterAndInvalidate();
-                inJava = false;
+                copyBackward(targetPointer, sourcePointer, length);
             }
+        } else {
+            nativeMemCopy(memory, targetPointer, sourcePointer, length);
         }
+    }
 
-        nativeMemCopy(memory, target, source, length);
-        return null;
+    @ExplodeLoop
+    private static void copyForwardUnrolled(LLVMMemory memory, long target, long source, long length) {
+        for (long i = 0; i < (length & ~0x07); i += 8) {
+            memory.putI64(target + i, memory.getI64(source + i));
+        }
+        for (long i = length & ~0x07; i < length; i++) {
+            memory.putI8(target + i, memory.getI8(source + i));
+        }
     }
 
-    private static void copyForward(LLVMMemory memory, long target, long source, long length) {
+    @ExplodeLoop
+    private static void copyBackwardUnrolled(LLVMMemory memory, long target, long source, long length) {
+        for (long i = length - 1; i >= (length & ~0x07); i--) {
+            memory.putI8(target + i, memory.getI8(source + i));
+        }
+        for (long i = (length & ~0x07) - 8; i >= 0; i -= 8) {
+            memory.putI64(target + i, memory.getI64(source + i));
+        }
+    }
+
+    private void copyForward(long target, long source, long length) {
         long targetPointer = target;
         long sourcePointer = source;
-        long i64ValuesToWrite = length >> 3;
+        long remaining = length;
+        if (!alignedProfile.profile(((target | source) & 0x07) == 0)) {
+            // copy single bytes until the target is aligned
+            long head = Math.min(-target & 0x07, length);
+            for (long i = 0; i < head; i++) {
+                memory.putI8(targetPointer, memory.getI8(sourcePointer));
+                targetPointer++;
+                sourcePointer++;
+            }
+            remaining -= head;
+        }
+
+        long i64ValuesToWrite = remaining >> 3;
         for (long i = 0; CompilerDirectives.injectBranchProbability(CompilerDirectives.LIKELY_PROBABILITY, i < i64ValuesToWrite); i++) {
             long v64 = memory.getI64(sourcePointer);
             memory.putI64(targetPointer, v64);
@@ -92,7 +176,7 @@ public abstract class NativeProfiledMemMove extends LLVMNode implements LLVMMemM
             sourcePointer += 8;
         }
 
-        long i8ValuesToWrite = length & 0x07;
+        long i8ValuesToWrite = remaining & 0x07;
         for (long i = 0; CompilerDirectives.injectBranchProbability(CompilerDirectives.LIKELY_PROBABILITY, i < i8ValuesToWrite); i++) {
             byte value = memory.getI8(sourcePointer);
             memory.putI8(targetPointer, value);
@@ -101,10 +185,22 @@ public abstract class NativeProfiledMemMove extends LLVMNode implements LLVMMemM
         }
     }
 
-    private static void copyBackward(LLVMMemory memory, long target, long source, long length) {
+    private void copyBackward(long target, long source, long length) {
         long targetPointer = target + length;
         long sourcePointer = source + length;
-        long i64ValuesToWrite = length >> 3;
+        long remaining = length;
+        if (!alignedProfile.profile(((targetPointer | sourcePointer) & 0x07) == 0)) {
+            // copy single bytes until the end of the target is aligned
+            long tail = Math.min(targetPointer & 0x07, length);
+            for (long i = 0; i < tail; i++) {
+                targetPointer--;
+                sourcePointer--;
+                memory.putI8(targetPointer, memory.getI8(sourcePointer));
+            }
+            remaining -= tail;
+        }
+
+        long i64ValuesToWrite = remaining >> 3;
         for (long i = 0; CompilerDirectives.injectBranchProbability(CompilerDirectives.LIKELY_PROBABILITY, i < i64ValuesToWrite); i++) {
             targetPointer -= 8;
             sourcePointer -= 8;
@@ -112,7 +208,7 @@ public abstract class NativeProfiledMemMove extends LLVMNode implements LLVMMemM
             memory.putI64(targetPointer, v64);
         }
 
-        long i8ValuesToWrite = length & 0x07;
+        long i8ValuesToWrite = remaining & 0x07;
         for (long i = 0; CompilerDirectives.injectBranchProbability(CompilerDirectives.LIKELY_PROBABILITY, i < i8ValuesToWrite); i++) {
             targetPointer--;
             sourcePointer--;
@@ -122,7 +218,7 @@ public abstract class NativeProfiledMemMove extends LLVMNode implements LLVMMemM
     }
 
     @SuppressWarnings("deprecation")
-    private static void nativeMemCopy(LLVMMemory memory, LLVMNativePointer target, LLVMNativePointer source, long length) {
-        memory.copyMemory(source.asNative(), target.asNative(), length);
+    private static void nativeMemCopy(LLVMMemory memory, long target, long source, long length) {
+        memory.copyMemory(source, target, length);
     }
 }
@@ -216,6 +216,7 @@ public abstract class LLVMDirectLoadNode {
 
         @Override
         public Object executeGeneric(VirtualFrame frame) {
+            descriptor.ensureInitialized();
             return access.execute(descriptor);
         }
     }
@@ -55,6 +55,7 @@ public abstract class LLVMGlobalVariableStoreNode extends LLVMExpressionNode {
     @Specialization
     protected Object doNative(LLVMVirtualAllocationAddress value,
                     @Cached("create()") WriteObjectNode globalAccess) {
+        descriptor.ensureInitialized();
         globalAccess.execute(descriptor, value);
         return null;
     }
@@ -62,6 +63,7 @@ public abstract class LLVMGlobalVariableStoreNode extends LLVMExpressionNode {
     @Specialization
     protected Object doNative(LLVMPointer value,
                     @Cached("create()") WriteObjectNode globalAccess) {
+        descriptor.ensureInitialized();
         globalAccess.execute(descriptor, value);
         return null;
     }
@@ -69,6 +71,7 @@ public abstract class LLVMGlobalVariableStoreNode extends LLVMExpressionNode {
     @Specialization
     protected Object doNative(LLVMFunctionDescriptor value,
                     @Cached("create()") WriteObjectNode globalAccess) {
+        descriptor.ensureInitialized();
         globalAccess.execute(descriptor, value);
         return null;
     }
@@ -76,6 +79,7 @@ public abstract class LLVMGlobalVariableStoreNode extends LLVMExpressionNode {
     @Specialization
     protected Object doNative(LLVMGlobal value,
                     @Cached("create()") WriteObjectNode globalAccess) {
+        descriptor.ensureInitialized();
         globalAccess.execute(descriptor, value);
         return null;
     }
@@ -83,6 +87,7 @@ public abstract class LLVMGlobalVariableStoreNode extends LLVMExpressionNode {
     @Specialization
     protected Object doLLVMBoxedPrimitive(LLVMBoxedPrimitive value,
                     @Cached("create()") WriteObjectNode globalAccess) {
+        descriptor.ensureInitialized();
         globalAccess.execute(descriptor, value);
         return null;
     }
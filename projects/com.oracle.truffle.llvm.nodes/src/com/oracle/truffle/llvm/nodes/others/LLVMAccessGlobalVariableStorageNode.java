@@ -43,6 +43,7 @@ public final class LLVMAccessGlobalVariableStorageNode extends LLVMExpressionNod
 
     @Override
     public Object executeGeneric(VirtualFrame frame) {
+        descriptor.ensureInitialized();
         return descriptor;
     }
 
@@ -47,6 +47,9 @@ import com.oracle.truffle.llvm.nodes.control.LLVMBrUnconditionalNode;
 import com.oracle.truffle.llvm.nodes.control.LLVMConditionalBranchNode;
 import com.oracle.truffle.llvm.nodes.control.LLVMDispatchBasicBlockNode;
 import com.oracle.truffle.llvm.nodes.control.LLVMIndirectBranchNode;
+import com.oracle.truffle.llvm.nodes.control.LLVMLoopNode;
+import com.oracle.truffle.llvm.nodes.control.LLVMOutlinedRegionNode;
+import com.oracle.truffle.llvm.nodes.control.LLVMRegionNode;
 import com.oracle.truffle.llvm.nodes.control.LLVMRetNodeFactory.LLVM80BitFloatRetNodeGen;
 import com.oracle.truffle.llvm.nodes.control.LLVMRetNodeFactory.LLVMAddressRetNodeGen;
 import com.oracle.truffle.llvm.nodes.control.LLVMRetNodeFactory.LLVMDoubleRetNodeGen;
@@ -61,6 +64,7 @@ import com.oracle.truffle.llvm.nodes.control.LLVMRetNodeFactory.LLVMIVarBitRetNo
 import com.oracle.truffle.llvm.nodes.control.LLVMRetNodeFactory.LLVMStructRetNodeGen;
 import com.oracle.truffle.llvm.nodes.control.LLVMRetNodeFactory.LLVMVectorRetNodeGen;
 import com.oracle.truffle.llvm.nodes.control.LLVMRetNodeFactory.LLVMVoidReturnNodeGen;
+import com.oracle.truffle.llvm.nodes.control.LLVMSwitchNode.LLVMIntegerSwitchNode;
 import com.oracle.truffle.llvm.nodes.control.LLVMSwitchNode.LLVMSwitchNodeImpl;
 import com.oracle.truffle.llvm.nodes.control.LLVMWritePhisNode;
 import com.oracle.truffle.llvm.nodes.func.LLVMArgNodeGen;
@@ -1233,9 +1237,40 @@ public class BasicNodeFactory implements NodeFactory {
     public LLVMControlFlowNode createSwitch(LLVMParserRuntime runtime, LLVMExpressionNode cond, int[] successors, LLVMExpressionNode[] cases,
                     Type llvmType, LLVMExpressionNode[] phiWriteNodes, LLVMSourceLocation source) {
         LLVMExpressionNode[] caseNodes = Arrays.copyOf(cases, cases.length, LLVMExpressionNode[].class);
+        long[] caseValues = getIntegerCaseValues(caseNodes);
+        if (llvmType instanceof PrimitiveType && caseValues != null) {
+            return new LLVMIntegerSwitchNode(successors, phiWriteNodes, cond, ((PrimitiveType) llvmType).getPrimitiveKind(), caseNodes, caseValues, source);
+        }
         return new LLVMSwitchNodeImpl(successors, phiWriteNodes, cond, caseNodes, source);
     }
 
+    /**
+     * Returns the values of the cases of a switch, or {@code null} if one of them is not an integer
+     * literal.
+     */
+    private static long[] getIntegerCaseValues(LLVMExpressionNode[] cases) {
+        if (cases.length == 0) {
+            return null;
+        }
+        long[] values = new long[cases.length];
+        for (int i = 0; i < cases.length; i++) {
+            if (cases[i] instanceof LLVMI1LiteralNode) {
+                values[i] = ((LLVMI1LiteralNode) cases[i]).executeI1(null) ? 1 : 0;
+            } else if (cases[i] instanceof LLVMI8LiteralNode) {
+                values[i] = ((LLVMI8LiteralNode) cases[i]).executeI8(null);
+            } else if (cases[i] instanceof LLVMI16LiteralNode) {
+                values[i] = ((LLVMI16LiteralNode) cases[i]).executeI16(null);
+            } else if (cases[i] instanceof LLVMI32LiteralNode) {
+                values[i] = ((LLVMI32LiteralNode) cases[i]).executeI32(null);
+            } else if (cases[i] instanceof LLVMI64LiteralNode) {
+                values[i] = ((LLVMI64LiteralNode) cases[i]).executeI64(null);
+            } else {
+                return null;
+            }
+        }
+        return values;
+    }
+
     @Override
     public LLVMControlFlowNode createConditionalBranch(LLVMParserRuntime runtime, int trueIndex, int falseIndex, LLVMExpressionNode conditionNode, LLVMExpressionNode truePhiWriteNodes,
                     LLVMExpressionNode falsePhiWriteNodes, LLVMSourceLocation sourceSection) {
@@ -1430,10 +1465,44 @@ public class BasicNodeFactory implements NodeFactory {
     }
 
     @Override
-    public LLVMExpressionNode createFunctionBlockNode(LLVMParserRuntime runtime, FrameSlot exceptionValueSlot, List<? extends LLVMExpressionNode> allFunctionNodes, FrameSlot[][] beforeBlockNuller,
-                    FrameSlot[][] afterBlockNuller, LLVMSourceLocation location, LLVMExpressionNode[] copyArgumentsToFrame) {
-        return new LLVMDispatchBasicBlockNode(exceptionValueSlot, allFunctionNodes.toArray(new LLVMBasicBlockNode[allFunctionNodes.size()]), beforeBlockNuller, afterBlockNuller, location,
-                        copyArgumentsToFrame);
+    public LLVMExpressionNode createFunctionBlockNode(LLVMParserRuntime runtime, FrameSlot exceptionValueSlot, FrameSlot successorSlot, FrameSlot returnValueSlot,
+                    List<? extends LLVMExpressionNode> allFunctionNodes, LLVMExpressionNode[] regionNodes, FrameSlot[][] beforeBlockNuller, FrameSlot[][] afterBlockNuller,
+                    LLVMSourceLocation location, LLVMExpressionNode[] copyArgumentsToFrame) {
+        return new LLVMDispatchBasicBlockNode(exceptionValueSlot, successorSlot, returnValueSlot, allFunctionNodes.toArray(new LLVMBasicBlockNode[allFunctionNodes.size()]),
+                        toRegionNodes(regionNodes), beforeBlockNuller, afterBlockNuller, location, copyArgumentsToFrame);
+    }
+
+    @Override
+    public LLVMExpressionNode createLoopNode(LLVMParserRuntime runtime, FrameSlot exceptionValueSlot, FrameSlot successorSlot, FrameSlot returnValueSlot, int loopHeader,
+                    int[] loopSuccessors, boolean canReturn, List<? extends LLVMExpressionNode> basicBlockNodes, LLVMExpressionNode[] regionNodes, FrameSlot[][] beforeBlockNuller,
+                    FrameSlot[][] afterBlockNuller) {
+        LLVMDispatchBasicBlockNode body = new LLVMDispatchBasicBlockNode(exceptionValueSlot, successorSlot, returnValueSlot, loopHeader, true, basicBlockNodes.toArray(new LLVMBasicBlockNode[basicBlockNodes.size()]),
+                        toRegionNodes(regionNodes), beforeBlockNuller, afterBlockNuller);
+        return new LLVMLoopNode(body, getRegionSuccessors(loopSuccessors, canReturn));
+    }
+
+    @Override
+    public LLVMExpressionNode createOutlinedRegionNode(LLVMParserRuntime runtime, FrameSlot exceptionValueSlot, FrameSlot successorSlot, FrameSlot returnValueSlot, int regionEntry,
+                    int[] regionSuccessors, boolean canReturn, List<? extends LLVMExpressionNode> basicBlockNodes, LLVMExpressionNode[] regionNodes, FrameSlot[][] beforeBlockNuller,
+                    FrameSlot[][] afterBlockNuller, SourceSection sourceSection, FrameDescriptor frame, FunctionDefinition functionHeader, Source bcSource, LLVMSourceLocation location) {
+        LLVMDispatchBasicBlockNode body = new LLVMDispatchBasicBlockNode(exceptionValueSlot, successorSlot, returnValueSlot, regionEntry, false, basicBlockNodes.toArray(new LLVMBasicBlockNode[basicBlockNodes.size()]),
+                        toRegionNodes(regionNodes), beforeBlockNuller, afterBlockNuller);
+        final String originalName = DebugInfoGenerator.getSourceFunctionName(functionHeader);
+        return new LLVMOutlinedRegionNode(body, getRegionSuccessors(regionSuccessors, canReturn), sourceSection, runtime.getLanguage(), frame, functionHeader.getName(),
+                        functionHeader.getParameters().size(), originalName, bcSource, location);
+    }
+
+    private static int[] getRegionSuccessors(int[] successors, boolean canReturn) {
+        if (canReturn) {
+            int[] result = Arrays.copyOf(successors, successors.length + 1);
+            result[successors.length] = LLVMBasicBlockNode.RETURN_FROM_FUNCTION;
+            return result;
+        }
+        return successors;
+    }
+
+    private static LLVMRegionNode[] toRegionNodes(LLVMExpressionNode[] regionNodes) {
+        return regionNodes == null ? null : Arrays.copyOf(regionNodes, regionNodes.length, LLVMRegionNode[].class);
     }
 
     @Override
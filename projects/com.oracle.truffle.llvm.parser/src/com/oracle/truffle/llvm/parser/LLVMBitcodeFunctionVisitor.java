@@ -59,10 +59,12 @@ final class LLVMBitcodeFunctionVisitor implements FunctionVisitor {
     private final LLVMLivenessAnalysisResult liveness;
     private final List<FrameSlot> notNullable;
     private final LLVMRuntimeDebugInformation dbgInfoHandler;
+    private final LLVMScalarReplacement scalarReplacement;
     private boolean initDebugValues;
 
     LLVMBitcodeFunctionVisitor(LLVMParserRuntime runtime, FrameDescriptor frame, Map<InstructionBlock, List<Phi>> phis, NodeFactory nodeFactory, int argCount, LLVMSymbolReadResolver symbols,
-                    FunctionDefinition functionDefinition, LLVMLivenessAnalysisResult liveness, List<FrameSlot> notNullable, LLVMRuntimeDebugInformation dbgInfoHandler) {
+                    FunctionDefinition functionDefinition, LLVMLivenessAnalysisResult liveness, List<FrameSlot> notNullable, LLVMRuntimeDebugInformation dbgInfoHandler,
+                    LLVMScalarReplacement scalarReplacement) {
         this.runtime = runtime;
         this.frame = frame;
         this.phis = phis;
@@ -73,6 +75,7 @@ final class LLVMBitcodeFunctionVisitor implements FunctionVisitor {
         this.liveness = liveness;
         this.notNullable = notNullable;
         this.dbgInfoHandler = dbgInfoHandler;
+        this.scalarReplacement = scalarReplacement;
         this.blocks = new ArrayList<>();
         this.initDebugValues = dbgInfoHandler.isEnabled();
     }
@@ -90,7 +93,7 @@ final class LLVMBitcodeFunctionVisitor implements FunctionVisitor {
         List<Phi> blockPhis = phis.get(block);
         ArrayList<LLVMLivenessAnalysis.NullerInformation> blockNullerInfos = liveness.getNullableWithinBlock()[block.getBlockIndex()];
         LLVMBitcodeInstructionVisitor visitor = new LLVMBitcodeInstructionVisitor(frame, blockPhis, nodeFactory, argCount, symbols, runtime, blockNullerInfos, function.getSourceFunction(),
-                        notNullable, dbgInfoHandler);
+                        notNullable, dbgInfoHandler, scalarReplacement);
 
         if (initDebugValues) {
             for (SourceVariable variable : function.getSourceFunction().getVariables()) {
@@ -112,13 +112,15 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
     private final SourceFunction sourceFunction;
     private final List<FrameSlot> notNullable;
     private final LLVMRuntimeDebugInformation dbgInfoHandler;
+    private final LLVMScalarReplacement scalarReplacement;
 
     private final List<LLVMExpressionNode> blockInstructions;
     private int instructionIndex;
     private LLVMControlFlowNode controlFlowNode;
 
     LLVMBitcodeInstructionVisitor(FrameDescriptor frame, List<Phi> blockPhis, NodeFactory nodeFactory, int argCount, LLVMSymbolReadResolver symbols, LLVMParserRuntime runtime,
-                    ArrayList<LLVMLivenessAnalysis.NullerInformation> nullerInfos, SourceFunction sourceFunction, List<FrameSlot> notNullable, LLVMRuntimeDebugInformation dbgInfoHandler) {
+                    ArrayList<LLVMLivenessAnalysis.NullerInformation> nullerInfos, SourceFunction sourceFunction, List<FrameSlot> notNullable, LLVMRuntimeDebugInformation dbgInfoHandler,
+                    LLVMScalarReplacement scalarReplacement) {
         this.frame = frame;
         this.blockPhis = blockPhis;
         this.nodeFactory = nodeFactory;
@@ -130,6 +132,7 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
         this.sourceFunction = sourceFunction;
         this.notNullable = notNullable;
         this.dbgInfoHandler = dbgInfoHandler;
+        this.scalarReplacement = scalarReplacement;
 
         this.blockInstructions = new ArrayList<>();
     }
@@ -153,6 +156,16 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
 
     @Override
     public void visit(AllocateInstruction allocate) {
+        if (scalarReplacement.isReplaced(allocate)) {
+            // the alloca lives in frame slots, which are reset to 0 where it would be allocated
+            for (FrameSlot slot : scalarReplacement.getSlots(allocate)) {
+                final Type slotType = (Type) slot.getInfo();
+                addInstruction(nodeFactory.createFrameWrite(runtime, slotType, symbols.resolve(new NullConstant(slotType)), slot, null));
+            }
+            handleNullerInfo();
+            return;
+        }
+
         final Type type = allocate.getPointeeType();
         int alignment;
         if (allocate.getAlign() == 0) {
@@ -292,6 +305,11 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
     }
 
     private void visitDebugIntrinsic(SymbolImpl value, SourceVariable variable, MDExpression expression, long index, boolean isDeclaration) {
+        if (scalarReplacement.isReplaced(value)) {
+            handleNullerInfo();
+            return;
+        }
+
         FrameSlot valueSlot = null;
         if (value instanceof ValueInstruction) {
             valueSlot = frame.findFrameSlot(((ValueInstruction) value).getName());
@@ -580,6 +598,10 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
 
     @Override
     public void visit(GetElementPointerInstruction gep) {
+        if (scalarReplacement.isReplaced(gep)) {
+            handleNullerInfo();
+            return;
+        }
         final LLVMExpressionNode targetAddress = symbols.resolveElementPointer(gep.getBasePointer(), gep.getIndices());
         createFrameWrite(targetAddress, gep);
     }
@@ -595,11 +617,13 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
 
             LLVMControlFlowNode node = nodeFactory.createIndirectBranch(runtime, value, labelTargets, getPhiWriteNodes(branch), sourceFunction.getSourceLocation(branch));
             setControlFlowNode(node);
-        } else {
-            assert branch.getSuccessorCount() == 1;
+        } else if (branch.getSuccessorCount() == 1) {
             LLVMControlFlowNode node = nodeFactory.createUnconditionalBranch(runtime, branch.getSuccessor(0).getBlockIndex(), getPhiWriteNodes(branch)[0],
                             sourceFunction.getSourceLocation(branch));
             setControlFlowNode(node);
+        } else {
+            // an indirect branch without destinations is valid, but must never be executed
+            setControlFlowNode(nodeFactory.createUnreachableNode(runtime));
         }
     }
 
@@ -635,8 +659,13 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
 
     @Override
     public void visit(LoadInstruction load) {
-        LLVMExpressionNode source = symbols.resolve(load.getSource());
-        LLVMExpressionNode result = nodeFactory.createLoad(runtime, load.getType(), source);
+        LLVMExpressionNode result;
+        if (scalarReplacement.isReplaced(load.getSource())) {
+            result = nodeFactory.createFrameRead(runtime, load.getType(), scalarReplacement.getSlot(load.getSource()));
+        } else {
+            LLVMExpressionNode source = symbols.resolve(load.getSource());
+            result = nodeFactory.createLoad(runtime, load.getType(), source);
+        }
         createFrameWrite(result, load);
     }
 
@@ -687,7 +716,6 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
 
     @Override
     public void visit(StoreInstruction store) {
-        final LLVMExpressionNode pointerNode = symbols.resolve(store.getDestination());
         final LLVMExpressionNode valueNode = symbols.resolve(store.getSource());
 
         Type type = store.getSource().getType();
@@ -698,7 +726,13 @@ final class LLVMBitcodeInstructionVisitor implements SymbolVisitor {
             source = sourceFunction.getSourceLocation(store);
         }
 
-        final LLVMExpressionNode node = nodeFactory.createStore(runtime, pointerNode, valueNode, type, source);
+        final LLVMExpressionNode node;
+        if (scalarReplacement.isReplaced(store.getDestination())) {
+            node = nodeFactory.createFrameWrite(runtime, type, valueNode, scalarReplacement.getSlot(store.getDestination()), source);
+        } else {
+            final LLVMExpressionNode pointerNode = symbols.resolve(store.getDestination());
+            node = nodeFactory.createStore(runtime, pointerNode, valueNode, type, source);
+        }
 
         addInstruction(node);
     }
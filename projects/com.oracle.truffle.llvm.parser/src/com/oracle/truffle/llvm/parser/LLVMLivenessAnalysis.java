@@ -522,7 +522,7 @@ public final class LLVMLivenessAnalysis {
         }
     }
 
-    private abstract static class LLVMLocalReadVisitor implements SymbolVisitor {
+    abstract static class LLVMLocalReadVisitor implements SymbolVisitor {
 
         @Override
         public void visit(AllocateInstruction allocate) {
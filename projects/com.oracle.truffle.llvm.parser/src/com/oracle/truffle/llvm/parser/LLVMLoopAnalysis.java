@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.parser;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+import com.oracle.truffle.llvm.parser.model.blocks.InstructionBlock;
+import com.oracle.truffle.llvm.parser.model.functions.FunctionDefinition;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.ReturnInstruction;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.TerminatingInstruction;
+
+/**
+ * Finds the natural loops of a function, i.e., the blocks that can reach the source of a back edge
+ * without passing the target of the back edge, which dominates all of them. Loops with the same
+ * header are merged. Irreducible control flow does not form a natural loop and is left to the
+ * enclosing loop or function.
+ */
+public final class LLVMLoopAnalysis {
+
+    private LLVMLoopAnalysis() {
+    }
+
+    public static final class Loop {
+        private final int header;
+        private final BitSet blocks;
+        private final List<Loop> nestedLoops;
+        private final BitSet successors;
+        private boolean canReturn;
+
+        private Loop(int header) {
+            this.header = header;
+            this.blocks = new BitSet();
+            this.nestedLoops = new ArrayList<>();
+            this.successors = new BitSet();
+        }
+
+        public int getHeader() {
+            return header;
+        }
+
+        /**
+         * All blocks of this loop, including the blocks of nested loops.
+         */
+        public BitSet getBlocks() {
+            return blocks;
+        }
+
+        public List<Loop> getNestedLoops() {
+            return nestedLoops;
+        }
+
+        /**
+         * The blocks outside of this loop at which the execution can continue after the loop.
+         */
+        public int[] getSuccessors() {
+            return successors.stream().toArray();
+        }
+
+        /**
+         * Whether the function can return from within this loop.
+         */
+        public boolean canReturn() {
+            return canReturn;
+        }
+    }
+
+    /**
+     * Returns the outermost loops of the function, which contain their nested loops.
+     */
+    public static List<Loop> findLoops(FunctionDefinition function) {
+        List<InstructionBlock> blocks = function.getBlocks();
+        return findLoops(computeSuccessors(blocks), computeReturningBlocks(blocks));
+    }
+
+    /**
+     * Returns the outermost loops of the control flow graph in which block {@code i} branches to the
+     * blocks {@code successors[i]}, and the given blocks return from the function. Block 0 is the
+     * entry block.
+     */
+    public static List<Loop> findLoops(int[][] successors, BitSet returningBlocks) {
+        int[][] predecessors = computePredecessors(successors);
+        int[] order = computeReversePostOrder(successors);
+        int[] dominators = computeDominators(order, predecessors);
+
+        Loop[] loopsByHeader = new Loop[successors.length];
+        List<Loop> loops = new ArrayList<>();
+        for (int source = 0; source < successors.length; source++) {
+            if (dominators[source] == -1) {
+                // unreachable
+                continue;
+            }
+            for (int header : successors[source]) {
+                if (dominates(header, source, dominators, order)) {
+                    Loop loop = loopsByHeader[header];
+                    if (loop == null) {
+                        loop = loopsByHeader[header] = new Loop(header);
+                        loop.blocks.set(header);
+                        loops.add(loop);
+                    }
+                    addLoopBody(loop, source, predecessors, dominators);
+                }
+            }
+        }
+
+        for (Loop loop : loops) {
+            for (int block = loop.blocks.nextSetBit(0); block >= 0; block = loop.blocks.nextSetBit(block + 1)) {
+                for (int successor : successors[block]) {
+                    if (!loop.blocks.get(successor)) {
+                        loop.successors.set(successor);
+                    }
+                }
+                if (returningBlocks.get(block)) {
+                    loop.canReturn = true;
+                }
+            }
+        }
+
+        // loops with different headers are either disjoint or nested, so the innermost loop
+        // containing the header of a loop is its parent
+        loops.sort(Comparator.comparingInt(l -> l.blocks.cardinality()));
+        List<Loop> outermostLoops = new ArrayList<>();
+        for (int i = 0; i < loops.size(); i++) {
+            Loop loop = loops.get(i);
+            Loop parent = null;
+            for (int j = i + 1; j < loops.size() && parent == null; j++) {
+                if (loops.get(j).blocks.get(loop.header)) {
+                    parent = loops.get(j);
+                }
+            }
+            if (parent != null) {
+                parent.nestedLoops.add(loop);
+            } else {
+                outermostLoops.add(loop);
+            }
+        }
+        return outermostLoops;
+    }
+
+    private static void addLoopBody(Loop loop, int backEdgeSource, int[][] predecessors, int[] dominators) {
+        ArrayDeque<Integer> workList = new ArrayDeque<>();
+        workList.add(backEdgeSource);
+        while (!workList.isEmpty()) {
+            int block = workList.removeLast();
+            if (!loop.blocks.get(block) && dominators[block] != -1) {
+                loop.blocks.set(block);
+                for (int predecessor : predecessors[block]) {
+                    workList.add(predecessor);
+                }
+            }
+        }
+    }
+
+    static BitSet computeReturningBlocks(List<InstructionBlock> blocks) {
+        BitSet result = new BitSet(blocks.size());
+        for (InstructionBlock block : blocks) {
+            if (block.getTerminatingInstruction() instanceof ReturnInstruction) {
+                result.set(block.getBlockIndex());
+            }
+        }
+        return result;
+    }
+
+    static int[][] computeSuccessors(List<InstructionBlock> blocks) {
+        int[][] result = new int[blocks.size()][];
+        for (InstructionBlock block : blocks) {
+            TerminatingInstruction terminatingInstruction = block.getTerminatingInstruction();
+            int[] successors = new int[terminatingInstruction.getSuccessorCount()];
+            for (int i = 0; i < successors.length; i++) {
+                successors[i] = terminatingInstruction.getSuccessor(i).getBlockIndex();
+            }
+            result[block.getBlockIndex()] = successors;
+        }
+        return result;
+    }
+
+    public static int[][] computePredecessors(int[][] successors) {
+        int[] count = new int[successors.length];
+        for (int[] blockSuccessors : successors) {
+            for (int successor : blockSuccessors) {
+                count[successor]++;
+            }
+        }
+        int[][] result = new int[successors.length][];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new int[count[i]];
+        }
+        for (int block = 0; block < successors.length; block++) {
+            for (int successor : successors[block]) {
+                result[successor][--count[successor]] = block;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the position of every block in a reverse post order of the blocks that are reachable
+     * from the entry block, or -1 for unreachable blocks.
+     */
+    public static int[] computeReversePostOrder(int[][] successors) {
+        int[] order = new int[successors.length];
+        Arrays.fill(order, -1);
+        int[] nextSuccessor = new int[successors.length];
+        boolean[] visited = new boolean[successors.length];
+        int position = successors.length;
+
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        stack.push(0);
+        visited[0] = true;
+        while (!stack.isEmpty()) {
+            int block = stack.peek();
+            if (nextSuccessor[block] < successors[block].length) {
+                int successor = successors[block][nextSuccessor[block]++];
+                if (!visited[successor]) {
+                    visited[successor] = true;
+                    stack.push(successor);
+                }
+            } else {
+                stack.pop();
+                order[block] = --position;
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Computes the immediate dominator of every reachable block (see Cooper, Harvey, and Kennedy,
+     * "A Simple, Fast Dominance Algorithm"). The entry block is its own dominator and unreachable
+     * blocks have -1.
+     */
+    public static int[] computeDominators(int[] order, int[][] predecessors) {
+        int[] blocksInOrder = new int[order.length];
+        int first = order.length;
+        for (int block = 0; block < order.length; block++) {
+            if (order[block] != -1) {
+                blocksInOrder[order[block]] = block;
+                first = Math.min(first, order[block]);
+            }
+        }
+
+        int[] dominators = new int[order.length];
+        Arrays.fill(dominators, -1);
+        dominators[0] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = first + 1; i < order.length; i++) {
+                int block = blocksInOrder[i];
+                int dominator = -1;
+                for (int predecessor : predecessors[block]) {
+                    if (dominators[predecessor] != -1) {
+                        dominator = dominator == -1 ? predecessor : intersect(predecessor, dominator, dominators, order);
+                    }
+                }
+                if (dominators[block] != dominator) {
+                    dominators[block] = dominator;
+                    changed = true;
+                }
+            }
+        }
+        return dominators;
+    }
+
+    private static int intersect(int block1, int block2, int[] dominators, int[] order) {
+        int finger1 = block1;
+        int finger2 = block2;
+        while (finger1 != finger2) {
+            while (order[finger1] > order[finger2]) {
+                finger1 = dominators[finger1];
+            }
+            while (order[finger2] > order[finger1]) {
+                finger2 = dominators[finger2];
+            }
+        }
+        return finger1;
+    }
+
+    private static boolean dominates(int dominator, int block, int[] dominators, int[] order) {
+        if (order[dominator] > order[block]) {
+            return false;
+        }
+        int current = block;
+        while (current != dominator && current != 0) {
+            current = dominators[current];
+        }
+        return current == dominator;
+    }
+}
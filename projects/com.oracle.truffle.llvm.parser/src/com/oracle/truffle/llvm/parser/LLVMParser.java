@@ -282,6 +282,7 @@ public final class LLVMParser {
         if (context.getEnv().getOptions().get(SulongEngineOption.ENABLE_LVI)) {
             final LLVMSourceContext sourceContext = context.getSourceContext();
 
+            model.processSourceGlobals();
             model.getSourceGlobals().forEach((symbol, irValue) -> {
                 final LLVMExpressionNode node = symbolResolver.resolve(irValue);
                 final LLVMDebugValue value = runtime.getNodeFactory().createDebugStaticValue(node);
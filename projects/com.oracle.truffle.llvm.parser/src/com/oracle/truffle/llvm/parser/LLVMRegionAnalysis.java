@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.parser;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import com.oracle.truffle.llvm.parser.model.blocks.InstructionBlock;
+import com.oracle.truffle.llvm.parser.model.functions.FunctionDefinition;
+
+/**
+ * Splits huge functions into regions that are compiled separately from the function. A region
+ * consists of a block and all blocks that it dominates, so it can only be entered at this block.
+ * The regions are chosen bottom-up in the dominator tree: whenever the blocks that are dominated by
+ * a block and not yet part of a region contain more instructions than the threshold, the largest
+ * subtrees below it become regions. A region never cuts a natural loop, i.e., it either contains
+ * the whole loop or no block of it.
+ */
+public final class LLVMRegionAnalysis {
+
+    private LLVMRegionAnalysis() {
+    }
+
+    public static final class Region {
+        private final int entry;
+        private final BitSet blocks;
+        private final List<Region> nestedRegions;
+        private final BitSet successors;
+        private boolean canReturn;
+
+        private Region(int entry, List<Region> nestedRegions) {
+            this.entry = entry;
+            this.blocks = new BitSet();
+            this.nestedRegions = nestedRegions;
+            this.successors = new BitSet();
+        }
+
+        public int getEntry() {
+            return entry;
+        }
+
+        /**
+         * All blocks of this region, including the blocks of nested regions.
+         */
+        public BitSet getBlocks() {
+            return blocks;
+        }
+
+        public List<Region> getNestedRegions() {
+            return nestedRegions;
+        }
+
+        /**
+         * The blocks outside of this region at which the execution can continue after the region.
+         */
+        public int[] getSuccessors() {
+            return successors.stream().toArray();
+        }
+
+        /**
+         * Whether the function can return from within this region.
+         */
+        public boolean canReturn() {
+            return canReturn;
+        }
+    }
+
+    /**
+     * Returns the outermost regions of the function, which contain their nested regions, or an
+     * empty list if the function does not have more than {@code threshold} instructions. The list
+     * is also empty if every block that could start a region belongs to a loop, e.g., if the whole
+     * function is one loop.
+     */
+    public static List<Region> findRegions(FunctionDefinition function, int threshold, List<LLVMLoopAnalysis.Loop> loops) {
+        List<InstructionBlock> blocks = function.getBlocks();
+        int[] size = new int[blocks.size()];
+        for (InstructionBlock block : blocks) {
+            size[block.getBlockIndex()] = block.getInstructionCount();
+        }
+        return findRegions(size, LLVMLoopAnalysis.computeSuccessors(blocks), LLVMLoopAnalysis.computeReturningBlocks(blocks), threshold, loops);
+    }
+
+    /**
+     * Returns the outermost regions of the control flow graph in which block {@code i} has
+     * {@code size[i]} instructions and branches to the blocks {@code successors[i]}, and the given
+     * blocks return from the function. The loops must be the outermost loops of the same graph.
+     */
+    public static List<Region> findRegions(int[] size, int[][] successors, BitSet returningBlocks, int threshold, List<LLVMLoopAnalysis.Loop> loops) {
+        int totalSize = 0;
+        for (int blockSize : size) {
+            totalSize += blockSize;
+        }
+        if (totalSize <= threshold) {
+            return Collections.emptyList();
+        }
+
+        int blockCount = successors.length;
+        int[] order = LLVMLoopAnalysis.computeReversePostOrder(successors);
+        int[] dominators = LLVMLoopAnalysis.computeDominators(order, LLVMLoopAnalysis.computePredecessors(successors));
+
+        int[] blocksInOrder = new int[blockCount];
+        int first = blockCount;
+        for (int block = 0; block < blockCount; block++) {
+            if (order[block] != -1) {
+                blocksInOrder[order[block]] = block;
+                first = Math.min(first, order[block]);
+            }
+        }
+        List<List<Integer>> children = new ArrayList<>(blockCount);
+        for (int block = 0; block < blockCount; block++) {
+            children.add(new ArrayList<>());
+        }
+        for (int i = first + 1; i < blockCount; i++) {
+            int block = blocksInOrder[i];
+            children.get(dominators[block]).add(block);
+        }
+
+        BitSet cutsLoop = new BitSet(blockCount);
+        markLoopBodies(loops, cutsLoop);
+
+        // the dominator of a block precedes it in reverse post order, so the children of a block
+        // are processed before the block itself
+        int[] remainingSize = new int[blockCount];
+        Region[] regions = new Region[blockCount];
+        List<List<Region>> pendingRegions = new ArrayList<>(blockCount);
+        for (int block = 0; block < blockCount; block++) {
+            pendingRegions.add(null);
+        }
+        for (int i = blockCount - 1; i >= first; i--) {
+            int block = blocksInOrder[i];
+            remainingSize[block] = size[block];
+            for (int child : children.get(block)) {
+                remainingSize[block] += remainingSize[child];
+            }
+            if (remainingSize[block] > threshold) {
+                List<Integer> candidates = new ArrayList<>();
+                for (int child : children.get(block)) {
+                    if (!cutsLoop.get(child)) {
+                        candidates.add(child);
+                    }
+                }
+                candidates.sort((a, b) -> Integer.compare(remainingSize[b], remainingSize[a]));
+                for (int j = 0; j < candidates.size() && remainingSize[block] > threshold; j++) {
+                    int child = candidates.get(j);
+                    regions[child] = createRegion(child, pendingRegions.get(child), children, successors, returningBlocks);
+                    remainingSize[block] -= remainingSize[child];
+                }
+            }
+
+            List<Region> pending = new ArrayList<>();
+            for (int child : children.get(block)) {
+                if (regions[child] != null) {
+                    pending.add(regions[child]);
+                } else {
+                    pending.addAll(pendingRegions.get(child));
+                }
+                pendingRegions.set(child, null);
+            }
+            pendingRegions.set(block, pending);
+        }
+        return pendingRegions.get(0);
+    }
+
+    /**
+     * Marks the blocks that belong to a loop, but are not its header. A region starting at such a
+     * block would only contain a part of the loop.
+     */
+    private static void markLoopBodies(List<LLVMLoopAnalysis.Loop> loops, BitSet result) {
+        // the outermost loops are disjoint and contain their nested loops
+        for (LLVMLoopAnalysis.Loop loop : loops) {
+            result.or(loop.getBlocks());
+            result.clear(loop.getHeader());
+        }
+    }
+
+    private static Region createRegion(int entry, List<Region> nestedRegions, List<List<Integer>> children, int[][] successors, BitSet returningBlocks) {
+        Region region = new Region(entry, nestedRegions);
+        ArrayList<Integer> workList = new ArrayList<>();
+        workList.add(entry);
+        while (!workList.isEmpty()) {
+            int block = workList.remove(workList.size() - 1);
+            region.blocks.set(block);
+            workList.addAll(children.get(block));
+        }
+        for (int block = region.blocks.nextSetBit(0); block >= 0; block = region.blocks.nextSetBit(block + 1)) {
+            for (int successor : successors[block]) {
+                if (!region.blocks.get(successor)) {
+                    region.successors.set(successor);
+                }
+            }
+            if (returningBlocks.get(block)) {
+                region.canReturn = true;
+            }
+        }
+        return region;
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.oracle.truffle.api.frame.FrameDescriptor;
+import com.oracle.truffle.api.frame.FrameSlot;
+import com.oracle.truffle.llvm.parser.LLVMLivenessAnalysis.LLVMLocalReadVisitor;
+import com.oracle.truffle.llvm.parser.model.SymbolImpl;
+import com.oracle.truffle.llvm.parser.model.blocks.InstructionBlock;
+import com.oracle.truffle.llvm.parser.model.enums.AtomicOrdering;
+import com.oracle.truffle.llvm.parser.model.functions.FunctionDefinition;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.AllocateInstruction;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.DbgDeclareInstruction;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.DbgValueInstruction;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.GetElementPointerInstruction;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.Instruction;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.LoadInstruction;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.PhiInstruction;
+import com.oracle.truffle.llvm.parser.model.symbols.instructions.StoreInstruction;
+import com.oracle.truffle.llvm.parser.nodes.LLVMSymbolReadResolver;
+import com.oracle.truffle.llvm.runtime.LLVMContext;
+import com.oracle.truffle.llvm.runtime.types.AggregateType;
+import com.oracle.truffle.llvm.runtime.types.PointerType;
+import com.oracle.truffle.llvm.runtime.types.PrimitiveType;
+import com.oracle.truffle.llvm.runtime.types.Type;
+
+/**
+ * Parse-time escape analysis for {@code alloca}s. An alloca whose address is only used by plain
+ * loads and stores, either directly or through {@code getelementptr}s with constant indices, never
+ * needs to live in memory. Each distinct scalar that is accessed in such an alloca gets its own
+ * {@link FrameSlot}, and the loads and stores are converted to frame reads and writes.
+ */
+final class LLVMScalarReplacement {
+
+    private static final LLVMScalarReplacement NONE = new LLVMScalarReplacement(Collections.emptyMap(), Collections.emptyMap());
+
+    private final Map<AllocateInstruction, List<FrameSlot>> replacedAllocas;
+    private final Map<SymbolImpl, FrameSlot> replacedPointers;
+
+    private LLVMScalarReplacement(Map<AllocateInstruction, List<FrameSlot>> replacedAllocas, Map<SymbolImpl, FrameSlot> replacedPointers) {
+        this.replacedAllocas = replacedAllocas;
+        this.replacedPointers = replacedPointers;
+    }
+
+    /**
+     * Whether {@code pointer} is a replaced alloca or a pointer into one. No code must be
+     * generated for it.
+     */
+    boolean isReplaced(SymbolImpl pointer) {
+        return replacedAllocas.containsKey(pointer) || replacedPointers.containsKey(pointer);
+    }
+
+    /**
+     * Returns the frame slot that holds the value a load or store through {@code pointer}
+     * accesses, or {@code null} if {@code pointer} was not replaced.
+     */
+    FrameSlot getSlot(SymbolImpl pointer) {
+        return replacedPointers.get(pointer);
+    }
+
+    /**
+     * Returns the frame slots that replace {@code alloca}. Their {@link FrameSlot#getInfo() info}
+     * is the type of the value they hold.
+     */
+    List<FrameSlot> getSlots(AllocateInstruction alloca) {
+        return replacedAllocas.get(alloca);
+    }
+
+    static LLVMScalarReplacement none() {
+        return NONE;
+    }
+
+    static LLVMScalarReplacement analyze(FrameDescriptor frame, LLVMContext context, FunctionDefinition function, boolean debugDeclarationsEscape) {
+        Map<SymbolImpl, Access> pointers = new LinkedHashMap<>();
+        List<GetElementPointerInstruction> geps = new ArrayList<>();
+        for (InstructionBlock block : function.getBlocks()) {
+            for (int i = 0; i < block.getInstructionCount(); i++) {
+                Instruction instruction = block.getInstruction(i);
+                if (instruction instanceof AllocateInstruction) {
+                    Candidate candidate = Candidate.create(context, (AllocateInstruction) instruction);
+                    if (candidate != null) {
+                        pointers.put(instruction, new Access(candidate, 0));
+                    }
+                } else if (instruction instanceof GetElementPointerInstruction) {
+                    geps.add((GetElementPointerInstruction) instruction);
+                }
+            }
+        }
+        if (pointers.isEmpty()) {
+            return NONE;
+        }
+
+        // a gep can be based on another gep, so iterate until no new pointers are found
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = geps.size() - 1; i >= 0; i--) {
+                GetElementPointerInstruction gep = geps.get(i);
+                Access base = pointers.get(gep.getBasePointer());
+                if (base != null) {
+                    Long offset = getConstantOffset(context, gep);
+                    if (offset != null) {
+                        pointers.put(gep, new Access(base.candidate, base.offset + offset));
+                    }
+                    geps.remove(i);
+                    changed = true;
+                }
+            }
+        }
+
+        EscapeVisitor visitor = new EscapeVisitor(pointers, debugDeclarationsEscape);
+        for (InstructionBlock block : function.getBlocks()) {
+            for (int i = 0; i < block.getInstructionCount(); i++) {
+                Instruction instruction = block.getInstruction(i);
+                visitor.instruction = instruction;
+                instruction.accept(visitor);
+            }
+        }
+
+        LinkedHashSet<Candidate> candidates = new LinkedHashSet<>();
+        for (Access access : pointers.values()) {
+            candidates.add(access.candidate);
+        }
+
+        Map<AllocateInstruction, List<FrameSlot>> replacedAllocas = new HashMap<>();
+        Map<Candidate, Map<Long, FrameSlot>> candidateSlots = new HashMap<>();
+        for (Candidate candidate : candidates) {
+            if (candidate.isReplaceable(context)) {
+                Map<Long, FrameSlot> slots = new HashMap<>();
+                List<FrameSlot> slotList = new ArrayList<>();
+                for (Map.Entry<Long, Type> field : candidate.fields.entrySet()) {
+                    String name = String.format("<%s+%d>", candidate.alloca.getName(), field.getKey());
+                    FrameSlot slot = frame.addFrameSlot(name, field.getValue(), Type.getFrameSlotKind(field.getValue()));
+                    slots.put(field.getKey(), slot);
+                    slotList.add(slot);
+                }
+                candidateSlots.put(candidate, slots);
+                replacedAllocas.put(candidate.alloca, slotList);
+            }
+        }
+        if (replacedAllocas.isEmpty()) {
+            return NONE;
+        }
+
+        Map<SymbolImpl, FrameSlot> replacedPointers = new HashMap<>();
+        for (Map.Entry<SymbolImpl, Access> entry : pointers.entrySet()) {
+            Access access = entry.getValue();
+            Map<Long, FrameSlot> slots = candidateSlots.get(access.candidate);
+            if (slots != null) {
+                // pointers that are only used to compute other pointers have no slot of their own
+                replacedPointers.put(entry.getKey(), slots.get(access.offset));
+            }
+        }
+        return new LLVMScalarReplacement(replacedAllocas, replacedPointers);
+    }
+
+    private static Long getConstantOffset(LLVMContext context, GetElementPointerInstruction gep) {
+        long offset = 0;
+        Type currentType = gep.getBasePointer().getType();
+        for (SymbolImpl index : gep.getIndices()) {
+            Long indexValue = LLVMSymbolReadResolver.evaluateLongIntegerConstant(index);
+            if (indexValue == null || !(currentType instanceof AggregateType)) {
+                return null;
+            }
+            AggregateType aggregate = (AggregateType) currentType;
+            offset += context.getIndexOffset(indexValue, aggregate);
+            currentType = aggregate.getElementType(indexValue);
+        }
+        return offset;
+    }
+
+    private static final class Access {
+
+        private final Candidate candidate;
+        private final long offset;
+
+        Access(Candidate candidate, long offset) {
+            this.candidate = candidate;
+            this.offset = offset;
+        }
+    }
+
+    private static final class Candidate {
+
+        private final AllocateInstruction alloca;
+        private final long size;
+        private final TreeMap<Long, Type> fields;
+        private boolean escapes;
+
+        private Candidate(AllocateInstruction alloca, long size) {
+            this.alloca = alloca;
+            this.size = size;
+            this.fields = new TreeMap<>();
+        }
+
+        static Candidate create(LLVMContext context, AllocateInstruction alloca) {
+            Long count = LLVMSymbolReadResolver.evaluateLongIntegerConstant(alloca.getCount());
+            if (count == null) {
+                return null;
+            }
+            // a count of 0 is encoded as a null constant and means a single element
+            long elements = Math.max(count, 1);
+            return new Candidate(alloca, elements * context.getByteSize(alloca.getPointeeType()));
+        }
+
+        void access(long offset, Type type) {
+            Type previous = fields.putIfAbsent(offset, type);
+            if (previous != null && !isCompatible(previous, type)) {
+                escapes = true;
+            }
+        }
+
+        boolean isReplaceable(LLVMContext context) {
+            if (escapes) {
+                return false;
+            }
+            long end = 0;
+            for (Map.Entry<Long, Type> field : fields.entrySet()) {
+                long offset = field.getKey();
+                if (!isScalar(field.getValue()) || offset < end) {
+                    // values of different type overlap, e.g., in a union
+                    return false;
+                }
+                end = offset + context.getByteSize(field.getValue());
+            }
+            return end <= size;
+        }
+
+        private static boolean isScalar(Type type) {
+            if (type instanceof PrimitiveType) {
+                switch (((PrimitiveType) type).getPrimitiveKind()) {
+                    case I1:
+                    case I8:
+                    case I16:
+                    case I32:
+                    case I64:
+                    case FLOAT:
+                    case DOUBLE:
+                    case X86_FP80:
+                        return true;
+                    default:
+                        return false;
+                }
+            }
+            return type instanceof PointerType;
+        }
+
+        private static boolean isCompatible(Type a, Type b) {
+            if (a instanceof PointerType && b instanceof PointerType) {
+                // function pointers are stored differently in the frame
+                return !Type.isFunctionOrFunctionPointer(a) && !Type.isFunctionOrFunctionPointer(b);
+            }
+            return a.equals(b);
+        }
+    }
+
+    private static final class EscapeVisitor extends LLVMLocalReadVisitor {
+
+        private final Map<SymbolImpl, Access> pointers;
+        private final boolean debugDeclarationsEscape;
+        private Instruction instruction;
+
+        EscapeVisitor(Map<SymbolImpl, Access> pointers, boolean debugDeclarationsEscape) {
+            this.pointers = pointers;
+            this.debugDeclarationsEscape = debugDeclarationsEscape;
+        }
+
+        @Override
+        public void visit(PhiInstruction phi) {
+            for (int i = 0; i < phi.getSize(); i++) {
+                visitLocalRead(phi.getValue(i));
+            }
+        }
+
+        @Override
+        protected void visitLocalRead(SymbolImpl symbol) {
+            Access access = pointers.get(symbol);
+            if (access == null) {
+                return;
+            }
+            if (instruction instanceof LoadInstruction) {
+                LoadInstruction load = (LoadInstruction) instruction;
+                if (!load.isVolatile() && load.getAtomicOrdering() == AtomicOrdering.NOT_ATOMIC) {
+                    access.candidate.access(access.offset, load.getType());
+                    return;
+                }
+            } else if (instruction instanceof StoreInstruction) {
+                StoreInstruction store = (StoreInstruction) instruction;
+                if (store.getSource() != symbol && !store.isVolatile() && store.getAtomicOrdering() == AtomicOrdering.NOT_ATOMIC) {
+                    access.candidate.access(access.offset, store.getSource().getType());
+                    return;
+                }
+            } else if (instruction instanceof GetElementPointerInstruction) {
+                if (pointers.containsKey(instruction)) {
+                    return;
+                }
+            } else if (instruction instanceof DbgDeclareInstruction || instruction instanceof DbgValueInstruction) {
+                if (!debugDeclarationsEscape) {
+                    return;
+                }
+            }
+            access.candidate.escapes = true;
+        }
+    }
+}
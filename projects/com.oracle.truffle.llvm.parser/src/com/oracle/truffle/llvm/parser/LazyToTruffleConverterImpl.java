@@ -31,6 +31,7 @@ package com.oracle.truffle.llvm.parser;
 
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -39,6 +40,7 @@ import com.oracle.truffle.api.RootCallTarget;
 import com.oracle.truffle.api.Truffle;
 import com.oracle.truffle.api.frame.FrameDescriptor;
 import com.oracle.truffle.api.frame.FrameSlot;
+import com.oracle.truffle.api.frame.FrameSlotKind;
 import com.oracle.truffle.api.nodes.RootNode;
 import com.oracle.truffle.api.source.Source;
 import com.oracle.truffle.llvm.parser.LLVMLivenessAnalysis.LLVMLivenessAnalysisResult;
@@ -58,12 +60,16 @@ import com.oracle.truffle.llvm.runtime.debug.LLVMSourceFunctionType;
 import com.oracle.truffle.llvm.runtime.debug.scope.LLVMSourceLocation;
 import com.oracle.truffle.llvm.runtime.memory.LLVMStack;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMExpressionNode;
+import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
 import com.oracle.truffle.llvm.runtime.types.PointerType;
 import com.oracle.truffle.llvm.runtime.types.PrimitiveType;
 import com.oracle.truffle.llvm.runtime.types.StructureType;
 import com.oracle.truffle.llvm.runtime.types.Type;
 
 public class LazyToTruffleConverterImpl implements LazyToTruffleConverter {
+    private static final String SUCCESSOR_SLOT_ID = "<successor block index>";
+    private static final String RETURN_VALUE_SLOT_ID = "<return value>";
+
     private final LLVMParserRuntime runtime;
     private final FunctionDefinition method;
     private final Source source;
@@ -99,8 +105,12 @@ public class LazyToTruffleConverterImpl implements LazyToTruffleConverter {
         LLVMRuntimeDebugInformation dbgInfoHandler = new LLVMRuntimeDebugInformation(frame, runtime.getNodeFactory(), runtime.getContext(), notNullable, symbols, runtime);
         dbgInfoHandler.registerStaticDebugSymbols(method);
 
+        // the liveness analysis does not know about the slots of replaced allocas, so they are
+        // added afterwards and are never nulled
+        LLVMScalarReplacement scalarReplacement = createScalarReplacement(frame, dbgInfoHandler);
+
         LLVMBitcodeFunctionVisitor visitor = new LLVMBitcodeFunctionVisitor(runtime, frame, phis, runtime.getNodeFactory(), method.getParameters().size(), symbols, method, liveness, notNullable,
-                        dbgInfoHandler);
+                        dbgInfoHandler, scalarReplacement);
         method.accept(visitor);
         FrameSlot[][] nullableBeforeBlock = getNullableFrameSlots(frame, liveness.getNullableBeforeBlock(), notNullable);
         FrameSlot[][] nullableAfterBlock = getNullableFrameSlots(frame, liveness.getNullableAfterBlock(), notNullable);
@@ -108,15 +118,151 @@ public class LazyToTruffleConverterImpl implements LazyToTruffleConverter {
 
         List<LLVMExpressionNode> copyArgumentsToFrame = copyArgumentsToFrame(frame);
         LLVMExpressionNode[] copyArgumentsToFrameArray = copyArgumentsToFrame.toArray(new LLVMExpressionNode[copyArgumentsToFrame.size()]);
-        LLVMExpressionNode body = runtime.getNodeFactory().createFunctionBlockNode(runtime, frame.findFrameSlot(LLVMException.FRAME_SLOT_ID), visitor.getBlocks(), nullableBeforeBlock,
-                        nullableAfterBlock,
-                        location, copyArgumentsToFrameArray);
+        FrameSlot exceptionSlot = frame.findFrameSlot(LLVMException.FRAME_SLOT_ID);
+        // pass the block at which the execution continues and the return value out of OSR loops,
+        // loop nodes and outlined regions, which all share the frame of the function
+        FrameSlot successorSlot = frame.addFrameSlot(SUCCESSOR_SLOT_ID, FrameSlotKind.Int);
+        FrameSlot returnValueSlot = frame.addFrameSlot(RETURN_VALUE_SLOT_ID, FrameSlotKind.Object);
+        List<LLVMExpressionNode> blocks = visitor.getBlocks();
+        boolean splitLoops = runtime.getContext().getEnv().getOptions().get(SulongEngineOption.LOOP_NODES);
+        int outlineThreshold = runtime.getContext().getEnv().getOptions().get(SulongEngineOption.OUTLINE_THRESHOLD);
+        List<LLVMLoopAnalysis.Loop> loops = Collections.emptyList();
+        if (splitLoops || outlineThreshold > 0) {
+            loops = LLVMLoopAnalysis.findLoops(method);
+        }
+        List<LLVMRegionAnalysis.Region> regions = Collections.emptyList();
+        if (outlineThreshold > 0) {
+            regions = LLVMRegionAnalysis.findRegions(method, outlineThreshold, loops);
+            printOutlineStatistics(regions, outlineThreshold);
+        }
+        if (!splitLoops) {
+            // the loops only restrict the regions
+            loops = Collections.emptyList();
+        }
+        LLVMExpressionNode[] regionNodes = createRegionNodes(regions, loops, blocks, exceptionSlot, successorSlot, returnValueSlot, nullableBeforeBlock, nullableAfterBlock, frame, location);
+        List<LLVMExpressionNode> remainingBlocks = getRemainingBlocks(blocks, null, regions, getLoopsOutsideOfRegions(loops, regions));
+        LLVMExpressionNode body = runtime.getNodeFactory().createFunctionBlockNode(runtime, exceptionSlot, successorSlot, returnValueSlot, remainingBlocks, regionNodes, nullableBeforeBlock,
+                        nullableAfterBlock, location, copyArgumentsToFrameArray);
 
         RootNode rootNode = runtime.getNodeFactory().createFunctionStartNode(runtime, body, method.getSourceSection(), frame, method, source, location);
 
         return Truffle.getRuntime().createCallTarget(rootNode);
     }
 
+    /**
+     * Creates the nodes for the given outlined regions and for the given loops outside of them,
+     * indexed by their entry block, or returns {@code null} if there are neither regions nor loops.
+     */
+    private LLVMExpressionNode[] createRegionNodes(List<LLVMRegionAnalysis.Region> regions, List<LLVMLoopAnalysis.Loop> loops, List<LLVMExpressionNode> blocks, FrameSlot exceptionSlot,
+                    FrameSlot successorSlot, FrameSlot returnValueSlot, FrameSlot[][] nullableBeforeBlock, FrameSlot[][] nullableAfterBlock, FrameDescriptor frame,
+                    LLVMSourceLocation location) {
+        if (regions.isEmpty() && loops.isEmpty()) {
+            return null;
+        }
+        LLVMExpressionNode[] regionNodes = createLoopNodes(getLoopsOutsideOfRegions(loops, regions), blocks, exceptionSlot, successorSlot, returnValueSlot, nullableBeforeBlock,
+                        nullableAfterBlock);
+        for (LLVMRegionAnalysis.Region region : regions) {
+            // a region either contains a whole loop or no block of it
+            List<LLVMLoopAnalysis.Loop> loopsInRegion = new ArrayList<>();
+            for (LLVMLoopAnalysis.Loop loop : loops) {
+                if (region.getBlocks().get(loop.getHeader())) {
+                    loopsInRegion.add(loop);
+                }
+            }
+            List<LLVMRegionAnalysis.Region> nestedRegions = region.getNestedRegions();
+            LLVMExpressionNode[] nestedRegionNodes = createRegionNodes(nestedRegions, loopsInRegion, blocks, exceptionSlot, successorSlot, returnValueSlot, nullableBeforeBlock,
+                            nullableAfterBlock, frame, location);
+            List<LLVMExpressionNode> regionBlocks = getRemainingBlocks(blocks, region.getBlocks(), nestedRegions, getLoopsOutsideOfRegions(loopsInRegion, nestedRegions));
+            regionNodes[region.getEntry()] = runtime.getNodeFactory().createOutlinedRegionNode(runtime, exceptionSlot, successorSlot, returnValueSlot, region.getEntry(), region.getSuccessors(),
+                            region.canReturn(), regionBlocks, nestedRegionNodes, nullableBeforeBlock, nullableAfterBlock, method.getSourceSection(), frame, method, source, location);
+        }
+        return regionNodes;
+    }
+
+    /**
+     * Creates the nodes for the given loops, indexed by their header.
+     */
+    private LLVMExpressionNode[] createLoopNodes(List<LLVMLoopAnalysis.Loop> loops, List<LLVMExpressionNode> blocks, FrameSlot exceptionSlot, FrameSlot successorSlot,
+                    FrameSlot returnValueSlot, FrameSlot[][] nullableBeforeBlock, FrameSlot[][] nullableAfterBlock) {
+        LLVMExpressionNode[] loopNodes = new LLVMExpressionNode[blocks.size()];
+        for (LLVMLoopAnalysis.Loop loop : loops) {
+            List<LLVMLoopAnalysis.Loop> nestedLoops = loop.getNestedLoops();
+            LLVMExpressionNode[] nestedLoopNodes = nestedLoops.isEmpty() ? null
+                            : createLoopNodes(nestedLoops, blocks, exceptionSlot, successorSlot, returnValueSlot, nullableBeforeBlock, nullableAfterBlock);
+            loopNodes[loop.getHeader()] = runtime.getNodeFactory().createLoopNode(runtime, exceptionSlot, successorSlot, returnValueSlot, loop.getHeader(), loop.getSuccessors(),
+                            loop.canReturn(), getRemainingBlocks(blocks, loop.getBlocks(), Collections.emptyList(), nestedLoops), nestedLoopNodes, nullableBeforeBlock, nullableAfterBlock);
+        }
+        return loopNodes;
+    }
+
+    private static List<LLVMLoopAnalysis.Loop> getLoopsOutsideOfRegions(List<LLVMLoopAnalysis.Loop> loops, List<LLVMRegionAnalysis.Region> regions) {
+        List<LLVMLoopAnalysis.Loop> result = new ArrayList<>();
+        outer: for (LLVMLoopAnalysis.Loop loop : loops) {
+            for (LLVMRegionAnalysis.Region region : regions) {
+                if (region.getBlocks().get(loop.getHeader())) {
+                    continue outer;
+                }
+            }
+            result.add(loop);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the blocks that belong to the given part of the function, but not to one of the given
+     * regions or loops in it. The other blocks are {@code null}, so that all blocks keep their
+     * index.
+     */
+    private static List<LLVMExpressionNode> getRemainingBlocks(List<LLVMExpressionNode> blocks, BitSet part, List<LLVMRegionAnalysis.Region> regions, List<LLVMLoopAnalysis.Loop> loops) {
+        BitSet excluded = new BitSet(blocks.size());
+        for (LLVMRegionAnalysis.Region region : regions) {
+            excluded.or(region.getBlocks());
+        }
+        for (LLVMLoopAnalysis.Loop loop : loops) {
+            excluded.or(loop.getBlocks());
+        }
+        List<LLVMExpressionNode> result = new ArrayList<>(blocks.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            result.add((part == null || part.get(i)) && !excluded.get(i) ? blocks.get(i) : null);
+        }
+        return result;
+    }
+
+    private void printOutlineStatistics(List<LLVMRegionAnalysis.Region> regions, int outlineThreshold) {
+        String option = runtime.getContext().getEnv().getOptions().get(SulongEngineOption.OUTLINE_STATS);
+        if (!SulongEngineOption.isTrue(option)) {
+            return;
+        }
+        if (!regions.isEmpty()) {
+            SulongEngineOption.getStream(option).printf("[sulong] %s: split %d blocks into %d outlined regions%n", method.getName(), method.getBlocks().size(), countRegions(regions));
+        } else {
+            int instructionCount = 0;
+            for (InstructionBlock block : method.getBlocks()) {
+                instructionCount += block.getInstructionCount();
+            }
+            if (instructionCount > outlineThreshold) {
+                // e.g., the whole function is one loop, which is never split
+                SulongEngineOption.getStream(option).printf("[sulong] %s: %d instructions, but no region outside of a loop to outline%n", method.getName(), instructionCount);
+            }
+        }
+    }
+
+    private static int countRegions(List<LLVMRegionAnalysis.Region> regions) {
+        int count = regions.size();
+        for (LLVMRegionAnalysis.Region region : regions) {
+            count += countRegions(region.getNestedRegions());
+        }
+        return count;
+    }
+
+    private LLVMScalarReplacement createScalarReplacement(FrameDescriptor frame, LLVMRuntimeDebugInformation dbgInfoHandler) {
+        if (runtime.getContext().getEnv().getOptions().get(SulongEngineOption.SCALAR_REPLACEMENT)) {
+            // the debugger needs the address of every declared source-level variable
+            return LLVMScalarReplacement.analyze(frame, runtime.getContext(), method, dbgInfoHandler.isEnabled());
+        }
+        return LLVMScalarReplacement.none();
+    }
+
     @Override
     public LLVMSourceFunctionType getSourceType() {
         return method.getSourceFunction().getSourceType();
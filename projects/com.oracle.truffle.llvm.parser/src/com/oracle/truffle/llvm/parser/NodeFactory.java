@@ -162,8 +162,17 @@ public interface NodeFactory extends InteropNodeFactory {
 
     LLVMExpressionNode createBasicBlockNode(LLVMParserRuntime runtime, LLVMExpressionNode[] statementNodes, LLVMControlFlowNode terminatorNode, int blockId, String blockName);
 
-    LLVMExpressionNode createFunctionBlockNode(LLVMParserRuntime runtime, FrameSlot exceptionValueSlot, List<? extends LLVMExpressionNode> basicBlockNodes, FrameSlot[][] beforeBlockNuller,
-                    FrameSlot[][] afterBlockNuller, LLVMSourceLocation sourceSection, LLVMExpressionNode[] copyArgumentsToFrame);
+    LLVMExpressionNode createFunctionBlockNode(LLVMParserRuntime runtime, FrameSlot exceptionValueSlot, FrameSlot successorSlot, FrameSlot returnValueSlot,
+                    List<? extends LLVMExpressionNode> basicBlockNodes, LLVMExpressionNode[] regionNodes, FrameSlot[][] beforeBlockNuller, FrameSlot[][] afterBlockNuller,
+                    LLVMSourceLocation sourceSection, LLVMExpressionNode[] copyArgumentsToFrame);
+
+    LLVMExpressionNode createLoopNode(LLVMParserRuntime runtime, FrameSlot exceptionValueSlot, FrameSlot successorSlot, FrameSlot returnValueSlot, int loopHeader, int[] loopSuccessors,
+                    boolean canReturn, List<? extends LLVMExpressionNode> basicBlockNodes, LLVMExpressionNode[] regionNodes, FrameSlot[][] beforeBlockNuller, FrameSlot[][] afterBlockNuller);
+
+    LLVMExpressionNode createOutlinedRegionNode(LLVMParserRuntime runtime, FrameSlot exceptionValueSlot, FrameSlot successorSlot, FrameSlot returnValueSlot, int regionEntry,
+                    int[] regionSuccessors, boolean canReturn, List<? extends LLVMExpressionNode> basicBlockNodes, LLVMExpressionNode[] regionNodes, FrameSlot[][] beforeBlockNuller,
+                    FrameSlot[][] afterBlockNuller, SourceSection sourceSection, FrameDescriptor frameDescriptor, FunctionDefinition functionHeader, Source bcSource,
+                    LLVMSourceLocation location);
 
     RootNode createFunctionStartNode(LLVMParserRuntime runtime, LLVMExpressionNode functionBodyNode, SourceSection sourceSection, FrameDescriptor frameDescriptor, FunctionDefinition functionHeader,
                     Source bcSource, LLVMSourceLocation location);
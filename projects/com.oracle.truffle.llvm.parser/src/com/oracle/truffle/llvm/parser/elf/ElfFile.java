@@ -42,12 +42,22 @@ public final class ElfFile {
     private final ElfHeader header;
     private final ElfSectionHeaderTable sectionHeaderTable;
     private final ElfDynamicSection dynamicSection;
+    private final ByteBuffer data;
+    private final boolean is64Bit;
 
-    private ElfFile(ElfHeader header, ElfSectionHeaderTable sectionHeaderTable, ElfDynamicSection dynamicSection) {
+    private ElfSymbolTable dynamicSymbolTable;
+
+    private ElfFile(ElfHeader header, ElfSectionHeaderTable sectionHeaderTable, ElfDynamicSection dynamicSection, ByteBuffer data, boolean is64Bit) {
         super();
         this.header = header;
         this.sectionHeaderTable = sectionHeaderTable;
         this.dynamicSection = dynamicSection;
+        this.data = data;
+        this.is64Bit = is64Bit;
+    }
+
+    public static boolean isElfFile(ByteBuffer data) {
+        return data.limit() > EI_NIDENT && data.get(0) == 0x7f && data.get(1) == 'E' && data.get(2) == 'L' && data.get(3) == 'F';
     }
 
     public static ElfFile create(ByteBuffer data) {
@@ -59,7 +69,7 @@ public final class ElfFile {
         ElfHeader header = ElfHeader.create(data, is64Bit);
         ElfSectionHeaderTable sectionHeaderTable = ElfSectionHeaderTable.create(header, data, is64Bit);
         ElfDynamicSection dynamicSection = ElfDynamicSection.create(sectionHeaderTable, data, is64Bit);
-        return new ElfFile(header, sectionHeaderTable, dynamicSection);
+        return new ElfFile(header, sectionHeaderTable, dynamicSection, data, is64Bit);
     }
 
     public ElfHeader getHeader() {
@@ -74,6 +84,16 @@ public final class ElfFile {
         return sectionHeaderTable;
     }
 
+    /**
+     * The dynamic symbol table is only read on request, as it is not needed for bitcode files.
+     */
+    public ElfSymbolTable getDynamicSymbolTable() {
+        if (dynamicSymbolTable == null) {
+            dynamicSymbolTable = ElfSymbolTable.createDynamic(sectionHeaderTable, data, is64Bit);
+        }
+        return dynamicSymbolTable;
+    }
+
     private static boolean isBigEndian(ByteBuffer ident) {
         return ident.get(EI_DATA) == ELFDATA2MSB;
     }
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.parser.elf;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the dynamic symbol table ({@code .dynsym}) of a shared object, i.e., the symbols that the
+ * dynamic linker can resolve in it.
+ */
+public final class ElfSymbolTable {
+    private static final int SHT_DYNSYM = 11;
+    private static final int SHN_UNDEF = 0;
+
+    private static final int STB_GLOBAL = 1;
+    private static final int STB_WEAK = 2;
+    private static final int STB_GNU_UNIQUE = 10;
+
+    private static final int STV_DEFAULT = 0;
+    private static final int STV_PROTECTED = 3;
+
+    private static final int ELF32_SYM_SIZE = 16;
+    private static final int ELF64_SYM_SIZE = 24;
+
+    private final List<String> definedSymbols;
+
+    private ElfSymbolTable(List<String> definedSymbols) {
+        this.definedSymbols = definedSymbols;
+    }
+
+    public static ElfSymbolTable createDynamic(ElfSectionHeaderTable sht, ByteBuffer buffer, boolean is64Bit) {
+        ElfSectionHeaderTable.Entry[] sections = sht.getEntries();
+        for (ElfSectionHeaderTable.Entry e : sections) {
+            if (e.getType() == SHT_DYNSYM && e.getLink() < sections.length) {
+                return new ElfSymbolTable(readDefinedSymbols(buffer, is64Bit, e, sections[e.getLink()]));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the names of all symbols that this file exports, i.e., all global, weak, and unique
+     * symbols with default or protected visibility that are not undefined references.
+     */
+    public List<String> getDefinedSymbols() {
+        return definedSymbols;
+    }
+
+    private static List<String> readDefinedSymbols(ByteBuffer data, boolean is64Bit, ElfSectionHeaderTable.Entry symbols, ElfSectionHeaderTable.Entry strings) {
+        ByteBuffer buffer = data.duplicate().order(data.order());
+        long entrySize = symbols.getEntrySize() != 0 ? symbols.getEntrySize() : (is64Bit ? ELF64_SYM_SIZE : ELF32_SYM_SIZE);
+        long count = symbols.getSize() / entrySize;
+
+        List<String> result = new ArrayList<>((int) count);
+        // the first entry is always the undefined symbol
+        for (long i = 1; i < count; i++) {
+            buffer.position((int) (symbols.getOffset() + i * entrySize));
+            int stName = buffer.getInt();
+            int stInfo;
+            int stOther;
+            int stShndx;
+            if (is64Bit) {
+                stInfo = Byte.toUnsignedInt(buffer.get());
+                stOther = Byte.toUnsignedInt(buffer.get());
+                stShndx = Short.toUnsignedInt(buffer.getShort());
+            } else {
+                // skip st_value and st_size
+                buffer.position(buffer.position() + 8);
+                stInfo = Byte.toUnsignedInt(buffer.get());
+                stOther = Byte.toUnsignedInt(buffer.get());
+                stShndx = Short.toUnsignedInt(buffer.getShort());
+            }
+
+            int binding = stInfo >> 4;
+            int visibility = stOther & 0x3;
+            if (stShndx != SHN_UNDEF && (binding == STB_GLOBAL || binding == STB_WEAK || binding == STB_GNU_UNIQUE) && (visibility == STV_DEFAULT || visibility == STV_PROTECTED)) {
+                String name = getString(buffer, strings, stName);
+                if (!name.isEmpty()) {
+                    result.add(name);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static String getString(ByteBuffer buffer, ElfSectionHeaderTable.Entry strings, int offset) {
+        if (offset < 0 || offset >= strings.getSize()) {
+            return "";
+        }
+
+        buffer.position((int) (strings.getOffset() + offset));
+        StringBuilder sb = new StringBuilder();
+
+        byte b = buffer.get();
+        while (b != 0) {
+            sb.append((char) b);
+            b = buffer.get();
+        }
+
+        return sb.toString();
+    }
+}
@@ -31,24 +31,22 @@ package com.oracle.truffle.llvm.parser.listeners;
 
 import java.util.List;
 
-import com.oracle.truffle.api.source.Source;
 import com.oracle.truffle.llvm.parser.metadata.debuginfo.DebugInfoModuleProcessor;
 import com.oracle.truffle.llvm.parser.model.IRScope;
 import com.oracle.truffle.llvm.parser.model.ModelModule;
 import com.oracle.truffle.llvm.parser.model.symbols.globals.GlobalValueSymbol;
 import com.oracle.truffle.llvm.parser.scanner.Block;
+import com.oracle.truffle.llvm.parser.scanner.RecordBuffer;
 import com.oracle.truffle.llvm.parser.util.SymbolNameMangling;
 import com.oracle.truffle.llvm.runtime.types.symbols.LLVMIdentifier;
 
 public final class BCFileRoot implements ParserListener {
 
-    private final Source source;
     private final ModelModule module;
     private final StringTable stringTable;
     private final IRScope scope;
 
-    public BCFileRoot(Source source, ModelModule module) {
-        this.source = source;
+    public BCFileRoot(ModelModule module) {
         this.module = module;
         this.stringTable = new StringTable();
         this.scope = new IRScope();
@@ -73,7 +71,7 @@ public final class BCFileRoot implements ParserListener {
         int globalIndex = setMissingNames(module.getGlobalVariables(), 0);
         setMissingNames(module.getAliases(), globalIndex);
         SymbolNameMangling.demangleGlobals(module);
-        DebugInfoModuleProcessor.processModule(module, source, scope.getMetadata());
+        DebugInfoModuleProcessor.processModule(module, scope.getMetadata());
     }
 
     private static int setMissingNames(List<? extends GlobalValueSymbol> globals, int startIndex) {
@@ -87,6 +85,6 @@ public final class BCFileRoot implements ParserListener {
     }
 
     @Override
-    public void record(long id, long[] args) {
+    public void record(RecordBuffer buffer) {
     }
 }
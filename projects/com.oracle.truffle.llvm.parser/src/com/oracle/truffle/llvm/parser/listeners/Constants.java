@@ -47,6 +47,7 @@ import com.oracle.truffle.llvm.parser.model.symbols.constants.integer.BigInteger
 import com.oracle.truffle.llvm.parser.model.symbols.constants.integer.IntegerConstant;
 import com.oracle.truffle.llvm.parser.records.ConstantsRecord;
 import com.oracle.truffle.llvm.parser.records.Records;
+import com.oracle.truffle.llvm.parser.scanner.RecordBuffer;
 import com.oracle.truffle.llvm.runtime.types.ArrayType;
 import com.oracle.truffle.llvm.runtime.types.Type;
 
@@ -66,12 +67,12 @@ public final class Constants implements ParserListener {
     }
 
     @Override
-    public void record(long id, long[] args) {
-        ConstantsRecord record = ConstantsRecord.decode(id);
+    public void record(RecordBuffer args) {
+        ConstantsRecord record = ConstantsRecord.decode(args.getId());
 
         switch (record) {
             case SETTYPE:
-                type = types.get(args[0]);
+                type = types.get(args.getAt(0));
                 return;
 
             case NULL:
@@ -87,15 +88,15 @@ public final class Constants implements ParserListener {
                 return;
 
             case INTEGER: {
-                long value = Records.toSignedValue(args[0]);
+                long value = Records.toSignedValue(args.getAt(0));
                 scope.addSymbol(new IntegerConstant(type, value), Type.createConstantForType(type, value));
                 return;
             }
             case WIDE_INTEGER: {
                 BigInteger value = BigInteger.ZERO;
 
-                for (int i = 0; i < args.length; i++) {
-                    BigInteger temp = BigInteger.valueOf(Records.toSignedValue(args[i]));
+                for (int i = 0; i < args.size(); i++) {
+                    BigInteger temp = BigInteger.valueOf(Records.toSignedValue(args.getAt(i)));
                     temp = temp.and(WIDE_INTEGER_MASK);
                     temp = temp.shiftLeft(i * Long.SIZE);
                     value = value.add(temp);
@@ -104,59 +105,59 @@ public final class Constants implements ParserListener {
                 return;
             }
             case FLOAT:
-                scope.addSymbol(FloatingPointConstant.create(type, args), type);
+                scope.addSymbol(FloatingPointConstant.create(type, args.getOps()), type);
                 return;
 
             case AGGREGATE: {
-                scope.addSymbol(Constant.createFromValues(type, scope.getSymbols(), Records.toIntegers(args)), type);
+                scope.addSymbol(Constant.createFromValues(type, scope.getSymbols(), Records.toIntegers(args.getOps())), type);
                 return;
             }
             case STRING:
-                scope.addSymbol(new StringConstant((ArrayType) type, Records.toString(args), false), type);
+                scope.addSymbol(new StringConstant((ArrayType) type, Records.toString(args.getOps()), false), type);
                 return;
 
             case CSTRING:
-                scope.addSymbol(new StringConstant((ArrayType) type, Records.toString(args), true), type);
+                scope.addSymbol(new StringConstant((ArrayType) type, Records.toString(args.getOps()), true), type);
                 return;
 
             case CE_BINOP: {
-                int opCode = (int) args[0];
-                int lhs = (int) args[1];
-                int rhs = (int) args[2];
+                int opCode = (int) args.getAt(0);
+                int lhs = (int) args.getAt(1);
+                int rhs = (int) args.getAt(2);
                 scope.addSymbol(BinaryOperationConstant.fromSymbols(scope.getSymbols(), type, opCode, lhs, rhs), type);
                 return;
             }
 
             case CE_CAST: {
-                int opCode = (int) args[0];
-                int value = (int) args[2];
+                int opCode = (int) args.getAt(0);
+                int value = (int) args.getAt(2);
                 scope.addSymbol(CastConstant.fromSymbols(scope.getSymbols(), type, opCode, value), type);
                 return;
             }
 
             case CE_CMP: {
                 int i = 1;
-                int lhs = (int) args[i++];
-                int rhs = (int) args[i++];
-                int opcode = (int) args[i];
+                int lhs = (int) args.getAt(i++);
+                int rhs = (int) args.getAt(i++);
+                int opcode = (int) args.getAt(i);
 
                 scope.addSymbol(CompareConstant.fromSymbols(scope.getSymbols(), type, opcode, lhs, rhs), type);
                 return;
             }
 
             case BLOCKADDRESS: {
-                int function = (int) args[1];
-                int block = (int) args[2];
+                int function = (int) args.getAt(1);
+                int block = (int) args.getAt(2);
                 scope.addSymbol(BlockAddressConstant.fromSymbols(scope.getSymbols(), type, function, block), type);
                 return;
             }
 
             case DATA:
-                scope.addSymbol(Constant.createFromData(type, args), type);
+                scope.addSymbol(Constant.createFromData(type, args.getOps()), type);
                 return;
 
             case INLINEASM:
-                scope.addSymbol(InlineAsmConstant.generate(type, args), type);
+                scope.addSymbol(InlineAsmConstant.generate(type, args.getOps()), type);
                 return;
 
             case CE_GEP:
@@ -170,27 +171,27 @@ public final class Constants implements ParserListener {
         }
     }
 
-    private void createGetElementPointerExpression(long[] args, ConstantsRecord record) {
+    private void createGetElementPointerExpression(RecordBuffer args, ConstantsRecord record) {
         int i = 0;
-        if (record == ConstantsRecord.CE_GEP_WITH_INRANGE_INDEX || args.length % 2 != 0) {
+        if (record == ConstantsRecord.CE_GEP_WITH_INRANGE_INDEX || args.size() % 2 != 0) {
             i++; // type of pointee
         }
 
         boolean isInbounds;
         if (record == ConstantsRecord.CE_GEP_WITH_INRANGE_INDEX) {
-            final long op = args[i++];
+            final long op = args.getAt(i++);
             isInbounds = (op & 0x1) != 0;
         } else {
             isInbounds = record == ConstantsRecord.CE_INBOUNDS_GEP;
         }
 
         i++; // type of pointer
-        int pointer = (int) args[i++];
+        int pointer = (int) args.getAt(i++);
 
-        final int[] indices = new int[(args.length - i) >> 1];
+        final int[] indices = new int[(args.size() - i) >> 1];
         for (int j = 0; j < indices.length; j++) {
             i++; // index type
-            indices[j] = (int) args[i++];
+            indices[j] = (int) args.getAt(i++);
         }
 
         scope.addSymbol(GetElementPointerConstant.fromSymbols(scope.getSymbols(), type, pointer, indices, isInbounds), type);
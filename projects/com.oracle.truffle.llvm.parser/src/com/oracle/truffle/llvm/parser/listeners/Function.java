@@ -78,6 +78,7 @@ import com.oracle.truffle.llvm.parser.model.symbols.instructions.VoidInvokeInstr
 import com.oracle.truffle.llvm.parser.records.FunctionRecord;
 import com.oracle.truffle.llvm.parser.records.Records;
 import com.oracle.truffle.llvm.parser.scanner.Block;
+import com.oracle.truffle.llvm.parser.scanner.RecordBuffer;
 import com.oracle.truffle.llvm.runtime.types.AggregateType;
 import com.oracle.truffle.llvm.runtime.types.ArrayType;
 import com.oracle.truffle.llvm.runtime.types.FunctionType;
@@ -156,8 +157,8 @@ public final class Function implements ParserListener {
     }
 
     @Override
-    public void record(long id, long[] args) {
-        FunctionRecord record = FunctionRecord.decode(id);
+    public void record(RecordBuffer args) {
+        FunctionRecord record = FunctionRecord.decode(args.getId());
 
         // debug locations can occur after terminating instructions, we process them before we
         // replace the old block
@@ -170,7 +171,7 @@ public final class Function implements ParserListener {
                 return;
 
             case DECLAREBLOCKS:
-                function.allocateBlocks((int) args[0]);
+                function.allocateBlocks((int) args.getAt(0));
                 return;
 
             default:
@@ -331,23 +332,23 @@ public final class Function implements ParserListener {
 
     private static final int INVOKE_HASEXPLICITFUNCTIONTYPE_SHIFT = 13;
 
-    private void createInvoke(long[] args) {
+    private void createInvoke(RecordBuffer args) {
         int i = 0;
-        final AttributesCodeEntry paramAttr = paramAttributes.getCodeEntry(args[i++]);
-        final long ccInfo = args[i++];
+        final AttributesCodeEntry paramAttr = paramAttributes.getCodeEntry(args.getAt(i++));
+        final long ccInfo = args.getAt(i++);
 
-        final InstructionBlock normalSuccessor = function.getBlock(args[i++]);
-        final InstructionBlock unwindSuccessor = function.getBlock(args[i++]);
+        final InstructionBlock normalSuccessor = function.getBlock(args.getAt(i++));
+        final InstructionBlock unwindSuccessor = function.getBlock(args.getAt(i++));
 
         FunctionType functionType = null;
         if (((ccInfo >> INVOKE_HASEXPLICITFUNCTIONTYPE_SHIFT) & 1) != 0) {
-            functionType = (FunctionType) types.get(args[i++]);
+            functionType = (FunctionType) types.get(args.getAt(i++));
         }
 
-        final int target = getIndex(args[i++]);
+        final int target = getIndex(args.getAt(i++));
         final Type calleeType;
         if (scope.isValueForwardRef(target)) {
-            calleeType = types.get(args[i++]);
+            calleeType = types.get(args.getAt(i++));
         } else {
             calleeType = scope.getValueType(target);
         }
@@ -362,14 +363,14 @@ public final class Function implements ParserListener {
             }
         }
 
-        int[] arguments = new int[args.length - i];
+        int[] arguments = new int[args.size() - i];
         int skipped = 0;
         int j = 0;
-        while (j < functionType.getArgumentTypes().length && i < args.length) {
-            arguments[j++] = getIndex(args[i++]);
+        while (j < functionType.getArgumentTypes().length && i < args.size()) {
+            arguments[j++] = getIndex(args.getAt(i++));
         }
-        while (i < args.length) {
-            int index = getIndex(args[i++]);
+        while (i < args.size()) {
+            int index = getIndex(args.getAt(i++));
             arguments[j++] = index;
             if (scope.isValueForwardRef(index)) {
                 i++;
@@ -389,24 +390,24 @@ public final class Function implements ParserListener {
         isLastBlockTerminated = true;
     }
 
-    private void createResume(long[] args) {
+    private void createResume(RecordBuffer args) {
         int i = 0;
-        final int val = getIndex(args[i]);
-        // args[i + 1] -> type
+        final int val = getIndex(args.getAt(i));
+        // args.getAt(i + 1) -> type
         emit(ResumeInstruction.fromSymbols(scope.getSymbols(), val));
         isLastBlockTerminated = true;
     }
 
-    private void createLandingpad(long[] args) {
+    private void createLandingpad(RecordBuffer args) {
         int i = 0;
-        final Type type = types.get(args[i++]);
-        final boolean isCleanup = args[i++] != 0;
-        final int numClauses = (int) args[i++];
+        final Type type = types.get(args.getAt(i++));
+        final boolean isCleanup = args.getAt(i++) != 0;
+        final int numClauses = (int) args.getAt(i++);
         long[] clauseKinds = new long[numClauses]; // catch = 0, filter = 1
         long[] clauseTypes = new long[numClauses];
         for (int j = 0; j < numClauses; j++) {
-            clauseKinds[j] = args[i++];
-            clauseTypes[j] = getIndex(args[i++]);
+            clauseKinds[j] = args.getAt(i++);
+            clauseTypes[j] = getIndex(args.getAt(i++));
             if (scope.isValueForwardRef(clauseTypes[j])) {
                 i++;
             }
@@ -414,22 +415,22 @@ public final class Function implements ParserListener {
         emit(LandingpadInstruction.generate(scope.getSymbols(), type, isCleanup, clauseKinds, clauseTypes));
     }
 
-    private void createLandingpadOld(long[] args) {
+    private void createLandingpadOld(RecordBuffer args) {
         int i = 0;
-        final Type type = types.get(args[i++]);
+        final Type type = types.get(args.getAt(i++));
 
-        long persFn = getIndex(args[i++]);
+        long persFn = getIndex(args.getAt(i++));
         if (scope.isValueForwardRef((int) persFn)) {
             i++;
         }
 
-        final boolean isCleanup = args[i++] != 0;
-        final int numClauses = (int) args[i++];
+        final boolean isCleanup = args.getAt(i++) != 0;
+        final int numClauses = (int) args.getAt(i++);
         long[] clauseKinds = new long[numClauses]; // catch = 0, filter = 1
         long[] clauseTypes = new long[numClauses];
         for (int j = 0; j < numClauses; j++) {
-            clauseKinds[j] = args[i++];
-            clauseTypes[j] = getIndex(args[i++]);
+            clauseKinds[j] = args.getAt(i++);
+            clauseTypes[j] = getIndex(args.getAt(i++));
             if (scope.isValueForwardRef(clauseTypes[j])) {
                 i++;
             }
@@ -440,10 +441,10 @@ public final class Function implements ParserListener {
     private static final int CALL_HAS_FMF_SHIFT = 17;
     private static final int CALL_HAS_EXPLICITTYPE_SHIFT = 15;
 
-    private void createFunctionCall(long[] args) {
+    private void createFunctionCall(RecordBuffer args) {
         int i = 0;
-        final AttributesCodeEntry paramAttr = paramAttributes.getCodeEntry(args[i++]);
-        final long ccinfo = args[i++];
+        final AttributesCodeEntry paramAttr = paramAttributes.getCodeEntry(args.getAt(i++));
+        final long ccinfo = args.getAt(i++);
 
         if (((ccinfo >> CALL_HAS_FMF_SHIFT) & 1) != 0) {
             i++; // fast math flags
@@ -451,13 +452,13 @@ public final class Function implements ParserListener {
 
         FunctionType functionType = null;
         if (((ccinfo >> CALL_HAS_EXPLICITTYPE_SHIFT) & 1) != 0) {
-            functionType = (FunctionType) types.get(args[i++]);
+            functionType = (FunctionType) types.get(args.getAt(i++));
         }
 
-        int callee = getIndex(args[i++]);
+        int callee = getIndex(args.getAt(i++));
         Type calleeType;
         if (scope.isValueForwardRef(callee)) {
-            calleeType = types.get(args[i++]);
+            calleeType = types.get(args.getAt(i++));
         } else {
             calleeType = scope.getValueType(callee);
         }
@@ -470,14 +471,14 @@ public final class Function implements ParserListener {
             }
         }
 
-        int[] arguments = new int[args.length - i];
+        int[] arguments = new int[args.size() - i];
         int skipped = 0;
         int j = 0;
-        while (j < functionType.getArgumentTypes().length && i < args.length) {
-            arguments[j++] = getIndex(args[i++]);
+        while (j < functionType.getArgumentTypes().length && i < args.size()) {
+            arguments[j++] = getIndex(args.getAt(i++));
         }
-        while (i < args.length) {
-            int index = getIndex(args[i++]);
+        while (i < args.size()) {
+            int index = getIndex(args.getAt(i++));
             arguments[j++] = index;
             if (scope.isValueForwardRef(index)) {
                 i++;
@@ -500,22 +501,22 @@ public final class Function implements ParserListener {
     private static final long SWITCH_CASERANGE_SHIFT = 16;
     private static final long SWITCH_CASERANGE_FLAG = 0x4B5;
 
-    private void createSwitch(long[] args) {
+    private void createSwitch(RecordBuffer args) {
         int i = 0;
 
-        if ((args[0] >> SWITCH_CASERANGE_SHIFT) == SWITCH_CASERANGE_FLAG) {
+        if ((args.getAt(0) >> SWITCH_CASERANGE_SHIFT) == SWITCH_CASERANGE_FLAG) {
             i++; // indicator
             i++; // type
-            final int cond = getIndex(args[i++]);
-            final int defaultBlock = (int) args[i++];
+            final int cond = getIndex(args.getAt(i++));
+            final int defaultBlock = (int) args.getAt(i++);
 
-            final int count = (int) args[i++];
+            final int count = (int) args.getAt(i++);
             final long[] caseConstants = new long[count];
             final int[] caseBlocks = new int[count];
             for (int j = 0; j < count; j++) {
                 i += 2;
-                caseConstants[j] = Records.toSignedValue(args[i++]);
-                caseBlocks[j] = (int) args[i++];
+                caseConstants[j] = Records.toSignedValue(args.getAt(i++));
+                caseBlocks[j] = (int) args.getAt(i++);
             }
 
             emit(SwitchOldInstruction.generate(function, scope.getSymbols(), cond, defaultBlock, caseConstants, caseBlocks));
@@ -523,14 +524,14 @@ public final class Function implements ParserListener {
         } else {
             i++; // type
 
-            final int cond = getIndex(args[i++]);
-            final int defaultBlock = (int) args[i++];
-            final int count = (args.length - i) >> 1;
+            final int cond = getIndex(args.getAt(i++));
+            final int defaultBlock = (int) args.getAt(i++);
+            final int count = (args.size() - i) >> 1;
             final int[] caseValues = new int[count];
             final int[] caseBlocks = new int[count];
             for (int j = 0; j < count; j++) {
-                caseValues[j] = getIndexAbsolute(args[i++]);
-                caseBlocks[j] = (int) args[i++];
+                caseValues[j] = getIndexAbsolute(args.getAt(i++));
+                caseBlocks[j] = (int) args.getAt(i++);
             }
 
             emit(SwitchInstruction.generate(function, scope.getSymbols(), cond, defaultBlock, caseValues, caseBlocks));
@@ -544,12 +545,12 @@ public final class Function implements ParserListener {
     private static final long ALLOCA_SWIFTERRORMASK = 1L << 7;
     private static final long ALLOCA_FLAGSMASK = ALLOCA_INMASK | ALLOCA_EXPLICITTYPEMASK | ALLOCA_SWIFTERRORMASK;
 
-    private void createAlloca(long[] args) {
+    private void createAlloca(RecordBuffer args) {
         int i = 0;
-        final long typeRecord = args[i++];
+        final long typeRecord = args.getAt(i++);
         i++; // type of count
-        final int count = getIndexAbsolute(args[i++]);
-        final long alignRecord = args[i];
+        final int count = getIndexAbsolute(args.getAt(i++));
+        final long alignRecord = args.getAt(i);
 
         final int align = getAlign(alignRecord & ~ALLOCA_FLAGSMASK);
 
@@ -564,79 +565,79 @@ public final class Function implements ParserListener {
 
     private static final int LOAD_ARGS_EXPECTED_AFTER_TYPE = 3;
 
-    private void createLoad(long[] args) {
+    private void createLoad(RecordBuffer args) {
         int i = 0;
-        final int src = getIndex(args[i++]);
+        final int src = getIndex(args.getAt(i++));
 
         final Type srcType;
         if (scope.isValueForwardRef(src)) {
-            srcType = types.get(args[i++]);
+            srcType = types.get(args.getAt(i++));
         } else {
             srcType = scope.getValueType(src);
         }
 
         final Type opType;
-        if (i + LOAD_ARGS_EXPECTED_AFTER_TYPE == args.length) {
-            opType = types.get(args[i++]);
+        if (i + LOAD_ARGS_EXPECTED_AFTER_TYPE == args.size()) {
+            opType = types.get(args.getAt(i++));
         } else {
             opType = ((PointerType) srcType).getPointeeType();
         }
 
-        final int align = getAlign(args[i++]);
-        final boolean isVolatile = args[i] != 0;
+        final int align = getAlign(args.getAt(i++));
+        final boolean isVolatile = args.getAt(i) != 0;
 
         emit(LoadInstruction.fromSymbols(scope.getSymbols(), opType, src, align, isVolatile));
     }
 
     private static final int LOADATOMIC_ARGS_EXPECTED_AFTER_TYPE = 5;
 
-    private void createLoadAtomic(long[] args) {
+    private void createLoadAtomic(RecordBuffer args) {
         int i = 0;
-        final int src = getIndex(args[i++]);
+        final int src = getIndex(args.getAt(i++));
 
         final Type srcType;
         if (scope.isValueForwardRef(src)) {
-            srcType = types.get(args[i++]);
+            srcType = types.get(args.getAt(i++));
         } else {
             srcType = scope.getValueType(src);
         }
 
         final Type opType;
-        if (i + LOADATOMIC_ARGS_EXPECTED_AFTER_TYPE == args.length) {
-            opType = types.get(args[i++]);
+        if (i + LOADATOMIC_ARGS_EXPECTED_AFTER_TYPE == args.size()) {
+            opType = types.get(args.getAt(i++));
         } else {
             opType = ((PointerType) srcType).getPointeeType();
         }
 
-        final int align = getAlign(args[i++]);
-        final boolean isVolatile = args[i++] != 0;
-        final long atomicOrdering = args[i++];
-        final long synchronizationScope = args[i];
+        final int align = getAlign(args.getAt(i++));
+        final boolean isVolatile = args.getAt(i++) != 0;
+        final long atomicOrdering = args.getAt(i++);
+        final long synchronizationScope = args.getAt(i);
 
         emit(LoadInstruction.fromSymbols(scope.getSymbols(), opType, src, align, isVolatile, atomicOrdering, synchronizationScope));
     }
 
-    private void createCompareExchange(long[] args, FunctionRecord record) {
+    private void createCompareExchange(RecordBuffer args, FunctionRecord record) {
         int i = 0;
 
         final Type ptrType;
-        final int ptr = getIndex(args[i]);
+        final int ptr = getIndex(args.getAt(i));
         if (scope.isValueForwardRef(ptr)) {
-            ptrType = types.get(args[++i]);
+            ptrType = types.get(args.getAt(++i));
         } else {
             ptrType = scope.getValueType(ptr);
         }
-        final int cmp = getIndex(args[++i]);
+        final int cmp = getIndex(args.getAt(++i));
         if (record == FunctionRecord.CMPXCHG && scope.isValueForwardRef(cmp)) {
             ++i; // type of cmp
         }
-        final int replace = getIndex(args[++i]);
-        final boolean isVolatile = args[++i] != 0;
-        final long successOrdering = args[++i];
-        final long synchronizationScope = args[++i];
-        final long failureOrdering = i < args.length - 1 ? args[++i] : -1L;
-        final boolean addExtractValue = i >= args.length - 1;
-        final boolean isWeak = addExtractValue || (args[++i] != 0);
+        final int replace = getIndex(args.getAt(++i));
+        final boolean isVolatile = args.getAt(++i) != 0;
+        final long successOrdering = args.getAt(++i);
+        final long synchronizationScope = args.getAt(++i);
+        final long failureOrdering = i < args.size() - 1 ? args.getAt(++i) : -1L;
+        final boolean addExtractValue = i >= args.size() - 1;
+        final boolean isWeak = addExtractValue || (args.getAt(++i) != 0);
 
         final Type type = findCmpxchgResultType(((PointerType) ptrType).getPointeeType());
 
@@ -645,7 +646,8 @@ public final class Function implements ParserListener {
         if (addExtractValue) {
             // in older llvm versions cmpxchg just returned the new value at the pointer, to emulate
             // this we have to add an extractelvalue instruction. llvm does the same thing
-            createExtractValue(new long[]{1, 0});
+            final int aggregate = getIndex(1);
+            emitExtractValue(aggregate, scope.getValueType(aggregate), 0);
             implicitIndices.add(scope.getNextValueIndex() - 1); // register the implicit index
         }
     }
@@ -669,7 +671,7 @@ public final class Function implements ParserListener {
         return new StructureType(true, new Type[]{elementType, PrimitiveType.I1});
     }
 
-    private void parseDebugLocation(long[] args) {
+    private void parseDebugLocation(RecordBuffer args) {
         // if e.g. the previous instruction was @llvm.debug.declare this will be the location of the
         // declaration of the variable in the source file
         lastLocation = MDLocation.createFromFunctionArgs(args, scope.getMetadata());
@@ -680,110 +682,110 @@ public final class Function implements ParserListener {
         instructionBlock.getInstruction(lastInstructionIndex).setDebugLocation(lastLocation);
     }
 
-    private void createAtomicStore(long[] args) {
+    private void createAtomicStore(RecordBuffer args) {
         int i = 0;
 
-        final int destination = getIndex(args[i++]);
+        final int destination = getIndex(args.getAt(i++));
         if (scope.isValueForwardRef(destination)) {
             i++;
         }
 
-        final int source = getIndex(args[i++]);
+        final int source = getIndex(args.getAt(i++));
         if (scope.isValueForwardRef(source)) {
             i++;
         }
 
-        final int align = getAlign(args[i++]);
-        final boolean isVolatile = args[i++] != 0;
-        final long atomicOrdering = args[i++];
-        final long synchronizationScope = args[i];
+        final int align = getAlign(args.getAt(i++));
+        final boolean isVolatile = args.getAt(i++) != 0;
+        final long atomicOrdering = args.getAt(i++);
+        final long synchronizationScope = args.getAt(i);
 
         emit(StoreInstruction.fromSymbols(scope.getSymbols(), destination, source, align, isVolatile, atomicOrdering, synchronizationScope));
     }
 
-    private void createAtomicReadModifyWrite(long[] args) {
+    private void createAtomicReadModifyWrite(RecordBuffer args) {
         int i = 0;
 
-        final int ptr = getIndex(args[i++]);
+        final int ptr = getIndex(args.getAt(i++));
         final Type ptrType;
         if (scope.isValueForwardRef(ptr)) {
-            ptrType = types.get(args[i++]);
+            ptrType = types.get(args.getAt(i++));
         } else {
             ptrType = scope.getValueType(ptr);
         }
-        final int value = getIndex(args[i++]);
-        final int opcode = (int) args[i++];
-        final boolean isVolatile = args[i++] != 0;
-        final long atomicOrdering = args[i++];
-        final long synchronizationScope = args[i];
+        final int value = getIndex(args.getAt(i++));
+        final int opcode = (int) args.getAt(i++);
+        final boolean isVolatile = args.getAt(i++) != 0;
+        final long atomicOrdering = args.getAt(i++);
+        final long synchronizationScope = args.getAt(i);
 
         final Type type = ((PointerType) ptrType).getPointeeType();
 
         emit(ReadModifyWriteInstruction.fromSymbols(scope.getSymbols(), type, ptr, value, opcode, isVolatile, atomicOrdering, synchronizationScope));
     }
 
-    private void createFence(long[] args) {
+    private void createFence(RecordBuffer args) {
         int i = 0;
 
-        final long atomicOrdering = args[i++];
-        final long synchronizationScope = args[i];
+        final long atomicOrdering = args.getAt(i++);
+        final long synchronizationScope = args.getAt(i);
 
         emit(FenceInstruction.generate(atomicOrdering, synchronizationScope));
     }
 
-    private void createBinaryOperation(long[] args) {
+    private void createBinaryOperation(RecordBuffer args) {
         int i = 0;
         Type type;
-        int lhs = getIndex(args[i++]);
+        int lhs = getIndex(args.getAt(i++));
         if (scope.isValueForwardRef(lhs)) {
-            type = types.get(args[i++]);
+            type = types.get(args.getAt(i++));
         } else {
             type = scope.getValueType(lhs);
         }
-        int rhs = getIndex(args[i++]);
-        int opcode = (int) args[i++];
-        int flags = i < args.length ? (int) args[i] : 0;
+        int rhs = getIndex(args.getAt(i++));
+        int opcode = (int) args.getAt(i++);
+        int flags = i < args.size() ? (int) args.getAt(i) : 0;
 
         emit(BinaryOperationInstruction.fromSymbols(scope.getSymbols(), type, opcode, flags, lhs, rhs));
     }
 
-    private void createBranch(long[] args) {
-        if (args.length == 1) {
-            emit(BranchInstruction.fromTarget(function.getBlock(args[0])));
+    private void createBranch(RecordBuffer args) {
+        if (args.size() == 1) {
+            emit(BranchInstruction.fromTarget(function.getBlock(args.getAt(0))));
 
         } else {
-            final int condition = getIndex(args[2]);
-            final InstructionBlock trueSuccessor = function.getBlock(args[0]);
-            final InstructionBlock falseSuccessor = function.getBlock(args[1]);
+            final int condition = getIndex(args.getAt(2));
+            final InstructionBlock trueSuccessor = function.getBlock(args.getAt(0));
+            final InstructionBlock falseSuccessor = function.getBlock(args.getAt(1));
             emit(ConditionalBranchInstruction.fromSymbols(scope.getSymbols(), condition, trueSuccessor, falseSuccessor));
         }
 
         isLastBlockTerminated = true;
     }
 
-    private void createCast(long[] args) {
+    private void createCast(RecordBuffer args) {
         int i = 0;
-        int value = getIndex(args[i++]);
+        int value = getIndex(args.getAt(i++));
         if (scope.isValueForwardRef(value)) {
             i++;
         }
-        Type type = types.get(args[i++]);
-        int opcode = (int) args[i];
+        Type type = types.get(args.getAt(i++));
+        int opcode = (int) args.getAt(i);
 
         emit(CastInstruction.fromSymbols(scope.getSymbols(), type, opcode, value));
     }
 
-    private void createCompare2(long[] args) {
+    private void createCompare2(RecordBuffer args) {
         int i = 0;
         Type operandType;
-        int lhs = getIndex(args[i++]);
+        int lhs = getIndex(args.getAt(i++));
         if (scope.isValueForwardRef(lhs)) {
-            operandType = types.get(args[i++]);
+            operandType = types.get(args.getAt(i++));
         } else {
             operandType = scope.getValueType(lhs);
         }
-        int rhs = getIndex(args[i++]);
-        int opcode = (int) args[i];
+        int rhs = getIndex(args.getAt(i++));
+        int opcode = (int) args.getAt(i);
 
         Type type = operandType instanceof VectorType
                         ? new VectorType(PrimitiveType.I1, ((VectorType) operandType).getNumberOfElements())
@@ -792,50 +794,54 @@ public final class Function implements ParserListener {
         emit(CompareInstruction.fromSymbols(scope.getSymbols(), type, opcode, lhs, rhs));
     }
 
-    private void createExtractElement(long[] args) {
+    private void createExtractElement(RecordBuffer args) {
         int i = 0;
-        int vector = getIndex(args[i++]);
+        int vector = getIndex(args.getAt(i++));
 
         Type vectorType;
         if (scope.isValueForwardRef(vector)) {
-            vectorType = types.get(args[i++]);
+            vectorType = types.get(args.getAt(i++));
         } else {
             vectorType = scope.getValueType(vector);
         }
-        int index = getIndex(args[i]);
+        int index = getIndex(args.getAt(i));
 
         final Type elementType = ((VectorType) vectorType).getElementType();
         emit(ExtractElementInstruction.fromSymbols(scope.getSymbols(), elementType, vector, index));
     }
 
-    private void createExtractValue(long[] args) {
+    private void createExtractValue(RecordBuffer args) {
         int i = 0;
-        int aggregate = getIndex(args[i++]);
+        int aggregate = getIndex(args.getAt(i++));
         Type aggregateType = null;
         if (scope.isValueForwardRef(aggregate)) {
-            aggregateType = types.get(args[i++]);
+            aggregateType = types.get(args.getAt(i++));
         }
-        int index = (int) args[i++];
+        int index = (int) args.getAt(i++);
         if (aggregateType == null) {
             aggregateType = scope.getValueType(aggregate);
         }
 
-        if (i != args.length) {
+        if (i != args.size()) {
             throw new UnsupportedOperationException("Multiple indices are not yet supported!");
         }
 
+        emitExtractValue(aggregate, aggregateType, index);
+    }
+
+    private void emitExtractValue(int aggregate, Type aggregateType, int index) {
         final Type elementType = ((AggregateType) aggregateType).getElementType(index);
         emit(ExtractValueInstruction.fromSymbols(scope.getSymbols(), elementType, aggregate, index));
     }
 
-    private void createGetElementPointer(long[] args) {
+    private void createGetElementPointer(RecordBuffer args) {
         int i = 0;
-        boolean isInbounds = args[i++] != 0;
+        boolean isInbounds = args.getAt(i++) != 0;
         i++; // we do not use this parameter
-        int pointer = getIndex(args[i++]);
+        int pointer = getIndex(args.getAt(i++));
         Type base;
         if (scope.isValueForwardRef(pointer)) {
-            base = types.get(args[i++]);
+            base = types.get(args.getAt(i++));
         } else {
             base = scope.getValueType(pointer);
         }
@@ -845,12 +851,12 @@ public final class Function implements ParserListener {
         emit(GetElementPointerInstruction.fromSymbols(scope.getSymbols(), type, pointer, indices, isInbounds));
     }
 
-    private void createGetElementPointerOld(long[] args, boolean isInbounds) {
+    private void createGetElementPointerOld(RecordBuffer args, boolean isInbounds) {
         int i = 0;
-        int pointer = getIndex(args[i++]);
+        int pointer = getIndex(args.getAt(i++));
         Type base;
         if (scope.isValueForwardRef(pointer)) {
-            base = types.get(args[i++]);
+            base = types.get(args.getAt(i++));
         } else {
             base = scope.getValueType(pointer);
         }
@@ -860,111 +866,111 @@ public final class Function implements ParserListener {
         emit(GetElementPointerInstruction.fromSymbols(scope.getSymbols(), type, pointer, indices, isInbounds));
     }
 
-    private void createIndirectBranch(long[] args) {
-        int address = getIndex(args[1]);
-        int[] successors = new int[args.length - 2];
+    private void createIndirectBranch(RecordBuffer args) {
+        int address = getIndex(args.getAt(1));
+        int[] successors = new int[args.size() - 2];
         for (int i = 0; i < successors.length; i++) {
-            successors[i] = (int) args[i + 2];
+            successors[i] = (int) args.getAt(i + 2);
         }
 
         emit(IndirectBranchInstruction.generate(function, scope.getSymbols(), address, successors));
         isLastBlockTerminated = true;
     }
 
-    private void createInsertElement(long[] args) {
+    private void createInsertElement(RecordBuffer args) {
         int i = 0;
 
-        int vector = getIndex(args[i++]);
+        int vector = getIndex(args.getAt(i++));
         Type type;
         if (scope.isValueForwardRef(vector)) {
-            type = types.get(args[i++]);
+            type = types.get(args.getAt(i++));
         } else {
             type = scope.getValueType(vector);
         }
 
-        int value = getIndex(args[i++]);
-        int index = getIndex(args[i]);
+        int value = getIndex(args.getAt(i++));
+        int index = getIndex(args.getAt(i));
 
         emit(InsertElementInstruction.fromSymbols(scope.getSymbols(), type, vector, index, value));
     }
 
-    private void createInsertValue(long[] args) {
+    private void createInsertValue(RecordBuffer args) {
         int i = 0;
 
-        int aggregate = getIndex(args[i++]);
+        int aggregate = getIndex(args.getAt(i++));
         Type type;
         if (scope.isValueForwardRef(aggregate)) {
-            type = types.get(args[i++]);
+            type = types.get(args.getAt(i++));
         } else {
             type = scope.getValueType(aggregate);
         }
 
-        int value = getIndex(args[i++]);
+        int value = getIndex(args.getAt(i++));
         if (scope.isValueForwardRef(value)) {
             i++;
         }
 
-        int index = (int) args[i++];
+        int index = (int) args.getAt(i++);
 
-        if (args.length != i) {
+        if (args.size() != i) {
             throw new UnsupportedOperationException("Multiple indices are not yet supported!");
         }
 
         emit(InsertValueInstruction.fromSymbols(scope.getSymbols(), type, aggregate, index, value));
     }
 
-    private void createPhi(long[] args) {
-        Type type = types.get(args[0]);
-        int count = (args.length) - 1 >> 1;
+    private void createPhi(RecordBuffer args) {
+        Type type = types.get(args.getAt(0));
+        int count = (args.size()) - 1 >> 1;
         int[] values = new int[count];
         InstructionBlock[] blocks = new InstructionBlock[count];
         for (int i = 0, j = 1; i < count; i++) {
-            values[i] = getIndex(Records.toSignedValue(args[j++]));
-            blocks[i] = function.getBlock(args[j++]);
+            values[i] = getIndex(Records.toSignedValue(args.getAt(j++)));
+            blocks[i] = function.getBlock(args.getAt(j++));
         }
 
         emit(PhiInstruction.generate(scope.getSymbols(), type, values, blocks));
     }
 
-    private void createReturn(long[] args) {
-        if (args.length == 0 || args[0] == 0) {
+    private void createReturn(RecordBuffer args) {
+        if (args.size() == 0 || args.getAt(0) == 0) {
             emit(ReturnInstruction.generate());
         } else {
-            final int value = getIndex(args[0]);
+            final int value = getIndex(args.getAt(0));
             emit(ReturnInstruction.generate(scope.getSymbols(), value));
         }
 
         isLastBlockTerminated = true;
     }
 
-    private void createSelect(long[] args) {
+    private void createSelect(RecordBuffer args) {
         int i = 0;
         Type type;
-        int trueValue = getIndex(args[i++]);
+        int trueValue = getIndex(args.getAt(i++));
         if (scope.isValueForwardRef(trueValue)) {
-            type = types.get(args[i++]);
+            type = types.get(args.getAt(i++));
         } else {
             type = scope.getValueType(trueValue);
         }
-        int falseValue = getIndex(args[i++]);
-        int condition = getIndex(args[i]);
+        int falseValue = getIndex(args.getAt(i++));
+        int condition = getIndex(args.getAt(i));
 
         emit(SelectInstruction.fromSymbols(scope.getSymbols(), type, condition, trueValue, falseValue));
     }
 
-    private void createShuffleVector(long[] args) {
+    private void createShuffleVector(RecordBuffer args) {
         int i = 0;
 
-        int vector1 = getIndex(args[i++]);
+        int vector1 = getIndex(args.getAt(i++));
         Type vectorType;
         if (scope.isValueForwardRef(vector1)) {
-            vectorType = types.get(args[i++]);
+            vectorType = types.get(args.getAt(i++));
         } else {
             vectorType = scope.getValueType(vector1);
         }
 
-        int vector2 = getIndex(args[i++]);
-        int mask = getIndex(args[i]);
+        int vector2 = getIndex(args.getAt(i++));
+        int mask = getIndex(args.getAt(i));
 
         Type subtype = ((VectorType) vectorType).getElementType();
         int length = ((VectorType) scope.getValueType(mask)).getNumberOfElements();
@@ -973,41 +979,41 @@ public final class Function implements ParserListener {
         emit(ShuffleVectorInstruction.fromSymbols(scope.getSymbols(), type, vector1, vector2, mask));
     }
 
-    private void createStore(long[] args) {
+    private void createStore(RecordBuffer args) {
         int i = 0;
 
-        int destination = getIndex(args[i++]);
+        int destination = getIndex(args.getAt(i++));
         if (scope.isValueForwardRef(destination)) {
             i++;
         }
 
-        int source = getIndex(args[i++]);
+        int source = getIndex(args.getAt(i++));
         if (scope.isValueForwardRef(source)) {
             i++;
         }
 
-        int align = getAlign(args[i++]);
-        boolean isVolatile = args[i] != 0;
+        int align = getAlign(args.getAt(i++));
+        boolean isVolatile = args.getAt(i) != 0;
 
         emit(StoreInstruction.fromSymbols(scope.getSymbols(), destination, source, align, isVolatile));
     }
 
-    private void createStoreOld(long[] args) {
+    private void createStoreOld(RecordBuffer args) {
         int i = 0;
 
-        int destination = getIndex(args[i++]);
+        int destination = getIndex(args.getAt(i++));
         if (scope.isValueForwardRef(destination)) {
             i++;
         }
 
-        int source = getIndex(args[i++]);
-        int align = getAlign(args[i++]);
-        boolean isVolatile = args[i] != 0;
+        int source = getIndex(args.getAt(i++));
+        int align = getAlign(args.getAt(i++));
+        boolean isVolatile = args.getAt(i) != 0;
 
         emit(StoreInstruction.fromSymbols(scope.getSymbols(), destination, source, align, isVolatile));
     }
 
-    private void createUnreachable(@SuppressWarnings("unused") long[] args) {
+    private void createUnreachable(@SuppressWarnings("unused") RecordBuffer args) {
         emit(UnreachableInstruction.generate());
         isLastBlockTerminated = true;
     }
@@ -1049,11 +1055,11 @@ public final class Function implements ParserListener {
         }
     }
 
-    private List<Integer> getIndices(long[] arguments, int from) {
-        List<Integer> indices = new ArrayList<>(arguments.length - from);
+    private List<Integer> getIndices(RecordBuffer arguments, int from) {
+        List<Integer> indices = new ArrayList<>(arguments.size() - from);
         int i = from;
-        while (i < arguments.length) {
-            int index = getIndex(arguments[i++]);
+        while (i < arguments.size()) {
+            int index = getIndex(arguments.getAt(i++));
             if (scope.isValueForwardRef(index)) {
                 // type of forward referenced index
                 i++;
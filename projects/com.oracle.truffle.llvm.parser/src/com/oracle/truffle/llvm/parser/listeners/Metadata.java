@@ -70,6 +70,7 @@ import com.oracle.truffle.llvm.parser.metadata.ParseUtil;
 import com.oracle.truffle.llvm.parser.model.IRScope;
 import com.oracle.truffle.llvm.parser.records.DwTagRecord;
 import com.oracle.truffle.llvm.parser.records.MetadataRecord;
+import com.oracle.truffle.llvm.parser.scanner.RecordBuffer;
 import com.oracle.truffle.llvm.runtime.types.Type;
 
 public final class Metadata implements ParserListener {
@@ -101,8 +102,9 @@ public final class Metadata implements ParserListener {
 
     // https://github.com/llvm-mirror/llvm/blob/release_38/include/llvm/Bitcode/LLVMBitCodes.h#L191
     @Override
-    public void record(long id, long[] args) {
-        MetadataRecord record = MetadataRecord.decode(id);
+    public void record(RecordBuffer buffer) {
+        final long[] args = buffer.getOps();
+        MetadataRecord record = MetadataRecord.decode(buffer.getId());
         switch (record) {
             case STRING:
                 metadata.add(MDString.create(args));
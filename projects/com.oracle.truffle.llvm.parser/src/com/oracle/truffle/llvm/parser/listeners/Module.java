@@ -48,6 +48,7 @@ import com.oracle.truffle.llvm.parser.records.ModuleRecord;
 import com.oracle.truffle.llvm.parser.records.Records;
 import com.oracle.truffle.llvm.parser.scanner.Block;
 import com.oracle.truffle.llvm.parser.scanner.LLVMScanner;
+import com.oracle.truffle.llvm.parser.scanner.RecordBuffer;
 import com.oracle.truffle.llvm.runtime.types.FunctionType;
 import com.oracle.truffle.llvm.runtime.types.PointerType;
 import com.oracle.truffle.llvm.runtime.types.Type;
@@ -256,8 +257,9 @@ public final class Module implements ParserListener {
     }
 
     @Override
-    public void record(long id, long[] args) {
-        final ModuleRecord record = ModuleRecord.decode(id);
+    public void record(RecordBuffer buffer) {
+        final long[] args = buffer.getOps();
+        final ModuleRecord record = ModuleRecord.decode(buffer.getId());
         switch (record) {
             case VERSION:
                 mode = (int) args[0];
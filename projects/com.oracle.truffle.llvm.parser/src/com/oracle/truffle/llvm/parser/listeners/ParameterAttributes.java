@@ -35,6 +35,7 @@ import java.util.List;
 import com.oracle.truffle.llvm.parser.model.attributes.Attribute;
 import com.oracle.truffle.llvm.parser.model.attributes.AttributesCodeEntry;
 import com.oracle.truffle.llvm.parser.model.attributes.AttributesGroup;
+import com.oracle.truffle.llvm.parser.scanner.RecordBuffer;
 
 public class ParameterAttributes implements ParserListener {
 
@@ -70,8 +71,9 @@ public class ParameterAttributes implements ParserListener {
     }
 
     @Override
-    public void record(long id, long[] args) {
-        switch ((int) id) {
+    public void record(RecordBuffer buffer) {
+        final long[] args = buffer.getOps();
+        switch ((int) buffer.getId()) {
             case PARAMATTR_CODE_ENTRY_OLD:
                 decodeOldCodeEntry(args);
                 break;
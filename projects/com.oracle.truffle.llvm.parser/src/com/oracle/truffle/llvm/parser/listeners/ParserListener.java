@@ -31,6 +31,7 @@ package com.oracle.truffle.llvm.parser.listeners;
 
 import com.oracle.truffle.llvm.parser.scanner.Block;
 import com.oracle.truffle.llvm.parser.scanner.LLVMScanner;
+import com.oracle.truffle.llvm.parser.scanner.RecordBuffer;
 
 public interface ParserListener {
 
@@ -45,8 +46,11 @@ public interface ParserListener {
     default void exit() {
     }
 
-    void record(long id, long[] args);
+    /**
+     * Called for every record in the current block. The buffer is only valid during this call.
+     */
+    void record(RecordBuffer buffer);
 
-    ParserListener DEFAULT = (id, args) -> {
+    ParserListener DEFAULT = buffer -> {
     };
 }
@@ -30,6 +30,7 @@
 package com.oracle.truffle.llvm.parser.listeners;
 
 import com.oracle.truffle.llvm.parser.model.ValueSymbol;
+import com.oracle.truffle.llvm.parser.scanner.RecordBuffer;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -46,7 +47,8 @@ final class StringTable implements ParserListener {
     }
 
     @Override
-    public void record(long id, long[] args) {
+    public void record(RecordBuffer buffer) {
+        final long[] args = buffer.getOps();
         final byte[] bytes = new byte[args.length * Long.BYTES];
         int curByte = 0;
         for (long arg : args) {
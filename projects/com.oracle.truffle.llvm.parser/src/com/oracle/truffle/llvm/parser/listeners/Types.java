@@ -33,6 +33,7 @@ import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.llvm.parser.model.ModelModule;
 import com.oracle.truffle.llvm.parser.records.Records;
 import com.oracle.truffle.llvm.parser.records.TypesRecord;
+import com.oracle.truffle.llvm.parser.scanner.RecordBuffer;
 import com.oracle.truffle.llvm.runtime.interop.access.LLVMInteropType;
 import com.oracle.truffle.llvm.runtime.types.ArrayType;
 import com.oracle.truffle.llvm.runtime.types.DataSpecConverter;
@@ -73,13 +74,13 @@ public final class Types implements ParserListener, Iterable<Type> {
     }
 
     @Override
-    public void record(long id, long[] args) {
-        TypesRecord record = TypesRecord.decode(id);
+    public void record(RecordBuffer args) {
+        TypesRecord record = TypesRecord.decode(args.getId());
         Type type;
 
         switch (record) {
             case NUMBER_OF_ENTRIES:
-                table = new Type[(int) args[0]];
+                table = new Type[(int) args.getAt(0)];
                 return;
 
             case VOID:
@@ -109,18 +110,18 @@ public final class Types implements ParserListener, Iterable<Type> {
                 break;
 
             case INTEGER:
-                type = Type.getIntegerType((int) args[0]);
+                type = Type.getIntegerType((int) args.getAt(0));
                 break;
 
             case POINTER: {
                 final PointerType pointerType = new PointerType(null);
-                setType((int) args[0], pointerType::setPointeeType);
+                setType((int) args.getAt(0), pointerType::setPointeeType);
                 type = pointerType;
                 break;
             }
             case FUNCTION_OLD: {
-                final FunctionType functionType = new FunctionType(null, toTypes(args, 3, args.length), args[0] != 0);
-                setType((int) args[2], functionType::setReturnType);
+                final FunctionType functionType = new FunctionType(null, toTypes(args, 3, args.size()), args.getAt(0) != 0);
+                setType((int) args.getAt(2), functionType::setReturnType);
                 type = functionType;
                 break;
             }
@@ -129,15 +130,15 @@ public final class Types implements ParserListener, Iterable<Type> {
                 break;
 
             case ARRAY: {
-                final ArrayType arrayType = new ArrayType(null, (int) args[0]);
-                setType((int) args[1], arrayType::setElementType);
+                final ArrayType arrayType = new ArrayType(null, (int) args.getAt(0));
+                setType((int) args.getAt(1), arrayType::setElementType);
                 type = arrayType;
                 break;
             }
 
             case VECTOR: {
-                final VectorType vectorType = new VectorType(null, (int) args[0]);
-                setType((int) args[1], vectorType::setElementType);
+                final VectorType vectorType = new VectorType(null, (int) args.getAt(0));
+                setType((int) args.getAt(1), vectorType::setElementType);
                 type = vectorType;
                 break;
             }
@@ -163,14 +164,14 @@ public final class Types implements ParserListener, Iterable<Type> {
                 break;
 
             case STRUCT_NAME: {
-                structName = Records.toString(args);
+                structName = Records.toString(args.getOps());
                 return;
             }
 
             case STRUCT_ANON:
             case STRUCT_NAMED: {
-                final boolean isPacked = args[0] != 0;
-                final Type[] members = toTypes(args, 1, args.length);
+                final boolean isPacked = args.getAt(0) != 0;
+                final Type[] members = toTypes(args, 1, args.size());
                 if (structName != null) {
                     type = new StructureType(LLVMIdentifier.toTypeIdentifier(structName), isPacked, members);
                     structName = null;
@@ -181,8 +182,8 @@ public final class Types implements ParserListener, Iterable<Type> {
                 break;
             }
             case FUNCTION: {
-                final FunctionType functionType = new FunctionType(null, toTypes(args, 2, args.length), args[0] != 0);
-                setType((int) args[1], functionType::setReturnType);
+                final FunctionType functionType = new FunctionType(null, toTypes(args, 2, args.size()), args.getAt(0) != 0);
+                setType((int) args.getAt(1), functionType::setReturnType);
                 type = functionType;
                 break;
             }
@@ -215,11 +216,11 @@ public final class Types implements ParserListener, Iterable<Type> {
         }
     }
 
-    private Type[] toTypes(long[] args, int from, int to) {
+    private Type[] toTypes(RecordBuffer args, int from, int to) {
         final Type[] types = new Type[to - from];
 
         for (int i = 0; i < types.length; i++) {
-            final int typeIndex = (int) args[from + i];
+            final int typeIndex = (int) args.getAt(from + i);
             if (typeIndex < size) {
                 types[i] = table[typeIndex];
 
@@ -32,6 +32,7 @@ package com.oracle.truffle.llvm.parser.listeners;
 import com.oracle.truffle.llvm.parser.model.IRScope;
 import com.oracle.truffle.llvm.parser.records.Records;
 import com.oracle.truffle.llvm.parser.records.ValueSymbolTableRecord;
+import com.oracle.truffle.llvm.parser.scanner.RecordBuffer;
 
 public final class ValueSymbolTable implements ParserListener {
 
@@ -42,8 +43,9 @@ public final class ValueSymbolTable implements ParserListener {
     }
 
     @Override
-    public void record(long id, long[] args) {
-        final ValueSymbolTableRecord record = ValueSymbolTableRecord.decode(id);
+    public void record(RecordBuffer buffer) {
+        final long[] args = buffer.getOps();
+        final ValueSymbolTableRecord record = ValueSymbolTableRecord.decode(buffer.getId());
         switch (record) {
             case ENTRY:
                 final String entryName = Records.toString(args, 1);
@@ -29,6 +29,8 @@
  */
 package com.oracle.truffle.llvm.parser.metadata;
 
+import com.oracle.truffle.llvm.parser.scanner.RecordBuffer;
+
 public final class MDLocation implements MDBaseNode {
 
     private final long line;
@@ -97,13 +99,13 @@ public final class MDLocation implements MDBaseNode {
     private static final int ARG_SCOPE = 2;
     private static final int ARG_INLINEDAT = 3;
 
-    public static MDLocation createFromFunctionArgs(long[] args, MetadataValueList md) {
-        final long line = args[ARG_LINE];
-        final long col = args[ARG_COL];
+    public static MDLocation createFromFunctionArgs(RecordBuffer args, MetadataValueList md) {
+        final long line = args.getAt(ARG_LINE);
+        final long col = args.getAt(ARG_COL);
 
         final MDLocation location = new MDLocation(line, col);
-        location.scope = md.getNullable(args[ARG_SCOPE], location);
-        location.inlinedAt = md.getNullable(args[ARG_INLINEDAT], location);
+        location.scope = md.getNullable(args.getAt(ARG_SCOPE), location);
+        location.inlinedAt = md.getNullable(args.getAt(ARG_INLINEDAT), location);
 
         return location;
     }
@@ -32,8 +32,6 @@ package com.oracle.truffle.llvm.parser.metadata.debuginfo;
 import java.math.BigInteger;
 import java.util.Map;
 
-import com.oracle.truffle.api.source.Source;
-import com.oracle.truffle.api.source.SourceSection;
 import com.oracle.truffle.llvm.parser.metadata.DwarfOpcode;
 import com.oracle.truffle.llvm.parser.metadata.MDBaseNode;
 import com.oracle.truffle.llvm.parser.metadata.MDCompileUnit;
@@ -55,7 +53,6 @@ import com.oracle.truffle.llvm.parser.model.symbols.globals.GlobalAlias;
 import com.oracle.truffle.llvm.parser.model.symbols.globals.GlobalValueSymbol;
 import com.oracle.truffle.llvm.parser.model.symbols.globals.GlobalVariable;
 import com.oracle.truffle.llvm.parser.model.visitors.ModelVisitor;
-import com.oracle.truffle.llvm.runtime.debug.LLVMSourceFunctionType;
 import com.oracle.truffle.llvm.runtime.debug.LLVMSourceStaticMemberType;
 import com.oracle.truffle.llvm.runtime.debug.LLVMSourceSymbol;
 import com.oracle.truffle.llvm.runtime.debug.LLVMSourceType;
@@ -70,7 +67,15 @@ public final class DebugInfoModuleProcessor {
     private DebugInfoModuleProcessor() {
     }
 
-    public static void processModule(ModelModule irModel, Source bitcodeSource, MetadataValueList metadata) {
+    /**
+     * Attaches the source-level symbols to the global symbols of the module. The source-level view
+     * of functions is only built once a function is parsed, and the global variables declared by
+     * the compile units are only collected on demand by
+     * {@link ModelModule#processSourceGlobals()}, since only source-level inspection needs them.
+     * The metadata itself is decoded eagerly, because function blocks index into the module-level
+     * metadata list.
+     */
+    public static void processModule(ModelModule irModel, MetadataValueList metadata) {
         MDUpgrade.perform(metadata);
 
         final DebugInfoCache cache = new DebugInfoCache(metadata, irModel.getSourceStaticMembers());
@@ -78,12 +83,11 @@ public final class DebugInfoModuleProcessor {
         final Map<LLVMSourceSymbol, SymbolImpl> globals = irModel.getSourceGlobals();
         final Map<LLVMSourceStaticMemberType, SymbolImpl> staticMembers = irModel.getSourceStaticMembers();
 
-        irModel.accept(new SymbolProcessor(cache, bitcodeSource, globals, staticMembers));
+        irModel.accept(new SymbolProcessor(cache, globals, staticMembers));
 
         final MDBaseNode cuNode = metadata.getNamedNode(MDNamedNode.COMPILEUNIT_NAME);
-        final MetadataProcessor mdParser = new MetadataProcessor(cache, globals, staticMembers);
         if (cuNode != null) {
-            cuNode.accept(mdParser);
+            irModel.setSourceGlobalsProcessor(() -> cuNode.accept(new MetadataProcessor(cache, globals, staticMembers)));
         }
 
         irModel.setFunctionProcessor(new DebugInfoFunctionProcessor(cache));
@@ -92,13 +96,11 @@ public final class DebugInfoModuleProcessor {
     private static final class SymbolProcessor implements ModelVisitor {
 
         private final DebugInfoCache cache;
-        private final Source bitcodeSource;
         private final Map<LLVMSourceSymbol, SymbolImpl> sourceGlobals;
         private final Map<LLVMSourceStaticMemberType, SymbolImpl> sourceStaticMembers;
 
-        SymbolProcessor(DebugInfoCache cache, Source bitcodeSource, Map<LLVMSourceSymbol, SymbolImpl> sourceGlobals, Map<LLVMSourceStaticMemberType, SymbolImpl> sourceStaticMembers) {
+        SymbolProcessor(DebugInfoCache cache, Map<LLVMSourceSymbol, SymbolImpl> sourceGlobals, Map<LLVMSourceStaticMemberType, SymbolImpl> sourceStaticMembers) {
             this.cache = cache;
-            this.bitcodeSource = bitcodeSource;
             this.sourceGlobals = sourceGlobals;
             this.sourceStaticMembers = sourceStaticMembers;
         }
@@ -109,30 +111,8 @@ public final class DebugInfoModuleProcessor {
 
         @Override
         public void visit(FunctionDefinition function) {
-            final MDBaseNode debugInfo = getDebugInfo(function);
-            LLVMSourceLocation scope = null;
-            LLVMSourceFunctionType type = null;
-            if (debugInfo != null) {
-                scope = cache.buildLocation(debugInfo);
-
-                final LLVMSourceType parsedType = cache.parseType(debugInfo);
-                if (parsedType instanceof LLVMSourceFunctionType) {
-                    type = (LLVMSourceFunctionType) parsedType;
-                }
-            }
-
-            if (scope == null) {
-                final String sourceText = String.format("%s:%s", bitcodeSource.getName(), function.getName());
-                final Source irSource = Source.newBuilder(sourceText).mimeType(DIScopeBuilder.getMimeType(null)).name(sourceText).build();
-                final SourceSection simpleSection = irSource.createSection(1);
-                scope = LLVMSourceLocation.createBitcodeFunction(function.getName(), simpleSection);
-            }
-
-            final SourceFunction sourceFunction = new SourceFunction(scope, type);
-            function.setSourceFunction(sourceFunction);
-            for (SourceVariable local : sourceFunction.getVariables()) {
-                local.processFragments();
-            }
+            // the source function is created by the DebugInfoFunctionProcessor when the function
+            // is parsed
         }
 
         private void visitGlobal(GlobalValueSymbol global) {
@@ -68,6 +68,7 @@ public final class ModelModule {
     private final Map<FunctionDefinition, LazyFunctionParser> lazyFunctionParsers = new HashMap<>();
     private TargetDataLayout targetDataLayout = defaultLayout;
     private DebugInfoFunctionProcessor functionProcessor = null;
+    private Runnable sourceGlobalsProcessor = null;
 
     public ModelModule() {
     }
@@ -150,6 +151,27 @@ public final class ModelModule {
         return sourceStaticMembers;
     }
 
+    /**
+     * Sets the walk over the compile units that {@link #processSourceGlobals()} runs. The metadata
+     * it walks is already decoded when the module is scanned, only building the source-level
+     * globals from it is deferred.
+     */
+    public void setSourceGlobalsProcessor(Runnable sourceGlobalsProcessor) {
+        this.sourceGlobalsProcessor = sourceGlobalsProcessor;
+    }
+
+    /**
+     * Collects the source-level global variables and static members of the module from its
+     * already decoded debug information, if this has not happened yet.
+     */
+    public void processSourceGlobals() {
+        if (sourceGlobalsProcessor != null) {
+            final Runnable processor = sourceGlobalsProcessor;
+            sourceGlobalsProcessor = null;
+            processor.run();
+        }
+    }
+
     public DebugInfoFunctionProcessor getFunctionProcessor() {
         return functionProcessor;
     }
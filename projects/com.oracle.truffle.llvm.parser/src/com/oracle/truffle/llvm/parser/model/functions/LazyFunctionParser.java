@@ -39,7 +39,7 @@ public final class LazyFunctionParser {
     private final LLVMScanner.LazyScanner scanner;
     private final Function parser;
 
-    private boolean isParsed;
+    private volatile boolean isParsed;
 
     public LazyFunctionParser(LLVMScanner.LazyScanner scanner, Function parser) {
         this.scanner = scanner;
@@ -47,12 +47,21 @@ public final class LazyFunctionParser {
         this.isParsed = false;
     }
 
+    /**
+     * Parses the function body if this has not happened yet. The scanner is independent of all other
+     * lazy scanners, but the functions of a module share the module's scope to resolve their
+     * symbols, so this only runs concurrently with functions of other modules.
+     */
     public void parse(DebugInfoFunctionProcessor diProcessor, Source bitcodeSource) {
         if (!isParsed) {
-            parser.setupScope();
-            scanner.scanBlock(parser);
-            diProcessor.process(parser.getFunction(), parser.getScope(), bitcodeSource);
-            isParsed = true;
+            synchronized (parser.getScope()) {
+                if (!isParsed) {
+                    parser.setupScope();
+                    scanner.scanBlock(parser);
+                    diProcessor.process(parser.getFunction(), parser.getScope(), bitcodeSource);
+                    isParsed = true;
+                }
+            }
         }
     }
 }
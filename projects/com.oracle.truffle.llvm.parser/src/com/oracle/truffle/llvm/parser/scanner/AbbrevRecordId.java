@@ -31,6 +31,9 @@ package com.oracle.truffle.llvm.parser.scanner;
 
 final class AbbrevRecordId {
 
+    // not an encoding in the bitcode, used for literal operands of compiled abbreviations
+    static final int LITERAL = 0;
+
     static final int FIXED = 1;
 
     static final int VBR = 2;
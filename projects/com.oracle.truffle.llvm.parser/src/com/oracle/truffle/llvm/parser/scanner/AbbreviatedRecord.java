@@ -29,9 +29,31 @@
  */
 package com.oracle.truffle.llvm.parser.scanner;
 
-@FunctionalInterface
-interface AbbreviatedRecord {
+/**
+ * A compiled abbreviation definition. Every operand is described by its encoding and either its
+ * literal value or its width, so that the scanner can decode a record in a single loop. The element
+ * of an array operand directly follows the array operand.
+ */
+final class AbbreviatedRecord {
+
+    private final int[] encodings;
+    private final long[] values;
+
+    AbbreviatedRecord(int[] encodings, long[] values) {
+        assert encodings.length == values.length;
+        this.encodings = encodings;
+        this.values = values;
+    }
+
+    int getOperandCount() {
+        return encodings.length;
+    }
 
-    void scan();
+    int getEncoding(int index) {
+        return encodings[index];
+    }
 
+    long getValue(int index) {
+        return values[index];
+    }
 }
@@ -30,31 +30,47 @@
 package com.oracle.truffle.llvm.parser.scanner;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
+/**
+ * Reads bit fields from a little-endian bitstream. The stream is read a 64-bit word at a time, and
+ * the current and the following word are cached so that the sequential reads of the scanner only
+ * touch the underlying buffer once per word. Because of this cache, instances are not thread-safe.
+ */
 public final class BitStream {
 
     private static final long BYTE_MASK = 0xffL;
+    private static final int WORD_SHIFT = 6;
+    private static final long BIT_INDEX_MASK = Long.SIZE - 1;
+
     private final ByteBuffer bitstream;
+    private final ByteBuffer words;
+    private final int limit;
+
+    private long currentWordIndex;
+    private long currentWord;
+    private long nextWord;
 
     private BitStream(ByteBuffer bitstream) {
         this.bitstream = bitstream;
+        this.words = bitstream.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        this.limit = bitstream.limit();
+        this.currentWordIndex = 0;
+        this.currentWord = loadWord(0);
+        this.nextWord = loadWord(1);
     }
 
     public static BitStream create(ByteBuffer bytes) {
-
         return new BitStream(bytes);
     }
 
     public static BitStream createFromBlob(long[] args, int blobStartIndex) {
-        final byte[] blob = new byte[(args.length - blobStartIndex) * Long.BYTES];
-        int to = 0;
+        final ByteBuffer blob = ByteBuffer.allocate((args.length - blobStartIndex) * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
         for (int from = blobStartIndex; from < args.length; from++) {
-            final long l = args[from];
-            for (int i = 0; i < Long.BYTES; i++) {
-                blob[to++] = (byte) ((l >> (Byte.SIZE * i)) & BYTE_MASK);
-            }
+            blob.putLong(args[from]);
         }
-        return new BitStream(ByteBuffer.wrap(blob));
+        blob.flip();
+        return new BitStream(blob);
     }
 
     public static long widthVBR(long value, long width) {
@@ -78,11 +94,25 @@ public final class BitStream {
     }
 
     public long readVBR(long offset, long width) {
+        final long dmask = 1L << (width - 1);
+        final long window = read(offset);
+
+        // decode as many chunks as possible from a single word, this covers almost all values
         long value = 0;
         long shift = 0;
+        long consumed = 0;
+        while (consumed + width <= Long.SIZE) {
+            final long datum = window >>> consumed;
+            value += (datum & (dmask - 1)) << shift;
+            if ((datum & dmask) == 0) {
+                return value;
+            }
+            consumed += width;
+            shift += width - 1;
+        }
+
         long datum;
-        long o = offset;
-        long dmask = 1 << (width - 1);
+        long o = offset + consumed;
         do {
             datum = read(o, width);
             o += width;
@@ -93,25 +123,46 @@ public final class BitStream {
     }
 
     public long size() {
-        return bitstream.limit() * Byte.SIZE;
+        return limit * (long) Byte.SIZE;
     }
 
+    /**
+     * Reads the 64 bits starting at {@code offset}.
+     */
     private long read(long offset) {
-        long div = offset / Byte.SIZE;
-        long value = 0;
-        for (int i = 0; i < Byte.SIZE; i++) {
-            value += readAlignedByte(div + i) << (i * Byte.SIZE);
+        final long wordIndex = offset >>> WORD_SHIFT;
+        if (wordIndex != currentWordIndex) {
+            seek(wordIndex);
         }
-        long mod = offset & (Byte.SIZE - 1L);
-        if (mod != 0) {
-            value >>>= mod;
-            value += readAlignedByte(div + Byte.SIZE) << (Long.SIZE - mod);
+        final long bitIndex = offset & BIT_INDEX_MASK;
+        if (bitIndex == 0) {
+            return currentWord;
         }
-        return value;
+        return (currentWord >>> bitIndex) | (nextWord << (Long.SIZE - bitIndex));
+    }
+
+    private void seek(long wordIndex) {
+        if (wordIndex == currentWordIndex + 1) {
+            currentWord = nextWord;
+        } else {
+            currentWord = loadWord(wordIndex);
+        }
+        nextWord = loadWord(wordIndex + 1);
+        currentWordIndex = wordIndex;
     }
 
-    private long readAlignedByte(long i) {
-        return i < bitstream.capacity() ? bitstream.get((int) i) & BYTE_MASK : 0;
+    private long loadWord(long wordIndex) {
+        final long byteIndex = wordIndex * Long.BYTES;
+        if (byteIndex + Long.BYTES <= limit) {
+            return words.getLong((int) byteIndex);
+        }
+
+        // the last word of the stream may be incomplete, missing bytes read as zero
+        long value = 0;
+        for (int i = 0; i < Long.BYTES && byteIndex + i < limit; i++) {
+            value |= (words.get((int) (byteIndex + i)) & BYTE_MASK) << (i * Byte.SIZE);
+        }
+        return value;
     }
 
     public ByteBuffer getBitstream() {
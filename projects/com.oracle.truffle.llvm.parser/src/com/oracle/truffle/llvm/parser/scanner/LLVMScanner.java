@@ -40,7 +40,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import com.oracle.truffle.api.source.Source;
 import com.oracle.truffle.llvm.parser.elf.ElfDynamicSection;
 import com.oracle.truffle.llvm.parser.elf.ElfFile;
 import com.oracle.truffle.llvm.parser.elf.ElfSectionHeaderTable.Entry;
@@ -60,11 +59,13 @@ public final class LLVMScanner {
 
     private static final int MAX_BLOCK_DEPTH = 3;
 
-    private final List<List<AbbreviatedRecord>> abbreviationDefinitions = new ArrayList<>();
+    private final List<AbbreviatedRecord> abbreviationDefinitions = new ArrayList<>();
 
     private final BitStream bitstream;
 
-    private final Map<Block, List<List<AbbreviatedRecord>>> defaultAbbreviations = new HashMap<>();
+    private final Map<Block, List<AbbreviatedRecord>> defaultAbbreviations;
+
+    private Map<Block, List<AbbreviatedRecord>> defaultAbbreviationsSnapshot;
 
     private final Deque<ScannerState> parents = new ArrayDeque<>(MAX_BLOCK_DEPTH);
 
@@ -78,15 +79,24 @@ public final class LLVMScanner {
 
     private long offset;
 
-    private LLVMScanner(BitStream bitstream, ParserListener listener) {
+    private LLVMScanner(BitStream bitstream, ParserListener listener, Map<Block, List<AbbreviatedRecord>> defaultAbbreviations) {
         this.bitstream = bitstream;
+        this.defaultAbbreviations = defaultAbbreviations;
+        this.defaultAbbreviationsSnapshot = null;
         this.parser = listener;
         this.block = Block.ROOT;
         this.idSize = DEFAULT_ID_SIZE;
         this.offset = 0;
     }
 
-    public static ModelModule parse(Source source, ByteBuffer bytes) {
+    public static ModelModule parse(ByteBuffer bytes) {
+        return parse(bytes, null);
+    }
+
+    /**
+     * @param cache the cache to look up the scanned module in, or null if no cache should be used
+     */
+    public static ModelModule parse(ByteBuffer bytes, ModuleCache cache) {
         assert bytes != null;
         if (!isSupportedFile(bytes)) {
             return null;
@@ -133,7 +143,7 @@ public final class LLVMScanner {
             throw new RuntimeException("Not a valid input file!");
         }
 
-        parseBitcodeBlock(source, bitcode, model);
+        parseBitcodeBlock(bitcode, model, cache);
 
         return model;
     }
@@ -145,10 +155,17 @@ public final class LLVMScanner {
         return magicWord == BC_MAGIC_WORD || magicWord == WRAPPER_MAGIC_WORD || magicWord == ELF_MAGIC_WORD;
     }
 
-    private static void parseBitcodeBlock(Source source, ByteBuffer bitcode, ModelModule model) {
+    private static void parseBitcodeBlock(ByteBuffer bitcode, ModelModule model, ModuleCache cache) {
+        final BCFileRoot fileParser = new BCFileRoot(model);
+        final ModuleCache.Entry cacheEntry = cache != null ? cache.getEntry(bitcode) : null;
+        if (cacheEntry != null && cacheEntry.replay(fileParser)) {
+            fileParser.exit();
+            return;
+        }
+
         final BitStream bitstream = BitStream.create(bitcode);
-        final BCFileRoot fileParser = new BCFileRoot(source, model);
-        final LLVMScanner scanner = new LLVMScanner(bitstream, fileParser);
+        final ParserListener listener = cacheEntry != null ? cacheEntry.record(fileParser) : fileParser;
+        final LLVMScanner scanner = new LLVMScanner(bitstream, listener, new HashMap<>());
         final long actualMagicWord = scanner.read(Integer.SIZE);
         if (actualMagicWord != BC_MAGIC_WORD) {
             throw new RuntimeException("Not a valid Bitcode File!");
@@ -156,6 +173,10 @@ public final class LLVMScanner {
 
         scanner.scanToEnd();
 
+        if (cacheEntry != null) {
+            cacheEntry.store();
+        }
+
         // the root block does not exist in the LLVM file and is therefore never exited by the
         // scanner
         fileParser.exit();
@@ -228,10 +249,63 @@ public final class LLVMScanner {
     }
 
     private void abbreviatedRecord(int recordId) {
-        abbreviationDefinitions.get(recordId - BuiltinIDs.CUSTOM_ABBREV_OFFSET).forEach(AbbreviatedRecord::scan);
+        final AbbreviatedRecord abbreviation = abbreviationDefinitions.get(recordId - BuiltinIDs.CUSTOM_ABBREV_OFFSET);
+        final int operandCount = abbreviation.getOperandCount();
+        for (int i = 0; i < operandCount; i++) {
+            final int encoding = abbreviation.getEncoding(i);
+            if (encoding == AbbrevRecordId.ARRAY) {
+                // arrays only occur as the second to last operand in an abbreviation, just before
+                // their element type
+                final int elementEncoding = abbreviation.getEncoding(i + 1);
+                final long elementValue = abbreviation.getValue(i + 1);
+                final long arrayLength = read(Primitive.USER_OPERAND_ARRAY_LENGTH);
+                recordBuffer.ensureFits(arrayLength);
+                for (int j = 0; j < arrayLength; j++) {
+                    recordBuffer.addOpNoCheck(readScalarOperand(elementEncoding, elementValue));
+                }
+                break;
+            } else if (encoding == AbbrevRecordId.BLOB) {
+                readBlob();
+            } else {
+                recordBuffer.addOp(readScalarOperand(encoding, abbreviation.getValue(i)));
+            }
+        }
         passRecordToParser();
     }
 
+    private long readScalarOperand(int encoding, long value) {
+        switch (encoding) {
+            case AbbrevRecordId.LITERAL:
+                return value;
+
+            case AbbrevRecordId.FIXED:
+                return read((int) value);
+
+            case AbbrevRecordId.VBR:
+                return readVBR(value);
+
+            case AbbrevRecordId.CHAR6:
+                return readChar();
+
+            default:
+                throw new IllegalStateException("Unexpected Record Type Id: " + encoding);
+        }
+    }
+
+    private void readBlob() {
+        long blobLength = read(Primitive.USER_OPERAND_BLOB_LENGTH);
+        alignInt();
+        final long maxBlobPartLength = Long.SIZE / Primitive.USER_OPERAND_LITERAL.getBits();
+        recordBuffer.ensureFits(blobLength / maxBlobPartLength);
+        while (blobLength > 0) {
+            final long l = blobLength <= maxBlobPartLength ? blobLength : maxBlobPartLength;
+            final long blobValue = read((int) (Primitive.USER_OPERAND_LITERAL.getBits() * l));
+            recordBuffer.addOp(blobValue);
+            blobLength -= l;
+        }
+        alignInt();
+    }
+
     private void alignInt() {
         long mask = Integer.SIZE - 1;
         if ((offset & mask) != 0) {
@@ -240,94 +314,42 @@ public final class LLVMScanner {
     }
 
     private void defineAbbreviation() {
-        final long operandCount = read(Primitive.ABBREVIATED_RECORD_OPERANDS);
+        final int operandCount = (int) read(Primitive.ABBREVIATED_RECORD_OPERANDS);
 
-        final List<AbbreviatedRecord> operandScanners = new ArrayList<>((int) operandCount);
+        final int[] encodings = new int[operandCount];
+        final long[] values = new long[operandCount];
 
-        int i = 0;
-        boolean containsArrayOperand = false;
-        while (i < operandCount) {
+        for (int i = 0; i < operandCount; i++) {
             // first operand contains the record id
 
             final boolean isLiteral = read(Primitive.USER_OPERAND_LITERALBIT) == 1;
             if (isLiteral) {
-                final long fixedValue = read(Primitive.USER_OPERAND_LITERAL);
-                operandScanners.add(() -> recordBuffer.addOp(fixedValue));
+                encodings[i] = AbbrevRecordId.LITERAL;
+                values[i] = read(Primitive.USER_OPERAND_LITERAL);
 
             } else {
 
-                final long recordType = read(Primitive.USER_OPERAND_TYPE);
+                final int recordType = (int) read(Primitive.USER_OPERAND_TYPE);
+                encodings[i] = recordType;
 
-                switch ((int) recordType) {
-                    case AbbrevRecordId.FIXED: {
-                        final int width = (int) read(Primitive.USER_OPERAND_DATA);
-                        operandScanners.add(() -> {
-                            final long op = read(width);
-                            recordBuffer.addOp(op);
-                        });
+                switch (recordType) {
+                    case AbbrevRecordId.FIXED:
+                    case AbbrevRecordId.VBR:
+                        values[i] = read(Primitive.USER_OPERAND_DATA);
                         break;
-                    }
-
-                    case AbbrevRecordId.VBR: {
-                        final int width = (int) read(Primitive.USER_OPERAND_DATA);
-                        operandScanners.add(() -> {
-                            final long op = readVBR(width);
-                            recordBuffer.addOp(op);
-                        });
-                        break;
-                    }
 
                     case AbbrevRecordId.ARRAY:
-                        // arrays only occur as the second to last operand in an abbreviation, just
-                        // before their element type
-                        // then this can only be executed once for any abbreviation
-                        containsArrayOperand = true;
-                        break;
-
                     case AbbrevRecordId.CHAR6:
-                        operandScanners.add(() -> {
-                            final long op = readChar();
-                            recordBuffer.addOp(op);
-                        });
-                        break;
-
                     case AbbrevRecordId.BLOB:
-                        operandScanners.add(() -> {
-                            long blobLength = read(Primitive.USER_OPERAND_BLOB_LENGTH);
-                            alignInt();
-                            final long maxBlobPartLength = Long.SIZE / Primitive.USER_OPERAND_LITERAL.getBits();
-                            recordBuffer.ensureFits(blobLength / maxBlobPartLength);
-                            while (blobLength > 0) {
-                                final long l = blobLength <= maxBlobPartLength ? blobLength : maxBlobPartLength;
-                                final long blobValue = read((int) (Primitive.USER_OPERAND_LITERAL.getBits() * l));
-                                recordBuffer.addOp(blobValue);
-                                blobLength -= l;
-                            }
-                            alignInt();
-                        });
                         break;
 
                     default:
                         throw new IllegalStateException("Unexpected Record Type Id: " + recordType);
                 }
             }
-
-            i++;
         }
 
-        if (containsArrayOperand) {
-            final AbbreviatedRecord elementScanner = operandScanners.get(operandScanners.size() - 1);
-            final AbbreviatedRecord arrayScanner = () -> {
-                final long arrayLength = read(Primitive.USER_OPERAND_ARRAY_LENGTH);
-                recordBuffer.ensureFits(arrayLength);
-                for (int j = 0; j < arrayLength; j++) {
-                    elementScanner.scan();
-                }
-            };
-            operandScanners.set(operandScanners.size() - 1, arrayScanner);
-        }
-
-        abbreviationDefinitions.add(operandScanners);
+        abbreviationDefinitions.add(new AbbreviatedRecord(encodings, values));
     }
 
     private void enterSubBlock() {
@@ -342,7 +364,7 @@ public final class LLVMScanner {
 
         } else if (subBlock.parseLazily()) {
             final long endingOffset = offset + (numWords * Integer.SIZE);
-            final LazyScanner lazyScanner = new LazyScanner(new HashMap<>(defaultAbbreviations), offset, endingOffset, (int) newIdSize, subBlock);
+            final LazyScanner lazyScanner = new LazyScanner(bitstream.getBitstream(), getDefaultAbbreviationsSnapshot(), offset, endingOffset, (int) newIdSize, subBlock);
             offset = endingOffset;
             parser.skip(subBlock, lazyScanner);
 
@@ -354,6 +376,13 @@ public final class LLVMScanner {
         }
     }
 
+    private Map<Block, List<AbbreviatedRecord>> getDefaultAbbreviationsSnapshot() {
+        if (defaultAbbreviationsSnapshot == null) {
+            defaultAbbreviationsSnapshot = Collections.unmodifiableMap(new HashMap<>(defaultAbbreviations));
+        }
+        return defaultAbbreviationsSnapshot;
+    }
+
     private void startSubBlock(Block subBlock, int newIdSize) {
         abbreviationDefinitions.clear();
         abbreviationDefinitions.addAll(defaultAbbreviations.getOrDefault(subBlock, Collections.emptyList()));
@@ -378,21 +407,24 @@ public final class LLVMScanner {
                 }
 
                 @Override
-                public void record(long id, long[] args) {
-                    if (id == 1) {
+                public void record(RecordBuffer buffer) {
+                    if (buffer.getId() == 1) {
                         // SETBID tells us which blocks is currently being described
                         // we simply ignore SETRECORDNAME since we do not need it
                         setDefaultAbbreviations();
-                        currentBlockId = (int) args[0];
+                        currentBlockId = (int) buffer.getAt(0);
                     }
-                    parentListener.record(id, args);
+                    parentListener.record(buffer);
                 }
 
                 private void setDefaultAbbreviations() {
                     if (currentBlockId >= 0) {
+                        // the lists may be shared with lazy scanners, so they are never modified
                         final Block currentBlock = Block.lookup(currentBlockId);
-                        defaultAbbreviations.putIfAbsent(currentBlock, new ArrayList<>());
-                        defaultAbbreviations.get(currentBlock).addAll(abbreviationDefinitions);
+                        final List<AbbreviatedRecord> definitions = new ArrayList<>(defaultAbbreviations.getOrDefault(currentBlock, Collections.emptyList()));
+                        definitions.addAll(abbreviationDefinitions);
+                        defaultAbbreviations.put(currentBlock, definitions);
+                        defaultAbbreviationsSnapshot = null;
                         abbreviationDefinitions.clear();
                     }
                 }
@@ -421,7 +453,7 @@ public final class LLVMScanner {
     }
 
     private void passRecordToParser() {
-        parser.record(recordBuffer.getId(), recordBuffer.getOps());
+        parser.record(recordBuffer);
         recordBuffer.invalidate();
     }
 
@@ -440,30 +472,51 @@ public final class LLVMScanner {
         passRecordToParser();
     }
 
-    public final class LazyScanner {
+    /**
+     * Scans a lazily parsed block on demand. Every call to {@link #scanBlock} uses a fresh scanner
+     * with its own position in the bitstream, its own block stack and a copy of the default
+     * abbreviations that were defined before the block, so lazy scanners do not share any mutable
+     * state and may run concurrently.
+     */
+    public static final class LazyScanner {
 
-        private final Map<Block, List<List<AbbreviatedRecord>>> oldDefaultAbbreviations;
+        private final ByteBuffer bitcode;
+        private final Map<Block, List<AbbreviatedRecord>> defaultAbbreviations;
         private final long startingOffset;
         private final long endingOffset;
         private final int startingIdSize;
         private final Block startingBlock;
 
-        private LazyScanner(Map<Block, List<List<AbbreviatedRecord>>> oldDefaultAbbreviations, long startingOffset, long endingOffset, int startingIdSize, Block startingBlock) {
-            this.oldDefaultAbbreviations = oldDefaultAbbreviations;
+        LazyScanner(ByteBuffer bitcode, Map<Block, List<AbbreviatedRecord>> defaultAbbreviations, long startingOffset, long endingOffset, int startingIdSize, Block startingBlock) {
+            this.bitcode = bitcode;
+            this.defaultAbbreviations = defaultAbbreviations;
             this.startingOffset = startingOffset;
             this.endingOffset = endingOffset;
             this.startingIdSize = startingIdSize;
             this.startingBlock = startingBlock;
         }
 
+        Map<Block, List<AbbreviatedRecord>> getDefaultAbbreviations() {
+            return defaultAbbreviations;
+        }
+
+        long getStartingOffset() {
+            return startingOffset;
+        }
+
+        long getEndingOffset() {
+            return endingOffset;
+        }
+
+        int getStartingIdSize() {
+            return startingIdSize;
+        }
+
         public void scanBlock(ParserListener lazyParser) {
-            assert parents.isEmpty();
-            defaultAbbreviations.clear();
-            defaultAbbreviations.putAll(oldDefaultAbbreviations);
-            offset = startingOffset;
-            parser = lazyParser;
-            startSubBlock(startingBlock, startingIdSize);
-            scanToOffset(endingOffset);
+            final LLVMScanner scanner = new LLVMScanner(BitStream.create(bitcode), lazyParser, new HashMap<>(defaultAbbreviations));
+            scanner.offset = startingOffset;
+            scanner.startSubBlock(startingBlock, startingIdSize);
+            scanner.scanToOffset(endingOffset);
         }
     }
 }
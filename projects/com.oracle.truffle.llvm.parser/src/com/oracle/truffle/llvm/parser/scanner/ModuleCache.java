@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.parser.scanner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import com.oracle.truffle.llvm.parser.listeners.ParserListener;
+
+/**
+ * An on-disk cache of scanned bitcode modules. An entry stores the records of all eagerly parsed
+ * blocks of a module, together with the positions of its lazily parsed blocks, as they were passed
+ * to the parser listeners. On a hit, the records are replayed into the listeners instead of
+ * decoding the bitstream again, and function bodies are still scanned on demand from the bitcode.
+ * Entries are keyed by the content of the bitcode and the Sulong version. An entry also stores its
+ * key and a checksum, so that an entry that does not match the bitcode or that was damaged is
+ * ignored and written again.
+ */
+public final class ModuleCache {
+
+    private static final int MAGIC = 0x53554c43; // 'SULC'
+
+    /**
+     * Needs to be increased whenever the encoding of an entry or the records that the scanner
+     * passes to the listeners change. The Sulong version that is part of the key is only changed
+     * for releases, so it does not distinguish development builds with a different scanner, and
+     * entries that were written by such a build would be replayed into the wrong listeners.
+     */
+    private static final int FORMAT_VERSION = 2;
+
+    private static final String FILE_SUFFIX = ".sulongcache";
+
+    private static final byte EVENT_END = 0;
+    private static final byte EVENT_ENTER = 1;
+    private static final byte EVENT_EXIT = 2;
+    private static final byte EVENT_RECORD = 3;
+    private static final byte EVENT_SKIP = 4;
+
+    private final Path directory;
+    private final String version;
+    private final PrintStream log;
+
+    /**
+     * @param log the stream to report failures to write the cache to, or null
+     */
+    public ModuleCache(Path directory, String version, PrintStream log) {
+        this.directory = directory;
+        this.version = version;
+        this.log = log;
+    }
+
+    Entry getEntry(ByteBuffer bitcode) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(version.getBytes(StandardCharsets.UTF_8));
+        final ByteBuffer content = bitcode.duplicate();
+        content.position(0);
+        digest.update(content);
+
+        final byte[] key = digest.digest();
+        final StringBuilder name = new StringBuilder();
+        for (byte b : key) {
+            name.append(String.format("%02x", b));
+        }
+        name.append(FILE_SUFFIX);
+        return new Entry(directory.resolve(name.toString()), key, bitcode);
+    }
+
+    private void report(String format, Object... args) {
+        if (log != null) {
+            log.printf("[sulong] " + format + "%n", args);
+        }
+    }
+
+    final class Entry {
+
+        private final Path file;
+        private final byte[] key;
+        private final ByteBuffer bitcode;
+
+        private ByteArrayOutputStream recording;
+        private DataOutputStream out;
+        private Map<Map<Block, List<AbbreviatedRecord>>, Integer> recordedAbbreviations;
+
+        private Entry(Path file, byte[] key, ByteBuffer bitcode) {
+            this.file = file;
+            this.key = key;
+            this.bitcode = bitcode;
+        }
+
+        /**
+         * Replays a cached entry into the listeners. The entry is validated completely before any
+         * listener is called, so that a stale or damaged entry can be ignored.
+         *
+         * @return false if there is no valid entry for the bitcode
+         */
+        boolean replay(ParserListener root) {
+            final ByteBuffer data;
+            try {
+                if (!Files.isRegularFile(file)) {
+                    return false;
+                }
+                final byte[] bytes = Files.readAllBytes(file);
+                if (bytes.length < Integer.BYTES || checksum(bytes, bytes.length - Integer.BYTES) != ByteBuffer.wrap(bytes, bytes.length - Integer.BYTES, Integer.BYTES).getInt()) {
+                    return false;
+                }
+                data = ByteBuffer.wrap(bytes, 0, bytes.length - Integer.BYTES);
+                if (!readHeader(data)) {
+                    return false;
+                }
+                final int start = data.position();
+                replay(data, null);
+                data.position(start);
+            } catch (IOException | RuntimeException e) {
+                return false;
+            }
+            replay(data, root);
+            return true;
+        }
+
+        private boolean readHeader(ByteBuffer data) {
+            if (data.getInt() != MAGIC || data.getInt() != FORMAT_VERSION) {
+                return false;
+            }
+            final byte[] cachedVersion = new byte[data.getInt()];
+            data.get(cachedVersion);
+            final byte[] cachedKey = new byte[data.getInt()];
+            data.get(cachedKey);
+            return version.equals(new String(cachedVersion, StandardCharsets.UTF_8)) && Arrays.equals(key, cachedKey) && data.getLong() == bitcode.limit();
+        }
+
+        /**
+         * Decodes the events of an entry. If {@code root} is null, the entry is only checked for
+         * consistency.
+         */
+        private void replay(ByteBuffer data, ParserListener root) {
+            final Deque<ParserListener> listeners = new ArrayDeque<>();
+            listeners.push(root == null ? ParserListener.DEFAULT : root);
+            final List<Map<Block, List<AbbreviatedRecord>>> abbreviations = new ArrayList<>();
+            final RecordBuffer buffer = new RecordBuffer();
+
+            while (true) {
+                final byte event = data.get();
+                switch (event) {
+                    case EVENT_END:
+                        if (listeners.size() != 1 || data.hasRemaining()) {
+                            throw new IllegalStateException("Unbalanced cache entry");
+                        }
+                        return;
+
+                    case EVENT_ENTER: {
+                        final Block block = Block.lookup(readVarLong(data));
+                        listeners.push(root == null ? ParserListener.DEFAULT : listeners.peek().enter(block));
+                        break;
+                    }
+
+                    case EVENT_EXIT:
+                        if (listeners.size() <= 1) {
+                            throw new IllegalStateException("Unbalanced cache entry");
+                        }
+                        listeners.pop().exit();
+                        break;
+
+                    case EVENT_RECORD: {
+                        buffer.invalidate();
+                        buffer.addOp(readVarLong(data));
+                        final long size = readVarLong(data);
+                        buffer.ensureFits(size);
+                        for (long i = 0; i < size; i++) {
+                            buffer.addOpNoCheck(readVarLong(data));
+                        }
+                        listeners.peek().record(buffer);
+                        break;
+                    }
+
+                    case EVENT_SKIP: {
+                        final Block block = Block.lookup(readVarLong(data));
+                        final long startingOffset = readVarLong(data);
+                        final long endingOffset = readVarLong(data);
+                        final int idSize = (int) readVarLong(data);
+                        final int index = (int) readVarLong(data);
+                        if (index == abbreviations.size()) {
+                            abbreviations.add(readAbbreviations(data));
+                        }
+                        if (endingOffset < startingOffset || endingOffset > (long) bitcode.limit() * Byte.SIZE) {
+                            throw new IllegalStateException("Invalid lazy block in cache entry");
+                        }
+                        if (root != null) {
+                            listeners.peek().skip(block, new LLVMScanner.LazyScanner(bitcode, abbreviations.get(index), startingOffset, endingOffset, idSize, block));
+                        }
+                        break;
+                    }
+
+                    default:
+                        throw new IllegalStateException("Unknown event in cache entry: " + event);
+                }
+            }
+        }
+
+        private Map<Block, List<AbbreviatedRecord>> readAbbreviations(ByteBuffer data) {
+            final Map<Block, List<AbbreviatedRecord>> map = new EnumMap<>(Block.class);
+            final long blocks = readVarLong(data);
+            for (long i = 0; i < blocks; i++) {
+                final Block block = Block.lookup(readVarLong(data));
+                final int count = (int) readVarLong(data);
+                final List<AbbreviatedRecord> definitions = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    final int operandCount = (int) readVarLong(data);
+                    final int[] encodings = new int[operandCount];
+                    final long[] values = new long[operandCount];
+                    for (int k = 0; k < operandCount; k++) {
+                        encodings[k] = (int) readVarLong(data);
+                        values[k] = readVarLong(data);
+                    }
+                    definitions.add(new AbbreviatedRecord(encodings, values));
+                }
+                map.put(block, Collections.unmodifiableList(definitions));
+            }
+            return Collections.unmodifiableMap(map);
+        }
+
+        /**
+         * Returns a listener that records everything it passes on to {@code root}.
+         */
+        ParserListener record(ParserListener root) {
+            recording = new ByteArrayOutputStream();
+            out = new DataOutputStream(recording);
+            recordedAbbreviations = new IdentityHashMap<>();
+            try {
+                final byte[] versionBytes = version.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(versionBytes.length);
+                out.write(versionBytes);
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeLong(bitcode.limit());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return new RecordingListener(root);
+        }
+
+        /**
+         * Writes the recorded entry. The cache is only an optimization, so failing to write it is
+         * not an error, it is only reported.
+         */
+        void store() {
+            Path tmp = null;
+            try {
+                out.writeByte(EVENT_END);
+                out.flush();
+                final byte[] bytes = recording.toByteArray();
+                out.writeInt(checksum(bytes, bytes.length));
+                out.flush();
+                Files.createDirectories(directory);
+                tmp = Files.createTempFile(directory, null, ".tmp");
+                Files.write(tmp, recording.toByteArray());
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | UnsupportedOperationException e) {
+                report("cannot write module cache entry %s: %s", file, e);
+                if (tmp != null) {
+                    try {
+                        Files.deleteIfExists(tmp);
+                    } catch (IOException e2) {
+                        report("cannot delete temporary module cache file %s: %s", tmp, e2);
+                    }
+                }
+            } finally {
+                recording = null;
+                out = null;
+                recordedAbbreviations = null;
+            }
+        }
+
+        private void writeAbbreviations(Map<Block, List<AbbreviatedRecord>> abbreviations) throws IOException {
+            writeVarLong(out, abbreviations.size());
+            for (Map.Entry<Block, List<AbbreviatedRecord>> entry : abbreviations.entrySet()) {
+                writeVarLong(out, entry.getKey().getId());
+                writeVarLong(out, entry.getValue().size());
+                for (AbbreviatedRecord definition : entry.getValue()) {
+                    final int operandCount = definition.getOperandCount();
+                    writeVarLong(out, operandCount);
+                    for (int i = 0; i < operandCount; i++) {
+                        writeVarLong(out, definition.getEncoding(i));
+                        writeVarLong(out, definition.getValue(i));
+                    }
+                }
+            }
+        }
+
+        private final class RecordingListener implements ParserListener {
+
+            private final ParserListener delegate;
+
+            RecordingListener(ParserListener delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public ParserListener enter(Block block) {
+                try {
+                    out.writeByte(EVENT_ENTER);
+                    writeVarLong(out, block.getId());
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                return new RecordingListener(delegate.enter(block));
+            }
+
+            @Override
+            public void skip(Block block, LLVMScanner.LazyScanner lazyScanner) {
+                try {
+                    out.writeByte(EVENT_SKIP);
+                    writeVarLong(out, block.getId());
+                    writeVarLong(out, lazyScanner.getStartingOffset());
+                    writeVarLong(out, lazyScanner.getEndingOffset());
+                    writeVarLong(out, lazyScanner.getStartingIdSize());
+                    final Map<Block, List<AbbreviatedRecord>> abbreviations = lazyScanner.getDefaultAbbreviations();
+                    final Integer index = recordedAbbreviations.get(abbreviations);
+                    if (index != null) {
+                        writeVarLong(out, index);
+                    } else {
+                        final int newIndex = recordedAbbreviations.size();
+                        recordedAbbreviations.put(abbreviations, newIndex);
+                        writeVarLong(out, newIndex);
+                        writeAbbreviations(abbreviations);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                delegate.skip(block, lazyScanner);
+            }
+
+            @Override
+            public void exit() {
+                try {
+                    out.writeByte(EVENT_EXIT);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                delegate.exit();
+            }
+
+            @Override
+            public void record(RecordBuffer buffer) {
+                try {
+                    out.writeByte(EVENT_RECORD);
+                    writeVarLong(out, buffer.getId());
+                    final int size = buffer.size();
+                    writeVarLong(out, size);
+                    for (int i = 0; i < size; i++) {
+                        writeVarLong(out, buffer.getAt(i));
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                delegate.record(buffer);
+            }
+        }
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarLong(ByteBuffer data) {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            final byte b = data.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed number in cache entry");
+    }
+}
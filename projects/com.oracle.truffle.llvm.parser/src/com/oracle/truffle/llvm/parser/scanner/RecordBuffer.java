@@ -31,7 +31,14 @@ package com.oracle.truffle.llvm.parser.scanner;
 
 import java.util.Arrays;
 
-final class RecordBuffer {
+import com.oracle.truffle.llvm.parser.listeners.ParserListener;
+
+/**
+ * The operands of the record that is currently being scanned. The buffer is reused for every record,
+ * so listeners must not keep a reference to it beyond {@link ParserListener#record}, and should copy
+ * the operands with {@link #getOps()} if they need them later.
+ */
+public final class RecordBuffer {
 
     private static final int INITIAL_BUFFER_SIZE = 256;
 
@@ -54,14 +61,28 @@ final class RecordBuffer {
         }
     }
 
-    long getId() {
+    public long getId() {
         if (size <= 0) {
             throw new IllegalStateException("Record Id not set!");
         }
         return opBuffer[0];
     }
 
-    long[] getOps() {
+    /**
+     * Returns the number of operands of the record, not counting the record id.
+     */
+    public int size() {
+        return size - 1;
+    }
+
+    public long getAt(int index) {
+        if (index < 0 || index >= size - 1) {
+            throw new IndexOutOfBoundsException("Invalid operand index: " + index);
+        }
+        return opBuffer[index + 1];
+    }
+
+    public long[] getOps() {
         return Arrays.copyOfRange(opBuffer, 1, size);
     }
 
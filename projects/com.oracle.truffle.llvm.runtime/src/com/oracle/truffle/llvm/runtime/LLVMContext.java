@@ -36,7 +36,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -46,6 +45,7 @@ import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import com.oracle.truffle.api.CompilerAsserts;
+import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.RootCallTarget;
@@ -58,11 +58,15 @@ import com.oracle.truffle.api.frame.MaterializedFrame;
 import com.oracle.truffle.api.interop.TruffleObject;
 import com.oracle.truffle.api.nodes.ControlFlowException;
 import com.oracle.truffle.llvm.runtime.LLVMFunctionDescriptor.NullFunction;
+import com.oracle.truffle.llvm.runtime.LLVMNativeFunctions.StackMapping;
 import com.oracle.truffle.llvm.runtime.datalayout.DataLayoutConverter.DataSpecConverterImpl;
 import com.oracle.truffle.llvm.runtime.debug.LLVMSourceContext;
 import com.oracle.truffle.llvm.runtime.interop.LLVMTypedForeignObject;
 import com.oracle.truffle.llvm.runtime.interop.export.InteropNodeFactory;
 import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+import com.oracle.truffle.llvm.runtime.memory.LLVMManagedHeapObject;
+import com.oracle.truffle.llvm.runtime.memory.LLVMPooledAllocator;
+import com.oracle.truffle.llvm.runtime.memory.LLVMStack.StackAllocator;
 import com.oracle.truffle.llvm.runtime.memory.LLVMStack.StackPointer;
 import com.oracle.truffle.llvm.runtime.memory.LLVMThreadingStack;
 import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
@@ -88,11 +92,11 @@ public final class LLVMContext {
     private final Map<String, String> environment;
     private final LinkedList<LLVMNativePointer> caughtExceptionStack = new LinkedList<>();
     private final HashMap<String, Integer> nativeCallStatistics;
-    private final Object handlesLock;
-    private final IdentityHashMap<TruffleObject, LLVMNativePointer> toNative;
-    private final HashMap<LLVMNativePointer, TruffleObject> toManaged;
+    private final LLVMHandleTable handleTable;
     private final LLVMSourceContext sourceContext;
     private final LLVMGlobalsStack globalStack;
+    private final LLVMPooledAllocator pooledAllocator;
+    private final boolean managedHeap;
 
     private final Env env;
     private final LLVMScope globalScope;
@@ -210,14 +214,14 @@ public final class LLVMContext {
 
         this.destructorFunctions = new ArrayList<>();
         this.globalStack = new LLVMGlobalsStack();
+        this.pooledAllocator = createPooledAllocator(env);
+        this.managedHeap = env.getOptions().get(SulongEngineOption.MANAGED_HEAP);
         this.nativeCallStatistics = SulongEngineOption.isTrue(env.getOptions().get(SulongEngineOption.NATIVE_CALL_STATS)) ? new HashMap<>() : null;
-        this.threadingStack = new LLVMThreadingStack(Thread.currentThread(), env.getOptions().get(SulongEngineOption.STACK_SIZE_KB));
+        this.threadingStack = createThreadingStack(env);
         this.sigDfl = LLVMNativePointer.create(0);
         this.sigIgn = LLVMNativePointer.create(1);
         this.sigErr = LLVMNativePointer.create(-1);
-        this.toNative = new IdentityHashMap<>();
-        this.toManaged = new HashMap<>();
-        this.handlesLock = new Object();
+        this.handleTable = new LLVMHandleTable(SulongEngineOption.isTrue(env.getOptions().get(SulongEngineOption.HANDLE_STATS)));
         this.functionPointerRegistry = new LLVMFunctionPointerRegistry();
         this.sourceContext = new LLVMSourceContext();
 
@@ -233,6 +237,61 @@ public final class LLVMContext {
         addLibraryPaths(SulongEngineOption.getPolyglotOptionSearchPaths(env));
     }
 
+    private LLVMThreadingStack createThreadingStack(Env env) {
+        int stackSize = env.getOptions().get(SulongEngineOption.STACK_SIZE_KB);
+        StackAllocator allocator = null;
+        if (env.getOptions().get(SulongEngineOption.RESERVE_STACKS)) {
+            // without native access, the stacks cannot be reserved and are allocated with malloc
+            if (hasContextExtension(NFIContextExtension.class)) {
+                allocator = new NativeStackAllocator();
+            }
+        }
+        String statistics = env.getOptions().get(SulongEngineOption.STACK_STATS);
+        return new LLVMThreadingStack(Thread.currentThread(), stackSize, allocator, SulongEngineOption.isTrue(statistics) ? SulongEngineOption.getStream(statistics) : null);
+    }
+
+    /**
+     * Reserves stacks with mmap. The native functions are only bound when the first stack is
+     * allocated, because the native library is not loaded when the context is created.
+     */
+    private final class NativeStackAllocator implements StackAllocator {
+
+        private StackMapping mapping;
+
+        private synchronized StackMapping getMapping() {
+            if (mapping == null) {
+                NFIContextExtension nfiContextExtension = getContextExtension(NFIContextExtension.class);
+                mapping = nfiContextExtension.getNativeSulongFunctions().createStackMapping(LLVMContext.this);
+            }
+            return mapping;
+        }
+
+        @Override
+        public long reserve(long size) {
+            return getMapping().reserve(size);
+        }
+
+        @Override
+        public boolean commit(long address, long size) {
+            return getMapping().commit(address, size);
+        }
+
+        @Override
+        public void release(long address, long size) {
+            getMapping().release(address, size);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private LLVMPooledAllocator createPooledAllocator(Env env) {
+        // pooled blocks must not reach the native free, so the pool is only used without native
+        // access
+        if (env.getOptions().get(SulongEngineOption.POOLED_ALLOCATOR) && !hasContextExtension(NFIContextExtension.class)) {
+            return new LLVMPooledAllocator(LLVMMemory.getInstance());
+        }
+        return null;
+    }
+
     private LLVMScope createGlobalScope() {
         LLVMScope scope = new LLVMScope();
         LLVMFunctionDescriptor nullFunction = scope.functions().getOrCreate(this, "<nullFunction>", new FunctionType(MetaType.UNKNOWN, new Type[0], false));
@@ -308,14 +367,38 @@ public final class LLVMContext {
             }
         }
 
-        threadingStack.freeMainStack(memory);
+        threadingStack.dispose(memory);
         globalStack.free();
+
+        printHandleStatistic();
+        handleTable.dispose(memory);
+
+        if (pooledAllocator != null) {
+            printAllocatorStatistic();
+            pooledAllocator.dispose();
+        }
     }
 
     public LLVMGlobalsStack getGlobalsStack() {
         return globalStack;
     }
 
+    /**
+     * Returns the allocator that serves the guest heap, or {@code null} if guest allocations go
+     * directly to {@link LLVMMemory}.
+     */
+    public LLVMPooledAllocator getPooledAllocator() {
+        return pooledAllocator;
+    }
+
+    /**
+     * Returns whether guest heap allocations are backed by {@link LLVMManagedHeapObject}s instead
+     * of native memory.
+     */
+    public boolean isManagedHeap() {
+        return managedHeap;
+    }
+
     public InteropNodeFactory getInteropNodeFactory() {
         return interopNodeFactory;
     }
@@ -481,70 +564,35 @@ public final class LLVMContext {
         return sigErr;
     }
 
-    @TruffleBoundary
     public boolean isHandle(LLVMNativePointer address) {
-        synchronized (handlesLock) {
-            return toManaged.containsKey(address);
-        }
+        return handleTable.get(address.asNative()) != null;
     }
 
-    @TruffleBoundary
     public TruffleObject getManagedObjectForHandle(LLVMNativePointer address) {
-        synchronized (handlesLock) {
-            final TruffleObject object = toManaged.get(address);
-
-            if (object == null) {
-                throw new UnsupportedOperationException("Cannot resolve native handle: " + address);
-            }
+        final TruffleObject object = handleTable.get(address.asNative());
 
-            return object;
+        if (object == null) {
+            CompilerDirectives.transferToInterpreter();
+            throw new UnsupportedOperationException("Cannot resolve native handle: " + address);
         }
-    }
 
-    private static TruffleObject getIdentityKey(TruffleObject obj) {
-        if (obj instanceof LLVMTypedForeignObject) {
-            return ((LLVMTypedForeignObject) obj).getForeign();
-        } else {
-            return obj;
-        }
+        return object;
     }
 
-    @TruffleBoundary
     public void releaseHandle(LLVMMemory memory, LLVMNativePointer address) {
-        synchronized (handlesLock) {
-            final TruffleObject object = toManaged.get(address);
-
-            if (object == null) {
-                throw new UnsupportedOperationException("Cannot resolve native handle: " + address);
-            }
-
-            toManaged.remove(address);
-            toNative.remove(getIdentityKey(object));
-            memory.free(address);
-        }
+        handleTable.release(memory, address.asNative());
     }
 
-    @TruffleBoundary
     public LLVMNativePointer getHandleForManagedObject(LLVMMemory memory, TruffleObject object) {
-        synchronized (handlesLock) {
-            return toNative.computeIfAbsent(getIdentityKey(object), (k) -> {
-                LLVMNativePointer allocatedMemory = memory.allocateMemory(Long.BYTES);
-                memory.putI64(allocatedMemory, 0xdeadbeef);
-                toManaged.put(allocatedMemory, object);
-                return allocatedMemory;
-            });
-        }
+        return handleTable.getHandle(memory, object);
     }
 
-    @TruffleBoundary
     public LLVMNativePointer getDerefHandleForManagedObject(LLVMMemory memory, TruffleObject object) {
-        synchronized (handlesLock) {
-            return toNative.computeIfAbsent(object, (k) -> {
-                LLVMNativePointer allocatedMemory = memory.allocateDerefMemory();
-                toManaged.put(allocatedMemory, object);
-                return allocatedMemory;
-            });
-        }
+        return handleTable.getDerefHandle(memory, object);
+    }
+
+    public LLVMHandleTable getHandleTable() {
+        return handleTable;
     }
 
     @TruffleBoundary
@@ -682,6 +730,20 @@ public final class LLVMContext {
         }
     }
 
+    private void printHandleStatistic() {
+        String option = env.getOptions().get(SulongEngineOption.HANDLE_STATS);
+        if (SulongEngineOption.isTrue(option)) {
+            handleTable.printStatistics(SulongEngineOption.getStream(option));
+        }
+    }
+
+    private void printAllocatorStatistic() {
+        String option = env.getOptions().get(SulongEngineOption.ALLOCATOR_STATS);
+        if (SulongEngineOption.isTrue(option)) {
+            pooledAllocator.printStatistics(SulongEngineOption.getStream(option));
+        }
+    }
+
     public static class ExternalLibrary {
         private final String name;
         private final Path path;
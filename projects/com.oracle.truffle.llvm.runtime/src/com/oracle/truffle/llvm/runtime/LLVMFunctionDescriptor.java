@@ -206,8 +206,8 @@ public final class LLVMFunctionDescriptor implements LLVMInternalTruffleObject,
         @Override
         void resolve(LLVMFunctionDescriptor descriptor) {
             CompilerAsserts.neverPartOfCompilation();
-            // we already did the initial function resolution after parsing but further native
-            // libraries could have been loaded in the meantime
+            // external functions are only looked up in the native libraries when they are first
+            // used, the result is cached by defining the descriptor
             LLVMContext context = descriptor.getContext();
             NFIContextExtension nfiContextExtension = context.getContextExtensionOrNull(NFIContextExtension.class);
             NativeIntrinsicProvider intrinsicProvider = context.getContextExtensionOrNull(NativeIntrinsicProvider.class);
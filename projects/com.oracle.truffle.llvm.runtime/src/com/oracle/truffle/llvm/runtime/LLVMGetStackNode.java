@@ -53,7 +53,7 @@ public abstract class LLVMGetStackNode extends LLVMNode {
     }
 
     @SuppressWarnings("unused")
-    @Specialization(limit = "3", guards = "currentThread == cachedThread")
+    @Specialization(limit = "3", guards = {"currentThread == cachedThread", "!cachedStack.isFreed()"})
     protected LLVMStack cached(LLVMThreadingStack stack, Thread currentThread,
                     @Cached("currentThread") Thread cachedThread,
                     @Cached("getStack(stack, cachedThread)") LLVMStack cachedStack) {
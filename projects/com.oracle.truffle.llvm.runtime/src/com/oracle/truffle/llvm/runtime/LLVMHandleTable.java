@@ -0,0 +1,345 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.runtime;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.llvm.runtime.interop.LLVMTypedForeignObject;
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
+
+/**
+ * Maps managed objects to native handles and back.
+ *
+ * Handles are addresses in one of two dense spaces: deref handles are slots of the deref handle
+ * space of {@link LLVMMemory}, and plain handles are 8-byte slots in chunks of native memory that
+ * are owned by this table. In both cases the handle address can be turned into a slot index, so
+ * that looking up the object of a handle is an array access that does not need a lock. The
+ * reverse direction uses a concurrent identity map.
+ *
+ * Released slots are collected and recycled in batches.
+ */
+public final class LLVMHandleTable {
+
+    private static final long HANDLE_MARKER = 0xdeadbeef;
+
+    /* the first chunk of plain handles has 2^FIRST_CHUNK_SHIFT slots, every further chunk doubles */
+    private static final int FIRST_CHUNK_SHIFT = 10;
+    private static final int MAX_CHUNKS = 31 - FIRST_CHUNK_SHIFT;
+
+    private static final int DEREF_CHUNK_SHIFT = 14;
+    private static final int DEREF_CHUNK_SIZE = 1 << DEREF_CHUNK_SHIFT;
+
+    private static final int RELEASE_BATCH_SIZE = 64;
+
+    private final ConcurrentHashMap<IdentityKey, LLVMNativePointer> toNative = new ConcurrentHashMap<>();
+
+    /* plain handles: chunks by creation order (slot index order) and by base address */
+    private final Object chunkLock = new Object();
+    private final HandleChunk[] chunksBySlot = new HandleChunk[MAX_CHUNKS];
+    private volatile HandleChunk[] chunksByAddress = new HandleChunk[0];
+    private int nextFreshSlot;
+    private int[] freeSlots = new int[RELEASE_BATCH_SIZE];
+    private int freeSlotCount;
+
+    /* deref handles: objects indexed by the deref handle slot */
+    private final AtomicReferenceArray<AtomicReferenceArray<TruffleObject>> derefObjects;
+
+    private final Object releaseLock = new Object();
+    private long[] pendingReleases = new long[RELEASE_BATCH_SIZE];
+    private int pendingReleaseCount;
+
+    private final AtomicLong liveHandles = new AtomicLong();
+    /* null unless the statistics are printed */
+    private final LongAdder lookups;
+    private final long creationTime = System.nanoTime();
+
+    public LLVMHandleTable(boolean countLookups) {
+        this.lookups = countLookups ? new LongAdder() : null;
+        this.derefObjects = new AtomicReferenceArray<>((int) ((LLVMMemory.getDerefHandleSlotCount() + DEREF_CHUNK_SIZE - 1) >> DEREF_CHUNK_SHIFT));
+    }
+
+    private static final class IdentityKey {
+        private final Object object;
+
+        IdentityKey(Object object) {
+            this.object = object;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof IdentityKey && ((IdentityKey) obj).object == object;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(object);
+        }
+    }
+
+    private static final class HandleChunk {
+        private final long base;
+        private final int firstSlot;
+        private final AtomicReferenceArray<TruffleObject> objects;
+
+        HandleChunk(long base, int firstSlot, int capacity) {
+            this.base = base;
+            this.firstSlot = firstSlot;
+            this.objects = new AtomicReferenceArray<>(capacity);
+        }
+
+        long getAddress(int slot) {
+            return base + (long) (slot - firstSlot) * Long.BYTES;
+        }
+
+        boolean contains(long address) {
+            return address >= base && address < base + (long) objects.length() * Long.BYTES;
+        }
+
+        int getIndex(long address) {
+            return (int) ((address - base) / Long.BYTES);
+        }
+    }
+
+    private static TruffleObject getIdentityKey(TruffleObject obj) {
+        if (obj instanceof LLVMTypedForeignObject) {
+            return ((LLVMTypedForeignObject) obj).getForeign();
+        } else {
+            return obj;
+        }
+    }
+
+    @TruffleBoundary
+    public LLVMNativePointer getHandle(LLVMMemory memory, TruffleObject object) {
+        return toNative.computeIfAbsent(new IdentityKey(getIdentityKey(object)), (k) -> {
+            LLVMNativePointer handle = allocatePlainHandle(memory, object);
+            liveHandles.incrementAndGet();
+            return handle;
+        });
+    }
+
+    @TruffleBoundary
+    public LLVMNativePointer getDerefHandle(LLVMMemory memory, TruffleObject object) {
+        return toNative.computeIfAbsent(new IdentityKey(object), (k) -> {
+            LLVMNativePointer handle = memory.allocateDerefMemory();
+            getDerefChunk(LLVMMemory.getDerefHandleSlot(handle.asNative()), true).set(getDerefIndex(handle.asNative()), object);
+            liveHandles.incrementAndGet();
+            return handle;
+        });
+    }
+
+    /**
+     * Returns the object of a handle, or {@code null} if {@code address} is not a live handle.
+     */
+    @TruffleBoundary
+    public TruffleObject get(long address) {
+        if (lookups != null) {
+            lookups.increment();
+        }
+        int derefSlot = LLVMMemory.getDerefHandleSlot(address);
+        if (derefSlot >= 0) {
+            if ((address & LLVMMemory.getDerefHandleObjectMask()) != 0) {
+                return null;
+            }
+            AtomicReferenceArray<TruffleObject> chunk = getDerefChunk(derefSlot, false);
+            return chunk == null ? null : chunk.get(getDerefIndex(address));
+        }
+
+        HandleChunk chunk = findChunk(address);
+        if (chunk == null || (address - chunk.base) % Long.BYTES != 0) {
+            return null;
+        }
+        return chunk.objects.get(chunk.getIndex(address));
+    }
+
+    /**
+     * Releases a handle. The entry of its object is only removed while it still maps to this
+     * handle.
+     */
+    @TruffleBoundary
+    public void release(LLVMMemory memory, long address) {
+        TruffleObject object;
+        int derefSlot = LLVMMemory.getDerefHandleSlot(address);
+        if (derefSlot >= 0) {
+            AtomicReferenceArray<TruffleObject> chunk = getDerefChunk(derefSlot, false);
+            object = chunk == null ? null : chunk.getAndSet(getDerefIndex(address), null);
+            if (object != null) {
+                toNative.remove(new IdentityKey(object), LLVMNativePointer.create(address));
+            }
+        } else {
+            HandleChunk chunk = findChunk(address);
+            object = chunk == null ? null : chunk.objects.getAndSet(chunk.getIndex(address), null);
+            if (object != null) {
+                toNative.remove(new IdentityKey(getIdentityKey(object)), LLVMNativePointer.create(address));
+            }
+        }
+
+        if (object == null) {
+            throw new UnsupportedOperationException("Cannot resolve native handle: " + LLVMNativePointer.create(address));
+        }
+        liveHandles.decrementAndGet();
+
+        long[] batch = null;
+        synchronized (releaseLock) {
+            pendingReleases[pendingReleaseCount++] = address;
+            if (pendingReleaseCount == RELEASE_BATCH_SIZE) {
+                batch = pendingReleases;
+                pendingReleases = new long[RELEASE_BATCH_SIZE];
+                pendingReleaseCount = 0;
+            }
+        }
+        if (batch != null) {
+            recycle(memory, batch, batch.length);
+        }
+    }
+
+    private void recycle(LLVMMemory memory, long[] addresses, int count) {
+        synchronized (chunkLock) {
+            for (int i = 0; i < count; i++) {
+                long address = addresses[i];
+                if (LLVMMemory.getDerefHandleSlot(address) >= 0) {
+                    memory.free(address);
+                } else {
+                    HandleChunk chunk = findChunk(address);
+                    if (freeSlotCount == freeSlots.length) {
+                        freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+                    }
+                    freeSlots[freeSlotCount++] = chunk.firstSlot + chunk.getIndex(address);
+                }
+            }
+        }
+    }
+
+    private LLVMNativePointer allocatePlainHandle(LLVMMemory memory, TruffleObject object) {
+        synchronized (chunkLock) {
+            int slot;
+            if (freeSlotCount > 0) {
+                slot = freeSlots[--freeSlotCount];
+            } else {
+                slot = nextFreshSlot++;
+            }
+            HandleChunk chunk = getChunkForSlot(memory, slot);
+            long address = chunk.getAddress(slot);
+            memory.putI64(address, HANDLE_MARKER);
+            chunk.objects.set(slot - chunk.firstSlot, object);
+            return LLVMNativePointer.create(address);
+        }
+    }
+
+    private HandleChunk getChunkForSlot(LLVMMemory memory, int slot) {
+        // chunk i holds the slots [(2^i - 1) * FIRST, (2^(i+1) - 1) * FIRST)
+        int chunkIndex = 31 - Integer.numberOfLeadingZeros((slot >> FIRST_CHUNK_SHIFT) + 1);
+        if (chunkIndex >= MAX_CHUNKS) {
+            throw new OutOfMemoryError();
+        }
+        HandleChunk chunk = chunksBySlot[chunkIndex];
+        if (chunk == null) {
+            int capacity = 1 << (FIRST_CHUNK_SHIFT + chunkIndex);
+            int firstSlot = capacity - (1 << FIRST_CHUNK_SHIFT);
+            chunk = new HandleChunk(memory.allocateMemory((long) capacity * Long.BYTES).asNative(), firstSlot, capacity);
+            chunksBySlot[chunkIndex] = chunk;
+
+            HandleChunk[] byAddress = Arrays.copyOf(chunksByAddress, chunksByAddress.length + 1);
+            byAddress[byAddress.length - 1] = chunk;
+            Arrays.sort(byAddress, (a, b) -> Long.compare(a.base, b.base));
+            chunksByAddress = byAddress;
+        }
+        return chunk;
+    }
+
+    private HandleChunk findChunk(long address) {
+        HandleChunk[] chunks = chunksByAddress;
+        int low = 0;
+        int high = chunks.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            HandleChunk chunk = chunks[mid];
+            if (address < chunk.base) {
+                high = mid - 1;
+            } else if (!chunk.contains(address)) {
+                low = mid + 1;
+            } else {
+                return chunk;
+            }
+        }
+        return null;
+    }
+
+    private AtomicReferenceArray<TruffleObject> getDerefChunk(int slot, boolean create) {
+        int chunkIndex = slot >> DEREF_CHUNK_SHIFT;
+        AtomicReferenceArray<TruffleObject> chunk = derefObjects.get(chunkIndex);
+        if (chunk == null && create) {
+            derefObjects.compareAndSet(chunkIndex, null, new AtomicReferenceArray<>(DEREF_CHUNK_SIZE));
+            chunk = derefObjects.get(chunkIndex);
+        }
+        return chunk;
+    }
+
+    private static int getDerefIndex(long address) {
+        return LLVMMemory.getDerefHandleSlot(address) & (DEREF_CHUNK_SIZE - 1);
+    }
+
+    public long getLiveHandleCount() {
+        return liveHandles.get();
+    }
+
+    public long getLookupCount() {
+        return lookups == null ? 0 : lookups.sum();
+    }
+
+    @TruffleBoundary
+    public void printStatistics(PrintStream stream) {
+        double seconds = (System.nanoTime() - creationTime) / 1e9;
+        long lookupCount = getLookupCount();
+        stream.println(String.format("Handle table: %d live handles, %d lookups (%.1f lookups/s)", getLiveHandleCount(), lookupCount, seconds == 0 ? 0 : lookupCount / seconds));
+    }
+
+    @TruffleBoundary
+    public void dispose(LLVMMemory memory) {
+        synchronized (releaseLock) {
+            recycle(memory, pendingReleases, pendingReleaseCount);
+            pendingReleaseCount = 0;
+        }
+        synchronized (chunkLock) {
+            for (HandleChunk chunk : chunksByAddress) {
+                memory.free(chunk.base);
+            }
+            chunksByAddress = new HandleChunk[0];
+            Arrays.fill(chunksBySlot, null);
+        }
+    }
+}
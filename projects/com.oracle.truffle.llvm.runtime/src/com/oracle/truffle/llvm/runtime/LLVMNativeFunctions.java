@@ -29,14 +29,16 @@
  */
 package com.oracle.truffle.llvm.runtime;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.interop.ForeignAccess;
 import com.oracle.truffle.api.interop.InteropException;
 import com.oracle.truffle.api.interop.Message;
 import com.oracle.truffle.api.interop.TruffleObject;
 import com.oracle.truffle.api.nodes.Node;
+import com.oracle.truffle.llvm.runtime.memory.LLVMStack.StackAllocator;
 import com.oracle.truffle.llvm.runtime.nodes.api.LLVMNode;
 
 public final class LLVMNativeFunctions {
@@ -46,7 +48,7 @@ public final class LLVMNativeFunctions {
 
     public LLVMNativeFunctions(NFIContextExtension nfiContext) {
         this.nfiContext = nfiContext;
-        this.nativeFunctions = new HashMap<>();
+        this.nativeFunctions = new ConcurrentHashMap<>();
     }
 
     private TruffleObject getNativeFunction(LLVMContext context, String name, String signature) {
@@ -58,6 +60,13 @@ public final class LLVMNativeFunctions {
         return new NullPointerNode(nullPointerFunction);
     }
 
+    public StackMapping createStackMapping(LLVMContext context) {
+        TruffleObject mmap = getNativeFunction(context, "@__sulong_posix_mmap", "(UINT64,UINT64,SINT32,SINT32,SINT32,SINT64):SINT64");
+        TruffleObject mprotect = getNativeFunction(context, "@__sulong_posix_mprotect", "(UINT64,UINT64,SINT32):SINT32");
+        TruffleObject munmap = getNativeFunction(context, "@__sulong_posix_munmap", "(UINT64,UINT64):SINT32");
+        return new StackMapping(mmap, mprotect, munmap);
+    }
+
     protected abstract static class HeapFunctionNode extends LLVMNode {
 
         private final TruffleObject function;
@@ -87,4 +96,57 @@ public final class LLVMNativeFunctions {
             return (TruffleObject) execute();
         }
     }
+
+    /**
+     * Reserves stack memory with mmap and commits it with mprotect. The native functions return
+     * {@code -errno} on failure. Stacks are created by many threads and outside of any AST, so
+     * every call uses its own interop node.
+     */
+    public static final class StackMapping implements StackAllocator {
+
+        private static final int PROT_NONE = 0x0;
+        private static final int PROT_READ_WRITE = 0x1 | 0x2;
+        private static final int MAP_PRIVATE_ANONYMOUS_NORESERVE = 0x02 | 0x20 | 0x4000;
+        private static final long MAX_ERRNO = 4095;
+
+        private final TruffleObject mmap;
+        private final TruffleObject mprotect;
+        private final TruffleObject munmap;
+
+        private StackMapping(TruffleObject mmap, TruffleObject mprotect, TruffleObject munmap) {
+            this.mmap = mmap;
+            this.mprotect = mprotect;
+            this.munmap = munmap;
+        }
+
+        private static Object execute(TruffleObject function, Object... args) {
+            try {
+                return ForeignAccess.sendExecute(Message.createExecute(args.length).createNode(), function, args);
+            } catch (InteropException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        @Override
+        @TruffleBoundary
+        public long reserve(long size) {
+            long address = (long) execute(mmap, 0L, size, PROT_NONE, MAP_PRIVATE_ANONYMOUS_NORESERVE, -1, 0L);
+            if (address < 0 && address >= -MAX_ERRNO) {
+                return 0;
+            }
+            return address;
+        }
+
+        @Override
+        @TruffleBoundary
+        public boolean commit(long address, long size) {
+            return (int) execute(mprotect, address, size, PROT_READ_WRITE) == 0;
+        }
+
+        @Override
+        @TruffleBoundary
+        public void release(long address, long size) {
+            execute(munmap, address, size);
+        }
+    }
 }
@@ -276,7 +276,9 @@ public final class LLVMScope implements TruffleObject {
                     return scope.functions().get(atname);
                 }
                 if (scope.globals().contains(globalName)) {
-                    return scope.globals().get(globalName);
+                    LLVMGlobal global = scope.globals().get(globalName);
+                    global.ensureInitialized();
+                    return global;
                 }
                 return null;
             }
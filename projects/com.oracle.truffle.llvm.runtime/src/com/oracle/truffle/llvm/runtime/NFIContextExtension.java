@@ -32,6 +32,7 @@ package com.oracle.truffle.llvm.runtime;
 import java.util.List;
 
 import org.graalvm.collections.EconomicMap;
+import org.graalvm.collections.EconomicSet;
 import org.graalvm.collections.MapCursor;
 
 import com.oracle.truffle.api.CompilerAsserts;
@@ -60,6 +61,14 @@ public final class NFIContextExtension implements ContextExtension {
     private final ExternalLibrary defaultLibrary;
     // we use an EconomicMap because iteration order must match the insertion order
     private final EconomicMap<ExternalLibrary, TruffleObject> libraryHandles = EconomicMap.create();
+    // exported symbols of libraries that are not loaded yet, see #registerLibrarySymbols
+    private final EconomicMap<ExternalLibrary, List<String>> librarySymbols = EconomicMap.create();
+    // loaded libraries without dependencies, i.e., all their symbols are in the symbol index
+    private final EconomicSet<ExternalLibrary> selfContainedLibraries = EconomicSet.create();
+    // maps symbol names to the first loaded library that exports them, see #lookup
+    private final EconomicMap<String, ExternalLibrary> symbolIndex = EconomicMap.create();
+    // maps symbol names to the library that a previous lookup resolved them to
+    private final EconomicMap<String, ExternalLibrary> resolvedSymbols = EconomicMap.create();
     private final TruffleLanguage.Env env;
     private final LLVMNativeFunctions nativeFunctions;
 
@@ -142,6 +151,34 @@ public final class NFIContextExtension implements ContextExtension {
                 System.err.println(lib.toString() + " not found!\n" + e.getMessage());
                 throw e;
             }
+            indexSymbols(lib, librarySymbols.removeKey(lib));
+        }
+    }
+
+    /**
+     * Registers the symbols that a native library exports according to its dynamic symbol table.
+     * They are added to the symbol index once the library is loaded, which happens in the search
+     * order of the libraries. A library with dependencies can also resolve symbols that are not in
+     * its own symbol table, so {@code symbols} is {@code null} for such libraries and they are
+     * always searched.
+     */
+    public synchronized void registerLibrarySymbols(ExternalLibrary lib, List<String> symbols) {
+        CompilerAsserts.neverPartOfCompilation();
+        if (libraryHandles.containsKey(lib)) {
+            indexSymbols(lib, symbols);
+        } else {
+            librarySymbols.put(lib, symbols);
+        }
+    }
+
+    private void indexSymbols(ExternalLibrary lib, List<String> symbols) {
+        if (symbols != null) {
+            for (String symbol : symbols) {
+                if (!symbolIndex.containsKey(symbol)) {
+                    symbolIndex.put(symbol, lib);
+                }
+            }
+            selfContainedLibraries.add(lib);
         }
     }
 
@@ -226,13 +263,12 @@ public final class NFIContextExtension implements ContextExtension {
 
     private static TruffleObject getNativeFunctionOrNull(TruffleObject library, String name) {
         CompilerAsserts.neverPartOfCompilation();
-        String demangledName = name.substring(1);
-        if (!KeyInfo.isReadable(ForeignAccess.sendKeyInfo(Message.KEY_INFO.createNode(), library, demangledName))) {
+        if (!KeyInfo.isReadable(ForeignAccess.sendKeyInfo(Message.KEY_INFO.createNode(), library, name))) {
             // try another library
             return null;
         }
         try {
-            return (TruffleObject) ForeignAccess.sendRead(Message.READ.createNode(), library, demangledName);
+            return (TruffleObject) ForeignAccess.sendRead(Message.READ.createNode(), library, name);
         } catch (Throwable ex) {
             throw new IllegalStateException(ex);
         }
@@ -282,43 +318,80 @@ public final class NFIContextExtension implements ContextExtension {
     }
 
     public NativeLookupResult getNativeFunctionOrNull(LLVMContext context, String name) {
-        CompilerAsserts.neverPartOfCompilation();
-        addLibraries(context);
-
-        MapCursor<ExternalLibrary, TruffleObject> cursor = libraryHandles.getEntries();
-        while (cursor.advance()) {
-            TruffleObject symbol = getNativeFunctionOrNull(cursor.getValue(), name);
-            if (symbol != null) {
-                return new NativeLookupResult(cursor.getKey(), symbol);
-            }
-        }
-        TruffleObject symbol = getNativeFunctionOrNull(defaultLibraryHandle, name);
-        if (symbol != null) {
-            return new NativeLookupResult(defaultLibrary, symbol);
-        }
-        return null;
+        return lookup(context, name, NFIContextExtension::getNativeFunctionOrNull);
     }
 
     private NativeLookupResult getNativeDataObjectOrNull(LLVMContext context, String name) {
+        return lookup(context, name, NFIContextExtension::getNativeDataObjectOrNull);
+    }
+
+    private interface SymbolProbe {
+        TruffleObject probe(TruffleObject libraryHandle, String name);
+    }
+
+    /**
+     * Searches the libraries in their loading order, and then the default library. The symbol
+     * index only allows to skip libraries: a self-contained library that is loaded before the first
+     * library exporting the symbol cannot define it, and the search ends at that library anyway.
+     * Libraries with unknown symbols (e.g., with dependencies, or without an ELF file on disk) are
+     * always searched, so a symbol resolves to the same library as without the index. Lookups can
+     * happen on any thread, so they are synchronized with loading and indexing libraries.
+     */
+    private synchronized NativeLookupResult lookup(LLVMContext context, String name, SymbolProbe probe) {
         CompilerAsserts.neverPartOfCompilation();
         addLibraries(context);
 
         String realName = name.substring(1);
+        ExternalLibrary resolved = resolvedSymbols.get(realName);
+        if (resolved != null) {
+            TruffleObject symbol = probe.probe(getLibraryHandle(resolved), realName);
+            if (symbol != null) {
+                return new NativeLookupResult(resolved, symbol);
+            }
+        }
+
+        ExternalLibrary indexed = symbolIndex.get(realName);
+        boolean useIndex = true;
         MapCursor<ExternalLibrary, TruffleObject> cursor = libraryHandles.getEntries();
         while (cursor.advance()) {
-            TruffleObject symbol = getNativeDataObjectOrNull(cursor.getValue(), realName);
+            ExternalLibrary lib = cursor.getKey();
+            if (useIndex && lib != indexed && selfContainedLibraries.contains(lib)) {
+                // the symbol index knows that this library does not export the symbol
+                continue;
+            }
+            TruffleObject symbol = probe.probe(cursor.getValue(), realName);
             if (symbol != null) {
-                return new NativeLookupResult(cursor.getKey(), symbol);
+                return resolve(realName, lib, symbol);
+            } else if (lib == indexed) {
+                // e.g., a data symbol at address 0, search the remaining libraries like before
+                useIndex = false;
             }
         }
-        TruffleObject symbol = getNativeDataObjectOrNull(defaultLibraryHandle, realName);
+        TruffleObject symbol = probe.probe(defaultLibraryHandle, realName);
         if (symbol != null) {
-            return new NativeLookupResult(defaultLibrary, symbol);
+            return resolve(realName, defaultLibrary, symbol);
         }
         return null;
     }
 
+    private TruffleObject getLibraryHandle(ExternalLibrary lib) {
+        return lib == defaultLibrary ? defaultLibraryHandle : libraryHandles.get(lib);
+    }
+
+    /**
+     * The result of a search is remembered, so that every symbol is searched in all libraries at
+     * most once.
+     */
+    private NativeLookupResult resolve(String name, ExternalLibrary lib, TruffleObject symbol) {
+        resolvedSymbols.put(name, lib);
+        return new NativeLookupResult(lib, symbol);
+    }
+
     private static TruffleObject getNativeDataObjectOrNull(TruffleObject libraryHandle, String name) {
+        if (!KeyInfo.isReadable(ForeignAccess.sendKeyInfo(Message.KEY_INFO.createNode(), libraryHandle, name))) {
+            // try another library
+            return null;
+        }
         try {
             TruffleObject symbol = (TruffleObject) ForeignAccess.sendRead(Message.READ.createNode(), libraryHandle, name);
             if (symbol != null && 0 != ForeignAccess.sendAsPointer(Message.AS_POINTER.createNode(), symbol)) {
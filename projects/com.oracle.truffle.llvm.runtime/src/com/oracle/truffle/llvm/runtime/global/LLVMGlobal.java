@@ -30,9 +30,11 @@
 package com.oracle.truffle.llvm.runtime.global;
 
 import com.oracle.truffle.api.Assumption;
+import com.oracle.truffle.api.CompilerAsserts;
 import com.oracle.truffle.api.CompilerDirectives;
 import com.oracle.truffle.api.CompilerDirectives.CompilationFinal;
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.Truffle;
 import com.oracle.truffle.api.TruffleLanguage.ContextReference;
 import com.oracle.truffle.api.dsl.Cached;
 import com.oracle.truffle.api.dsl.Specialization;
@@ -43,6 +45,7 @@ import com.oracle.truffle.api.interop.InteropException;
 import com.oracle.truffle.api.interop.Message;
 import com.oracle.truffle.api.interop.TruffleObject;
 import com.oracle.truffle.api.interop.UnsupportedMessageException;
+import com.oracle.truffle.api.utilities.NeverValidAssumption;
 import com.oracle.truffle.llvm.runtime.LLVMContext;
 import com.oracle.truffle.llvm.runtime.LLVMContext.ExternalLibrary;
 import com.oracle.truffle.llvm.runtime.LLVMFunctionDescriptor;
@@ -78,6 +81,11 @@ public final class LLVMGlobal implements LLVMObjectNativeLibrary.Provider {
     @CompilationFinal private boolean interopTypeCached;
     @CompilationFinal private LLVMInteropType interopType;
 
+    @CompilationFinal private Assumption pendingInitializer;
+    @CompilationFinal private volatile Throwable initializerFailure;
+    private Runnable initializer;
+    private boolean initializing;
+
     public static LLVMGlobal create(LLVMContext context, String name, PointerType type, LLVMSourceSymbol sourceSymbol, boolean readOnly) {
         return new LLVMGlobal(context, name, type, sourceSymbol, readOnly);
     }
@@ -103,6 +111,9 @@ public final class LLVMGlobal implements LLVMObjectNativeLibrary.Provider {
         this.library = null;
         this.interopTypeCached = false;
         this.interopType = null;
+
+        this.pendingInitializer = NeverValidAssumption.INSTANCE;
+        this.initializer = null;
     }
 
     public String getName() {
@@ -145,6 +156,61 @@ public final class LLVMGlobal implements LLVMObjectNativeLibrary.Provider {
         return sourceSymbol != null ? sourceSymbol.getName() : name;
     }
 
+    /**
+     * Defers the initialization or the binding of this global until its address is first taken.
+     * This must be called before any code that accesses the global is executed.
+     */
+    public void setLazyInitializer(Runnable lazyInitializer) {
+        CompilerAsserts.neverPartOfCompilation();
+        this.initializer = lazyInitializer;
+        this.pendingInitializer = Truffle.getRuntime().createAssumption("LLVMGlobal.pendingInitializer");
+    }
+
+    /**
+     * Runs the lazy initializer of this global if it has not run yet. Once the initializer has run,
+     * this check folds away in compiled code. If the initializer failed, its exception is thrown
+     * again by every later call.
+     */
+    public void ensureInitialized() {
+        if (pendingInitializer.isValid()) {
+            CompilerDirectives.transferToInterpreterAndInvalidate();
+            initialize();
+        } else if (initializerFailure != null) {
+            rethrowInitializerFailure();
+        }
+    }
+
+    @TruffleBoundary
+    private synchronized void initialize() {
+        if (initializerFailure != null) {
+            rethrowInitializerFailure();
+        }
+        // the initializer may take the address of this global itself, in which case the nested
+        // call returns immediately
+        if (initializer != null && !initializing) {
+            initializing = true;
+            try {
+                initializer.run();
+            } catch (RuntimeException | Error e) {
+                // the failure is kept, so that compiled code does not deoptimize on every access
+                initializerFailure = e;
+                throw e;
+            } finally {
+                initializer = null;
+                initializing = false;
+                pendingInitializer.invalidate();
+            }
+        }
+    }
+
+    @TruffleBoundary
+    private void rethrowInitializerFailure() {
+        if (initializerFailure instanceof Error) {
+            throw (Error) initializerFailure;
+        }
+        throw (RuntimeException) initializerFailure;
+    }
+
     /**
      * Used as a wrapper if the global variable's value is directly stored in the frame as a managed
      * object. This is also necessary to disambiguate between a pointer to the native store and a
@@ -0,0 +1,627 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.runtime.memory;
+
+import java.util.Arrays;
+
+import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.api.dsl.Specialization;
+import com.oracle.truffle.api.interop.CanResolve;
+import com.oracle.truffle.api.interop.ForeignAccess;
+import com.oracle.truffle.api.interop.MessageResolution;
+import com.oracle.truffle.api.interop.Resolve;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.api.nodes.Node;
+import com.oracle.truffle.llvm.runtime.interop.LLVMInternalTruffleObject;
+import com.oracle.truffle.llvm.runtime.interop.convert.ForeignToLLVM.ForeignToLLVMType;
+import com.oracle.truffle.llvm.runtime.memory.LLVMManagedHeapObjectFactory.ManagedHeapWriteNodeGen;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMNode;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMObjectAccess;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMObjectNativeLibrary;
+import com.oracle.truffle.llvm.runtime.nodes.api.LLVMToNativeNode;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMManagedPointer;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
+
+/**
+ * A guest heap allocation that lives in a Java array for as long as no pointer to it escapes to
+ * native code. Pointer values that are stored into the allocation are kept in a side table, so that
+ * the objects they point to can stay managed as well.
+ *
+ * The first time the allocation is converted to native (e.g. by {@link LLVMToNativeNode} when it is
+ * passed to a native function), its contents are copied to native memory, the pointers in the side
+ * table are converted recursively, and all further accesses go to the native copy. The arrays are
+ * kept alive after that, because other threads can still be in the middle of an access to them.
+ * Such an access races with the escape of the pointer, so like in native code it may not be visible
+ * in the native copy, but it never accesses memory outside of the arrays.
+ */
+public final class LLVMManagedHeapObject implements LLVMObjectAccess, LLVMObjectNativeLibrary.Provider, LLVMInternalTruffleObject {
+
+    /**
+     * The largest allocation that is backed by a Java array. Larger allocations are served from
+     * native memory.
+     */
+    public static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    private static final int WORD_SIZE = LLVMNode.ADDRESS_SIZE_IN_BYTES;
+
+    private final long size;
+
+    private final int[] data;
+    private Object[] pointers;
+    private volatile long nativeAddress;
+
+    public LLVMManagedHeapObject(long size) {
+        assert size >= 0 && size <= MAX_SIZE;
+        this.size = size;
+        this.data = new int[wordCount(size) * (WORD_SIZE / Integer.BYTES)];
+    }
+
+    private static int wordCount(long size) {
+        return (int) ((size + WORD_SIZE - 1) / WORD_SIZE);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public boolean isNative() {
+        return nativeAddress != 0;
+    }
+
+    public long getNativeAddress() {
+        assert isNative();
+        return nativeAddress;
+    }
+
+    /**
+     * Returns whether {@code pointer} points into an {@link LLVMManagedHeapObject} that has not been
+     * converted to native yet.
+     */
+    public static boolean isManagedHeapPointer(Object pointer) {
+        if (LLVMManagedPointer.isInstance(pointer)) {
+            Object object = LLVMManagedPointer.cast(pointer).getObject();
+            return object instanceof LLVMManagedHeapObject && !((LLVMManagedHeapObject) object).isNative();
+        }
+        return false;
+    }
+
+    /**
+     * Copies the first {@code length} bytes of {@code source} into this object. This object must
+     * not have been converted to native yet.
+     */
+    @TruffleBoundary
+    public void copyFrom(LLVMMemory memory, UnsafeArrayAccess access, LLVMManagedHeapObject source, long length) {
+        assert !isNative() && length <= size && length <= source.size;
+        int words = wordCount(length);
+        if (source.isNative()) {
+            for (int i = 0; i < words; i++) {
+                access.writeI64(data, (long) i * WORD_SIZE, memory.getI64(source.nativeAddress + (long) i * WORD_SIZE));
+            }
+        } else {
+            System.arraycopy(source.data, 0, data, 0, words * (WORD_SIZE / Integer.BYTES));
+            if (source.pointers != null) {
+                pointers = new Object[wordCount(size)];
+                System.arraycopy(source.pointers, 0, pointers, 0, words);
+            }
+        }
+    }
+
+    public void free(LLVMMemory memory) {
+        if (isNative()) {
+            memory.free(nativeAddress);
+        }
+    }
+
+    @TruffleBoundary
+    private synchronized void materialize(LLVMMemory memory, UnsafeArrayAccess access, LLVMToNativeNode toNative) {
+        if (isNative()) {
+            return;
+        }
+        int words = wordCount(size);
+        long address = memory.allocateMemory(Math.max(words, 1) * (long) WORD_SIZE).asNative();
+        for (int i = 0; i < words; i++) {
+            memory.putI64(address + (long) i * WORD_SIZE, access.getI64(data, (long) i * WORD_SIZE));
+        }
+
+        // publish the native address before converting the side table, so that cycles terminate
+        Object[] escapingPointers = pointers;
+        nativeAddress = address;
+
+        if (escapingPointers != null) {
+            for (int i = 0; i < escapingPointers.length; i++) {
+                if (escapingPointers[i] != null) {
+                    memory.putI64(address + (long) i * WORD_SIZE, toNative.executeWithTarget(escapingPointers[i]).asNative());
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the pointers that overlap the given range with their native representation, so that
+     * the range can be accessed as plain bytes. Converting a pointer can convert this object to
+     * native as well, so callers have to check {@link #isNative()} again afterwards.
+     */
+    @TruffleBoundary
+    private void flattenPointers(UnsafeArrayAccess access, LLVMToNativeNode toNative, long offset, long length) {
+        int first = (int) (offset / WORD_SIZE);
+        int last = (int) ((offset + length - 1) / WORD_SIZE);
+        for (int i = first; i <= last && !isNative(); i++) {
+            Object pointer = pointers[i];
+            if (pointer != null) {
+                long value = toNative.executeWithTarget(pointer).asNative();
+                if (!isNative()) {
+                    pointers[i] = null;
+                    access.writeI64(data, (long) i * WORD_SIZE, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the pointers that overlap the given range because the range is about to be
+     * overwritten. Pointers that are only partially overwritten are flattened first. Like
+     * {@link #flattenPointers}, this can convert this object to native.
+     */
+    private void clearPointers(UnsafeArrayAccess access, LLVMToNativeNode toNative, long offset, long length) {
+        long end = offset + length;
+        long firstWord = (offset + WORD_SIZE - 1) / WORD_SIZE;
+        long endWord = end / WORD_SIZE;
+        if (firstWord * WORD_SIZE > offset) {
+            flattenPointers(access, toNative, offset, Math.min(firstWord * WORD_SIZE, end) - offset);
+        }
+        if (endWord * WORD_SIZE < end && endWord >= firstWord) {
+            flattenPointers(access, toNative, endWord * WORD_SIZE, end - endWord * WORD_SIZE);
+        }
+        if (!isNative() && firstWord < endWord) {
+            Arrays.fill(pointers, (int) firstWord, (int) endWord, null);
+        }
+    }
+
+    /**
+     * Copies {@code length} bytes from {@code source} to this object, with the semantics of
+     * {@code memmove}. Returns false if one of the objects is or became native, in which case
+     * nothing was copied.
+     */
+    public boolean copy(UnsafeArrayAccess access, LLVMToNativeNode toNative, long targetOffset, LLVMManagedHeapObject source, long sourceOffset, long length) {
+        if (isNative() || source.isNative()) {
+            return false;
+        }
+        checkBounds(targetOffset, length);
+        source.checkBounds(sourceOffset, length);
+        if (((targetOffset | sourceOffset | length) & (WORD_SIZE - 1)) == 0) {
+            // whole words, the pointers are copied along with the data
+            System.arraycopy(source.data, (int) (sourceOffset / Integer.BYTES), data, (int) (targetOffset / Integer.BYTES), (int) (length / Integer.BYTES));
+            if (source.pointers != null) {
+                if (pointers == null) {
+                    pointers = new Object[wordCount(size)];
+                }
+                System.arraycopy(source.pointers, (int) (sourceOffset / WORD_SIZE), pointers, (int) (targetOffset / WORD_SIZE), (int) (length / WORD_SIZE));
+            } else if (pointers != null) {
+                Arrays.fill(pointers, (int) (targetOffset / WORD_SIZE), (int) ((targetOffset + length) / WORD_SIZE), null);
+            }
+            return true;
+        }
+
+        if (source.pointers != null) {
+            source.flattenPointers(access, toNative, sourceOffset, length);
+        }
+        if (pointers != null && !isNative() && !source.isNative()) {
+            clearPointers(access, toNative, targetOffset, length);
+        }
+        if (isNative() || source.isNative()) {
+            return false;
+        }
+
+        if (((targetOffset | sourceOffset | length) & (Integer.BYTES - 1)) == 0) {
+            System.arraycopy(source.data, (int) (sourceOffset / Integer.BYTES), data, (int) (targetOffset / Integer.BYTES), (int) (length / Integer.BYTES));
+        } else if (source != this || targetOffset <= sourceOffset) {
+            for (long i = 0; i < length; i++) {
+                access.writeI8(data, targetOffset + i, access.getI8(source.data, sourceOffset + i));
+            }
+        } else {
+            for (long i = length - 1; i >= 0; i--) {
+                access.writeI8(data, targetOffset + i, access.getI8(source.data, sourceOffset + i));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies {@code length} bytes from native memory to this object. Returns false if this object
+     * is or became native, in which case nothing was copied.
+     */
+    public boolean copyFromNative(LLVMMemory memory, UnsafeArrayAccess access, LLVMToNativeNode toNative, long targetOffset, long sourceAddress, long length) {
+        if (isNative()) {
+            return false;
+        }
+        checkBounds(targetOffset, length);
+        if (pointers != null) {
+            clearPointers(access, toNative, targetOffset, length);
+            if (isNative()) {
+                return false;
+            }
+        }
+        long words = length / WORD_SIZE;
+        for (long i = 0; i < words; i++) {
+            access.writeI64(data, targetOffset + i * WORD_SIZE, memory.getI64(sourceAddress + i * WORD_SIZE));
+        }
+        for (long i = words * WORD_SIZE; i < length; i++) {
+            access.writeI8(data, targetOffset + i, memory.getI8(sourceAddress + i));
+        }
+        return true;
+    }
+
+    /**
+     * Copies {@code length} bytes from this object to native memory. Returns false if this object
+     * is or became native, in which case nothing was copied.
+     */
+    public boolean copyToNative(LLVMMemory memory, UnsafeArrayAccess access, LLVMToNativeNode toNative, long targetAddress, long sourceOffset, long length) {
+        if (isNative()) {
+            return false;
+        }
+        checkBounds(sourceOffset, length);
+        if (pointers != null) {
+            flattenPointers(access, toNative, sourceOffset, length);
+            if (isNative()) {
+                return false;
+            }
+        }
+        long words = length / WORD_SIZE;
+        for (long i = 0; i < words; i++) {
+            memory.putI64(targetAddress + i * WORD_SIZE, access.getI64(data, sourceOffset + i * WORD_SIZE));
+        }
+        for (long i = words * WORD_SIZE; i < length; i++) {
+            memory.putI8(targetAddress + i, access.getI8(data, sourceOffset + i));
+        }
+        return true;
+    }
+
+    /**
+     * Sets {@code length} bytes of this object to {@code value}. Returns false if this object is
+     * or became native, in which case nothing was written.
+     */
+    public boolean fill(UnsafeArrayAccess access, LLVMToNativeNode toNative, long offset, byte value, long length) {
+        if (isNative()) {
+            return false;
+        }
+        checkBounds(offset, length);
+        if (pointers != null) {
+            clearPointers(access, toNative, offset, length);
+            if (isNative()) {
+                return false;
+            }
+        }
+        if (((offset | length) & (Integer.BYTES - 1)) == 0) {
+            int v16 = (value & 0xFF) << 8 | (value & 0xFF);
+            Arrays.fill(data, (int) (offset / Integer.BYTES), (int) ((offset + length) / Integer.BYTES), v16 << 16 | v16);
+        } else {
+            for (long i = 0; i < length; i++) {
+                access.writeI8(data, offset + i, value);
+            }
+        }
+        return true;
+    }
+
+    private void checkBounds(long offset, long length) {
+        if (offset < 0 || length < 0 || offset + length > (long) wordCount(size) * WORD_SIZE) {
+            CompilerDirectives.transferToInterpreter();
+            throw new IndexOutOfBoundsException(String.format("Access of %d bytes at offset %d is outside of a managed allocation of %d bytes.", length, offset, size));
+        }
+    }
+
+    @Override
+    public ForeignAccess getForeignAccess() {
+        return ManagedHeapForeignAccessForeign.ACCESS;
+    }
+
+    @Override
+    public LLVMObjectReadNode createReadNode(ForeignToLLVMType type) {
+        return new ManagedHeapReadNode(type);
+    }
+
+    @Override
+    public LLVMObjectWriteNode createWriteNode() {
+        return ManagedHeapWriteNodeGen.create();
+    }
+
+    @Override
+    public LLVMObjectNativeLibrary createLLVMObjectNativeLibrary() {
+        return new ManagedHeapNativeLibrary();
+    }
+
+    @MessageResolution(receiverType = LLVMManagedHeapObject.class)
+    public static class ManagedHeapForeignAccess {
+
+        @CanResolve
+        public abstract static class Check extends Node {
+
+            protected static boolean test(TruffleObject receiver) {
+                return receiver instanceof LLVMManagedHeapObject;
+            }
+        }
+
+        @Resolve(message = "IS_NULL")
+        public abstract static class ForeignIsNullNode extends Node {
+
+            protected Object access(@SuppressWarnings("unused") LLVMManagedHeapObject object) {
+                return false;
+            }
+        }
+    }
+
+    private static final class ManagedHeapReadNode extends LLVMObjectReadNode {
+
+        private final ForeignToLLVMType type;
+        private final int accessSize;
+
+        private final LLVMMemory memory = getLLVMMemory();
+        private final UnsafeArrayAccess access = getUnsafeArrayAccess();
+
+        @Child private LLVMToNativeNode toNative = LLVMToNativeNode.createToNativeWithTarget();
+
+        ManagedHeapReadNode(ForeignToLLVMType type) {
+            this.type = type;
+            this.accessSize = type.getSizeInBytes();
+        }
+
+        @Override
+        public boolean canAccess(Object obj) {
+            return obj instanceof LLVMManagedHeapObject;
+        }
+
+        @Override
+        public Object executeRead(Object obj, long offset) {
+            LLVMManagedHeapObject object = (LLVMManagedHeapObject) obj;
+            if (!object.isNative()) {
+                object.checkBounds(offset, accessSize);
+                if (object.pointers != null) {
+                    if (type == ForeignToLLVMType.POINTER && offset % WORD_SIZE == 0) {
+                        Object pointer = object.pointers[(int) (offset / WORD_SIZE)];
+                        if (pointer != null) {
+                            return pointer;
+                        }
+                    } else {
+                        object.flattenPointers(access, toNative, offset, accessSize);
+                    }
+                }
+            }
+            if (object.isNative()) {
+                return readNative(object.nativeAddress + offset);
+            } else {
+                return readManaged(object.data, offset);
+            }
+        }
+
+        private Object readNative(long address) {
+            switch (type) {
+                case I1:
+                    return memory.getI1(address);
+                case I8:
+                    return memory.getI8(address);
+                case I16:
+                    return memory.getI16(address);
+                case I32:
+                    return memory.getI32(address);
+                case I64:
+                    return memory.getI64(address);
+                case FLOAT:
+                    return memory.getFloat(address);
+                case DOUBLE:
+                    return memory.getDouble(address);
+                case POINTER:
+                    return memory.getPointer(address);
+                default:
+                    CompilerDirectives.transferToInterpreter();
+                    throw new IllegalStateException("Unexpected read of type " + type);
+            }
+        }
+
+        private Object readManaged(int[] data, long offset) {
+            switch (type) {
+                case I1:
+                    return access.getI1(data, offset);
+                case I8:
+                    return access.getI8(data, offset);
+                case I16:
+                    return access.getI16(data, offset);
+                case I32:
+                    return access.getI32(data, offset);
+                case I64:
+                    return access.getI64(data, offset);
+                case FLOAT:
+                    return access.getFloat(data, offset);
+                case DOUBLE:
+                    return access.getDouble(data, offset);
+                case POINTER:
+                    return LLVMNativePointer.create(access.getI64(data, offset));
+                default:
+                    CompilerDirectives.transferToInterpreter();
+                    throw new IllegalStateException("Unexpected read of type " + type);
+            }
+        }
+    }
+
+    abstract static class ManagedHeapWriteNode extends LLVMObjectWriteNode {
+
+        private final LLVMMemory memory = getLLVMMemory();
+        private final UnsafeArrayAccess access = getUnsafeArrayAccess();
+
+        @Child private LLVMToNativeNode toNative = LLVMToNativeNode.createToNativeWithTarget();
+
+        @Override
+        public boolean canAccess(Object obj) {
+            return obj instanceof LLVMManagedHeapObject;
+        }
+
+        /**
+         * Prepares a write of {@code length} bytes and returns whether it has to go to native
+         * memory.
+         */
+        private boolean prepareWrite(LLVMManagedHeapObject object, long offset, int length) {
+            if (!object.isNative()) {
+                object.checkBounds(offset, length);
+                if (object.pointers != null) {
+                    object.flattenPointers(access, toNative, offset, length);
+                }
+            }
+            return object.isNative();
+        }
+
+        @Specialization
+        protected void doI1(LLVMManagedHeapObject object, long offset, boolean value) {
+            if (prepareWrite(object, offset, I1_SIZE_IN_BYTES)) {
+                memory.putI1(object.nativeAddress + offset, value);
+            } else {
+                access.writeI1(object.data, offset, value);
+            }
+        }
+
+        @Specialization
+        protected void doI8(LLVMManagedHeapObject object, long offset, byte value) {
+            if (prepareWrite(object, offset, I8_SIZE_IN_BYTES)) {
+                memory.putI8(object.nativeAddress + offset, value);
+            } else {
+                access.writeI8(object.data, offset, value);
+            }
+        }
+
+        @Specialization
+        protected void doI16(LLVMManagedHeapObject object, long offset, short value) {
+            if (prepareWrite(object, offset, I16_SIZE_IN_BYTES)) {
+                memory.putI16(object.nativeAddress + offset, value);
+            } else {
+                access.writeI16(object.data, offset, value);
+            }
+        }
+
+        @Specialization
+        protected void doI32(LLVMManagedHeapObject object, long offset, int value) {
+            if (prepareWrite(object, offset, I32_SIZE_IN_BYTES)) {
+                memory.putI32(object.nativeAddress + offset, value);
+            } else {
+                access.writeI32(object.data, offset, value);
+            }
+        }
+
+        @Specialization
+        protected void doI64(LLVMManagedHeapObject object, long offset, long value) {
+            if (prepareWrite(object, offset, I64_SIZE_IN_BYTES)) {
+                memory.putI64(object.nativeAddress + offset, value);
+            } else {
+                access.writeI64(object.data, offset, value);
+            }
+        }
+
+        @Specialization
+        protected void doFloat(LLVMManagedHeapObject object, long offset, float value) {
+            if (prepareWrite(object, offset, FLOAT_SIZE_IN_BYTES)) {
+                memory.putFloat(object.nativeAddress + offset, value);
+            } else {
+                access.writeFloat(object.data, offset, value);
+            }
+        }
+
+        @Specialization
+        protected void doDouble(LLVMManagedHeapObject object, long offset, double value) {
+            if (prepareWrite(object, offset, DOUBLE_SIZE_IN_BYTES)) {
+                memory.putDouble(object.nativeAddress + offset, value);
+            } else {
+                access.writeDouble(object.data, offset, value);
+            }
+        }
+
+        @Specialization
+        protected void doNativePointer(LLVMManagedHeapObject object, long offset, LLVMNativePointer value) {
+            doI64(object, offset, value.asNative());
+        }
+
+        protected static boolean isManagedPointerValue(Object value) {
+            return LLVMManagedPointer.isInstance(value);
+        }
+
+        protected static boolean isPrimitiveValue(Object value) {
+            return value instanceof Boolean || value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long || value instanceof Float ||
+                            value instanceof Double || LLVMNativePointer.isInstance(value);
+        }
+
+        @Specialization(guards = "isManagedPointerValue(value)")
+        protected void doManagedPointer(LLVMManagedHeapObject object, long offset, Object value) {
+            if (!object.isNative() && offset % WORD_SIZE == 0) {
+                object.checkBounds(offset, ADDRESS_SIZE_IN_BYTES);
+                if (object.pointers == null) {
+                    object.pointers = new Object[wordCount(object.size)];
+                }
+                object.pointers[(int) (offset / WORD_SIZE)] = value;
+                access.writeI64(object.data, offset, 0);
+            } else {
+                // pointers at unaligned offsets and pointers into native memory have to be native
+                doI64(object, offset, toNative.executeWithTarget(value).asNative());
+            }
+        }
+
+        @Specialization(guards = {"!isManagedPointerValue(value)", "!isPrimitiveValue(value)"})
+        protected void doOther(LLVMManagedHeapObject object, long offset, Object value) {
+            // other pointer values (e.g. globals or function descriptors) are stored as native
+            doI64(object, offset, toNative.executeWithTarget(value).asNative());
+        }
+    }
+
+    private static final class ManagedHeapNativeLibrary extends LLVMObjectNativeLibrary {
+
+        @Child private LLVMToNativeNode toNative;
+
+        @Override
+        public boolean guard(Object obj) {
+            return obj instanceof LLVMManagedHeapObject;
+        }
+
+        @Override
+        public boolean isPointer(Object obj) {
+            return ((LLVMManagedHeapObject) obj).isNative();
+        }
+
+        @Override
+        public long asPointer(Object obj) {
+            return ((LLVMManagedHeapObject) obj).getNativeAddress();
+        }
+
+        @Override
+        public Object toNative(Object obj) {
+            if (toNative == null) {
+                CompilerDirectives.transferToInterpreterAndInvalidate();
+                toNative = insert(LLVMToNativeNode.createToNativeWithTarget());
+            }
+            LLVMManagedHeapObject object = (LLVMManagedHeapObject) obj;
+            object.materialize(getLLVMMemory(), getUnsafeArrayAccess(), toNative);
+            return object;
+        }
+    }
+}
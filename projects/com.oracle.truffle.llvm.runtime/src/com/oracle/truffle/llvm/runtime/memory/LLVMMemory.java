@@ -39,6 +39,8 @@ import static com.oracle.truffle.llvm.runtime.nodes.api.LLVMNode.I64_SIZE_IN_BYT
 import static com.oracle.truffle.llvm.runtime.nodes.api.LLVMNode.I8_SIZE_IN_BYTES;
 
 import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.BinaryOperator;
 import java.util.function.IntBinaryOperator;
 import java.util.function.LongBinaryOperator;
@@ -46,6 +48,7 @@ import java.util.function.LongBinaryOperator;
 import com.oracle.truffle.api.Assumption;
 import com.oracle.truffle.api.CompilerAsserts;
 import com.oracle.truffle.api.CompilerDirectives;
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
 import com.oracle.truffle.api.CompilerDirectives.ValueType;
 import com.oracle.truffle.api.Truffle;
 import com.oracle.truffle.api.nodes.ExplodeLoop;
@@ -77,23 +80,25 @@ public final class LLVMMemory {
 
     private static final Unsafe unsafe = getUnsafe();
 
-    private final Object freeListLock = new Object();
-    private FreeListNode freeList;
+    private static final long DEREF_HANDLE_SLOT_COUNT = (DEREF_HANDLE_SPACE_START - DEREF_HANDLE_SPACE_END) / DEREF_HANDLE_OBJECT_SIZE;
 
-    private final Object derefSpaceTopLock = new Object();
-    private long derefSpaceTop = DEREF_HANDLE_SPACE_START;
+    /*
+     * The free deref handles form a Treiber stack. The links are kept in a slot-indexed table that
+     * grows in chunks while new slots are handed out, so releasing a handle never allocates. The
+     * head holds the top slot in the lower half and an ABA stamp in the upper half.
+     */
+    private static final int DEREF_SLOT_CHUNK_SHIFT = 14;
+    private static final int DEREF_SLOT_CHUNK_SIZE = 1 << DEREF_SLOT_CHUNK_SHIFT;
+    private static final int DEREF_SLOT_CHUNK_MASK = DEREF_SLOT_CHUNK_SIZE - 1;
+    private static final int DEREF_FREE_LIST_EMPTY = -1;
+    private static final long DEREF_FREE_LIST_SLOT_MASK = 0xFFFFFFFFL;
+    private static final long DEREF_FREE_LIST_STAMP = 1L << 32;
 
-    private final Assumption noDerefHandleAssumption = Truffle.getRuntime().createAssumption("no deref handle assumption");
+    private final AtomicLong derefFreeListHead = new AtomicLong(DEREF_FREE_LIST_EMPTY & DEREF_FREE_LIST_SLOT_MASK);
+    private final AtomicLong derefSlotTop = new AtomicLong();
+    private final AtomicReferenceArray<int[]> derefSlotLinks = new AtomicReferenceArray<>((int) ((DEREF_HANDLE_SLOT_COUNT + DEREF_SLOT_CHUNK_SIZE - 1) >> DEREF_SLOT_CHUNK_SHIFT));
 
-    private static final class FreeListNode {
-        protected FreeListNode(long address, FreeListNode next) {
-            this.address = address;
-            this.next = next;
-        }
-
-        private final long address;
-        private final FreeListNode next;
-    }
+    private final Assumption noDerefHandleAssumption = Truffle.getRuntime().createAssumption("no deref handle assumption");
 
     private static Unsafe getUnsafe() {
         CompilerAsserts.neverPartOfCompilation();
@@ -145,10 +150,7 @@ public final class LLVMMemory {
     public void free(long address) {
         if (address <= DEREF_HANDLE_SPACE_START && address > DEREF_HANDLE_SPACE_END) {
             assert isAllocated(address) : "double-free of " + Long.toHexString(address);
-            synchronized (freeListLock) {
-                // We need to mask because we allow creating handles with an offset.
-                freeList = new FreeListNode(address & ~DEREF_HANDLE_OBJECT_MASK, freeList);
-            }
+            freeDerefMemory(address);
         } else {
             try {
                 unsafe.freeMemory(address);
@@ -184,28 +186,64 @@ public final class LLVMMemory {
     /**
      * Allocates {@code #OBJECT_SIZE} bytes in the Kernel space.
      */
+    @TruffleBoundary
     public LLVMNativePointer allocateDerefMemory() {
         noDerefHandleAssumption.invalidate();
 
         // preferably consume from free list
-        synchronized (freeListLock) {
-            if (freeList != null) {
-                FreeListNode n = freeList;
-                freeList = n.next;
-                return LLVMNativePointer.create(n.address);
+        long head;
+        int slot;
+        do {
+            head = derefFreeListHead.get();
+            slot = (int) head;
+            if (slot == DEREF_FREE_LIST_EMPTY) {
+                return LLVMNativePointer.create(getDerefSlotAddress(allocateDerefSlot()));
             }
-        }
+        } while (!derefFreeListHead.compareAndSet(head, nextDerefFreeListHead(head, getDerefSlotLinks(slot)[slot & DEREF_SLOT_CHUNK_MASK])));
+        return LLVMNativePointer.create(getDerefSlotAddress(slot));
+    }
 
-        synchronized (derefSpaceTopLock) {
-            LLVMNativePointer addr = LLVMNativePointer.create(derefSpaceTop);
-            assert derefSpaceTop > 0L;
-            derefSpaceTop -= DEREF_HANDLE_OBJECT_SIZE;
-            if (derefSpaceTop < DEREF_HANDLE_SPACE_END) {
-                CompilerDirectives.transferToInterpreter();
-                throw new OutOfMemoryError();
-            }
-            return addr;
+    @TruffleBoundary
+    private void freeDerefMemory(long address) {
+        // We need to mask because we allow creating handles with an offset.
+        int slot = getDerefSlot(address & ~DEREF_HANDLE_OBJECT_MASK);
+        int[] links = getDerefSlotLinks(slot);
+        long head;
+        do {
+            head = derefFreeListHead.get();
+            links[slot & DEREF_SLOT_CHUNK_MASK] = (int) head;
+        } while (!derefFreeListHead.compareAndSet(head, nextDerefFreeListHead(head, slot)));
+    }
+
+    private int allocateDerefSlot() {
+        long slot = derefSlotTop.getAndIncrement();
+        if (slot >= DEREF_HANDLE_SLOT_COUNT) {
+            CompilerDirectives.transferToInterpreter();
+            throw new OutOfMemoryError();
+        }
+        int chunk = (int) (slot >> DEREF_SLOT_CHUNK_SHIFT);
+        if (derefSlotLinks.get(chunk) == null) {
+            derefSlotLinks.compareAndSet(chunk, null, new int[DEREF_SLOT_CHUNK_SIZE]);
         }
+        return (int) slot;
+    }
+
+    private int[] getDerefSlotLinks(int slot) {
+        int[] links = derefSlotLinks.get(slot >> DEREF_SLOT_CHUNK_SHIFT);
+        assert links != null;
+        return links;
+    }
+
+    private static long nextDerefFreeListHead(long oldHead, int slot) {
+        return ((oldHead & ~DEREF_FREE_LIST_SLOT_MASK) + DEREF_FREE_LIST_STAMP) | (slot & DEREF_FREE_LIST_SLOT_MASK);
+    }
+
+    private static long getDerefSlotAddress(int slot) {
+        return DEREF_HANDLE_SPACE_START - slot * DEREF_HANDLE_OBJECT_SIZE;
+    }
+
+    private static int getDerefSlot(long address) {
+        return (int) ((DEREF_HANDLE_SPACE_START - address) / DEREF_HANDLE_OBJECT_SIZE);
     }
 
     public boolean getI1(LLVMNativePointer addr) {
@@ -899,22 +937,35 @@ public final class LLVMMemory {
         return !noDerefHandleAssumption.isValid() && addr.asNative() > DEREF_HANDLE_SPACE_END;
     }
 
+    /**
+     * Returns the slot index of the deref handle that contains {@code address}, or {@code -1} if
+     * the address is not in the deref handle space. Slot indices are dense, starting at 0.
+     */
+    public static int getDerefHandleSlot(long address) {
+        if (address <= DEREF_HANDLE_SPACE_START && address > DEREF_HANDLE_SPACE_END) {
+            return getDerefSlot(address & ~DEREF_HANDLE_OBJECT_MASK);
+        }
+        return -1;
+    }
+
+    public static long getDerefHandleSlotCount() {
+        return DEREF_HANDLE_SLOT_COUNT;
+    }
+
     public static long getDerefHandleObjectMask() {
         return DEREF_HANDLE_OBJECT_SIZE - 1;
     }
 
     private boolean isAllocated(long address) {
-        synchronized (derefSpaceTopLock) {
-            if (address <= derefSpaceTop) {
-                return false;
-            }
+        int slot = getDerefSlot(address);
+        if (slot >= derefSlotTop.get()) {
+            return false;
         }
 
-        synchronized (freeListLock) {
-            for (FreeListNode cur = freeList; cur != null; cur = cur.next) {
-                if (cur.address == address) {
-                    return false;
-                }
+        // only used in assertions, so we do not care that the free list may change concurrently
+        for (int cur = (int) derefFreeListHead.get(); cur != DEREF_FREE_LIST_EMPTY; cur = getDerefSlotLinks(cur)[cur & DEREF_SLOT_CHUNK_MASK]) {
+            if (cur == slot) {
+                return false;
             }
         }
         return true;
@@ -0,0 +1,490 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.runtime.memory;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
+
+/**
+ * A size-class allocator for the guest heap (malloc, calloc, realloc and free).
+ *
+ * Small requests are rounded up to one of {@link #CLASS_COUNT} size classes. Each class is served
+ * from {@link #SPAN_SIZE spans} that are carved out of large regions, which are obtained from
+ * {@link LLVMMemory}, so whether an address belongs to the pool is decided by the region that
+ * contains it. Freed blocks go to a per-thread cache first, so that the common malloc/free pattern
+ * of a single thread never takes a lock. Threads exchange blocks in batches with a per-class central
+ * free list. Requests above {@link #MAX_SMALL_SIZE} bypass the pool and are allocated directly.
+ *
+ * A pooled block is not a native allocation of its own, so it must never be passed to the native
+ * {@code free}. The allocator is therefore only used if native code cannot be called (see
+ * {@code LLVMContext}). Pointers that were not allocated by this allocator are passed through to
+ * {@link LLVMMemory}.
+ */
+public final class LLVMPooledAllocator {
+
+    private static final int ALIGNMENT = 16;
+
+    private static final int SPAN_SHIFT = 16;
+    private static final long SPAN_SIZE = 1L << SPAN_SHIFT;
+    private static final int SPANS_PER_REGION = 64;
+    private static final long REGION_SIZE = SPAN_SIZE * SPANS_PER_REGION;
+
+    static final long MAX_SMALL_SIZE = 16 * 1024;
+
+    /* number of blocks that a thread cache can hold per size class */
+    private static final int CACHE_CAPACITY = 64;
+    /* number of blocks that are moved between a thread cache and a central free list at once */
+    private static final int BATCH_SIZE = CACHE_CAPACITY / 2;
+
+    private static final int[] CLASS_SIZES = createClassSizes();
+    private static final int CLASS_COUNT = CLASS_SIZES.length;
+    private static final byte[] CLASS_FOR_SIZE = createClassLookupTable();
+
+    private static final byte NO_CLASS = -1;
+
+    /* indices of the statistics of a thread cache */
+    private static final int ALLOCATIONS = 0;
+    private static final int CACHE_HITS = 1;
+    private static final int FREES = 2;
+    private static final int REQUESTED_BYTES = 3;
+    private static final int ALLOCATED_BYTES = 4;
+    private static final int LIVE_BYTES = 5;
+    private static final int STATISTICS_COUNT = 6;
+
+    private final LLVMMemory memory;
+
+    private final CentralFreeList[] centralFreeLists;
+    private final ConcurrentHashMap<Long, Long> largeBlocks = new ConcurrentHashMap<>();
+
+    private final Object regionLock = new Object();
+    /* sorted by base address, replaced on every change so that lookups do not need a lock */
+    private volatile Region[] regions = new Region[0];
+    private Region currentRegion;
+
+    private final List<ThreadCache> threadCaches = new ArrayList<>();
+    private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<>();
+    /* statistics of the thread caches that were already released */
+    private final long[] releasedStatistics = new long[STATISTICS_COUNT];
+
+    private final AtomicLong centralRefills = new AtomicLong();
+    private final AtomicLong spanRefills = new AtomicLong();
+    private final AtomicLong largeAllocations = new AtomicLong();
+    private final AtomicLong largeFrees = new AtomicLong();
+    private final AtomicLong largeBytes = new AtomicLong();
+    private final AtomicLong foreignFrees = new AtomicLong();
+
+    public LLVMPooledAllocator(LLVMMemory memory) {
+        this.memory = memory;
+        this.centralFreeLists = new CentralFreeList[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            centralFreeLists[i] = new CentralFreeList(CLASS_SIZES[i]);
+        }
+    }
+
+    private static int[] createClassSizes() {
+        // 16 byte steps up to 128 bytes, then four classes per power of two
+        int[] sizes = new int[8 + 4 * 7];
+        int index = 0;
+        for (int size = ALIGNMENT; size <= 128; size += ALIGNMENT) {
+            sizes[index++] = size;
+        }
+        for (int base = 128; base < MAX_SMALL_SIZE; base *= 2) {
+            int step = base / 4;
+            for (int i = 1; i <= 4; i++) {
+                sizes[index++] = base + i * step;
+            }
+        }
+        assert index == sizes.length && sizes[index - 1] == MAX_SMALL_SIZE;
+        return sizes;
+    }
+
+    private static byte[] createClassLookupTable() {
+        byte[] table = new byte[(int) (MAX_SMALL_SIZE / ALIGNMENT) + 1];
+        int sizeClass = 0;
+        for (int i = 0; i < table.length; i++) {
+            while (CLASS_SIZES[sizeClass] < i * ALIGNMENT) {
+                sizeClass++;
+            }
+            table[i] = (byte) sizeClass;
+        }
+        return table;
+    }
+
+    private static int getSizeClass(long size) {
+        assert size <= MAX_SMALL_SIZE;
+        return CLASS_FOR_SIZE[(int) ((size + ALIGNMENT - 1) / ALIGNMENT)];
+    }
+
+    private ThreadCache getThreadCache() {
+        ThreadCache cache = threadCache.get();
+        if (cache == null || cache.released) {
+            cache = new ThreadCache(Thread.currentThread());
+            synchronized (threadCaches) {
+                threadCaches.add(cache);
+            }
+            threadCache.set(cache);
+        }
+        return cache;
+    }
+
+    @TruffleBoundary
+    public LLVMNativePointer allocate(long size) {
+        if (size < 0) {
+            throw new OutOfMemoryError();
+        }
+        if (size > MAX_SMALL_SIZE) {
+            return LLVMNativePointer.create(allocateLarge(size));
+        }
+        int sizeClass = getSizeClass(size);
+        ThreadCache cache = getThreadCache();
+        cache.add(ALLOCATIONS, 1);
+        cache.add(REQUESTED_BYTES, size);
+        cache.add(ALLOCATED_BYTES, CLASS_SIZES[sizeClass]);
+        cache.add(LIVE_BYTES, CLASS_SIZES[sizeClass]);
+        return LLVMNativePointer.create(cache.pop(sizeClass));
+    }
+
+    @TruffleBoundary
+    public void free(LLVMNativePointer pointer) {
+        long address = pointer.asNative();
+        if (address == 0) {
+            return;
+        }
+        int sizeClass = findSizeClass(address);
+        if (sizeClass != NO_CLASS) {
+            ThreadCache cache = getThreadCache();
+            cache.add(FREES, 1);
+            cache.add(LIVE_BYTES, -CLASS_SIZES[sizeClass]);
+            cache.push(sizeClass, address);
+        } else if (!freeLarge(address)) {
+            foreignFrees.incrementAndGet();
+            memory.free(address);
+        }
+    }
+
+    @TruffleBoundary
+    public LLVMNativePointer reallocate(LLVMNativePointer pointer, long size) {
+        long address = pointer.asNative();
+        if (address == 0) {
+            return allocate(size);
+        }
+
+        long oldSize;
+        int sizeClass = findSizeClass(address);
+        if (sizeClass != NO_CLASS) {
+            oldSize = CLASS_SIZES[sizeClass];
+            if (size <= oldSize && (size > MAX_SMALL_SIZE || getSizeClass(size) == sizeClass)) {
+                return pointer;
+            }
+        } else {
+            Long largeSize = largeBlocks.get(address);
+            if (largeSize == null) {
+                // not allocated by us, let the native allocator handle it
+                return memory.reallocateMemory(pointer, size);
+            }
+            oldSize = largeSize;
+        }
+
+        if (size == 0) {
+            free(pointer);
+            return LLVMNativePointer.createNull();
+        }
+
+        LLVMNativePointer result = allocate(size);
+        memory.copyMemory(address, result.asNative(), Math.min(oldSize, size));
+        free(pointer);
+        return result;
+    }
+
+    private long allocateLarge(long size) {
+        long address = memory.allocateMemory(size).asNative();
+        largeBlocks.put(address, size);
+        largeAllocations.incrementAndGet();
+        largeBytes.addAndGet(size);
+        return address;
+    }
+
+    private boolean freeLarge(long address) {
+        Long size = largeBlocks.remove(address);
+        if (size == null) {
+            return false;
+        }
+        largeFrees.incrementAndGet();
+        largeBytes.addAndGet(-size);
+        memory.free(address);
+        return true;
+    }
+
+    private int findSizeClass(long address) {
+        Region[] r = regions;
+        int low = 0;
+        int high = r.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            Region region = r[mid];
+            if (address < region.base) {
+                high = mid - 1;
+            } else if (address >= region.base + REGION_SIZE) {
+                low = mid + 1;
+            } else {
+                return region.spanClasses[(int) ((address - region.base) >>> SPAN_SHIFT)];
+            }
+        }
+        return NO_CLASS;
+    }
+
+    /**
+     * Assigns a fresh span to a size class and returns its start address.
+     */
+    private long allocateSpan(int sizeClass) {
+        synchronized (regionLock) {
+            if (currentRegion == null || currentRegion.usedSpans == SPANS_PER_REGION) {
+                currentRegion = new Region(memory.allocateMemory(REGION_SIZE).asNative());
+                Region[] newRegions = Arrays.copyOf(regions, regions.length + 1);
+                newRegions[newRegions.length - 1] = currentRegion;
+                Arrays.sort(newRegions, (a, b) -> Long.compare(a.base, b.base));
+                regions = newRegions;
+            }
+            int span = currentRegion.usedSpans++;
+            currentRegion.spanClasses[span] = (byte) sizeClass;
+            return currentRegion.base + span * SPAN_SIZE;
+        }
+    }
+
+    /**
+     * Returns the blocks that the cache of {@code thread} holds to the central free lists, so that
+     * other threads can reuse them after {@code thread} is gone. This must only be called when
+     * {@code thread} no longer uses this allocator. If it does so anyway, it gets a new cache.
+     */
+    @TruffleBoundary
+    public void releaseThreadCache(Thread thread) {
+        synchronized (threadCaches) {
+            for (int i = 0; i < threadCaches.size(); i++) {
+                ThreadCache cache = threadCaches.get(i);
+                if (cache.owner == thread) {
+                    threadCaches.remove(i--);
+                    cache.released = true;
+                    cache.flush();
+                    for (int j = 0; j < STATISTICS_COUNT; j++) {
+                        releasedStatistics[j] += cache.statistics.get(j);
+                    }
+                }
+            }
+        }
+    }
+
+    @TruffleBoundary
+    public void dispose() {
+        synchronized (regionLock) {
+            for (Region region : regions) {
+                memory.free(region.base);
+            }
+            regions = new Region[0];
+            currentRegion = null;
+        }
+        for (Long address : largeBlocks.keySet()) {
+            memory.free(address);
+        }
+        largeBlocks.clear();
+    }
+
+    @TruffleBoundary
+    public void printStatistics(PrintStream stream) {
+        long[] totals;
+        synchronized (threadCaches) {
+            totals = Arrays.copyOf(releasedStatistics, STATISTICS_COUNT);
+            for (ThreadCache cache : threadCaches) {
+                for (int j = 0; j < STATISTICS_COUNT; j++) {
+                    totals[j] += cache.statistics.get(j);
+                }
+            }
+        }
+        long allocations = totals[ALLOCATIONS];
+        long liveBytes = totals[LIVE_BYTES];
+
+        long carvedBytes = 0;
+        long reservedSpans = 0;
+        for (CentralFreeList list : centralFreeLists) {
+            synchronized (list) {
+                carvedBytes += list.carvedBlocks * list.blockSize;
+                reservedSpans += list.spans;
+            }
+        }
+        long reservedBytes = reservedSpans * SPAN_SIZE;
+
+        stream.println("Pooled allocator statistics:");
+        stream.println(String.format("  small allocations: %d, frees: %d, thread cache hit rate: %.2f%%", allocations, totals[FREES], percent(totals[CACHE_HITS], allocations)));
+        stream.println(String.format("  refills from central free lists: %d, from fresh spans: %d", centralRefills.get(), spanRefills.get()));
+        stream.println(String.format("  internal fragmentation (size class rounding): %.2f%%", 100.0 - percent(totals[REQUESTED_BYTES], totals[ALLOCATED_BYTES])));
+        stream.println(String.format("  reserved: %d regions, %d spans, %d bytes; live small bytes: %d; carved but free: %d bytes (%.2f%% of reserved)", regions.length, reservedSpans, reservedBytes,
+                        liveBytes, carvedBytes - liveBytes, percent(carvedBytes - liveBytes, reservedBytes)));
+        stream.println(String.format("  large allocations: %d, frees: %d, live large bytes: %d; foreign frees: %d", largeAllocations.get(), largeFrees.get(), largeBytes.get(), foreignFrees.get()));
+    }
+
+    private static double percent(long part, long total) {
+        return total == 0 ? 0 : 100.0 * part / total;
+    }
+
+    private static final class Region {
+        private final long base;
+        private final byte[] spanClasses;
+        private int usedSpans;
+
+        Region(long base) {
+            this.base = base;
+            this.spanClasses = new byte[SPANS_PER_REGION];
+            Arrays.fill(spanClasses, NO_CLASS);
+        }
+    }
+
+    private final class CentralFreeList {
+        private final int blockSize;
+        private long[] blocks = new long[CACHE_CAPACITY];
+        private int count;
+
+        private long spanTop;
+        private long spanEnd;
+
+        private long carvedBlocks;
+        private long spans;
+
+        CentralFreeList(int blockSize) {
+            this.blockSize = blockSize;
+        }
+
+        /**
+         * Moves up to {@link #BATCH_SIZE} blocks into {@code target} and returns the number of
+         * blocks that were moved.
+         */
+        synchronized int takeBatch(int sizeClass, long[] target) {
+            if (count > 0) {
+                int n = Math.min(count, BATCH_SIZE);
+                count -= n;
+                System.arraycopy(blocks, count, target, 0, n);
+                centralRefills.incrementAndGet();
+                return n;
+            }
+
+            if (spanTop + blockSize > spanEnd) {
+                spanTop = allocateSpan(sizeClass);
+                spanEnd = spanTop + SPAN_SIZE;
+                spans++;
+            }
+            int n = (int) Math.min(BATCH_SIZE, (spanEnd - spanTop) / blockSize);
+            for (int i = 0; i < n; i++) {
+                target[i] = spanTop;
+                spanTop += blockSize;
+            }
+            carvedBlocks += n;
+            spanRefills.incrementAndGet();
+            return n;
+        }
+
+        synchronized void putBatch(long[] source, int offset, int n) {
+            if (count + n > blocks.length) {
+                blocks = Arrays.copyOf(blocks, Math.max(blocks.length * 2, count + n));
+            }
+            System.arraycopy(source, offset, blocks, count, n);
+            count += n;
+        }
+    }
+
+    private final class ThreadCache {
+        private final Thread owner;
+        private final long[][] blocks = new long[CLASS_COUNT][];
+        private final int[] counts = new int[CLASS_COUNT];
+        private volatile boolean released;
+
+        /*
+         * Only written by the owning thread. The ordered stores are cheap and make the values
+         * visible to the thread that prints the statistics.
+         */
+        private final AtomicLongArray statistics = new AtomicLongArray(STATISTICS_COUNT);
+
+        ThreadCache(Thread owner) {
+            this.owner = owner;
+        }
+
+        void add(int counter, long delta) {
+            statistics.lazySet(counter, statistics.get(counter) + delta);
+        }
+
+        private long[] getBlocks(int sizeClass) {
+            long[] b = blocks[sizeClass];
+            if (b == null) {
+                b = new long[CACHE_CAPACITY];
+                blocks[sizeClass] = b;
+            }
+            return b;
+        }
+
+        long pop(int sizeClass) {
+            long[] b = getBlocks(sizeClass);
+            int n = counts[sizeClass];
+            if (n > 0) {
+                add(CACHE_HITS, 1);
+            } else {
+                n = centralFreeLists[sizeClass].takeBatch(sizeClass, b);
+            }
+            counts[sizeClass] = n - 1;
+            return b[n - 1];
+        }
+
+        void push(int sizeClass, long address) {
+            long[] b = getBlocks(sizeClass);
+            int n = counts[sizeClass];
+            if (n == CACHE_CAPACITY) {
+                // return the older half of the cache to the central free list
+                centralFreeLists[sizeClass].putBatch(b, 0, BATCH_SIZE);
+                System.arraycopy(b, BATCH_SIZE, b, 0, n - BATCH_SIZE);
+                n -= BATCH_SIZE;
+            }
+            b[n] = address;
+            counts[sizeClass] = n + 1;
+        }
+
+        void flush() {
+            for (int sizeClass = 0; sizeClass < CLASS_COUNT; sizeClass++) {
+                if (counts[sizeClass] > 0) {
+                    centralFreeLists[sizeClass].putBatch(blocks[sizeClass], 0, counts[sizeClass]);
+                    counts[sizeClass] = 0;
+                }
+            }
+        }
+    }
+}
@@ -37,24 +37,62 @@ import com.oracle.truffle.api.frame.VirtualFrame;
 /**
  * Implements a stack that grows from the top to the bottom. The stack is allocated lazily when it
  * is accessed for the first time.
+ *
+ * If the stack is created with a {@link StackAllocator}, its address space is only reserved when
+ * it is allocated, and memory is committed in chunks while the stack pointer moves down. A guard
+ * region below the stack is never committed. Without an allocator, the whole stack is allocated
+ * with {@link LLVMMemory#allocateMemory}.
  */
 public final class LLVMStack {
 
     public static final String FRAME_ID = "<stackpointer>";
 
+    private static final long PAGE_SIZE = 4096;
+    private static final long GUARD_SIZE = 64 * 1024;
+    private static final long COMMIT_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * Provides reserved address space for stacks, e.g., using mmap and mprotect.
+     */
+    public interface StackAllocator {
+
+        /**
+         * Reserves {@code size} bytes of address space that must not be accessed before it is
+         * committed. Returns 0 if the address space could not be reserved.
+         */
+        long reserve(long size);
+
+        /**
+         * Makes the page-aligned range [address, address + size) of a reservation readable and
+         * writable.
+         */
+        boolean commit(long address, long size);
+
+        void release(long address, long size);
+    }
+
     private final int stackSize;
+    private final StackAllocator allocator;
 
     private long lowerBounds;
     private long upperBounds;
+    private long committedLowerBounds;
     private boolean isAllocated;
+    private volatile boolean isFreed;
 
     private long stackPointer;
 
     public LLVMStack(int stackSize) {
+        this(stackSize, null);
+    }
+
+    public LLVMStack(int stackSize, StackAllocator allocator) {
         this.stackSize = stackSize;
+        this.allocator = allocator;
 
         lowerBounds = 0;
         upperBounds = 0;
+        committedLowerBounds = 0;
         stackPointer = 0;
         isAllocated = false;
     }
@@ -89,17 +127,50 @@ public final class LLVMStack {
         public StackPointer newFrame() {
             return new StackPointer(stackPointer);
         }
+
+        private void ensureCommitted(long address) {
+            if (address < committedLowerBounds) {
+                grow(address);
+            }
+        }
     }
 
     @TruffleBoundary
     private void allocate(LLVMMemory memory) {
-        final long stackAllocation = memory.allocateMemory(stackSize * 1024).asNative();
-        lowerBounds = stackAllocation;
-        upperBounds = stackAllocation + stackSize * 1024;
+        final long size = stackSize * 1024L;
+        if (allocator == null) {
+            final long stackAllocation = memory.allocateMemory(size).asNative();
+            lowerBounds = stackAllocation;
+            upperBounds = stackAllocation + size;
+            committedLowerBounds = lowerBounds;
+        } else {
+            final long reservedSize = (size + PAGE_SIZE - 1) & -PAGE_SIZE;
+            final long reservation = allocator.reserve(reservedSize + GUARD_SIZE);
+            if (reservation == 0) {
+                throw new OutOfMemoryError("Could not reserve a stack of " + stackSize + " KB.");
+            }
+            lowerBounds = reservation + GUARD_SIZE;
+            upperBounds = lowerBounds + reservedSize;
+            committedLowerBounds = upperBounds;
+        }
         isAllocated = true;
         stackPointer = upperBounds;
     }
 
+    @TruffleBoundary
+    private void grow(long address) {
+        if (address < lowerBounds) {
+            throw new LLVMStackOverflowException(String.format("Stack overflow: allocation at 0x%x is below the stack limit 0x%x (stack size %d KB, see llvm.stackSizeKB).", address, lowerBounds,
+                            stackSize));
+        }
+        assert allocator != null;
+        final long newCommittedLowerBounds = Math.max(lowerBounds, Math.min(address & -PAGE_SIZE, committedLowerBounds - COMMIT_CHUNK_SIZE));
+        if (!allocator.commit(newCommittedLowerBounds, committedLowerBounds - newCommittedLowerBounds)) {
+            throw new OutOfMemoryError("Could not commit stack memory.");
+        }
+        committedLowerBounds = newCommittedLowerBounds;
+    }
+
     private long getStackPointer(LLVMMemory memory) {
         if (!isAllocated) {
             allocate(memory);
@@ -111,15 +182,40 @@ public final class LLVMStack {
         return new StackPointer(stackPointer);
     }
 
+    /**
+     * Whether {@link #free} was called on this stack. A freed stack must not be handed out again.
+     */
+    public boolean isFreed() {
+        return isFreed;
+    }
+
+    /**
+     * Returns the number of bytes of this stack that were committed when it was deepest. Memory is
+     * never decommitted, so this is the currently committed size.
+     */
+    public long getPeakCommittedSize() {
+        return upperBounds - committedLowerBounds;
+    }
+
+    public long getSize() {
+        return stackSize * 1024L;
+    }
+
     @TruffleBoundary
     public void free(LLVMMemory memory) {
+        isFreed = true;
         if (isAllocated) {
             /*
              * It can be that the stack was never allocated.
              */
-            memory.free(lowerBounds);
+            if (allocator == null) {
+                memory.free(lowerBounds);
+            } else {
+                allocator.release(lowerBounds - GUARD_SIZE, upperBounds - lowerBounds + GUARD_SIZE);
+            }
             lowerBounds = 0;
             upperBounds = 0;
+            committedLowerBounds = 0;
             stackPointer = 0;
             isAllocated = false;
         }
@@ -135,6 +231,7 @@ public final class LLVMStack {
         assert stackPointer != 0;
         final long alignedAllocation = (stackPointer - size) & -alignment;
         assert alignedAllocation <= stackPointer;
+        basePointer.ensureCommitted(alignedAllocation);
         basePointer.set(alignedAllocation);
         return alignedAllocation;
     }
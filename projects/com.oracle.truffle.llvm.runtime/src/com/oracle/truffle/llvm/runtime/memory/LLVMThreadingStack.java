@@ -29,43 +29,78 @@
  */
 package com.oracle.truffle.llvm.runtime.memory;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.io.PrintStream;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.oracle.truffle.api.CompilerDirectives.TruffleBoundary;
+import com.oracle.truffle.llvm.runtime.memory.LLVMStack.StackAllocator;
 
 /**
  * Holds the (lazily allocated) stacks of all threads that are active in one particular LLVMContext.
+ *
+ * The stack of the main thread is kept in a final field, so that compiled code can find it without
+ * a boundary. All other threads still find their stack through a thread local behind a boundary,
+ * unless {@link com.oracle.truffle.llvm.runtime.LLVMGetStackNode} caches it. The map of all stacks
+ * is only used to free the stacks when threads or the context are disposed.
  */
 public final class LLVMThreadingStack {
-    // we are not able to clean up a thread local properly, so we are using a map instead
-    private final Map<Thread, LLVMStack> threadMap;
+    private final ThreadLocal<LLVMStack> currentStack;
+    // we are not able to clean up a thread local properly, so we also keep all stacks in a map
+    private final ConcurrentHashMap<Thread, LLVMStack> threadMap;
     private final int stackSize;
+    private final StackAllocator allocator;
+    private final PrintStream statistics;
     private final Thread mainThread;
+    private final LLVMStack mainThreadStack;
+    private boolean disposed;
 
     public LLVMThreadingStack(Thread mainTread, int stackSize) {
+        this(mainTread, stackSize, null, null);
+    }
+
+    /**
+     * @param allocator reserves the stacks' address space, or {@code null} to allocate each stack
+     *            in full with {@link LLVMMemory}
+     * @param statistics if not {@code null}, the peak committed size of each stack is printed to
+     *            this stream when the stack is freed
+     */
+    public LLVMThreadingStack(Thread mainTread, int stackSize, StackAllocator allocator, PrintStream statistics) {
         this.mainThread = mainTread;
         this.stackSize = stackSize;
-        this.threadMap = new HashMap<>();
+        this.allocator = allocator;
+        this.statistics = statistics;
+        this.threadMap = new ConcurrentHashMap<>();
+        this.currentStack = new ThreadLocal<>();
+        this.mainThreadStack = new LLVMStack(stackSize, allocator);
+        threadMap.put(mainTread, mainThreadStack);
     }
 
     public LLVMStack getStack() {
-        LLVMStack s = getCurrentStack();
-        if (s == null) {
-            s = createNewStack();
+        if (Thread.currentThread() == mainThread) {
+            return mainThreadStack;
         }
-        return s;
+        return getCurrentStack();
     }
 
     @TruffleBoundary
     private LLVMStack getCurrentStack() {
-        return threadMap.get(Thread.currentThread());
+        LLVMStack s = currentStack.get();
+        if (s == null || s.isFreed()) {
+            s = createNewStack();
+        }
+        return s;
     }
 
-    @TruffleBoundary
-    private synchronized LLVMStack createNewStack() {
-        LLVMStack s = new LLVMStack(stackSize);
-        threadMap.put(Thread.currentThread(), s);
+    private LLVMStack createNewStack() {
+        LLVMStack s = new LLVMStack(stackSize, allocator);
+        synchronized (this) {
+            // a stack that is registered after the context was disposed would never be freed
+            if (disposed) {
+                throw new IllegalStateException("Cannot create a stack after the context was disposed.");
+            }
+            threadMap.put(Thread.currentThread(), s);
+        }
+        currentStack.set(s);
         return s;
     }
 
@@ -75,21 +110,33 @@ public final class LLVMThreadingStack {
          * Do not free the stack of the main thread: Sulong#disposeThread runs before
          * Sulong#disposeContext, which needs to call destructors that need a SP.
          */
-        if (mainThread != Thread.currentThread()) {
+        if (mainThread != thread) {
             free(memory, thread);
         }
     }
 
+    /**
+     * Frees the stack of the main thread and the stacks of all threads that were not disposed
+     * before, e.g. because they created a new stack while they were disposed.
+     */
     @TruffleBoundary
-    public void freeMainStack(LLVMMemory memory) {
-        free(memory, mainThread);
+    public void dispose(LLVMMemory memory) {
+        synchronized (this) {
+            disposed = true;
+        }
+        for (Thread thread : threadMap.keySet()) {
+            free(memory, thread);
+        }
     }
 
-    private synchronized void free(LLVMMemory memory, Thread thread) {
-        LLVMStack s = threadMap.get(thread);
+    private void free(LLVMMemory memory, Thread thread) {
+        // removing the stack from the map first guarantees that only one thread frees it
+        LLVMStack s = threadMap.remove(thread);
         if (s != null) {
+            if (statistics != null) {
+                statistics.println(String.format("Stack of thread %s: peak committed %d KB of %d KB", thread.getName(), s.getPeakCommittedSize() / 1024, s.getSize() / 1024));
+            }
             s.free(memory);
-            threadMap.remove(thread);
         }
     }
 }
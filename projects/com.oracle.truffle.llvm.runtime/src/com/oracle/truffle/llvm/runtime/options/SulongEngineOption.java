@@ -95,6 +95,62 @@ public final class SulongEngineOption {
     public static final String STACKTRACE_ON_ABORT_NAME = "llvm.printStackTraceOnAbort";
     public static final String STACKTRACE_ON_ABORT_INFO = "Prints a C stack trace when abort() is called.";
 
+    public static final OptionKey<Boolean> POOLED_ALLOCATOR = new OptionKey<>(false);
+    public static final String POOLED_ALLOCATOR_NAME = "llvm.pooledAllocator";
+    public static final String POOLED_ALLOCATOR_INFO = "Serve malloc, calloc, realloc and free from a Sulong-managed size-class allocator with per-thread caches. Only used if external native access is disabled, because native code must not free pooled memory.";
+
+    public static final OptionKey<String> ALLOCATOR_STATS = new OptionKey<>(String.valueOf(false));
+    public static final String ALLOCATOR_STATS_NAME = "llvm.printAllocatorStats";
+    public static final String ALLOCATOR_STATS_INFO = "Prints hit-rate and fragmentation statistics of the pooled allocator when the context is disposed. Can be \'true\', \'false\', \'stdout\', \'stderr\' or a filepath.";
+
+    public static final OptionKey<String> HANDLE_STATS = new OptionKey<>(String.valueOf(false));
+    public static final String HANDLE_STATS_NAME = "llvm.printHandleStats";
+    public static final String HANDLE_STATS_INFO = "Prints the number of live managed-object handles and the handle lookup rate when the context is disposed. Can be \'true\', \'false\', \'stdout\', \'stderr\' or a filepath.";
+
+    public static final OptionKey<Boolean> RESERVE_STACKS = new OptionKey<>(false);
+    public static final String RESERVE_STACKS_NAME = "llvm.reserveStacks";
+    public static final String RESERVE_STACKS_INFO = "Only reserve the address space of each stack and commit it on demand, with a guard region below the stack.";
+
+    public static final OptionKey<String> STACK_STATS = new OptionKey<>(String.valueOf(false));
+    public static final String STACK_STATS_NAME = "llvm.printStackStats";
+    public static final String STACK_STATS_INFO = "Prints the peak committed size of each thread's stack when the stack is freed. Can be \'true\', \'false\', \'stdout\', \'stderr\' or a filepath.";
+
+    public static final OptionKey<Boolean> SCALAR_REPLACEMENT = new OptionKey<>(false);
+    public static final String SCALAR_REPLACEMENT_NAME = "llvm.scalarReplaceAllocas";
+    public static final String SCALAR_REPLACEMENT_INFO = "Keep allocas whose address does not escape the function in frame slots instead of on the stack.";
+
+    public static final OptionKey<Boolean> MANAGED_HEAP = new OptionKey<>(false);
+    public static final String MANAGED_HEAP_NAME = "llvm.managedHeap";
+    public static final String MANAGED_HEAP_INFO = "Back malloc, calloc and realloc with Java arrays that are only copied to native memory when a pointer to them escapes to native code.";
+
+    public static final OptionKey<Integer> PARSE_THREADS = new OptionKey<>(1);
+    public static final String PARSE_THREADS_NAME = "llvm.parseThreads";
+    public static final String PARSE_THREADS_INFO = "The number of threads that scan bitcode libraries in parallel while they are loaded. 0 uses one thread per available processor, 1 scans all libraries on the loading thread.";
+
+    public static final OptionKey<String> PARSE_STATS = new OptionKey<>(String.valueOf(false));
+    public static final String PARSE_STATS_NAME = "llvm.printParseStats";
+    public static final String PARSE_STATS_INFO = "Prints the time spent scanning and linking each bitcode library, and failures to write the module cache. Can be \'true\', \'false\', \'stdout\', \'stderr\' or a filepath.";
+
+    public static final OptionKey<String> MODULE_CACHE = new OptionKey<>("");
+    public static final String MODULE_CACHE_NAME = "llvm.moduleCache";
+    public static final String MODULE_CACHE_INFO = "A directory in which scanned bitcode modules are cached between runs. The cache is disabled if empty.";
+
+    public static final OptionKey<Boolean> LAZY_GLOBALS = new OptionKey<>(false);
+    public static final String LAZY_GLOBALS_NAME = "llvm.lazyGlobalInit";
+    public static final String LAZY_GLOBALS_INFO = "Initialize constant global variables whose initializer does not refer to other symbols when their address is first taken instead of when the library is loaded.";
+
+    public static final OptionKey<Boolean> LOOP_NODES = new OptionKey<>(false);
+    public static final String LOOP_NODES_NAME = "llvm.loopNodes";
+    public static final String LOOP_NODES_INFO = "Split the natural loops of a function into separate loop nodes that are compiled and replaced on stack independently of the function.";
+
+    public static final OptionKey<Integer> OUTLINE_THRESHOLD = new OptionKey<>(0);
+    public static final String OUTLINE_THRESHOLD_NAME = "llvm.outlineThreshold";
+    public static final String OUTLINE_THRESHOLD_INFO = "Split functions with more instructions than this threshold into regions that are compiled separately from the function. A loop is never split, so a function that is one big loop stays whole. 0 disables the splitting.";
+
+    public static final OptionKey<String> OUTLINE_STATS = new OptionKey<>(String.valueOf(false));
+    public static final String OUTLINE_STATS_NAME = "llvm.printOutlinedFunctions";
+    public static final String OUTLINE_STATS_INFO = "Prints the functions that were split into separately compiled regions, and the functions above the threshold that could not be split. Can be \'true\', \'false\', \'stdout\', \'stderr\' or a filepath.";
+
     public static List<OptionDescriptor> describeOptions() {
         ArrayList<OptionDescriptor> options = new ArrayList<>();
         options.add(OptionDescriptor.newBuilder(CONFIGURATION, CONFIGURATION_NAME).help(CONFIGURATION_INFO).category(OptionCategory.USER).build());
@@ -108,6 +164,20 @@ public final class SulongEngineOption {
         options.add(OptionDescriptor.newBuilder(PARSE_ONLY, PARSE_ONLY_NAME).help(PARSE_ONLY_INFO).category(OptionCategory.EXPERT).build());
         options.add(OptionDescriptor.newBuilder(ENABLE_LVI, ENABLE_LVI_NAME).help(ENABLE_LVI_INFO).category(OptionCategory.DEBUG).build());
         options.add(OptionDescriptor.newBuilder(STACKTRACE_ON_ABORT, STACKTRACE_ON_ABORT_NAME).help(STACKTRACE_ON_ABORT_INFO).category(OptionCategory.DEBUG).build());
+        options.add(OptionDescriptor.newBuilder(POOLED_ALLOCATOR, POOLED_ALLOCATOR_NAME).help(POOLED_ALLOCATOR_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(ALLOCATOR_STATS, ALLOCATOR_STATS_NAME).help(ALLOCATOR_STATS_INFO).category(OptionCategory.USER).build());
+        options.add(OptionDescriptor.newBuilder(HANDLE_STATS, HANDLE_STATS_NAME).help(HANDLE_STATS_INFO).category(OptionCategory.USER).build());
+        options.add(OptionDescriptor.newBuilder(RESERVE_STACKS, RESERVE_STACKS_NAME).help(RESERVE_STACKS_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(STACK_STATS, STACK_STATS_NAME).help(STACK_STATS_INFO).category(OptionCategory.USER).build());
+        options.add(OptionDescriptor.newBuilder(SCALAR_REPLACEMENT, SCALAR_REPLACEMENT_NAME).help(SCALAR_REPLACEMENT_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(MANAGED_HEAP, MANAGED_HEAP_NAME).help(MANAGED_HEAP_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(PARSE_THREADS, PARSE_THREADS_NAME).help(PARSE_THREADS_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(PARSE_STATS, PARSE_STATS_NAME).help(PARSE_STATS_INFO).category(OptionCategory.USER).build());
+        options.add(OptionDescriptor.newBuilder(MODULE_CACHE, MODULE_CACHE_NAME).help(MODULE_CACHE_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(LAZY_GLOBALS, LAZY_GLOBALS_NAME).help(LAZY_GLOBALS_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(LOOP_NODES, LOOP_NODES_NAME).help(LOOP_NODES_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(OUTLINE_THRESHOLD, OUTLINE_THRESHOLD_NAME).help(OUTLINE_THRESHOLD_INFO).category(OptionCategory.EXPERT).build());
+        options.add(OptionDescriptor.newBuilder(OUTLINE_STATS, OUTLINE_STATS_NAME).help(OUTLINE_STATS_INFO).category(OptionCategory.USER).build());
         return options;
     }
 
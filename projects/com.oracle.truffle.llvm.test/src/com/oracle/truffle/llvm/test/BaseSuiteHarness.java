@@ -35,6 +35,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -75,7 +76,7 @@ public abstract class BaseSuiteHarness extends BaseTestHarness {
             if (!candidate.toAbsolutePath().toFile().exists()) {
                 fail(getTestName(), new AssertionError("File " + candidate.toAbsolutePath().toFile() + " does not exist."));
             }
-            ProcessResult result = ProcessUtil.executeSulongTestMain(candidate.toAbsolutePath().toFile(), new String[]{});
+            ProcessResult result = ProcessUtil.executeSulongTestMain(candidate.toAbsolutePath().toFile(), new String[]{}, getContextOptions());
 
             int sulongRet = result.getReturnValue();
             if (sulongRet != (sulongRet & 0xFF)) {
@@ -96,6 +97,13 @@ public abstract class BaseSuiteHarness extends BaseTestHarness {
         return isSulong;
     }
 
+    /**
+     * The engine options with which the test candidates are run on Sulong.
+     */
+    protected Map<String, String> getContextOptions() {
+        return Collections.emptyMap();
+    }
+
     protected static void fail(String testName, AssertionError error) {
         failingTests.add(Paths.get(testName));
         throw error;
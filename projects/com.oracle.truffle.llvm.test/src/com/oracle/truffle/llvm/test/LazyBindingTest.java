@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.runtime.LLVMLanguage;
+import com.oracle.truffle.llvm.test.options.TestOptions;
+
+/**
+ * Undefined globals and functions are only bound when they are first used, so a library that
+ * declares them can be loaded as long as they are never accessed.
+ */
+public final class LazyBindingTest {
+
+    private static final File BITCODE = Paths.get(TestOptions.TEST_SUITE_PATH, "interop", "lazyBinding", "O0_MEM2REG.bc").toFile();
+
+    private static void assertLinkageFailure(Value function, String symbol) {
+        // every access must fail again, the first failure is not replaced by a stale value
+        for (int i = 0; i < 10; i++) {
+            try {
+                function.execute();
+                Assert.fail(symbol + " must not be found");
+            } catch (PolyglotException e) {
+                Assert.assertTrue(e.getMessage(), e.getMessage().contains(symbol));
+            }
+        }
+    }
+
+    @Test
+    public void testUndefinedSymbols() throws IOException {
+        try (Context context = Context.newBuilder().allowAllAccess(true).build()) {
+            Value library = context.eval(Source.newBuilder(LLVMLanguage.NAME, BITCODE).build());
+            Assert.assertEquals(42, library.getMember("defined_function").execute().asInt());
+
+            assertLinkageFailure(library.getMember("read_undefined_global"), "undefined_global");
+            assertLinkageFailure(library.getMember("call_undefined_function"), "undefined_function");
+
+            // the failed lookups do not affect the rest of the library
+            Assert.assertEquals(42, library.getMember("defined_function").execute().asInt());
+        }
+    }
+}
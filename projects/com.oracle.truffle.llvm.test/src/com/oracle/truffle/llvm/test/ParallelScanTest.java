@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.runtime.LLVMLanguage;
+import com.oracle.truffle.llvm.test.options.TestOptions;
+
+/**
+ * Loads several bitcode libraries with {@code llvm.parseThreads}, so that they are scanned on
+ * worker threads while the libraries before them are linked.
+ */
+public final class ParallelScanTest {
+
+    private static final Path INTEROP_PATH = Paths.get(TestOptions.TEST_SUITE_PATH, "interop");
+    private static final String[] LIBRARIES = {"parallelScanFirst", "parallelScanSecond", "parallelScanThird"};
+
+    private static Path getBitcode(String name) {
+        return INTEROP_PATH.resolve(name).resolve("O0_MEM2REG.bc").toAbsolutePath();
+    }
+
+    private static String getLibraries(String... names) {
+        return String.join(":", Arrays.stream(names).map(name -> getBitcode(name).toString()).toArray(String[]::new));
+    }
+
+    private static int sumOfLibraries(String parseThreads, String libraries) throws IOException {
+        try (Context context = Context.newBuilder().option("llvm.parseThreads", parseThreads).option("llvm.libraries", libraries).allowAllAccess(true).build()) {
+            File main = getBitcode("parallelScanMain").toFile();
+            Value library = context.eval(Source.newBuilder(LLVMLanguage.NAME, main).build());
+            return library.getMember("sum_of_libraries").execute().asInt();
+        }
+    }
+
+    @Test
+    public void testSequential() throws IOException {
+        Assert.assertEquals(321, sumOfLibraries("1", getLibraries(LIBRARIES)));
+    }
+
+    @Test
+    public void testParallel() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(321, sumOfLibraries("4", getLibraries(LIBRARIES)));
+        }
+    }
+
+    @Test
+    public void testBrokenLibrary() throws IOException {
+        // a library that is truncated in the middle of its bitcode fails to scan
+        byte[] bitcode = Files.readAllBytes(getBitcode("parallelScanSecond"));
+        Path broken = Files.createTempFile("parallelScanBroken", ".bc");
+        try {
+            Files.write(broken, Arrays.copyOf(bitcode, bitcode.length / 2));
+            String libraries = getLibraries("parallelScanFirst") + ":" + broken + ":" + getLibraries("parallelScanThird");
+            for (String parseThreads : new String[]{"1", "4"}) {
+                try {
+                    sumOfLibraries(parseThreads, libraries);
+                    Assert.fail("a library that fails to scan must fail the parsing with " + parseThreads + " threads");
+                } catch (PolyglotException e) {
+                    // expected
+                }
+            }
+
+            // a failed scan does not leave anything behind for the next context
+            Assert.assertEquals(321, sumOfLibraries("4", getLibraries(LIBRARIES)));
+        } finally {
+            Files.delete(broken);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.runtime.LLVMLanguage;
+import com.oracle.truffle.llvm.test.options.TestOptions;
+
+/**
+ * Overflows stacks that are allocated with malloc and stacks that are reserved with
+ * {@code llvm.reserveStacks}. An allocation that would go below the stack must fail with a guest
+ * exception instead of writing into the guard region or unrelated memory.
+ */
+public final class StackOverflowTest {
+
+    private static final File BITCODE = Paths.get(TestOptions.TEST_SUITE_PATH, "interop", "stackOverflow", "O0_MEM2REG.bc").toFile();
+    private static final String STACK_SIZE_KB = "4096";
+    private static final String[] RESERVE_STACKS = {"false", "true"};
+
+    private interface StackTest {
+        void run(Value library);
+    }
+
+    private static void runWithStacks(StackTest test) throws IOException {
+        for (String reserveStacks : RESERVE_STACKS) {
+            try (Context context = Context.newBuilder().option("llvm.stackSizeKB", STACK_SIZE_KB).option("llvm.reserveStacks", reserveStacks).allowAllAccess(true).build()) {
+                test.run(context.eval(Source.newBuilder(LLVMLanguage.NAME, BITCODE).build()));
+            }
+        }
+    }
+
+    private static void assertStackOverflow(Value function, Object argument) {
+        try {
+            function.execute(argument);
+            Assert.fail("the stack must overflow");
+        } catch (PolyglotException e) {
+            Assert.assertTrue(e.isGuestException());
+            Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Stack overflow"));
+        }
+    }
+
+    @Test
+    public void testDeepRecursion() throws IOException {
+        runWithStacks(library -> {
+            Value recurse = library.getMember("recurse");
+            // 16 KB frames, so this needs more than the first committed chunk of the stack
+            Assert.assertEquals(101, recurse.execute(100).asInt());
+            assertStackOverflow(recurse, 1000);
+            // the stack is unwound after the overflow and can be used again
+            Assert.assertEquals(101, recurse.execute(100).asInt());
+        });
+    }
+
+    @Test
+    public void testLargeAlloca() throws IOException {
+        runWithStacks(library -> {
+            Value largeAlloca = library.getMember("large_alloca");
+            Assert.assertEquals(1, largeAlloca.execute(3 * 1024 * 1024L).asInt());
+            // larger than the stack and its guard region together
+            assertStackOverflow(largeAlloca, 8 * 1024 * 1024L);
+            // just below the stack, where the guard region of a reserved stack is
+            assertStackOverflow(largeAlloca, 4096 * 1024L + 4096);
+            Assert.assertEquals(1, largeAlloca.execute(3 * 1024 * 1024L).asInt());
+        });
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameter;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.oracle.truffle.llvm.test.options.TestOptions;
+
+/**
+ * Runs tests of the Sulong test suite again with engine options that enable code paths which are
+ * off by default, and compares the output to the native executable.
+ */
+@RunWith(Parameterized.class)
+public final class SulongOptionsSuite extends BaseSuiteHarness {
+
+    @Parameter(value = 0) public Path path;
+    @Parameter(value = 1) public String testName;
+    @Parameter(value = 2) public Map<String, String> options;
+
+    @Parameters(name = "{1}")
+    public static Collection<Object[]> data() {
+        List<Object[]> tests = new ArrayList<>();
+        addTests(tests, "llvm.loopNodes", "true", "c/loops/nestedLoops", "c/loops/sharedHeader", "c/loops/irreducible", "c/loops/loopReturn");
+        addTests(tests, "llvm.outlineThreshold", "10", "c/loops/nestedLoops", "c/loops/irreducible", "c/loops/loopReturn", "c/qsort", "c/fibonacci");
+        addTests(tests, "llvm.scalarReplaceAllocas", "true", "c/scalarReplacement/nonEscaping", "c/scalarReplacement/escapeCall", "c/scalarReplacement/escapePtrToInt",
+                        "c/scalarReplacement/escapeStore", "c/qsort", "c/fibonacci");
+        addTests(tests, "llvm.parseThreads", "4", "c/qsort", "c/fibonacci");
+        addTests(tests, "llvm.lazyGlobalInit", "true", "c/lazyGlobalInit/constantTables", "c/lazyGlobalInit/constantAddress", "c/qsort", "c/fibonacci");
+        addTests(tests, "llvm.managedHeap", "true", "c/managedHeap/storeLoad", "c/managedHeap/materialize", "c/managedHeap/free");
+        return tests;
+    }
+
+    private static void addTests(List<Object[]> tests, String option, String value, String... testDirectories) {
+        Path suitesPath = new File(TestOptions.TEST_SUITE_PATH).toPath();
+        for (String testDirectory : testDirectories) {
+            tests.add(new Object[]{suitesPath.resolve(testDirectory), testDirectory + " [" + option + "=" + value + "]", Collections.singletonMap(option, value)});
+        }
+    }
+
+    @Override
+    protected Map<String, String> getContextOptions() {
+        return options;
+    }
+
+    @Override
+    protected Path getTestDirectory() {
+        return path;
+    }
+
+    @Override
+    protected String getTestName() {
+        return testName;
+    }
+}
@@ -33,6 +33,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -71,17 +72,19 @@ public final class LLVMDebugTest {
 
     private static final String TRACE_EXT = ".txt";
     private static final String OPTION_ENABLE_LVI = "llvm.enableLVI";
+    private static final String OPTION_SCALAR_REPLACEMENT = "llvm.scalarReplaceAllocas";
 
     private static final String BC_O0 = "O0.bc";
     private static final String BC_O1 = "O1.bc";
     private static final String BC_MEM2REG = "O0_MEM2REG.bc";
 
-    public LLVMDebugTest(String testName, String configuration) {
+    public LLVMDebugTest(String testName, String configuration, boolean scalarReplacement) {
         this.testName = testName;
         this.configuration = configuration;
+        this.scalarReplacement = scalarReplacement;
     }
 
-    @Parameters(name = "{0} - {1}")
+    @Parameters(name = "{0} - {1} - scalarReplacement={2}")
     public static Collection<Object[]> getConfigurations() {
         final Map<String, String[]> configs = new HashMap<>();
         configs.put("testPrimitives", new String[]{BC_O0, BC_MEM2REG});
@@ -93,17 +96,23 @@ public final class LLVMDebugTest {
         configs.put("testControlFlow", new String[]{BC_O0, BC_MEM2REG});
         // configs.put("testReenterArgsAndVals", new String[]{BC_O0, BC_MEM2REG, BC_O1});
         configs.put("testFunctionPointer", new String[]{BC_O0, BC_MEM2REG, BC_O1});
-        return configs.entrySet().stream().flatMap(e -> Stream.of(e.getValue()).map(v -> new Object[]{e.getKey(), v})).collect(Collectors.toSet());
+        final Collection<Object[]> parameters = configs.entrySet().stream().flatMap(e -> Stream.of(e.getValue()).map(v -> new Object[]{e.getKey(), v, false})).collect(
+                        Collectors.toCollection(ArrayList::new));
+        // variables that the debugger can inspect must stay in memory when allocas are replaced
+        parameters.add(new Object[]{"testPrimitives", BC_O0, true});
+        parameters.add(new Object[]{"testControlFlow", BC_O0, true});
+        return parameters;
     }
 
     private final String testName;
     private final String configuration;
+    private final boolean scalarReplacement;
 
     private DebuggerTester tester;
 
     @Before
     public void before() {
-        tester = new DebuggerTester(Context.newBuilder().option(OPTION_ENABLE_LVI, "true").allowAllAccess(true));
+        tester = new DebuggerTester(Context.newBuilder().option(OPTION_ENABLE_LVI, "true").option(OPTION_SCALAR_REPLACEMENT, String.valueOf(scalarReplacement)).allowAllAccess(true));
     }
 
     @After
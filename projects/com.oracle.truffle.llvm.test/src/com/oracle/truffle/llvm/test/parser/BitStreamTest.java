@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test.parser;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.parser.scanner.BitStream;
+
+/**
+ * Compares the word-wise reads of {@link BitStream} with reads that assemble every value bit by
+ * bit.
+ */
+public class BitStreamTest {
+
+    private static final int[] SIZES = {0, 1, 3, 7, 8, 9, 15, 16, 17, 61, 64, 101};
+
+    private static byte[] randomBytes(Random random, int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static long bit(byte[] bytes, long index) {
+        long byteIndex = index / Byte.SIZE;
+        if (byteIndex >= bytes.length) {
+            return 0;
+        }
+        return (bytes[(int) byteIndex] >>> (index % Byte.SIZE)) & 1;
+    }
+
+    private static long referenceRead(byte[] bytes, long offset, long bits) {
+        long value = 0;
+        for (int i = 0; i < bits; i++) {
+            value |= bit(bytes, offset + i) << i;
+        }
+        return value;
+    }
+
+    private static long referenceReadVBR(byte[] bytes, long offset, long width) {
+        long dmask = 1L << (width - 1);
+        long value = 0;
+        long shift = 0;
+        long o = offset;
+        long datum;
+        do {
+            datum = referenceRead(bytes, o, width);
+            o += width;
+            value += (datum & (dmask - 1)) << shift;
+            shift += width - 1;
+        } while ((datum & dmask) != 0);
+        return value;
+    }
+
+    @Test
+    public void testReadAllWidths() {
+        Random random = new Random(42);
+        for (int size : SIZES) {
+            byte[] bytes = randomBytes(random, size);
+            BitStream stream = BitStream.create(ByteBuffer.wrap(bytes));
+            Assert.assertEquals(size * 8L, stream.size());
+            for (int bits = 1; bits <= Long.SIZE; bits++) {
+                // sequential reads, as done by the scanner, straddle the word boundaries
+                for (long offset = 0; offset < stream.size(); offset += bits) {
+                    Assert.assertEquals(referenceRead(bytes, offset, bits), stream.read(offset, bits));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRandomAccess() {
+        Random random = new Random(43);
+        byte[] bytes = randomBytes(random, 101);
+        BitStream stream = BitStream.create(ByteBuffer.wrap(bytes));
+        for (int i = 0; i < 10000; i++) {
+            long offset = random.nextInt((int) stream.size());
+            int bits = random.nextInt(Long.SIZE) + 1;
+            Assert.assertEquals(referenceRead(bytes, offset, bits), stream.read(offset, bits));
+        }
+        // every read that starts close to a word boundary
+        for (long word = 0; word < stream.size(); word += Long.SIZE) {
+            for (long offset = Math.max(0, word - 2); offset <= word + 2; offset++) {
+                for (int bits = 1; bits <= Long.SIZE; bits++) {
+                    Assert.assertEquals(referenceRead(bytes, offset, bits), stream.read(offset, bits));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testTail() {
+        for (int size = 1; size <= 17; size++) {
+            byte[] bytes = new byte[size];
+            for (int i = 0; i < size; i++) {
+                bytes[i] = (byte) (0xa5 ^ i);
+            }
+            BitStream stream = BitStream.create(ByteBuffer.wrap(bytes));
+            // reads beyond the end of the stream see zeros
+            for (long offset = Math.max(0, stream.size() - Long.SIZE); offset <= stream.size(); offset++) {
+                Assert.assertEquals(referenceRead(bytes, offset, Long.SIZE), stream.read(offset, Long.SIZE));
+            }
+        }
+    }
+
+    @Test
+    public void testVBR() {
+        Random random = new Random(44);
+        long[] values = {0, 1, 2, 31, 32, 1000, 0x7fffffffL, 0xffffffffL, Long.MAX_VALUE, -1L, Long.MIN_VALUE};
+        for (int width = 2; width <= 32; width++) {
+            byte[] bytes = new byte[64];
+            for (long value : values) {
+                for (int start = 0; start < 70; start += 7) {
+                    Arrays.fill(bytes, (byte) 0);
+                    long end = writeVBR(bytes, start, value, width);
+                    Assert.assertEquals(end - start, BitStream.widthVBR(value, width));
+                    BitStream stream = BitStream.create(ByteBuffer.wrap(bytes));
+                    Assert.assertEquals(value, stream.readVBR(start, width));
+                }
+            }
+
+            // arbitrary data decodes like the bit-wise reference
+            byte[] noise = randomBytes(random, 101);
+            BitStream stream = BitStream.create(ByteBuffer.wrap(noise));
+            for (long offset = 0; offset < stream.size(); offset += width) {
+                Assert.assertEquals(referenceReadVBR(noise, offset, width), stream.readVBR(offset, width));
+            }
+        }
+    }
+
+    private static long writeVBR(byte[] bytes, long offset, long value, int width) {
+        long threshold = 1L << (width - 1);
+        long v = value;
+        long o = offset;
+        while (Long.compareUnsigned(v, threshold) >= 0) {
+            o = write(bytes, o, (v & (threshold - 1)) | threshold, width);
+            v >>>= width - 1;
+        }
+        return write(bytes, o, v, width);
+    }
+
+    private static long write(byte[] bytes, long offset, long value, int bits) {
+        for (int i = 0; i < bits; i++) {
+            if (((value >>> i) & 1) != 0) {
+                long index = offset + i;
+                bytes[(int) (index / Byte.SIZE)] |= 1 << (index % Byte.SIZE);
+            }
+        }
+        return offset + bits;
+    }
+
+    @Test
+    public void testBlob() {
+        long[] args = {7, 0x0123456789abcdefL, -1L, 0x8000000000000001L};
+        BitStream stream = BitStream.createFromBlob(args, 1);
+        Assert.assertEquals(3 * Long.SIZE, stream.size());
+        for (int i = 1; i < args.length; i++) {
+            Assert.assertEquals(args[i], stream.read((i - 1) * Long.SIZE, Long.SIZE));
+        }
+        Assert.assertEquals(0xef, stream.read(0, 8));
+        Assert.assertEquals(0x1f, stream.read(Long.SIZE + 60, 10));
+    }
+}
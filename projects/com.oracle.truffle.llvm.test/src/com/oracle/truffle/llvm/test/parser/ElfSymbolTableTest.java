@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test.parser;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.parser.elf.ElfFile;
+import com.oracle.truffle.llvm.parser.elf.ElfSymbolTable;
+
+/**
+ * Reads the dynamic symbol tables of small shared objects that are created by
+ * {@link ElfImageBuilder}. They only contain the sections that are needed to find the exported
+ * symbols and the dependencies of a library.
+ */
+public class ElfSymbolTableTest {
+
+    private static final int STB_LOCAL = 0;
+    private static final int STB_GLOBAL = 1;
+    private static final int STB_WEAK = 2;
+    private static final int STB_GNU_UNIQUE = 10;
+
+    private static final int STV_DEFAULT = 0;
+    private static final int STV_HIDDEN = 2;
+    private static final int STV_PROTECTED = 3;
+
+    private static final List<String> EXPORTED_SYMBOLS = Arrays.asList("exported_data", "call_hidden", "exported_function", "protected_function", "weak_function", "unique_data");
+
+    private static ElfFile createSymbols(boolean is64Bit, ByteOrder order) {
+        ElfImageBuilder builder = new ElfImageBuilder(is64Bit, order);
+        builder.undefined("undefined_function");
+        builder.symbol("exported_data", STB_GLOBAL, STV_DEFAULT);
+        builder.symbol("local_function", STB_LOCAL, STV_DEFAULT);
+        builder.symbol("call_hidden", STB_GLOBAL, STV_DEFAULT);
+        builder.symbol("exported_function", STB_GLOBAL, STV_DEFAULT);
+        builder.symbol("protected_function", STB_GLOBAL, STV_PROTECTED);
+        builder.symbol("hidden_function", STB_GLOBAL, STV_HIDDEN);
+        builder.symbol("weak_function", STB_WEAK, STV_DEFAULT);
+        builder.symbol("unique_data", STB_GNU_UNIQUE, STV_DEFAULT);
+        return load(builder.build());
+    }
+
+    private static ElfFile load(ByteBuffer bytes) {
+        Assert.assertTrue(ElfFile.isElfFile(bytes));
+        return ElfFile.create(bytes);
+    }
+
+    private static List<String> definedSymbols(ElfFile file) {
+        ElfSymbolTable symbolTable = file.getDynamicSymbolTable();
+        Assert.assertNotNull(symbolTable);
+        return symbolTable.getDefinedSymbols();
+    }
+
+    private static void assertExportedSymbols(ElfFile file) {
+        List<String> symbols = definedSymbols(file);
+        Assert.assertEquals(new HashSet<>(EXPORTED_SYMBOLS), new HashSet<>(symbols));
+        Assert.assertEquals(EXPORTED_SYMBOLS.size(), symbols.size());
+    }
+
+    @Test
+    public void testDefinedSymbols() {
+        assertExportedSymbols(createSymbols(true, ByteOrder.LITTLE_ENDIAN));
+    }
+
+    @Test
+    public void testDefinedSymbols32Bit() {
+        assertExportedSymbols(createSymbols(false, ByteOrder.LITTLE_ENDIAN));
+    }
+
+    @Test
+    public void testDefinedSymbolsBigEndian() {
+        assertExportedSymbols(createSymbols(true, ByteOrder.BIG_ENDIAN));
+        assertExportedSymbols(createSymbols(false, ByteOrder.BIG_ENDIAN));
+    }
+
+    @Test
+    public void testExcludedSymbols() {
+        List<String> symbols = definedSymbols(createSymbols(true, ByteOrder.LITTLE_ENDIAN));
+        // undefined references, hidden and local symbols are not exported
+        Assert.assertFalse(symbols.contains("undefined_function"));
+        Assert.assertFalse(symbols.contains("hidden_function"));
+        Assert.assertFalse(symbols.contains("local_function"));
+    }
+
+    @Test
+    public void testDependencies() {
+        ElfImageBuilder builder = new ElfImageBuilder(true, ByteOrder.LITTLE_ENDIAN);
+        builder.needed("libsymbols.so");
+        builder.undefined("exported_function");
+        builder.symbol("dependent_function", STB_GLOBAL, STV_DEFAULT);
+        ElfFile dependent = load(builder.build());
+        Assert.assertEquals(Collections.singletonList("libsymbols.so"), dependent.getDynamicSection().getDTNeeded());
+        Assert.assertEquals(Collections.singletonList("dependent_function"), definedSymbols(dependent));
+        // the symbols of a dependency are not in the symbol table of the dependent library
+        Assert.assertFalse(definedSymbols(dependent).contains("exported_function"));
+
+        ElfFile symbols = createSymbols(true, ByteOrder.LITTLE_ENDIAN);
+        Assert.assertTrue(symbols.getDynamicSection().getDTNeeded().isEmpty());
+    }
+
+    /**
+     * Creates a shared object with a {@code .dynstr}, {@code .dynsym}, {@code .dynamic},
+     * {@code .text} and {@code .shstrtab} section. Defined symbols point into {@code .text}.
+     */
+    private static final class ElfImageBuilder {
+        private static final int SHT_PROGBITS = 1;
+        private static final int SHT_STRTAB = 3;
+        private static final int SHT_DYNAMIC = 6;
+        private static final int SHT_DYNSYM = 11;
+
+        private static final int DT_NULL = 0;
+        private static final int DT_NEEDED = 1;
+        private static final int DT_STRTAB = 5;
+        private static final int DT_STRSZ = 10;
+
+        private static final int DYNSTR = 1;
+        private static final int DYNSYM = 2;
+        private static final int DYNAMIC = 3;
+        private static final int TEXT = 4;
+        private static final int SHSTRTAB = 5;
+        private static final int SECTION_COUNT = 6;
+
+        /* allocated sections are loaded at their file offset plus this address */
+        private static final long LOAD_ADDRESS = 0x10000;
+
+        private final boolean is64Bit;
+        private final ByteOrder order;
+
+        private final ByteArrayOutputStream dynstr = new ByteArrayOutputStream();
+        private final List<int[]> symbols = new ArrayList<>();
+        private final List<Integer> needed = new ArrayList<>();
+
+        ElfImageBuilder(boolean is64Bit, ByteOrder order) {
+            this.is64Bit = is64Bit;
+            this.order = order;
+            dynstr.write(0);
+            // the first symbol is always the undefined symbol
+            symbols.add(new int[]{0, 0, 0, 0});
+        }
+
+        private static int addString(ByteArrayOutputStream table, String string) {
+            int offset = table.size();
+            byte[] bytes = string.getBytes(StandardCharsets.US_ASCII);
+            table.write(bytes, 0, bytes.length);
+            table.write(0);
+            return offset;
+        }
+
+        void symbol(String name, int binding, int visibility) {
+            symbols.add(new int[]{addString(dynstr, name), binding << 4, visibility, TEXT});
+        }
+
+        void undefined(String name) {
+            symbols.add(new int[]{addString(dynstr, name), STB_GLOBAL << 4, STV_DEFAULT, 0});
+        }
+
+        void needed(String library) {
+            needed.add(addString(dynstr, library));
+        }
+
+        private int headerSize() {
+            return is64Bit ? 64 : 52;
+        }
+
+        private int symbolSize() {
+            return is64Bit ? 24 : 16;
+        }
+
+        private int dynamicEntrySize() {
+            return is64Bit ? 16 : 8;
+        }
+
+        private int sectionHeaderSize() {
+            return is64Bit ? 64 : 40;
+        }
+
+        private void putWord(ByteBuffer buffer, long value) {
+            if (is64Bit) {
+                buffer.putLong(value);
+            } else {
+                buffer.putInt((int) value);
+            }
+        }
+
+        ByteBuffer build() {
+            ByteArrayOutputStream shstrtab = new ByteArrayOutputStream();
+            shstrtab.write(0);
+            int[] names = new int[SECTION_COUNT];
+            names[DYNSTR] = addString(shstrtab, ".dynstr");
+            names[DYNSYM] = addString(shstrtab, ".dynsym");
+            names[DYNAMIC] = addString(shstrtab, ".dynamic");
+            names[TEXT] = addString(shstrtab, ".text");
+            names[SHSTRTAB] = addString(shstrtab, ".shstrtab");
+
+            long[] offsets = new long[SECTION_COUNT];
+            long[] sizes = new long[SECTION_COUNT];
+            sizes[DYNSTR] = dynstr.size();
+            sizes[DYNSYM] = symbols.size() * symbolSize();
+            sizes[DYNAMIC] = (needed.size() + 3) * dynamicEntrySize();
+            sizes[TEXT] = 16;
+            sizes[SHSTRTAB] = shstrtab.size();
+            long offset = headerSize();
+            for (int i = 1; i < SECTION_COUNT; i++) {
+                offset = (offset + 7) & ~7;
+                offsets[i] = offset;
+                offset += sizes[i];
+            }
+            long sectionHeaders = (offset + 7) & ~7;
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) (sectionHeaders + SECTION_COUNT * sectionHeaderSize())).order(order);
+            buffer.put(new byte[]{0x7f, 'E', 'L', 'F', (byte) (is64Bit ? 2 : 1), (byte) (order == ByteOrder.BIG_ENDIAN ? 2 : 1), 1});
+            buffer.position(16);
+            buffer.putShort((short) 3); // ET_DYN
+            buffer.putShort((short) (is64Bit ? 62 : 3));
+            buffer.putInt(1);
+            putWord(buffer, 0); // entry
+            putWord(buffer, 0); // program headers
+            putWord(buffer, sectionHeaders);
+            buffer.putInt(0);
+            buffer.putShort((short) headerSize());
+            buffer.putShort((short) 0);
+            buffer.putShort((short) 0);
+            buffer.putShort((short) sectionHeaderSize());
+            buffer.putShort((short) SECTION_COUNT);
+            buffer.putShort((short) SHSTRTAB);
+
+            buffer.position((int) offsets[DYNSTR]);
+            buffer.put(dynstr.toByteArray());
+
+            buffer.position((int) offsets[DYNSYM]);
+            for (int[] symbol : symbols) {
+                long value = symbol[3] == 0 ? 0 : LOAD_ADDRESS + offsets[TEXT];
+                buffer.putInt(symbol[0]);
+                if (is64Bit) {
+                    buffer.put((byte) symbol[1]).put((byte) symbol[2]).putShort((short) symbol[3]);
+                    buffer.putLong(value).putLong(0);
+                } else {
+                    buffer.putInt((int) value).putInt(0);
+                    buffer.put((byte) symbol[1]).put((byte) symbol[2]).putShort((short) symbol[3]);
+                }
+            }
+
+            buffer.position((int) offsets[DYNAMIC]);
+            for (int library : needed) {
+                putWord(buffer, DT_NEEDED);
+                putWord(buffer, library);
+            }
+            putWord(buffer, DT_STRTAB);
+            putWord(buffer, LOAD_ADDRESS + offsets[DYNSTR]);
+            putWord(buffer, DT_STRSZ);
+            putWord(buffer, sizes[DYNSTR]);
+            putWord(buffer, DT_NULL);
+            putWord(buffer, 0);
+
+            buffer.position((int) offsets[SHSTRTAB]);
+            buffer.put(shstrtab.toByteArray());
+
+            int[] types = {0, SHT_STRTAB, SHT_DYNSYM, SHT_DYNAMIC, SHT_PROGBITS, SHT_STRTAB};
+            long[] entrySizes = {0, 0, symbolSize(), dynamicEntrySize(), 0, 0};
+            buffer.position((int) sectionHeaders);
+            for (int i = 0; i < SECTION_COUNT; i++) {
+                boolean allocated = i != 0 && i != SHSTRTAB;
+                buffer.putInt(names[i]);
+                buffer.putInt(types[i]);
+                putWord(buffer, allocated ? 2 : 0); // SHF_ALLOC
+                putWord(buffer, allocated ? LOAD_ADDRESS + offsets[i] : 0);
+                putWord(buffer, offsets[i]);
+                putWord(buffer, sizes[i]);
+                buffer.putInt(i == DYNSYM || i == DYNAMIC ? DYNSTR : 0);
+                buffer.putInt(0);
+                putWord(buffer, 8);
+                putWord(buffer, entrySizes[i]);
+            }
+            buffer.position(0);
+            return buffer;
+        }
+    }
+}
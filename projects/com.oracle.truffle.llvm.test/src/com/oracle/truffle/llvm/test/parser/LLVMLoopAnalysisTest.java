@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test.parser;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.parser.LLVMLoopAnalysis;
+import com.oracle.truffle.llvm.parser.LLVMLoopAnalysis.Loop;
+
+public class LLVMLoopAnalysisTest {
+
+    static BitSet blocks(int... indices) {
+        BitSet result = new BitSet();
+        for (int index : indices) {
+            result.set(index);
+        }
+        return result;
+    }
+
+    private static void assertLoop(Loop loop, int header, BitSet blocks, int[] successors, boolean canReturn) {
+        Assert.assertEquals(header, loop.getHeader());
+        Assert.assertEquals(blocks, loop.getBlocks());
+        Assert.assertArrayEquals(successors, loop.getSuccessors());
+        Assert.assertEquals(canReturn, loop.canReturn());
+    }
+
+    @Test
+    public void testReversePostOrder() {
+        int[][] successors = {{1, 2}, {3}, {3}, {}};
+        int[] order = LLVMLoopAnalysis.computeReversePostOrder(successors);
+        Assert.assertEquals(0, order[0]);
+        for (int block = 0; block < successors.length; block++) {
+            for (int successor : successors[block]) {
+                Assert.assertTrue(order[block] < order[successor]);
+            }
+        }
+    }
+
+    @Test
+    public void testDominators() {
+        // 0 -> {1, 2} -> 3 -> 4 -> 3
+        int[][] successors = {{1, 2}, {3}, {3}, {4}, {3}};
+        int[] order = LLVMLoopAnalysis.computeReversePostOrder(successors);
+        int[] dominators = LLVMLoopAnalysis.computeDominators(order, LLVMLoopAnalysis.computePredecessors(successors));
+        Assert.assertArrayEquals(new int[]{0, 0, 0, 0, 3}, dominators);
+    }
+
+    @Test
+    public void testNoLoop() {
+        int[][] successors = {{1, 2}, {3}, {3}, {}};
+        Assert.assertTrue(LLVMLoopAnalysis.findLoops(successors, blocks(3)).isEmpty());
+    }
+
+    @Test
+    public void testSelfLoop() {
+        int[][] successors = {{1}, {1, 2}, {}};
+        List<Loop> loops = LLVMLoopAnalysis.findLoops(successors, blocks(2));
+        Assert.assertEquals(1, loops.size());
+        assertLoop(loops.get(0), 1, blocks(1), new int[]{2}, false);
+    }
+
+    @Test
+    public void testNestedLoops() {
+        // outer loop 1..4, inner loop 2..3
+        int[][] successors = {{1}, {2, 5}, {3}, {2, 4}, {1}, {}};
+        List<Loop> loops = LLVMLoopAnalysis.findLoops(successors, blocks(5));
+        Assert.assertEquals(1, loops.size());
+        Loop outer = loops.get(0);
+        assertLoop(outer, 1, blocks(1, 2, 3, 4), new int[]{5}, false);
+        Assert.assertEquals(1, outer.getNestedLoops().size());
+        Loop inner = outer.getNestedLoops().get(0);
+        assertLoop(inner, 2, blocks(2, 3), new int[]{4}, false);
+        Assert.assertTrue(inner.getNestedLoops().isEmpty());
+    }
+
+    @Test
+    public void testSiblingLoops() {
+        int[][] successors = {{1}, {1, 2}, {3}, {2, 4}, {}};
+        List<Loop> loops = LLVMLoopAnalysis.findLoops(successors, blocks(4));
+        Assert.assertEquals(2, loops.size());
+        Loop first = loops.get(0).getHeader() == 1 ? loops.get(0) : loops.get(1);
+        Loop second = loops.get(0).getHeader() == 1 ? loops.get(1) : loops.get(0);
+        assertLoop(first, 1, blocks(1), new int[]{2}, false);
+        assertLoop(second, 2, blocks(2, 3), new int[]{4}, false);
+    }
+
+    @Test
+    public void testSharedHeader() {
+        // two back edges to the same header form one loop
+        int[][] successors = {{1}, {2, 3}, {1}, {1, 4}, {}};
+        List<Loop> loops = LLVMLoopAnalysis.findLoops(successors, blocks(4));
+        Assert.assertEquals(1, loops.size());
+        assertLoop(loops.get(0), 1, blocks(1, 2, 3), new int[]{4}, false);
+        Assert.assertTrue(loops.get(0).getNestedLoops().isEmpty());
+    }
+
+    @Test
+    public void testLoopExits() {
+        // the loop can be left at both of its blocks, and a returning block is never part of a loop
+        int[][] successors = {{1}, {2, 4}, {1, 3}, {}, {}};
+        List<Loop> loops = LLVMLoopAnalysis.findLoops(successors, blocks(3, 4));
+        Assert.assertEquals(1, loops.size());
+        assertLoop(loops.get(0), 1, blocks(1, 2), new int[]{3, 4}, false);
+    }
+
+    @Test
+    public void testIrreducible() {
+        // the cycle 1 <-> 2 can be entered at both blocks
+        int[][] successors = {{1, 2}, {2}, {1, 3}, {}};
+        Assert.assertTrue(LLVMLoopAnalysis.findLoops(successors, blocks(3)).isEmpty());
+    }
+
+    @Test
+    public void testIrreducibleInLoop() {
+        // the irreducible cycle 2 <-> 3 belongs to the natural loop with header 1
+        int[][] successors = {{1}, {2, 3}, {3}, {2, 4}, {1, 5}, {}};
+        List<Loop> loops = LLVMLoopAnalysis.findLoops(successors, blocks(5));
+        Assert.assertEquals(1, loops.size());
+        assertLoop(loops.get(0), 1, blocks(1, 2, 3, 4), new int[]{5}, false);
+        Assert.assertTrue(loops.get(0).getNestedLoops().isEmpty());
+    }
+
+    @Test
+    public void testUnreachableBlocks() {
+        // block 3 branches into the loop and block 4 loops on itself, but both are unreachable
+        int[][] successors = {{1}, {1, 2}, {}, {1}, {4}};
+        int[] order = LLVMLoopAnalysis.computeReversePostOrder(successors);
+        Assert.assertEquals(-1, order[3]);
+        Assert.assertEquals(-1, order[4]);
+        int[] dominators = LLVMLoopAnalysis.computeDominators(order, LLVMLoopAnalysis.computePredecessors(successors));
+        Assert.assertEquals(-1, dominators[3]);
+        Assert.assertEquals(-1, dominators[4]);
+        Assert.assertEquals(0, dominators[1]);
+
+        List<Loop> loops = LLVMLoopAnalysis.findLoops(successors, blocks(2));
+        Assert.assertEquals(1, loops.size());
+        assertLoop(loops.get(0), 1, blocks(1), new int[]{2}, false);
+    }
+
+    @Test
+    public void testEntryIsHeader() {
+        int[][] successors = {{1}, {0, 2}, {}};
+        List<Loop> loops = LLVMLoopAnalysis.findLoops(successors, blocks(2));
+        Assert.assertEquals(1, loops.size());
+        assertLoop(loops.get(0), 0, blocks(0, 1), new int[]{2}, false);
+    }
+}
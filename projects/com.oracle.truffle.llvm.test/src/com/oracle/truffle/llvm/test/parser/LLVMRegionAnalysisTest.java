@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test.parser;
+
+import static com.oracle.truffle.llvm.test.parser.LLVMLoopAnalysisTest.blocks;
+
+import java.util.BitSet;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.parser.LLVMLoopAnalysis;
+import com.oracle.truffle.llvm.parser.LLVMLoopAnalysis.Loop;
+import com.oracle.truffle.llvm.parser.LLVMRegionAnalysis;
+import com.oracle.truffle.llvm.parser.LLVMRegionAnalysis.Region;
+
+public class LLVMRegionAnalysisTest {
+
+    private static List<Region> findRegions(int[] size, int[][] successors, BitSet returningBlocks, int threshold) {
+        List<Loop> loops = LLVMLoopAnalysis.findLoops(successors, returningBlocks);
+        List<Region> regions = LLVMRegionAnalysis.findRegions(size, successors, returningBlocks, threshold, loops);
+        assertLoopsNotCut(regions, loops);
+        return regions;
+    }
+
+    /**
+     * Every region either contains all blocks of a loop or none of them.
+     */
+    private static void assertLoopsNotCut(List<Region> regions, List<Loop> loops) {
+        for (Region region : regions) {
+            for (Loop loop : loops) {
+                BitSet intersection = (BitSet) loop.getBlocks().clone();
+                intersection.and(region.getBlocks());
+                Assert.assertTrue(intersection.isEmpty() || intersection.equals(loop.getBlocks()));
+                assertLoopsNotCut(region.getNestedRegions(), loop.getNestedLoops());
+            }
+            assertLoopsNotCut(region.getNestedRegions(), loops);
+        }
+    }
+
+    private static void assertRegion(Region region, int entry, BitSet blocks, int[] successors, boolean canReturn) {
+        Assert.assertEquals(entry, region.getEntry());
+        Assert.assertEquals(blocks, region.getBlocks());
+        Assert.assertArrayEquals(successors, region.getSuccessors());
+        Assert.assertEquals(canReturn, region.canReturn());
+    }
+
+    @Test
+    public void testBelowThreshold() {
+        int[][] successors = {{1, 2}, {3}, {3}, {}};
+        Assert.assertTrue(findRegions(new int[]{5, 5, 5, 5}, successors, blocks(3), 20).isEmpty());
+    }
+
+    @Test
+    public void testThreshold() {
+        // the largest subtree of the dominator tree is outlined until the rest is small enough
+        int[][] successors = {{1, 2}, {3}, {3}, {}};
+        List<Region> regions = findRegions(new int[]{1, 10, 5, 1}, successors, blocks(3), 8);
+        Assert.assertEquals(1, regions.size());
+        assertRegion(regions.get(0), 1, blocks(1), new int[]{3}, false);
+        Assert.assertTrue(regions.get(0).getNestedRegions().isEmpty());
+
+        // with a lower threshold, the second branch is outlined as well
+        regions = findRegions(new int[]{1, 10, 5, 1}, successors, blocks(3), 4);
+        Assert.assertEquals(2, regions.size());
+        Region first = regions.get(0).getEntry() == 1 ? regions.get(0) : regions.get(1);
+        Region second = regions.get(0).getEntry() == 1 ? regions.get(1) : regions.get(0);
+        assertRegion(first, 1, blocks(1), new int[]{3}, false);
+        assertRegion(second, 2, blocks(2), new int[]{3}, false);
+    }
+
+    @Test
+    public void testNestedRegions() {
+        // 0 -> 1 -> 2 -> 3, where 3 returns
+        int[][] successors = {{1}, {2}, {3}, {}};
+        List<Region> regions = findRegions(new int[]{1, 5, 5, 5}, successors, blocks(3), 6);
+        Assert.assertEquals(1, regions.size());
+        Region outer = regions.get(0);
+        assertRegion(outer, 2, blocks(2, 3), new int[0], true);
+        Assert.assertEquals(1, outer.getNestedRegions().size());
+        Region inner = outer.getNestedRegions().get(0);
+        assertRegion(inner, 3, blocks(3), new int[0], true);
+        Assert.assertTrue(inner.getNestedRegions().isEmpty());
+    }
+
+    @Test
+    public void testLoopNotCut() {
+        // the loop 1..3 is too big, but can only be outlined as a whole
+        int[][] successors = {{1}, {2, 4}, {3}, {1}, {}};
+        List<Region> regions = findRegions(new int[]{1, 2, 10, 10, 1}, successors, blocks(4), 5);
+        Assert.assertEquals(1, regions.size());
+        Region loop = regions.get(0);
+        assertRegion(loop, 1, blocks(1, 2, 3, 4), new int[0], true);
+        Assert.assertEquals(1, loop.getNestedRegions().size());
+        assertRegion(loop.getNestedRegions().get(0), 4, blocks(4), new int[0], true);
+    }
+
+    @Test
+    public void testNestedLoopNotCut() {
+        // the inner loop 2..3 is never outlined on its own, because it is part of the outer loop
+        int[][] successors = {{1}, {2, 5}, {3}, {2, 4}, {1}, {}};
+        List<Region> regions = findRegions(new int[]{1, 1, 20, 20, 1, 1}, successors, blocks(5), 5);
+        Assert.assertEquals(1, regions.size());
+        assertRegion(regions.get(0), 1, blocks(1, 2, 3, 4, 5), new int[0], true);
+    }
+
+    @Test
+    public void testUnreachableBlocks() {
+        // block 3 is unreachable and never part of a region, but still counts for the threshold
+        int[][] successors = {{1}, {2}, {}, {2}};
+        int[] size = {1, 1, 1, 50};
+        Assert.assertTrue(findRegions(size, successors, blocks(2), 10).isEmpty());
+
+        size = new int[]{1, 10, 1, 50};
+        List<Region> regions = findRegions(size, successors, blocks(2), 5);
+        Assert.assertEquals(1, regions.size());
+        assertRegion(regions.get(0), 1, blocks(1, 2), new int[0], true);
+        for (Region region : regions) {
+            Assert.assertFalse(region.getBlocks().get(3));
+        }
+    }
+
+    @Test
+    public void testFunctionIsOneLoop() {
+        // the entry block is the loop header, so there is no block that can start a region
+        int[][] successors = {{1}, {0}};
+        Assert.assertTrue(findRegions(new int[]{50, 50}, successors, blocks(), 10).isEmpty());
+
+        // only the exit of the loop can be outlined
+        successors = new int[][]{{1}, {0, 2}, {}};
+        List<Region> regions = findRegions(new int[]{50, 50, 1}, successors, blocks(2), 10);
+        Assert.assertEquals(1, regions.size());
+        assertRegion(regions.get(0), 2, blocks(2), new int[0], true);
+    }
+}
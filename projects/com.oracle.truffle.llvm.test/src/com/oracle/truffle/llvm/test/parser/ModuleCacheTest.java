@@ -0,0 +1,220 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.test.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.oracle.truffle.api.source.Source;
+import com.oracle.truffle.llvm.parser.model.ModelModule;
+import com.oracle.truffle.llvm.parser.model.blocks.InstructionBlock;
+import com.oracle.truffle.llvm.parser.model.functions.FunctionDeclaration;
+import com.oracle.truffle.llvm.parser.model.functions.FunctionDefinition;
+import com.oracle.truffle.llvm.parser.model.symbols.globals.GlobalVariable;
+import com.oracle.truffle.llvm.parser.scanner.LLVMScanner;
+import com.oracle.truffle.llvm.parser.scanner.ModuleCache;
+import com.oracle.truffle.llvm.runtime.LLVMLanguage;
+import com.oracle.truffle.llvm.test.options.TestOptions;
+
+/**
+ * Scans bitcode files of the Sulong test suite with and without a {@link ModuleCache}, and checks
+ * that the cache only replays entries that match the bitcode.
+ */
+public class ModuleCacheTest {
+
+    private static final String VERSION = "test";
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("sulong-module-cache");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static Path findBitcode(String testDirectory) throws IOException {
+        try (Stream<Path> files = Files.walk(Paths.get(TestOptions.TEST_SUITE_PATH, testDirectory))) {
+            Path bitcode = files.filter(f -> f.getFileName().toString().endsWith(".bc")).sorted().findFirst().orElse(null);
+            Assert.assertNotNull("no bitcode file in " + testDirectory, bitcode);
+            return bitcode;
+        }
+    }
+
+    /**
+     * Describes everything that the scanner produced, including the lazily parsed function bodies.
+     */
+    private static List<String> scan(Path bitcode, ModuleCache cache) throws IOException {
+        ModelModule module = LLVMScanner.parse(ByteBuffer.wrap(Files.readAllBytes(bitcode)), cache);
+        Assert.assertNotNull(module);
+        Source source = Source.newBuilder(bitcode.toString()).mimeType(LLVMLanguage.LLVM_BITCODE_MIME_TYPE).name(bitcode.getFileName().toString()).build();
+
+        List<String> result = new ArrayList<>();
+        for (GlobalVariable global : module.getGlobalVariables()) {
+            result.add("global " + global.getName() + " " + global.getType());
+        }
+        for (FunctionDeclaration declaration : module.getDeclaredFunctions()) {
+            result.add("declare " + declaration.getName() + " " + declaration.getType());
+        }
+        for (FunctionDefinition definition : module.getDefinedFunctions()) {
+            module.getFunctionParser(definition).parse(module.getFunctionProcessor(), source);
+            StringBuilder description = new StringBuilder("define " + definition.getName() + " " + definition.getType());
+            for (InstructionBlock block : definition.getBlocks()) {
+                description.append(' ').append(block.getInstructionCount());
+            }
+            result.add(description.toString());
+        }
+        result.add("libraries " + module.getLibraries());
+        return result;
+    }
+
+    private Path getEntry() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> entries = files.collect(Collectors.toList());
+            Assert.assertEquals(1, entries.size());
+            return entries.get(0);
+        }
+    }
+
+    /**
+     * Scans {@code bitcode} with a cache whose only entry was replaced by {@code content}, and
+     * checks that the entry was ignored and written again.
+     */
+    private void assertRejected(Path bitcode, ModuleCache cache, byte[] content, List<String> expected) throws IOException {
+        Path entry = getEntry();
+        byte[] valid = Files.readAllBytes(entry);
+        Files.write(entry, content);
+        Assert.assertEquals(expected, scan(bitcode, cache));
+        Assert.assertArrayEquals(valid, Files.readAllBytes(entry));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (String test : Arrays.asList("c/fibonacci", "c/qsort", "c/switch/integerSwitch")) {
+            Path bitcode = findBitcode(test);
+            List<String> expected = scan(bitcode, null);
+            ModuleCache cache = new ModuleCache(directory, VERSION, System.err);
+
+            // the first scan writes the entry
+            Assert.assertEquals(test, expected, scan(bitcode, cache));
+            Path entry = getEntry();
+
+            // the second scan replays it and does not write it again
+            FileTime written = FileTime.fromMillis(0);
+            Files.setLastModifiedTime(entry, written);
+            Assert.assertEquals(test, expected, scan(bitcode, cache));
+            Assert.assertEquals(test, written, Files.getLastModifiedTime(entry));
+
+            Files.delete(entry);
+        }
+    }
+
+    @Test
+    public void testOtherBitcode() throws IOException {
+        Path fibonacci = findBitcode("c/fibonacci");
+        Path qsort = findBitcode("c/qsort");
+        ModuleCache cache = new ModuleCache(directory, VERSION, System.err);
+        scan(qsort, cache);
+        byte[] qsortEntry = Files.readAllBytes(getEntry());
+        Files.delete(getEntry());
+
+        // an entry of another module under the name of this module is stale
+        List<String> expected = scan(fibonacci, null);
+        scan(fibonacci, cache);
+        assertRejected(fibonacci, cache, qsortEntry, expected);
+    }
+
+    @Test
+    public void testOtherVersion() throws IOException {
+        Path bitcode = findBitcode("c/fibonacci");
+        List<String> expected = scan(bitcode, null);
+        scan(bitcode, new ModuleCache(directory, "other", System.err));
+        byte[] otherEntry = Files.readAllBytes(getEntry());
+        Files.delete(getEntry());
+
+        ModuleCache cache = new ModuleCache(directory, VERSION, System.err);
+        scan(bitcode, cache);
+        assertRejected(bitcode, cache, otherEntry, expected);
+    }
+
+    @Test
+    public void testTruncatedEntry() throws IOException {
+        Path bitcode = findBitcode("c/qsort");
+        List<String> expected = scan(bitcode, null);
+        ModuleCache cache = new ModuleCache(directory, VERSION, System.err);
+        scan(bitcode, cache);
+        byte[] valid = Files.readAllBytes(getEntry());
+
+        for (int length : new int[]{0, 3, 16, valid.length / 2, valid.length - 5, valid.length - 1}) {
+            assertRejected(bitcode, cache, Arrays.copyOf(valid, length), expected);
+        }
+    }
+
+    @Test
+    public void testCorruptEntry() throws IOException {
+        Path bitcode = findBitcode("c/qsort");
+        List<String> expected = scan(bitcode, null);
+        ModuleCache cache = new ModuleCache(directory, VERSION, System.err);
+        scan(bitcode, cache);
+        byte[] valid = Files.readAllBytes(getEntry());
+
+        for (int position : new int[]{0, 5, valid.length / 3, valid.length / 2, valid.length - 6, valid.length - 1}) {
+            byte[] corrupt = valid.clone();
+            corrupt[position] ^= 0x41;
+            assertRejected(bitcode, cache, corrupt, expected);
+        }
+
+        // trailing garbage
+        byte[] longer = Arrays.copyOf(valid, valid.length + 8);
+        assertRejected(bitcode, cache, longer, expected);
+    }
+}
@@ -33,6 +33,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import com.oracle.truffle.llvm.pipe.CaptureOutput;
@@ -125,23 +127,39 @@ public class ProcessUtil {
     }
 
     public static ProcessResult executeSulongTestMain(File bitcodeFile, String[] args) throws Exception {
+        return executeSulongTestMain(bitcodeFile, args, Collections.emptyMap());
+    }
+
+    /**
+     * Runs the given bitcode file on Sulong with the given engine options, e.g.,
+     * {@code llvm.loopNodes=true}.
+     */
+    public static ProcessResult executeSulongTestMain(File bitcodeFile, String[] args, Map<String, String> options) throws Exception {
         if (TestOptions.TEST_AOT_IMAGE == null) {
             try (CaptureOutput out = new CaptureOutput()) {
-                int result = executeMain(bitcodeFile, args);
+                int result = executeMain(bitcodeFile, args, options);
                 System.out.flush();
                 System.err.flush();
                 return new ProcessResult(bitcodeFile.getName(), result, out.getStdErr(), out.getStdOut());
             }
         } else {
             String aotArgs = TestOptions.TEST_AOT_ARGS == null ? "" : TestOptions.TEST_AOT_ARGS + " ";
-            String cmdline = TestOptions.TEST_AOT_IMAGE + " " + aotArgs + bitcodeFile.getAbsolutePath() + " " + concatCommand(args);
+            StringBuilder optionArgs = new StringBuilder();
+            for (Map.Entry<String, String> option : options.entrySet()) {
+                optionArgs.append("--").append(option.getKey()).append('=').append(option.getValue()).append(' ');
+            }
+            String cmdline = TestOptions.TEST_AOT_IMAGE + " " + aotArgs + optionArgs + bitcodeFile.getAbsolutePath() + " " + concatCommand(args);
             return executeNativeCommand(cmdline);
         }
     }
 
-    private static int executeMain(File file, String[] args) throws Exception {
+    private static int executeMain(File file, String[] args, Map<String, String> options) throws Exception {
         org.graalvm.polyglot.Source source = org.graalvm.polyglot.Source.newBuilder(LLVMLanguage.NAME, file).build();
-        try (Context context = Context.newBuilder().arguments(LLVMLanguage.NAME, args).allowAllAccess(true).build()) {
+        Context.Builder builder = Context.newBuilder().arguments(LLVMLanguage.NAME, args).allowAllAccess(true);
+        for (Map.Entry<String, String> option : options.entrySet()) {
+            builder.option(option.getKey(), option.getValue());
+        }
+        try (Context context = builder.build()) {
             Value result = context.eval(source);
             if (!result.canExecute()) {
                 throw new LinkageError("No main function found.");
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.types.memory.test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
+
+public class DerefHandleAllocationTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 2000;
+    private static final int HANDLES_PER_ROUND = 32;
+
+    @SuppressWarnings("deprecation")
+    private static final LLVMMemory memory = LLVMMemory.getInstance();
+
+    @Test
+    public void testReuse() {
+        LLVMNativePointer first = memory.allocateDerefMemory();
+        memory.free(first);
+        LLVMNativePointer second = memory.allocateDerefMemory();
+        Assert.assertEquals(first.asNative(), second.asNative());
+        Assert.assertTrue(memory.isDerefMemory(second));
+        memory.free(second);
+    }
+
+    @Test
+    public void testFreeWithOffset() {
+        LLVMNativePointer handle = memory.allocateDerefMemory();
+        memory.free(handle.asNative() + 16);
+        LLVMNativePointer reused = memory.allocateDerefMemory();
+        Assert.assertEquals(handle.asNative(), reused.asNative());
+        memory.free(reused);
+    }
+
+    @Test
+    public void testConcurrentAllocateAndFree() throws Throwable {
+        Set<Long> live = ConcurrentHashMap.newKeySet();
+        AtomicLong lowest = new AtomicLong(Long.MAX_VALUE);
+        CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    barrier.await();
+                    long[] handles = new long[HANDLES_PER_ROUND];
+                    for (int round = 0; round < ROUNDS; round++) {
+                        for (int i = 0; i < HANDLES_PER_ROUND; i++) {
+                            handles[i] = memory.allocateDerefMemory().asNative();
+                            // no handle may be handed out twice while it is alive
+                            Assert.assertTrue(live.add(handles[i]));
+                            lowest.accumulateAndGet(handles[i], Math::min);
+                        }
+                        for (int i = 0; i < HANDLES_PER_ROUND; i++) {
+                            Assert.assertTrue(live.remove(handles[i]));
+                            memory.free(handles[i]);
+                        }
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+
+        // all handles went back to the free list, so a new batch must not grow the handle space
+        Set<Long> reused = new HashSet<>();
+        for (int i = 0; i < THREADS * HANDLES_PER_ROUND; i++) {
+            long handle = memory.allocateDerefMemory().asNative();
+            Assert.assertTrue(reused.add(handle));
+            Assert.assertTrue(handle >= lowest.get());
+        }
+        for (long handle : reused) {
+            memory.free(handle);
+        }
+    }
+}
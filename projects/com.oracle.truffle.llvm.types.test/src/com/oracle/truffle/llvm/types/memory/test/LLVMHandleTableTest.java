@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.types.memory.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.api.interop.ForeignAccess;
+import com.oracle.truffle.api.interop.TruffleObject;
+import com.oracle.truffle.llvm.runtime.LLVMHandleTable;
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+
+public class LLVMHandleTableTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 500;
+    private static final int HANDLES_PER_ROUND = 64;
+
+    @SuppressWarnings("deprecation")
+    private static final LLVMMemory memory = LLVMMemory.getInstance();
+
+    private static final class TestObject implements TruffleObject {
+        @Override
+        public ForeignAccess getForeignAccess() {
+            return null;
+        }
+    }
+
+    private interface Worker {
+        void run(int thread) throws Exception;
+    }
+
+    private static void runConcurrently(Worker worker) throws Throwable {
+        CyclicBarrier barrier = new CyclicBarrier(THREADS);
+        List<Throwable> failures = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int index = t;
+            Thread thread = new Thread(() -> {
+                try {
+                    barrier.await();
+                    worker.run(index);
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+    }
+
+    @Test
+    public void testCreateAndRelease() {
+        LLVMHandleTable table = new LLVMHandleTable(false);
+        try {
+            TestObject object = new TestObject();
+            long handle = table.getHandle(memory, object).asNative();
+            Assert.assertEquals(handle, table.getHandle(memory, object).asNative());
+            Assert.assertSame(object, table.get(handle));
+            table.release(memory, handle);
+            Assert.assertNull(table.get(handle));
+            Assert.assertEquals(0, table.getLiveHandleCount());
+
+            // the object gets a new handle after its old one was released
+            long newHandle = table.getHandle(memory, object).asNative();
+            Assert.assertSame(object, table.get(newHandle));
+            table.release(memory, newHandle);
+        } finally {
+            table.dispose(memory);
+        }
+    }
+
+    @Test
+    public void testConcurrentCreateAndRelease() throws Throwable {
+        LLVMHandleTable table = new LLVMHandleTable(false);
+        try {
+            runConcurrently(thread -> {
+                TestObject[] objects = new TestObject[HANDLES_PER_ROUND];
+                long[] handles = new long[HANDLES_PER_ROUND];
+                for (int round = 0; round < ROUNDS; round++) {
+                    for (int i = 0; i < HANDLES_PER_ROUND; i++) {
+                        objects[i] = new TestObject();
+                        boolean deref = (i + thread) % 2 == 0;
+                        handles[i] = (deref ? table.getDerefHandle(memory, objects[i]) : table.getHandle(memory, objects[i])).asNative();
+                    }
+                    for (int i = 0; i < HANDLES_PER_ROUND; i++) {
+                        // a released and recycled slot must never resolve to another object
+                        Assert.assertSame(objects[i], table.get(handles[i]));
+                        table.release(memory, handles[i]);
+                    }
+                }
+            });
+            Assert.assertEquals(0, table.getLiveHandleCount());
+        } finally {
+            table.dispose(memory);
+        }
+    }
+
+    @Test
+    public void testConcurrentSharedObject() throws Throwable {
+        LLVMHandleTable table = new LLVMHandleTable(false);
+        try {
+            TestObject[] shared = new TestObject[HANDLES_PER_ROUND];
+            for (int i = 0; i < shared.length; i++) {
+                shared[i] = new TestObject();
+            }
+            long[][] handles = new long[THREADS][HANDLES_PER_ROUND];
+            runConcurrently(thread -> {
+                for (int i = 0; i < HANDLES_PER_ROUND; i++) {
+                    handles[thread][i] = table.getHandle(memory, shared[i]).asNative();
+                }
+            });
+
+            // all threads must get the same handle for the same object
+            for (int i = 0; i < HANDLES_PER_ROUND; i++) {
+                for (int thread = 1; thread < THREADS; thread++) {
+                    Assert.assertEquals(handles[0][i], handles[thread][i]);
+                }
+                Assert.assertSame(shared[i], table.get(handles[0][i]));
+                table.release(memory, handles[0][i]);
+            }
+            Assert.assertEquals(0, table.getLiveHandleCount());
+        } finally {
+            table.dispose(memory);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2018, Oracle and/or its affiliates.
+ *
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials provided
+ * with the distribution.
+ *
+ * 3. Neither the name of the copyright holder nor the names of its contributors may be used to
+ * endorse or promote products derived from this software without specific prior written
+ * permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS
+ * OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+ * MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ * COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED
+ * AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED
+ * OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.oracle.truffle.llvm.types.memory.test;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+import com.oracle.truffle.llvm.runtime.memory.LLVMPooledAllocator;
+import com.oracle.truffle.llvm.runtime.pointer.LLVMNativePointer;
+
+public class LLVMPooledAllocatorTest {
+
+    private static final int BLOCKS = 1000;
+    private static final long LARGE_SIZE = 1024 * 1024;
+
+    @SuppressWarnings("deprecation")
+    private static final LLVMMemory memory = LLVMMemory.getInstance();
+
+    @Test
+    public void testSizeClassReuse() {
+        LLVMPooledAllocator allocator = new LLVMPooledAllocator(memory);
+        try {
+            LLVMNativePointer block = allocator.allocate(24);
+            Assert.assertEquals(0, block.asNative() % 16);
+            allocator.free(block);
+            // a request of the same size class gets the block back
+            Assert.assertEquals(block.asNative(), allocator.allocate(20).asNative());
+
+            // a block is not handed out twice while it is in use
+            Set<Long> live = new HashSet<>();
+            live.add(block.asNative());
+            for (int i = 0; i < BLOCKS; i++) {
+                Assert.assertTrue(live.add(allocator.allocate(24).asNative()));
+            }
+
+            // growing within the size class keeps the block, growing beyond it moves the contents
+            LLVMNativePointer small = allocator.allocate(40);
+            memory.putI64(small.asNative(), 42);
+            Assert.assertEquals(small.asNative(), allocator.reallocate(small, 48).asNative());
+            LLVMNativePointer moved = allocator.reallocate(small, 1000);
+            Assert.assertEquals(42, memory.getI64(moved.asNative()));
+            allocator.free(moved);
+        } finally {
+            allocator.dispose();
+        }
+    }
+
+    @Test
+    public void testCrossThreadFree() throws InterruptedException {
+        LLVMPooledAllocator allocator = new LLVMPooledAllocator(memory);
+        try {
+            long[] blocks = new long[BLOCKS];
+            Thread producer = new Thread(() -> {
+                for (int i = 0; i < BLOCKS; i++) {
+                    blocks[i] = allocator.allocate(64).asNative();
+                }
+            });
+            producer.start();
+            producer.join();
+            allocator.releaseThreadCache(producer);
+
+            // this thread frees the blocks of the other thread and reuses them
+            Set<Long> freed = new HashSet<>();
+            for (long block : blocks) {
+                allocator.free(LLVMNativePointer.create(block));
+                freed.add(block);
+            }
+            for (int i = 0; i < BLOCKS; i++) {
+                Assert.assertTrue(freed.remove(allocator.allocate(64).asNative()));
+            }
+
+            // the cache of a thread that is gone is reused by the other threads
+            Thread consumer = new Thread(() -> {
+                for (long block : blocks) {
+                    allocator.free(LLVMNativePointer.create(block));
+                }
+            });
+            consumer.start();
+            consumer.join();
+            allocator.releaseThreadCache(consumer);
+            for (long block : blocks) {
+                freed.add(block);
+            }
+            for (int i = 0; i < BLOCKS; i++) {
+                Assert.assertTrue(freed.remove(allocator.allocate(64).asNative()));
+            }
+        } finally {
+            allocator.dispose();
+        }
+    }
+
+    @Test
+    public void testLargeAllocations() {
+        LLVMPooledAllocator allocator = new LLVMPooledAllocator(memory);
+        try {
+            LLVMNativePointer large = allocator.allocate(LARGE_SIZE);
+            memory.putI64(large.asNative() + LARGE_SIZE - 8, 42);
+            LLVMNativePointer larger = allocator.reallocate(large, 2 * LARGE_SIZE);
+            Assert.assertEquals(42, memory.getI64(larger.asNative() + LARGE_SIZE - 8));
+
+            // shrinking into a size class moves the block into the pool
+            memory.putI64(larger.asNative(), 7);
+            LLVMNativePointer small = allocator.reallocate(larger, 32);
+            Assert.assertEquals(7, memory.getI64(small.asNative()));
+            allocator.free(small);
+            Assert.assertEquals(small.asNative(), allocator.allocate(32).asNative());
+        } finally {
+            allocator.dispose();
+        }
+    }
+
+    @Test
+    public void testBlocksDoNotOverlap() {
+        LLVMPooledAllocator allocator = new LLVMPooledAllocator(memory);
+        try {
+            // blocks of all size classes, carved from more than one region
+            TreeMap<Long, Long> blocks = new TreeMap<>();
+            for (int i = 0; i < BLOCKS; i++) {
+                long size = (i * 37) % 16384 + 1;
+                long address = allocator.allocate(size).asNative();
+                Assert.assertEquals(0, address % 16);
+                Assert.assertNull(blocks.put(address, size));
+            }
+            long end = 0;
+            for (Map.Entry<Long, Long> block : blocks.entrySet()) {
+                Assert.assertTrue(block.getKey() >= end);
+                end = block.getKey() + block.getValue();
+            }
+            for (long address : blocks.keySet()) {
+                allocator.free(LLVMNativePointer.create(address));
+            }
+        } finally {
+            allocator.dispose();
+        }
+    }
+
+    @Test
+    public void testForeignPointers() {
+        LLVMPooledAllocator allocator = new LLVMPooledAllocator(memory);
+        try {
+            LLVMNativePointer pooled = allocator.allocate(100);
+            // memory that was not allocated by the pool is passed through
+            LLVMNativePointer foreign = memory.allocateMemory(100);
+            memory.putI64(foreign.asNative(), 42);
+            LLVMNativePointer grown = allocator.reallocate(foreign, 200);
+            Assert.assertEquals(42, memory.getI64(grown.asNative()));
+            allocator.free(grown);
+            // and does not end up in the pool
+            allocator.free(pooled);
+            Assert.assertEquals(pooled.asNative(), allocator.allocate(100).asNative());
+        } finally {
+            allocator.dispose();
+        }
+    }
+}
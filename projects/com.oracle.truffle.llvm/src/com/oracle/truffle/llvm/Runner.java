@@ -30,10 +30,13 @@
 package com.oracle.truffle.llvm;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.ByteBuffer;
-import java.nio.file.Files;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -44,6 +47,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.graalvm.collections.EconomicMap;
 import org.graalvm.collections.EconomicSet;
@@ -79,14 +86,25 @@ import com.oracle.truffle.llvm.parser.LLVMParserResult;
 import com.oracle.truffle.llvm.parser.LLVMParserRuntime;
 import com.oracle.truffle.llvm.parser.NodeFactory;
 import com.oracle.truffle.llvm.parser.StackManager;
+import com.oracle.truffle.llvm.parser.elf.ElfDynamicSection;
+import com.oracle.truffle.llvm.parser.elf.ElfFile;
+import com.oracle.truffle.llvm.parser.elf.ElfSymbolTable;
 import com.oracle.truffle.llvm.parser.model.ModelModule;
 import com.oracle.truffle.llvm.parser.model.SymbolImpl;
 import com.oracle.truffle.llvm.parser.model.functions.FunctionSymbol;
+import com.oracle.truffle.llvm.parser.model.symbols.constants.NullConstant;
+import com.oracle.truffle.llvm.parser.model.symbols.constants.StringConstant;
+import com.oracle.truffle.llvm.parser.model.symbols.constants.UndefinedConstant;
+import com.oracle.truffle.llvm.parser.model.symbols.constants.aggregate.AggregateConstant;
 import com.oracle.truffle.llvm.parser.model.symbols.constants.aggregate.ArrayConstant;
 import com.oracle.truffle.llvm.parser.model.symbols.constants.aggregate.StructureConstant;
+import com.oracle.truffle.llvm.parser.model.symbols.constants.floatingpoint.FloatingPointConstant;
+import com.oracle.truffle.llvm.parser.model.symbols.constants.integer.BigIntegerConstant;
+import com.oracle.truffle.llvm.parser.model.symbols.constants.integer.IntegerConstant;
 import com.oracle.truffle.llvm.parser.model.symbols.globals.GlobalVariable;
 import com.oracle.truffle.llvm.parser.nodes.LLVMSymbolReadResolver;
 import com.oracle.truffle.llvm.parser.scanner.LLVMScanner;
+import com.oracle.truffle.llvm.parser.scanner.ModuleCache;
 import com.oracle.truffle.llvm.parser.util.Pair;
 import com.oracle.truffle.llvm.runtime.LLVMContext;
 import com.oracle.truffle.llvm.runtime.LLVMContext.ExternalLibrary;
@@ -95,7 +113,6 @@ import com.oracle.truffle.llvm.runtime.LLVMFunctionDescriptor.Intrinsic;
 import com.oracle.truffle.llvm.runtime.LLVMLanguage;
 import com.oracle.truffle.llvm.runtime.LLVMScope;
 import com.oracle.truffle.llvm.runtime.NFIContextExtension;
-import com.oracle.truffle.llvm.runtime.NFIContextExtension.NativeLookupResult;
 import com.oracle.truffle.llvm.runtime.NFIContextExtension.NativePointerIntoLibrary;
 import com.oracle.truffle.llvm.runtime.NativeIntrinsicProvider;
 import com.oracle.truffle.llvm.runtime.SystemContextExtension;
@@ -125,11 +142,16 @@ public final class Runner {
     private static final String DESTRUCTORS_VARNAME = "@llvm.global_dtors";
     private static final int LEAST_CONSTRUCTOR_PRIORITY = 65535;
 
+    /* files below this size are read to the heap instead of being mapped */
+    private static final long MAP_THRESHOLD = 1024 * 1024;
+
     private static final Comparator<Pair<Integer, ?>> ASCENDING_PRIORITY = (p1, p2) -> p1.getFirst() - p2.getFirst();
     private static final Comparator<Pair<Integer, ?>> DESCENDING_PRIORITY = (p1, p2) -> p2.getFirst() - p1.getFirst();
 
     private final NodeFactory nodeFactory;
 
+    private LibraryScanner libraryScanner;
+
     /**
      * Object that is returned when a bitcode library is parsed.
      */
@@ -328,11 +350,15 @@ public final class Runner {
     private CallTarget parse(LLVMLanguage language, LLVMContext context, Source source, ByteBuffer bytes, ExternalLibrary library) throws IOException {
         // process the bitcode file and its dependencies in the dynamic linking order
         // (breadth-first)
-        try {
+        try (LibraryScanner scanner = new LibraryScanner(context.getEnv())) {
+            libraryScanner = scanner;
             List<LLVMParserResult> parserResults = new ArrayList<>();
             ArrayDeque<ExternalLibrary> dependencyQueue = new ArrayDeque<>();
 
-            parse(parserResults, dependencyQueue, language, context, source, library, bytes, new LLVMScope());
+            long scanStart = System.nanoTime();
+            ModelModule module = LLVMScanner.parse(bytes, scanner.moduleCache);
+            ScannedLibrary scanned = new ScannedLibrary(source, module, null, System.nanoTime() - scanStart);
+            link(parserResults, dependencyQueue, language, context, library, scanned, new LLVMScope());
             assert !library.isNative() && !parserResults.isEmpty();
 
             ExternalLibrary[] defaultLibraries = parseDependencies(parserResults, dependencyQueue, language, context);
@@ -346,6 +372,8 @@ public final class Runner {
             return createLibraryCallTarget(language, context, parserResults);
         } catch (Throwable t) {
             throw new IOException("Error while parsing " + library, t);
+        } finally {
+            libraryScanner = null;
         }
     }
 
@@ -373,10 +401,18 @@ public final class Runner {
             sulongLibs = new ExternalLibrary[defaultLibraries.length];
             for (int i = 0; i < sulongLibs.length; i++) {
                 sulongLibs[i] = context.addExternalLibrary(defaultLibraries[i], false, i != 0);
+                libraryScanner.prefetch(sulongLibs[i]);
             }
 
             // parse all libraries that were passed on the command-line
             List<String> externals = SulongEngineOption.getPolyglotOptionExternalLibraries(env);
+            for (String external : externals) {
+                // a library with an absolute path can be scanned while the ones before it are linked
+                Path path = Paths.get(external);
+                if (path.isAbsolute()) {
+                    libraryScanner.prefetch(new ExternalLibrary(path, true, false));
+                }
+            }
             for (String external : externals) {
                 // assume that the library is a native one until we parsed it and can say for sure
                 ExternalLibrary lib = context.addExternalLibrary(external, true, false);
@@ -412,20 +448,21 @@ public final class Runner {
         }
 
         try {
-            Path path = lib.getPath();
-            byte[] bytes = Files.readAllBytes(path);
-            // at the moment, we don't need the bitcode as the content of the source
-            Source source = Source.newBuilder(path.toString()).mimeType(LLVMLanguage.LLVM_BITCODE_MIME_TYPE).name(path.getFileName().toString()).build();
-            parse(parserResults, dependencyQueue, language, context, source, lib, ByteBuffer.wrap(bytes), scope);
+            link(parserResults, dependencyQueue, language, context, lib, libraryScanner.get(lib), scope);
         } catch (Throwable t) {
             throw new RuntimeException("Error while trying to parse " + lib.getName(), t);
         }
     }
 
-    private void parse(List<LLVMParserResult> parserResults, ArrayDeque<ExternalLibrary> dependencyQueue, LLVMLanguage language, LLVMContext context, Source source,
-                    ExternalLibrary library, ByteBuffer bytes, LLVMScope scope) {
-        ModelModule module = LLVMScanner.parse(source, bytes);
+    /**
+     * Adds a scanned library to the context. This is not thread-safe and must happen in the dynamic
+     * linking order, because it determines the order in which symbols are resolved.
+     */
+    private void link(List<LLVMParserResult> parserResults, ArrayDeque<ExternalLibrary> dependencyQueue, LLVMLanguage language, LLVMContext context, ExternalLibrary library,
+                    ScannedLibrary scanned, LLVMScope scope) {
+        ModelModule module = scanned.module;
         if (module != null) {
+            long linkStart = System.nanoTime();
             library.setIsNative(false);
             context.addLibraryPaths(module.getLibraryPaths());
             List<String> libraries = module.getLibraries();
@@ -433,14 +470,21 @@ public final class Runner {
                 ExternalLibrary dependency = context.addExternalLibrary(lib, true, false);
                 if (dependency != null) {
                     dependencyQueue.addLast(dependency);
+                    libraryScanner.prefetch(dependency);
                 }
             }
             LLVMParserRuntime runtime = new LLVMParserRuntime(language, context, nodeFactory, library, scope);
-            LLVMParser parser = new LLVMParser(source, runtime);
+            LLVMParser parser = new LLVMParser(scanned.source, runtime);
             LLVMParserResult parserResult = parser.parse(module);
             parserResults.add(parserResult);
+            libraryScanner.printStatistics(library, scanned.scanTime, System.nanoTime() - linkStart);
         } else if (!library.isNative()) {
             throw new RuntimeException("The file is not a bitcode file nor an ELF File with a .llvmbc section.");
+        } else if (scanned.nativeSymbols != null) {
+            NFIContextExtension nfiContextExtension = context.getContextExtensionOrNull(NFIContextExtension.class);
+            if (nfiContextExtension != null) {
+                nfiContextExtension.registerLibrarySymbols(library, scanned.nativeSymbols);
+            }
         }
     }
 
@@ -476,30 +520,44 @@ public final class Runner {
         }
     }
 
+    /**
+     * Globals that are not defined by any bitcode library are bound to native globals when their
+     * address is first taken, so that only the globals that are actually used are looked up.
+     */
     private static void bindUnresolvedGlobals(LLVMContext context, List<LLVMParserResult> parserResults) {
-        NFIContextExtension nfiContextExtension = context.getContextExtensionOrNull(NFIContextExtension.class);
         for (LLVMParserResult parserResult : parserResults) {
             for (LLVMGlobal global : parserResult.getRuntime().getFileScope().globals().toArray()) {
                 if (!global.isDefined()) {
                     assert context.getGlobalScope().globals().contains(global);
-                    if (nfiContextExtension != null) {
-                        NativePointerIntoLibrary pointerIntoLibrary = nfiContextExtension.getNativeHandle(context, global.getName());
-                        if (pointerIntoLibrary != null) {
-                            global.define(pointerIntoLibrary.getLibrary());
-                            global.bindToNativeAddress(context, pointerIntoLibrary.getAddress());
-                        }
-                    }
-
-                    if (!global.isDefined() && !context.getEnv().getOptions().get(SulongEngineOption.PARSE_ONLY)) {
-                        throw new LinkageError("Global variable " + global.getName() + " is declared but not defined.");
-                    }
+                    global.setLazyInitializer(() -> bindNativeGlobal(context, global));
                 }
             }
         }
     }
 
-    private static void bindUnresolvedFunctions(LLVMContext context, List<LLVMParserResult> parserResults) {
+    private static void bindNativeGlobal(LLVMContext context, LLVMGlobal global) {
+        if (global.isDefined()) {
+            // defined by a library that was loaded later on
+            return;
+        }
         NFIContextExtension nfiContextExtension = context.getContextExtensionOrNull(NFIContextExtension.class);
+        if (nfiContextExtension != null) {
+            NativePointerIntoLibrary pointerIntoLibrary = nfiContextExtension.getNativeHandle(context, global.getName());
+            if (pointerIntoLibrary != null) {
+                global.define(pointerIntoLibrary.getLibrary());
+                global.bindToNativeAddress(context, pointerIntoLibrary.getAddress());
+                return;
+            }
+        }
+        throw new LinkageError("Global variable " + global.getName() + " is declared but not defined.");
+    }
+
+    /**
+     * Only binds intrinsified functions. All other unresolved functions are looked up in the native
+     * libraries on their first call or when their address is first taken (see
+     * {@code LLVMFunctionDescriptor.UnresolvedFunction}).
+     */
+    private static void bindUnresolvedFunctions(LLVMContext context, List<LLVMParserResult> parserResults) {
         NativeIntrinsicProvider intrinsicProvider = context.getContextExtensionOrNull(NativeIntrinsicProvider.class);
         for (LLVMParserResult parserResult : parserResults) {
             for (LLVMFunctionDescriptor function : parserResult.getRuntime().getFileScope().functions().toArray()) {
@@ -508,14 +566,7 @@ public final class Runner {
                     if (intrinsicProvider != null && intrinsicProvider.isIntrinsified(function.getName())) {
                         Intrinsic intrinsification = new Intrinsic(intrinsicProvider, function.getName());
                         function.define(intrinsicProvider.getLibrary(), new LLVMFunctionDescriptor.NativeIntrinsicFunction(intrinsification));
-                    } else if (nfiContextExtension != null) {
-                        NativeLookupResult nativeFunction = nfiContextExtension.getNativeFunctionOrNull(context, function.getName());
-                        if (nativeFunction != null) {
-                            function.define(nativeFunction.getLibrary(), new LLVMFunctionDescriptor.NativeFunction(nativeFunction.getObject()));
-                        }
                     }
-                    // if we were unable to bind the function, then we will try another lookup when
-                    // someone tries to execute the function
                 }
             }
         }
@@ -653,8 +704,12 @@ public final class Runner {
     private static RootCallTarget createGlobalVariableInitializer(LLVMParserResult parserResult) {
         FrameDescriptor rootFrame = StackManager.createRootFrame();
         LLVMSymbolReadResolver symbolResolver = new LLVMSymbolReadResolver(parserResult.getRuntime(), rootFrame);
+        final boolean lazy = parserResult.getRuntime().getContext().getEnv().getOptions().get(SulongEngineOption.LAZY_GLOBALS);
         final List<LLVMExpressionNode> globalNodes = new ArrayList<>();
         for (GlobalVariable global : parserResult.getDefinedGlobals()) {
+            if (lazy && deferInitialization(parserResult.getRuntime(), global)) {
+                continue;
+            }
             final LLVMExpressionNode store = createGlobalInitialization(parserResult.getRuntime(), symbolResolver, global);
             if (store != null) {
                 globalNodes.add(store);
@@ -669,6 +724,48 @@ public final class Runner {
         return null;
     }
 
+    /**
+     * Defers the initialization of a constant global until its address is first taken. This is only
+     * done if the initializer does not refer to any other symbol, so that running it later cannot
+     * have any effect besides initializing the global itself.
+     */
+    private static boolean deferInitialization(LLVMParserRuntime runtime, GlobalVariable global) {
+        if (!global.isReadOnly() || global.getValue() == null || !isSelfContained(global.getValue())) {
+            return false;
+        }
+        final LLVMGlobal descriptor = runtime.lookupGlobal(global.getName(), global.isExported());
+        if (descriptor.getLibrary() != runtime.getLibrary()) {
+            // shadowed by a global of another library
+            return false;
+        }
+        descriptor.setLazyInitializer(() -> {
+            FrameDescriptor rootFrame = StackManager.createRootFrame();
+            LLVMSymbolReadResolver symbolResolver = new LLVMSymbolReadResolver(runtime, rootFrame);
+            LLVMExpressionNode store = createGlobalInitialization(runtime, symbolResolver, global);
+            if (store != null) {
+                RootCallTarget globalVarInit = Truffle.getRuntime().createCallTarget(new LLVMStaticInitsBlockNode(runtime.getLanguage(), new LLVMExpressionNode[]{store}, rootFrame));
+                try (StackPointer stackPointer = runtime.getContext().getThreadingStack().getStack().newFrame()) {
+                    globalVarInit.call(stackPointer);
+                }
+            }
+        });
+        return true;
+    }
+
+    private static boolean isSelfContained(SymbolImpl value) {
+        if (value instanceof AggregateConstant) {
+            final AggregateConstant aggregate = (AggregateConstant) value;
+            for (int i = 0; i < aggregate.getElementCount(); i++) {
+                if (!isSelfContained(aggregate.getElement(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return value instanceof IntegerConstant || value instanceof BigIntegerConstant || value instanceof FloatingPointConstant || value instanceof StringConstant ||
+                        value instanceof NullConstant || value instanceof UndefinedConstant;
+    }
+
     private static LLVMExpressionNode createGlobalInitialization(LLVMParserRuntime runtime, LLVMSymbolReadResolver symbolResolver, GlobalVariable global) {
         if (global == null || global.getValue() == null) {
             return null;
@@ -771,12 +868,40 @@ public final class Runner {
 
     private static ByteBuffer read(Path path) {
         try {
-            return ByteBuffer.wrap(Files.readAllBytes(path));
+            return map(path);
         } catch (IOException ignore) {
             return ByteBuffer.allocate(0);
         }
     }
 
+    /**
+     * Maps large files read-only instead of copying them to the heap. Lazily parsed functions keep
+     * the buffer alive, so this avoids holding a copy of every large library on the heap, and the
+     * pages are shared with other processes that load the same file.
+     *
+     * A mapped file must not be truncated while it is loaded: reading a page that is no longer
+     * backed by the file raises SIGBUS, which the VM reports as an internal error or does not
+     * survive at all. Small files, which make up most libraries, are therefore read to the heap,
+     * where later changes to the file cannot affect them.
+     */
+    private static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                return channel.map(MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    // the file was truncated in the meantime
+                    break;
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
     private static CallTarget createLibraryCallTarget(LLVMLanguage language, LLVMContext context, List<LLVMParserResult> parserResults) {
         RootCallTarget mainFunctionCallTarget = null;
         LLVMFunctionDescriptor mainFunctionDescriptor = findMainMethod(context, parserResults);
@@ -842,6 +967,111 @@ public final class Runner {
         }
     }
 
+    private static final class ScannedLibrary {
+        private final Source source;
+        private final ModelModule module;
+        // exported symbols if this is a native library
+        private final List<String> nativeSymbols;
+        private final long scanTime;
+
+        private ScannedLibrary(Source source, ModelModule module, List<String> nativeSymbols, long scanTime) {
+            this.source = source;
+            this.module = module;
+            this.nativeSymbols = nativeSymbols;
+            this.scanTime = scanTime;
+        }
+    }
+
+    /**
+     * Maps and scans bitcode libraries on a pool of worker threads as soon as they are discovered.
+     * Scanning only builds the {@link ModelModule} of a library and does not touch the context, so
+     * the libraries can still be linked one after another in the dynamic linking order.
+     */
+    private static final class LibraryScanner implements AutoCloseable {
+
+        private final ExecutorService executor;
+        private final Map<ExternalLibrary, Future<ScannedLibrary>> pending;
+        private final PrintStream statistics;
+        private final ModuleCache moduleCache;
+
+        LibraryScanner(Env env) {
+            int threads = env.getOptions().get(SulongEngineOption.PARSE_THREADS);
+            if (threads <= 0) {
+                threads = Runtime.getRuntime().availableProcessors();
+            }
+            this.executor = threads > 1 ? Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "Sulong library scanner");
+                thread.setDaemon(true);
+                return thread;
+            }) : null;
+            this.pending = new HashMap<>();
+            String option = env.getOptions().get(SulongEngineOption.PARSE_STATS);
+            this.statistics = SulongEngineOption.isTrue(option) ? SulongEngineOption.getStream(option) : null;
+            String cacheDirectory = env.getOptions().get(SulongEngineOption.MODULE_CACHE);
+            this.moduleCache = cacheDirectory.isEmpty() ? null : new ModuleCache(Paths.get(cacheDirectory), Sulong.VERSION, statistics);
+        }
+
+        void prefetch(ExternalLibrary lib) {
+            if (executor != null && lib != null && isFile(lib) && !pending.containsKey(lib)) {
+                pending.put(lib, executor.submit(() -> scan(lib)));
+            }
+        }
+
+        ScannedLibrary get(ExternalLibrary lib) throws Exception {
+            Future<ScannedLibrary> future = pending.remove(lib);
+            if (future == null) {
+                return scan(lib);
+            }
+            try {
+                return future.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+
+        void printStatistics(ExternalLibrary lib, long scanTime, long linkTime) {
+            if (statistics != null) {
+                statistics.printf("[sulong] %s: scanned in %d ms, linked in %d ms%n", lib.getName(), scanTime / 1000000, linkTime / 1000000);
+            }
+        }
+
+        private static boolean isFile(ExternalLibrary lib) {
+            return lib.getPath() != null && lib.getPath().toFile().isFile();
+        }
+
+        private ScannedLibrary scan(ExternalLibrary lib) throws IOException {
+            long start = System.nanoTime();
+            Path path = lib.getPath();
+            ByteBuffer bytes = map(path);
+            // at the moment, we don't need the bitcode as the content of the source
+            Source source = Source.newBuilder(path.toString()).mimeType(LLVMLanguage.LLVM_BITCODE_MIME_TYPE).name(path.getFileName().toString()).build();
+            ModelModule module = LLVMScanner.parse(bytes, moduleCache);
+            List<String> nativeSymbols = module == null ? readNativeSymbols(bytes) : null;
+            return new ScannedLibrary(source, module, nativeSymbols, System.nanoTime() - start);
+        }
+
+        private static List<String> readNativeSymbols(ByteBuffer bytes) {
+            if (!ElfFile.isElfFile(bytes)) {
+                return null;
+            }
+            ElfFile elfFile = ElfFile.create(bytes.duplicate());
+            ElfDynamicSection dynamicSection = elfFile.getDynamicSection();
+            if (dynamicSection != null && !dynamicSection.getDTNeeded().isEmpty()) {
+                // the library also resolves the symbols of its dependencies
+                return null;
+            }
+            ElfSymbolTable symbolTable = elfFile.getDynamicSymbolTable();
+            return symbolTable != null ? symbolTable.getDefinedSymbols() : null;
+        }
+
+        @Override
+        public void close() {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
     private static final class ParserData {
         private final ByteBuffer bytes;
         private final ExternalLibrary library;
@@ -56,16 +56,20 @@ import com.oracle.truffle.llvm.runtime.debug.LLVMDebugObject;
 import com.oracle.truffle.llvm.runtime.debug.LLVMSourceType;
 import com.oracle.truffle.llvm.runtime.debug.scope.LLVMSourceLocation;
 import com.oracle.truffle.llvm.runtime.debug.scope.LLVMSourceScope;
+import com.oracle.truffle.llvm.runtime.global.LLVMGlobal;
 import com.oracle.truffle.llvm.runtime.interop.LLVMInternalTruffleObject;
 import com.oracle.truffle.llvm.runtime.memory.LLVMMemory;
+import com.oracle.truffle.llvm.runtime.memory.LLVMPooledAllocator;
 import com.oracle.truffle.llvm.runtime.options.SulongEngineOption;
 
-@TruffleLanguage.Registration(id = "llvm", name = "llvm", version = "6.0.0", mimeType = {Sulong.LLVM_SULONG_TYPE, Sulong.LLVM_BITCODE_MIME_TYPE, Sulong.LLVM_BITCODE_BASE64_MIME_TYPE,
+@TruffleLanguage.Registration(id = "llvm", name = "llvm", version = Sulong.VERSION, mimeType = {Sulong.LLVM_SULONG_TYPE, Sulong.LLVM_BITCODE_MIME_TYPE, Sulong.LLVM_BITCODE_BASE64_MIME_TYPE,
                 Sulong.SULONG_LIBRARY_MIME_TYPE, Sulong.LLVM_ELF_SHARED_MIME_TYPE, Sulong.LLVM_ELF_EXEC_MIME_TYPE}, internal = false, interactive = false)
 // TODO: remove Sulong.SULONG_LIBRARY_MIME_TYPE after GR-5904 is closed.
 @ProvidedTags({StandardTags.StatementTag.class, StandardTags.CallTag.class, StandardTags.RootTag.class, DebuggerTags.AlwaysHalt.class})
 public final class Sulong extends LLVMLanguage {
 
+    static final String VERSION = "6.0.0";
+
     private static final List<Configuration> configurations = new ArrayList<>();
 
     static {
@@ -122,7 +126,9 @@ public final class Sulong extends LLVMLanguage {
             return context.getGlobalScope().functions().get(atname);
         }
         if (context.getGlobalScope().globals().contains(globalName)) {
-            return context.getGlobalScope().globals().get(globalName);
+            LLVMGlobal global = context.getGlobalScope().globals().get(globalName);
+            global.ensureInitialized();
+            return global;
         }
         return null;
     }
@@ -193,6 +199,10 @@ public final class Sulong extends LLVMLanguage {
     protected void disposeThread(LLVMContext context, Thread thread) {
         super.disposeThread(context, thread);
         context.getThreadingStack().freeStack(getCapability(LLVMMemory.class), thread);
+        LLVMPooledAllocator pooledAllocator = context.getPooledAllocator();
+        if (pooledAllocator != null) {
+            pooledAllocator.releaseThreadCache(thread);
+        }
     }
 
     @Override
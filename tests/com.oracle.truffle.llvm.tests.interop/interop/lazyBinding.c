@@ -0,0 +1,14 @@
+extern int undefined_global;
+extern int undefined_function(int);
+
+int defined_function() {
+    return 42;
+}
+
+int read_undefined_global() {
+    return undefined_global;
+}
+
+int call_undefined_function() {
+    return undefined_function(42);
+}
@@ -0,0 +1,3 @@
+int parallel_scan_first() {
+    return 1;
+}
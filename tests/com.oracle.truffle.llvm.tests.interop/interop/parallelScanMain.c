@@ -0,0 +1,7 @@
+int parallel_scan_first();
+int parallel_scan_second();
+int parallel_scan_third();
+
+int sum_of_libraries() {
+    return parallel_scan_first() + parallel_scan_second() + parallel_scan_third();
+}
@@ -0,0 +1,3 @@
+int parallel_scan_second() {
+    return 20;
+}
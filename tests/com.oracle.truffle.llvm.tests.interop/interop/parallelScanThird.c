@@ -0,0 +1,3 @@
+int parallel_scan_third() {
+    return 300;
+}
@@ -0,0 +1,16 @@
+#include <alloca.h>
+
+int recurse(int depth) {
+    volatile char frame[16 * 1024];
+    frame[0] = 1;
+    if (depth == 0) {
+        return frame[0];
+    }
+    return recurse(depth - 1) + frame[0];
+}
+
+int large_alloca(long size) {
+    volatile char *buffer = alloca(size);
+    buffer[0] = 1;
+    return buffer[0];
+}
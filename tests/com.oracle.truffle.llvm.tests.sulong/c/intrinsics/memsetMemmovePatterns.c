@@ -0,0 +1,145 @@
+#include <stdio.h>
+#include <string.h>
+
+#define BUFFER_SIZE 352
+
+static const int lengths[] = { 0, 1, 2, 3, 5, 7, 8, 9, 15, 16, 17, 31, 63, 64, 65, 100, 255, 256, 257, 300 };
+static const int fills[] = { 0x00, 0x01, 0x7f, 0x80, 0x81, 0xa5, 0xc3, 0xfe, 0xff };
+static const int shifts[] = { 1, 3, 7, 8, 9, 16, 33 };
+
+union buffer {
+  long align;
+  unsigned char bytes[BUFFER_SIZE];
+};
+
+static void reset(unsigned char *bytes) {
+  for (int i = 0; i < BUFFER_SIZE; i++) {
+    bytes[i] = (unsigned char) (i * 7 + 3);
+  }
+}
+
+static int checkFill(unsigned char *bytes, int start, int length, int fill) {
+  int errors = 0;
+  for (int i = 0; i < BUFFER_SIZE; i++) {
+    int expected = i >= start && i < start + length ? fill : (unsigned char) (i * 7 + 3);
+    if (bytes[i] != expected) {
+      errors++;
+    }
+  }
+  return errors;
+}
+
+__attribute__((noinline)) void fillVariable(unsigned char *target, int fill, int length) {
+  memset(target, fill, length);
+}
+
+__attribute__((noinline)) void fillConstant(unsigned char *target, int fill, int which) {
+  switch (which) {
+  case 0:
+    memset(target, fill, 5);
+    break;
+  case 1:
+    memset(target, fill, 13);
+    break;
+  case 2:
+    memset(target, fill, 40);
+    break;
+  default:
+    memset(target, fill, 64);
+    break;
+  }
+}
+
+static const int constantLengths[] = { 5, 13, 40, 64 };
+
+__attribute__((noinline)) void moveVariable(unsigned char *target, unsigned char *source, int length) {
+  memmove(target, source, length);
+}
+
+__attribute__((noinline)) void moveConstant(unsigned char *target, unsigned char *source, int which) {
+  switch (which) {
+  case 0:
+    memmove(target, source, 5);
+    break;
+  case 1:
+    memmove(target, source, 13);
+    break;
+  case 2:
+    memmove(target, source, 40);
+    break;
+  default:
+    memmove(target, source, 64);
+    break;
+  }
+}
+
+static void referenceMove(unsigned char *bytes, int target, int source, int length) {
+  unsigned char tmp[BUFFER_SIZE];
+  for (int i = 0; i < length; i++) {
+    tmp[i] = bytes[source + i];
+  }
+  for (int i = 0; i < length; i++) {
+    bytes[target + i] = tmp[i];
+  }
+}
+
+static int checkMove(unsigned char *actual, int target, int source, int length) {
+  unsigned char expected[BUFFER_SIZE];
+  reset(expected);
+  referenceMove(expected, target, source, length);
+  return memcmp(actual, expected, BUFFER_SIZE) != 0;
+}
+
+int main() {
+  union buffer buf;
+  unsigned char *bytes = buf.bytes;
+
+  for (int f = 0; f < sizeof(fills) / sizeof(fills[0]); f++) {
+    int fill = fills[f];
+    int errors = 0;
+    for (int start = 0; start < 8; start++) {
+      for (int l = 0; l < sizeof(lengths) / sizeof(lengths[0]); l++) {
+        reset(bytes);
+        fillVariable(bytes + start, fill, lengths[l]);
+        errors += checkFill(bytes, start, lengths[l], fill) != 0;
+      }
+      for (int c = 0; c < 4; c++) {
+        reset(bytes);
+        fillConstant(bytes + start, (signed char) fill, c);
+        errors += checkFill(bytes, start, constantLengths[c], fill) != 0;
+      }
+    }
+    printf("memset 0x%02x: %d errors\n", fill, errors);
+  }
+
+  for (int s = 0; s < sizeof(shifts) / sizeof(shifts[0]); s++) {
+    int shift = shifts[s];
+    int forward = 0;
+    int backward = 0;
+    for (int start = 0; start < 8; start++) {
+      for (int l = 0; l < sizeof(lengths) / sizeof(lengths[0]); l++) {
+        int length = lengths[l];
+        if (start + shift + length > BUFFER_SIZE) {
+          continue;
+        }
+        reset(bytes);
+        moveVariable(bytes + start + shift, bytes + start, length);
+        forward += checkMove(bytes, start + shift, start, length);
+        reset(bytes);
+        moveVariable(bytes + start, bytes + start + shift, length);
+        backward += checkMove(bytes, start, start + shift, length);
+      }
+      for (int c = 0; c < 4; c++) {
+        int length = constantLengths[c];
+        reset(bytes);
+        moveConstant(bytes + start + shift, bytes + start, c);
+        forward += checkMove(bytes, start + shift, start, length);
+        reset(bytes);
+        moveConstant(bytes + start, bytes + start + shift, c);
+        backward += checkMove(bytes, start, start + shift, length);
+      }
+    }
+    printf("memmove shift %d: %d forward errors, %d backward errors\n", shift, forward, backward);
+  }
+  return 0;
+}
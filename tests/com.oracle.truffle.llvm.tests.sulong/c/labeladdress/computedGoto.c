@@ -0,0 +1,63 @@
+#include <stdio.h>
+
+enum { PUSH, ADD, DUP, DROP, JUMP_IF_POSITIVE, DECREMENT, PRINT, HALT, COLD };
+
+// a small interpreter that dispatches with computed gotos
+long run(const int *code, int traceCold) {
+  // PUSH and DUP share their target, and HALT and COLD as well
+  static void *dispatch[] = {&&push, &&add, &&push, &&drop, &&jump, &&decrement, &&print, &&halt, &&halt};
+  long stack[16];
+  int sp = 0;
+  int pc = 0;
+  long executed = 0;
+
+#define NEXT                                                                                                                                                   \
+  executed++;                                                                                                                                                  \
+  goto *dispatch[code[pc]]
+
+  NEXT;
+push:
+  // DUP copies the top of the stack, PUSH pushes the operand
+  stack[sp] = code[pc] == DUP ? stack[sp - 1] : code[pc + 1];
+  sp++;
+  pc += code[pc] == DUP ? 1 : 2;
+  NEXT;
+add:
+  sp--;
+  stack[sp - 1] += stack[sp];
+  pc++;
+  NEXT;
+drop:
+  sp--;
+  pc++;
+  NEXT;
+jump:
+  pc = stack[sp - 1] > 0 ? code[pc + 1] : pc + 2;
+  NEXT;
+decrement:
+  stack[sp - 1]--;
+  pc++;
+  NEXT;
+print:
+  printf("%ld\n", stack[sp - 1]);
+  pc++;
+  NEXT;
+halt:
+  if (code[pc] == COLD && traceCold) {
+    printf("cold halt after %ld instructions\n", executed);
+  }
+  return sp > 0 ? stack[sp - 1] : -1;
+}
+
+int main() {
+  // counts down from 200000 while summing, so that the hot targets get compiled
+  int hot[] = {PUSH, 0, PUSH, 200000, DUP, DROP, DECREMENT, JUMP_IF_POSITIVE, 4, DROP, PUSH, 7, ADD, PRINT, HALT};
+  // reaches the cold target, which is only taken once
+  int cold[] = {PUSH, 3, PUSH, 4, ADD, PRINT, COLD};
+  for (int i = 0; i < 5; i++) {
+    printf("hot %ld\n", run(hot, 1));
+  }
+  printf("cold %ld\n", run(cold, 1));
+  printf("hot %ld\n", run(hot, 1));
+  return 0;
+}
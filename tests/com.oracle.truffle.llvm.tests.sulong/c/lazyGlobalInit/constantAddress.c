@@ -0,0 +1,20 @@
+#include <stdio.h>
+
+static const int first[4] = { 1, 2, 3, 4 };
+static const int second[4] = { 5, 6, 7, 8 };
+// not self-contained, so it is initialized eagerly and takes the addresses of the others
+static const int *const tables[2] = { first, second };
+
+static const int *select(int index) {
+  return index == 0 ? first : second;
+}
+
+int main() {
+  // taking the address first initializes the global before it is read
+  const int *table = select(1);
+  printf("%d\n", table == second);
+  printf("%d %d\n", table[0], table[3]);
+  printf("%d %d\n", tables[0][1], tables[1][2]);
+  printf("%d\n", tables[0] == first && tables[1] == second);
+  return 0;
+}
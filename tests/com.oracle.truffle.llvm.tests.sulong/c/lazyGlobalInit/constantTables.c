@@ -0,0 +1,40 @@
+#include <stdio.h>
+#include <string.h>
+
+struct entry {
+  int key;
+  double weight;
+  char name[8];
+};
+
+static const int squares[8] = { 0, 1, 4, 9, 16, 25, 36, 49 };
+static const struct entry entries[3] = { { 1, 0.5, "one" }, { 2, 1.5, "two" }, { 3, 2.5, "three" } };
+static const char greeting[] = "hello";
+// never accessed, so it is never initialized
+const long unusedTable[4] = { 1, 2, 3, 4 };
+
+static int sum(const int *values, int count) {
+  int result = 0;
+  for (int i = 0; i < count; i++) {
+    result += values[i];
+  }
+  return result;
+}
+
+int main() {
+  int total = 0;
+  for (int round = 0; round < 1000; round++) {
+    total += squares[round % 8];
+  }
+  printf("total %d\n", total);
+  printf("sum %d\n", sum(squares, 8));
+
+  for (int i = 0; i < 3; i++) {
+    printf("%d %.1f %s\n", entries[i].key, entries[i].weight, entries[i].name);
+  }
+
+  char buffer[sizeof(greeting)];
+  memcpy(buffer, greeting, sizeof(greeting));
+  printf("%s %zu\n", buffer, strlen(greeting));
+  return 0;
+}
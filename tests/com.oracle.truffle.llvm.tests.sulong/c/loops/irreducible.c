@@ -0,0 +1,37 @@
+#include <stdio.h>
+
+volatile int start = 1;
+
+// the cycle between a and b can be entered at both blocks, so it is not a natural loop
+int run(int entry, int n) {
+  int count = 0;
+  if (entry) {
+    goto b;
+  }
+a:
+  count += 1;
+  n--;
+b:
+  count += 10;
+  if (n > 0) {
+    goto a;
+  }
+  return count;
+}
+
+int main() {
+  printf("%d\n", run(start, 5));
+  printf("%d\n", run(!start, 5));
+  for (int i = 0; i < 20; i++) {
+    while (i % 3 != 0) {
+      i++;
+      if (i > 15) {
+        goto done;
+      }
+    }
+    printf("i = %d\n", i);
+  }
+done:
+  printf("done\n");
+  return 0;
+}
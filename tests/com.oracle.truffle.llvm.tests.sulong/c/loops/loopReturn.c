@@ -0,0 +1,27 @@
+#include <stdio.h>
+
+volatile int limit = 1000;
+
+// returns from within two nested loops
+int find(int value) {
+  for (int i = 1; i < limit; i++) {
+    for (int j = i; j < limit; j++) {
+      if (i * j == value) {
+        return i * 1000 + j;
+      }
+      if (i * j > value) {
+        break;
+      }
+    }
+  }
+  return -1;
+}
+
+int main() {
+  long sum = 0;
+  for (int k = 0; k < 200; k++) {
+    sum += find(k * 17 + 3);
+  }
+  printf("%d %d %d %ld\n", find(91), find(97), find(0), sum);
+  return 0;
+}
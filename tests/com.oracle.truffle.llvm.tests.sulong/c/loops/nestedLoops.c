@@ -0,0 +1,22 @@
+#include <stdio.h>
+
+volatile int n = 7;
+
+int main() {
+  int sum = 0;
+  for (int i = 0; i < n; i++) {
+    for (int j = 0; j < i; j++) {
+      if (j == 3) {
+        continue;
+      }
+      for (int k = j; k < n; k++) {
+        if (k * j > 20) {
+          break;
+        }
+        sum += i * 100 + j * 10 + k;
+      }
+    }
+    printf("i = %d: sum = %d\n", i, sum);
+  }
+  return sum % 256;
+}
@@ -0,0 +1,29 @@
+#include <stdio.h>
+
+volatile int iterations = 3000000;
+
+// main is called only once, so its loops can only be compiled by on-stack replacement
+int main() {
+  unsigned int hash = 17;
+  for (int i = 0; i < iterations; i++) {
+    hash = hash * 31 + i;
+    if (i % 1000000 == 0) {
+      for (int j = 0; j < 100000; j++) {
+        hash ^= j << (j % 13);
+      }
+      printf("i = %d: hash = %u\n", i, hash);
+    }
+  }
+  printf("hash = %u\n", hash);
+
+  // leave the function from within a hot loop
+  int k = 0;
+  while (1) {
+    k++;
+    hash = hash * 7 + k;
+    if (k == iterations) {
+      printf("k = %d: hash = %u\n", k, hash);
+      return 0;
+    }
+  }
+}
@@ -0,0 +1,25 @@
+#include <stdio.h>
+
+volatile int n = 50;
+
+int main() {
+  int i = 0;
+  int odd = 0;
+  int even = 0;
+  int skipped = 0;
+  // every continue is a separate back edge to the loop header
+  while (i < n) {
+    i++;
+    if (i % 7 == 0) {
+      skipped++;
+      continue;
+    }
+    if (i % 2 == 0) {
+      even += i;
+      continue;
+    }
+    odd += i;
+  }
+  printf("odd = %d, even = %d, skipped = %d\n", odd, even, skipped);
+  return 0;
+}
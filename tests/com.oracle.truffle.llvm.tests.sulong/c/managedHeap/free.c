@@ -0,0 +1,39 @@
+#include <stdio.h>
+#include <stdlib.h>
+#include <stdint.h>
+
+int main() {
+  long checksum = 0;
+  for (int round = 0; round < 1000; round++) {
+    long *block = malloc((round % 50 + 1) * sizeof(long));
+    for (int i = 0; i <= round % 50; i++) {
+      block[i] = round + i;
+    }
+    checksum += block[round % 50];
+    if (round % 7 == 0) {
+      // free a block that was converted to native
+      checksum += (uintptr_t) block % sizeof(long);
+    }
+    free(block);
+  }
+  printf("checksum %ld\n", checksum);
+
+  free(NULL);
+
+  // realloc of a converted block
+  char *text = malloc(4);
+  text[0] = 'a';
+  text[1] = 'b';
+  text[2] = 'c';
+  text[3] = '\0';
+  printf("%s\n", text);
+  text = realloc(text, 4096);
+  text[3] = 'd';
+  text[4] = '\0';
+  printf("%s\n", text);
+  text = realloc(text, 2);
+  text[1] = '\0';
+  printf("%s\n", text);
+  free(text);
+  return 0;
+}
@@ -0,0 +1,63 @@
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <stdint.h>
+
+struct cell {
+  struct cell *self;
+  struct cell *other;
+  int value;
+};
+
+int main() {
+  // a string that is passed to a native function
+  char *greeting = malloc(32);
+  strcpy(greeting, "hello managed heap");
+  printf("%s %zu\n", greeting, strlen(greeting));
+  greeting[0] = 'H';
+  printf("%s\n", greeting);
+
+  // converting a pointer to an integer also needs a native address
+  int *values = malloc(8 * sizeof(int));
+  for (int i = 0; i < 8; i++) {
+    values[i] = i + 1;
+  }
+  uintptr_t address = (uintptr_t) values;
+  printf("%d\n", address % sizeof(int) == 0);
+  int *back = (int *) address;
+  back[7] = 100;
+  int sum = 0;
+  for (int i = 0; i < 8; i++) {
+    sum += values[i];
+  }
+  printf("sum %d\n", sum);
+
+  // cycles between allocations are converted once
+  struct cell *a = malloc(sizeof(struct cell));
+  struct cell *b = malloc(sizeof(struct cell));
+  a->self = a;
+  a->other = b;
+  a->value = 1;
+  b->self = b;
+  b->other = a;
+  b->value = 2;
+  uintptr_t addressOfA = (uintptr_t) a;
+  printf("%d %d %d %d\n", (uintptr_t) a->self == addressOfA, a->other->other == a, b->self->value, a->other->value);
+
+  // the side table of b was converted along with a
+  b->value = 3;
+  printf("%d %d\n", a->other->value, ((struct cell *) addressOfA)->other->value);
+
+  // copying between a native and a managed allocation
+  char *managed = malloc(32);
+  memcpy(managed, greeting, strlen(greeting) + 1);
+  managed[1] = 'E';
+  printf("%s %s\n", greeting, managed);
+
+  free(managed);
+  free(b);
+  free(a);
+  free(values);
+  free(greeting);
+  return 0;
+}
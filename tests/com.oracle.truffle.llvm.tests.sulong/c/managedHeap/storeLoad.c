@@ -0,0 +1,91 @@
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+
+struct node {
+  long value;
+  struct node *next;
+};
+
+struct mixed {
+  char c;
+  short s;
+  int i;
+  float f;
+  double d;
+  long l;
+  void *p;
+};
+
+int main() {
+  struct mixed *m = malloc(sizeof(struct mixed));
+  m->c = 'x';
+  m->s = -1234;
+  m->i = 123456789;
+  m->f = 1.5f;
+  m->d = -2.25;
+  m->l = 0x123456789abcdefL;
+  m->p = m;
+  printf("%c %d %d %f %f %lx %d\n", m->c, m->s, m->i, m->f, m->d, m->l, m->p == m);
+
+  // pointers stored into the allocation keep pointing to managed allocations
+  struct node *list = NULL;
+  for (long i = 0; i < 100; i++) {
+    struct node *n = malloc(sizeof(struct node));
+    n->value = i * i;
+    n->next = list;
+    list = n;
+  }
+  long sum = 0;
+  for (struct node *n = list; n != NULL; n = n->next) {
+    sum += n->value;
+  }
+  printf("sum %ld\n", sum);
+
+  // byte-wise access and overlapping copies
+  char *bytes = calloc(64, 1);
+  for (int i = 0; i < 26; i++) {
+    bytes[i] = 'a' + i;
+  }
+  memmove(bytes + 3, bytes, 26);
+  memmove(bytes, bytes + 5, 10);
+  memset(bytes + 20, '-', 7);
+  for (int i = 0; i < 32; i++) {
+    putchar(bytes[i] ? bytes[i] : '.');
+  }
+  putchar('\n');
+
+  // copying whole words copies the stored pointers along
+  struct node **table = malloc(4 * sizeof(struct node *));
+  struct node **copy = malloc(4 * sizeof(struct node *));
+  table[0] = list;
+  table[1] = list->next;
+  table[2] = NULL;
+  table[3] = list->next->next;
+  memcpy(copy, table, 4 * sizeof(struct node *));
+  printf("%ld %ld %d %ld\n", copy[0]->value, copy[1]->value, copy[2] == NULL, copy[3]->value);
+
+  // overwriting part of a stored pointer
+  memset((char *) table + 2, 0xff, 2);
+  printf("%d\n", table[0] != list);
+
+  // realloc keeps the contents
+  int *numbers = malloc(10 * sizeof(int));
+  for (int i = 0; i < 10; i++) {
+    numbers[i] = i * 3;
+  }
+  numbers = realloc(numbers, 1000 * sizeof(int));
+  for (int i = 10; i < 1000; i++) {
+    numbers[i] = i * 3;
+  }
+  long total = 0;
+  for (int i = 0; i < 1000; i++) {
+    total += numbers[i];
+  }
+  printf("total %ld\n", total);
+
+  // a zero-sized allocation
+  void *empty = malloc(0);
+  free(empty);
+  return 0;
+}
@@ -0,0 +1,27 @@
+#include <stdio.h>
+
+__attribute__((noinline)) void increment(int *value) {
+  (*value)++;
+}
+
+__attribute__((noinline)) void fill(int *values, int count) {
+  for (int i = 0; i < count; i++) {
+    values[i] = i * i;
+  }
+}
+
+int main() {
+  // the address of these allocas is passed to other functions
+  int counter = 0;
+  int values[8];
+  for (int i = 0; i < 100; i++) {
+    increment(&counter);
+  }
+  fill(values, 8);
+  int sum = 0;
+  for (int i = 0; i < 8; i++) {
+    sum += values[i];
+  }
+  printf("%d %d\n", counter, sum);
+  return 0;
+}
@@ -0,0 +1,14 @@
+#include <stdio.h>
+#include <stdint.h>
+
+int main() {
+  // the address of these allocas is converted to an integer
+  long value = 42;
+  int array[4] = {1, 2, 3, 4};
+  uintptr_t address = (uintptr_t) &value;
+  *(long *) address += 8;
+  uintptr_t element = (uintptr_t) &array[0] + 2 * sizeof(int);
+  *(int *) element = 30;
+  printf("%ld %d %d\n", value, array[2], address % sizeof(long) == 0);
+  return 0;
+}
@@ -0,0 +1,23 @@
+#include <stdio.h>
+
+struct holder {
+  int *target;
+};
+
+int main() {
+  // the address of these allocas is stored to memory
+  int value = 1;
+  int other = 2;
+  int *pointer;
+  struct holder holder;
+  holder.target = &value;
+  pointer = &other;
+  for (int i = 0; i < 10; i++) {
+    *holder.target += i;
+    *pointer *= 2;
+  }
+  int **indirect = &pointer;
+  **indirect += 1;
+  printf("%d %d %d\n", value, other, *holder.target + **indirect);
+  return 0;
+}
@@ -0,0 +1,40 @@
+#include <stdio.h>
+
+struct point {
+  int x;
+  int y;
+  double weight;
+};
+
+int main() {
+  // at -O0, all of these locals are allocas whose address is only used by loads and stores
+  char c = 'a';
+  short s = -3;
+  int i = 0;
+  long l = 1L << 40;
+  float f = 0.5f;
+  double d = 0.25;
+  int array[4] = {1, 2, 3, 4};
+  struct point p = {1, 2, 1.5};
+
+  for (i = 0; i < 1000; i++) {
+    c = c == 'z' ? 'a' : c + 1;
+    s = s * -1;
+    l += i;
+    f += 0.5f;
+    d *= 1.001;
+    array[i % 4] += i;
+    p.x += array[(i + 1) % 4];
+    p.y -= p.x % 7;
+    p.weight += d;
+  }
+  // a local that is only written on one path
+  int later = 0;
+  if (i > 0) {
+    later = 5;
+  }
+  printf("%c %d %d %ld %f %f\n", c, s, i, l, f, d);
+  printf("%d %d %d %d\n", array[0], array[1], array[2], array[3]);
+  printf("%d %d %f %d\n", p.x, p.y, p.weight, later);
+  return 0;
+}
@@ -0,0 +1,122 @@
+#include <limits.h>
+#include <stdio.h>
+
+int dense(int value) {
+  switch (value) {
+  case 0:
+    return 10;
+  case 1:
+  case 2:
+    // two cases with the same successor
+    return 12;
+  case 3:
+    return 13;
+  case 5:
+  default:
+    // a case with the default successor
+    return -1;
+  case 6:
+    return 16;
+  }
+}
+
+int sparse(int value) {
+  switch (value) {
+  case -1000000:
+    return 1;
+  case -7:
+    return 2;
+  case 0:
+    return 3;
+  case 42:
+  case 4200:
+    return 4;
+  case 1000000:
+    return 5;
+  case INT_MAX:
+    return 6;
+  case INT_MIN:
+    return 7;
+  default:
+    return 0;
+  }
+}
+
+int negative(signed char value) {
+  switch (value) {
+  case -128:
+    return 1;
+  case -2:
+    return 2;
+  case -1:
+    return 3;
+  case 0:
+    return 4;
+  case 1:
+    return 5;
+  case 127:
+    return 6;
+  default:
+    return 0;
+  }
+}
+
+int small(long long value) {
+  // a dense range around zero
+  switch (value) {
+  case -1:
+    return 1;
+  case 0:
+    return 2;
+  case 1:
+    return 3;
+  default:
+    return 0;
+  }
+}
+
+int extreme(long long value) {
+  switch (value) {
+  case LLONG_MIN:
+    return 1;
+  case LLONG_MIN + 1:
+    return 2;
+  case -1:
+    return 3;
+  case 0:
+    return 4;
+  case LLONG_MAX - 1:
+    return 5;
+  case LLONG_MAX:
+    return 6;
+  default:
+    return 0;
+  }
+}
+
+int unsignedSwitch(unsigned long long value) {
+  switch (value) {
+  case 0:
+    return 1;
+  case 1:
+    return 2;
+  case ULLONG_MAX:
+    return 3;
+  case ULLONG_MAX - 1:
+    return 4;
+  default:
+    return 0;
+  }
+}
+
+long long values[] = {LLONG_MIN, LLONG_MIN + 1, LLONG_MIN + 2, INT_MIN, -1000001, -1000000, -129, -128, -7, -2, -1, 0, 1, 2, 3, 4, 5, 6, 7, 42, 127, 128, 4200, 1000000, INT_MAX, (long long) INT_MAX + 1, LLONG_MAX - 2, LLONG_MAX - 1, LLONG_MAX};
+
+int main() {
+  int count = sizeof(values) / sizeof(values[0]);
+  for (int i = 0; i < count; i++) {
+    long long value = values[i];
+    printf("%lld: dense %d, sparse %d, negative %d, small %d, extreme %d, unsigned %d\n", value, dense((int) value), sparse((int) value), negative((signed char) value), small(value),
+           extreme(value), unsignedSwitch((unsigned long long) value));
+  }
+  return 0;
+}
@@ -0,0 +1,37 @@
+#include "nanolibc.h"
+#include <sys/mman.h>
+
+int main(void) {
+  char *buf;
+  int fd;
+  long result;
+
+  fd = open("LICENSE", O_RDONLY, 0);
+  if (fd < 0) {
+    perror("Cannot open file");
+    return 1;
+  }
+
+  buf = (char *)syscall(SYS_mmap, NULL, 4096, PROT_READ, MAP_PRIVATE, fd, 0);
+  if ((long)buf < 0 && (long)buf > -4096) {
+    perror("Cannot map file");
+    return 1;
+  }
+  close(fd);
+
+  write(STDOUT_FILENO, buf, 64);
+  printf("\n");
+
+  result = syscall(SYS_madvise, buf, 4096, MADV_SEQUENTIAL);
+  printf("madvise: %ld\n", result);
+
+  result = syscall(SYS_mprotect, buf, 4096, PROT_READ | PROT_WRITE);
+  printf("mprotect: %ld\n", result);
+  buf[0] = 'x';
+  write(STDOUT_FILENO, buf, 16);
+  printf("\n");
+
+  result = syscall(SYS_munmap, buf, 4096);
+  printf("munmap: %ld\n", result);
+  return 0;
+}
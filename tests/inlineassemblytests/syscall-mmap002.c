@@ -0,0 +1,30 @@
+#include "nanolibc.h"
+#include <sys/mman.h>
+
+int main(void) {
+  long *buf;
+  long result;
+  long sum = 0;
+  int i;
+
+  buf = (long *)syscall(SYS_mmap, NULL, 1 << 20, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS, -1, 0);
+  if ((long)buf < 0 && (long)buf > -4096) {
+    perror("Cannot map memory");
+    return 1;
+  }
+  printf("aligned: %d\n", ((long)buf & 4095) == 0);
+
+  for (i = 0; i < (1 << 20) / sizeof(long); i += 512) {
+    sum += buf[i];
+    buf[i] = i;
+  }
+  printf("sum: %ld\n", sum);
+
+  result = syscall(SYS_madvise, buf, 1 << 20, MADV_DONTNEED);
+  printf("madvise: %ld\n", result);
+  printf("after madvise: %ld\n", buf[512]);
+
+  result = syscall(SYS_munmap, buf, 1 << 20);
+  printf("munmap: %ld\n", result);
+  return 0;
+}
@@ -0,0 +1,80 @@
+#include "nanolibc.h"
+#include <sys/mman.h>
+
+#define PAGE 4096
+
+static char *map(void *addr, long length, int flags) {
+  return (char *)syscall(SYS_mmap, addr, length, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS | flags, -1, 0);
+}
+
+static int failed(char *result) {
+  return (long)result < 0 && (long)result > -4096;
+}
+
+int main(void) {
+  char *buf;
+  char *hole;
+  char *fixed;
+  char *moved;
+  long result;
+
+  buf = map(NULL, 4 * PAGE, 0);
+  if (failed(buf)) {
+    perror("Cannot map memory");
+    return 1;
+  }
+  buf[0] = 'a';
+  buf[3 * PAGE] = 'd';
+
+  // unmapping a part of a mapping keeps the rest of it
+  result = syscall(SYS_munmap, buf + PAGE, 2 * PAGE);
+  printf("munmap middle: %ld\n", result);
+  printf("kept: %c %c\n", buf[0], buf[3 * PAGE]);
+
+  // the hole is not mapped any more
+  result = syscall(SYS_mprotect, buf + PAGE, PAGE, PROT_READ);
+  printf("mprotect hole: %ld\n", result);
+  result = syscall(SYS_madvise, buf + PAGE, PAGE, MADV_DONTNEED);
+  printf("madvise hole: %ld\n", result);
+  result = syscall(SYS_munmap, buf + PAGE, PAGE);
+  printf("munmap hole: %ld\n", result);
+
+  // a failed fixed mapping over a mapping and the hole leaves both unchanged
+  result = syscall(SYS_mmap, buf, 2 * PAGE, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_FIXED, -1, 0);
+  printf("failed fixed mmap: %d\n", failed((char *)result));
+  printf("kept: %c\n", buf[0]);
+  result = syscall(SYS_mprotect, buf + PAGE, PAGE, PROT_READ);
+  printf("mprotect hole: %ld\n", result);
+
+  // so does a failed fixed mremap
+  result = syscall(SYS_mremap, buf + 3 * PAGE, PAGE, 2 * PAGE, MREMAP_FIXED, buf);
+  printf("failed fixed mremap: %d\n", failed((char *)result));
+  printf("kept: %c %c\n", buf[0], buf[3 * PAGE]);
+  result = syscall(SYS_mprotect, buf + PAGE, PAGE, PROT_READ);
+  printf("mprotect hole: %ld\n", result);
+
+  // a fixed mapping can be placed into the hole
+  hole = buf + PAGE;
+  fixed = map(hole, PAGE, MAP_FIXED);
+  printf("fixed into hole: %d\n", fixed == hole);
+  printf("zero filled: %d\n", fixed[0] == 0);
+  fixed[0] = 'b';
+
+  // and it can replace a mapping that was created before
+  fixed = map(buf, PAGE, MAP_FIXED);
+  printf("fixed over mapping: %d\n", fixed == buf);
+  printf("replaced: %d %c\n", fixed[0] == 0, buf[PAGE]);
+
+  // a mapping can be moved into the remaining hole
+  moved = (char *)syscall(SYS_mremap, buf + 3 * PAGE, PAGE, PAGE, MREMAP_MAYMOVE | MREMAP_FIXED, buf + 2 * PAGE);
+  printf("mremap into hole: %d\n", moved == buf + 2 * PAGE);
+  printf("moved: %c\n", moved[0]);
+  result = syscall(SYS_mprotect, buf + 3 * PAGE, PAGE, PROT_READ);
+  printf("mprotect old: %ld\n", result);
+
+  result = syscall(SYS_munmap, buf, 4 * PAGE);
+  printf("munmap all: %ld\n", result);
+  result = syscall(SYS_mprotect, buf, PAGE, PROT_READ);
+  printf("mprotect unmapped: %ld\n", result);
+  return 0;
+}